@@ -14,6 +14,9 @@
  */
 
 precision mediump float;
+
+#include "shaders/depth_format.glsl"
+
 uniform sampler2D u_Depth;
 varying vec2 v_TexCoord;
 const highp float kMaxDepth = 20000.0; // In millimeters.
@@ -21,10 +24,6 @@ const highp float kMaxDepth = 20000.0; // In millimeters.
 uniform float u_DepthRangeToRenderMm;
 const float kDepthWidthToRenderMm = 350.0;
 
-float GetDepthMillimeters(vec4 depth_pixel_value) {
-  return 255.0 * (depth_pixel_value.r + depth_pixel_value.g * 256.0);
-}
-
 // Returns an interpolated color in a 6 degree polynomial interpolation.
 vec3 GetPolynomialColor(in float x,
   in vec4 kRedVec4, in vec4 kGreenVec4, in vec4 kBlueVec4,
@@ -58,7 +57,7 @@ vec3 PerceptColormap(in float x) {
 
 void main() {
   vec4 packed_depth = texture2D(u_Depth, v_TexCoord.xy);
-  highp float depth_mm = GetDepthMillimeters(packed_depth);
+  highp float depth_mm = DecodePackedDepthMillimeters(packed_depth);
   highp float normalized_depth = depth_mm / kMaxDepth;
   vec4 depth_color = vec4(PerceptColormap(normalized_depth), 1.0);
   gl_FragColor = depth_color;
@@ -0,0 +1,52 @@
+/*
+ * One pass of the separable depth prefilter used for occlusion. Run once horizontally and once
+ * vertically per depth frame; the result keeps the packed RG millimeter encoding of the ARCore depth
+ * texture so the occlusion shader can sample it with the same decoding.
+ */
+
+precision highp float;
+
+#include "shaders/depth_format.glsl"
+
+uniform sampler2D u_Depth;
+// Offset between neighboring taps in texture space, along the blur direction.
+uniform vec2 u_TapOffset;
+
+varying vec2 v_TexCoord;
+
+float DecodeDepthMillimeters(in vec2 depth_uv) {
+  return DecodePackedDepthMillimeters(texture2D(u_Depth, depth_uv));
+}
+
+vec2 EncodeDepthMillimeters(in float depth_mm) {
+  float rounded = floor(depth_mm + 0.5);
+  float high = floor(rounded / 256.0);
+  float low = rounded - high * 256.0;
+  return vec2(low, high) / 255.0;
+}
+
+void main() {
+  // Binomial weights approximating the 5x5 kernel of GetBlurredVisibilityAroundUV.
+  const float kWeight0 = 6.0;
+  const float kWeight1 = 4.0;
+  const float kWeight2 = 1.0;
+
+  float d_m2 = DecodeDepthMillimeters(v_TexCoord - 2.0 * u_TapOffset);
+  float d_m1 = DecodeDepthMillimeters(v_TexCoord - u_TapOffset);
+  float d_0 = DecodeDepthMillimeters(v_TexCoord);
+  float d_p1 = DecodeDepthMillimeters(v_TexCoord + u_TapOffset);
+  float d_p2 = DecodeDepthMillimeters(v_TexCoord + 2.0 * u_TapOffset);
+
+  // Zero depth marks missing data; leave it out instead of pulling neighbors towards the camera.
+  float w_m2 = kWeight2 * step(0.5, d_m2);
+  float w_m1 = kWeight1 * step(0.5, d_m1);
+  float w_0 = kWeight0 * step(0.5, d_0);
+  float w_p1 = kWeight1 * step(0.5, d_p1);
+  float w_p2 = kWeight2 * step(0.5, d_p2);
+
+  float weight_sum = w_m2 + w_m1 + w_0 + w_p1 + w_p2;
+  float depth_sum = w_m2 * d_m2 + w_m1 * d_m1 + w_0 * d_0 + w_p1 * d_p1 + w_p2 * d_p2;
+  float depth_mm = weight_sum > 0.0 ? depth_sum / weight_sum : 0.0;
+
+  gl_FragColor = vec4(EncodeDepthMillimeters(depth_mm), 0.0, 1.0);
+}
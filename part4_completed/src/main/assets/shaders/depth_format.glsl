@@ -0,0 +1,10 @@
+/*
+ * Decoding of the packed ARCore depth texture, shared by every shader that samples depth.
+ *
+ * Depth is stored in millimeters as two normalized bytes of a GL_RG8 texture, the low byte in .r
+ * and the high byte in .g.
+ */
+
+highp float DecodePackedDepthMillimeters(in vec4 packed_depth) {
+  return dot(packed_depth.rg, vec2(255.0, 256.0 * 255.0));
+}
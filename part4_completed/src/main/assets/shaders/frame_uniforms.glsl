@@ -0,0 +1,15 @@
+/*
+ * Camera data that is the same for every object in a frame, uploaded once per frame by
+ * FrameUniformBuffer. GLSL ES 3.00 only. The std140 layout must match FrameUniformBuffer; members
+ * are highp so that the block is identical in vertex and fragment shaders.
+ */
+
+layout(std140) uniform FrameUniforms {
+  highp mat4 u_View;
+  highp mat4 u_ViewProjection;
+  // Direction towards the light in model space, transformed per instance.
+  highp vec4 u_ModelLightDirection;
+  highp vec4 u_ColorCorrectionParameters;
+  // Maps screen space to depth texture coordinates, for occlusion.
+  highp mat3 u_UvTransform;
+};
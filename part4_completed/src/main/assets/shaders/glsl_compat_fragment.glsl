@@ -0,0 +1,15 @@
+/*
+ * Fragment shader counterpart of glsl_compat_vertex.glsl: maps the GLSL ES 1.00 names used by the
+ * shaders onto GLSL ES 3.00 when GLSL_300_ES is 1.
+ */
+
+#ifndef GLSL_300_ES
+#define GLSL_300_ES 0
+#endif
+
+#if GLSL_300_ES
+#define varying in
+#define texture2D texture
+out mediump vec4 o_FragColor;
+#define gl_FragColor o_FragColor
+#endif
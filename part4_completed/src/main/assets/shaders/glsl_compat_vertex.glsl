@@ -0,0 +1,18 @@
+/*
+ * Lets one vertex shader compile as GLSL ES 1.00 or, when GLSL_300_ES is 1, as GLSL ES 3.00. The
+ * #version directive itself is emitted by ShaderPreprocessor for that define.
+ *
+ * ATTRIBUTE(index) declares a vertex input. In GLSL ES 3.00 it is bound to location index, so one
+ * vertex array object works with every program, see GpuMesh.
+ */
+
+#ifndef GLSL_300_ES
+#define GLSL_300_ES 0
+#endif
+
+#if GLSL_300_ES
+#define ATTRIBUTE(index) layout(location = index) in
+#define varying out
+#else
+#define ATTRIBUTE(index) attribute
+#endif
@@ -13,17 +13,31 @@
  * limitations under the License.
  */
 
+#include "shaders/glsl_compat_fragment.glsl"
+
+// Matches the vertex shader; when 1, the light direction comes from v_ViewLightDirection.
+#ifndef INSTANCED
+#define INSTANCED 0
+#endif
+
 precision mediump float;
 
 uniform sampler2D u_Texture;
 
 uniform vec4 u_LightingParameters;
 uniform vec4 u_MaterialParameters;
+#if GLSL_300_ES
+#include "shaders/frame_uniforms.glsl"
+#else
 uniform vec4 u_ColorCorrectionParameters;
+#endif
 
 varying vec3 v_ViewPosition;
 varying vec3 v_ViewNormal;
 varying vec2 v_TexCoord;
+#if INSTANCED
+varying vec3 v_ViewLightDirection;
+#endif
 uniform vec4 u_ObjColor;
 
 void main() {
@@ -33,7 +47,11 @@ void main() {
     const float kMiddleGrayGamma = 0.466;
 
     // Unpack lighting and material parameters for better naming.
+#if INSTANCED
+    vec3 viewLightDirection = normalize(v_ViewLightDirection);
+#else
     vec3 viewLightDirection = u_LightingParameters.xyz;
+#endif
     vec3 colorShift = u_ColorCorrectionParameters.rgb;
     float averagePixelIntensity = u_ColorCorrectionParameters.a;
 
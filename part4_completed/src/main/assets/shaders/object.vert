@@ -13,20 +13,56 @@
  * limitations under the License.
  */
 
+#include "shaders/glsl_compat_vertex.glsl"
+
+// When INSTANCED is 1, each instance supplies its model matrix through a_ModelMatrix, so all
+// instances of the mesh are drawn with one glDrawElementsInstanced call. With GLSL_300_ES, the
+// camera data comes from the per-frame uniform block instead of per-draw uniforms.
+#ifndef INSTANCED
+#define INSTANCED 0
+#endif
+
+#if INSTANCED
+#if GLSL_300_ES
+#include "shaders/frame_uniforms.glsl"
+#else
+uniform mat4 u_View;
+uniform mat4 u_ViewProjection;
+// Direction towards the light in model space, transformed per instance.
+uniform vec4 u_ModelLightDirection;
+#endif
+// Locations 3 to 6, one per column; see GpuMesh.MODEL_MATRIX_LOCATION.
+ATTRIBUTE(3) mat4 a_ModelMatrix;
+varying vec3 v_ViewLightDirection;
+#else
 uniform mat4 u_ModelView;
 uniform mat4 u_ModelViewProjection;
+#endif
+
+#include "shaders/vertex_quantization.glsl"
 
-attribute vec4 a_Position;
-attribute vec3 a_Normal;
-attribute vec2 a_TexCoord;
+// Locations match the vertex arrays of GpuMesh.
+ATTRIBUTE(0) vec4 a_Position;
+ATTRIBUTE(1) vec2 a_Normal;
+ATTRIBUTE(2) vec2 a_TexCoord;
 
 varying vec3 v_ViewPosition;
 varying vec3 v_ViewNormal;
 varying vec2 v_TexCoord;
 
 void main() {
-    v_ViewPosition = (u_ModelView * a_Position).xyz;
-    v_ViewNormal = normalize((u_ModelView * vec4(a_Normal, 0.0)).xyz);
-    v_TexCoord = a_TexCoord;
-    gl_Position = u_ModelViewProjection * a_Position;
+#if INSTANCED
+    mat4 modelView = u_View * a_ModelMatrix;
+    mat4 modelViewProjection = u_ViewProjection * a_ModelMatrix;
+    v_ViewLightDirection = normalize((modelView * u_ModelLightDirection).xyz);
+#else
+    mat4 modelView = u_ModelView;
+    mat4 modelViewProjection = u_ModelViewProjection;
+#endif
+    vec4 position = DecodePosition(a_Position);
+    vec3 normal = DecodeOctahedralNormal(a_Normal);
+    v_ViewPosition = (modelView * position).xyz;
+    v_ViewNormal = normalize((modelView * vec4(normal, 0.0)).xyz);
+    v_TexCoord = DecodeTexCoord(a_TexCoord);
+    gl_Position = modelViewProjection * position;
 }
@@ -13,23 +13,46 @@
  * limitations under the License.
  */
 
+// Number of depth taps used to soften the occlusion edge: 25 for the full 5x5 kernel, 5 for a
+// cross-shaped kernel, or 1 for a single test. A single tap is meant for depth that was already
+// blurred once per depth frame by DepthBlurFilter.
+#ifndef OCCLUSION_TAPS
+#define OCCLUSION_TAPS 25
+#endif
+
+#include "shaders/glsl_compat_fragment.glsl"
+
+// Matches the vertex shader; when 1, the light direction comes from v_ViewLightDirection.
+#ifndef INSTANCED
+#define INSTANCED 0
+#endif
+
 precision mediump float;
 
+#include "shaders/depth_format.glsl"
+
 uniform sampler2D u_Texture;
 
 uniform vec4 u_LightingParameters;
 uniform vec4 u_MaterialParameters;
+#if GLSL_300_ES
+#include "shaders/frame_uniforms.glsl"
+#else
 uniform vec4 u_ColorCorrectionParameters;
+uniform mat3 u_UvTransform;
+#endif
 
 varying vec3 v_ViewPosition;
 varying vec3 v_ViewNormal;
 varying vec2 v_TexCoord;
+#if INSTANCED
+varying vec3 v_ViewLightDirection;
+#endif
 uniform vec4 u_ObjColor;
 
 varying vec3 v_ScreenSpacePosition;
 
 uniform sampler2D u_Depth;
-uniform mat3 u_UvTransform;
 uniform float u_DepthTolerancePerMm;
 uniform float u_OcclusionAlpha;
 uniform float u_DepthAspectRatio;
@@ -38,8 +61,7 @@ uniform float u_OcclusionBlurAmount;
 float GetDepthMillimeters(in vec2 depth_uv) {
   // Depth is packed into the red and green components of its texture.
   // The texture is a normalized format, storing millimeters.
-  vec3 packedDepthAndVisibility = texture2D(u_Depth, depth_uv).xyz;
-  return dot(packedDepthAndVisibility.xy, vec2(255.0, 256.0 * 255.0));
+  return DecodePackedDepthMillimeters(texture2D(u_Depth, depth_uv));
 }
 
 // Returns linear interpolation position of value between min and max bounds.
@@ -126,6 +148,28 @@ float GetBlurredVisibilityAroundUV(in vec2 uv, in float asset_depth_mm) {
   return sum / kKernelTotalWeights;
 }
 
+float GetCrossVisibilityAroundUV(in vec2 uv, in float asset_depth_mm) {
+  // Center and direct neighbors of the kernel above:
+  //     26
+  // 26  41  26
+  //     26
+  const float kKernelTotalWeights = 145.0;
+
+  vec2 blurriness = vec2(u_OcclusionBlurAmount,
+                         u_OcclusionBlurAmount * u_DepthAspectRatio);
+
+  float current = 0.0;
+  current += GetVisibility(uv + vec2(+0.0, +1.0) * blurriness, asset_depth_mm);
+  current += GetVisibility(uv + vec2(-0.0, -1.0) * blurriness, asset_depth_mm);
+  current += GetVisibility(uv + vec2(-1.0, -0.0) * blurriness, asset_depth_mm);
+  current += GetVisibility(uv + vec2(+1.0, +0.0) * blurriness, asset_depth_mm);
+  float sum = current * 26.0;
+
+  sum += GetVisibility(uv, asset_depth_mm) * 41.0;
+
+  return sum / kKernelTotalWeights;
+}
+
 void main() {
     // We support approximate sRGB gamma.
     const float kGamma = 0.4545454;
@@ -134,7 +178,11 @@ void main() {
     const float kMToMm = 1000.0;
 
     // Unpack lighting and material parameters for better naming.
+#if INSTANCED
+    vec3 viewLightDirection = normalize(v_ViewLightDirection);
+#else
     vec3 viewLightDirection = u_LightingParameters.xyz;
+#endif
     vec3 colorShift = u_ColorCorrectionParameters.rgb;
     float averagePixelIntensity = u_ColorCorrectionParameters.a;
 
@@ -189,8 +237,12 @@ void main() {
     // Computes the texture coordinates to sample from the depth image.
     vec2 depth_uvs = (u_UvTransform * vec3(v_ScreenSpacePosition.xy, 1)).xy;
 
-    // The following step is very costly. Replace the last line with the
-    // commented line if it's too expensive.
-    //gl_FragColor.a *= GetVisibility(depth_uvs, asset_depth_mm);
+#if OCCLUSION_TAPS == 1
+    gl_FragColor.a *= GetVisibility(depth_uvs, asset_depth_mm);
+#elif OCCLUSION_TAPS == 5
+    gl_FragColor.a *= GetCrossVisibilityAroundUV(depth_uvs, asset_depth_mm);
+#else
+    // The following step is very costly: 25 dependent depth fetches per fragment.
     gl_FragColor.a *= GetBlurredVisibilityAroundUV(depth_uvs, asset_depth_mm);
+#endif
 }
@@ -0,0 +1,30 @@
+/*
+ * Decoding of quantized mesh vertices, see QuantizedVertexData. All attributes are normalized
+ * integers:
+ *   a_Position  snorm16 xyz, mapped onto the mesh bounding box.
+ *   a_Normal    snorm16 xy, an octahedral-encoded unit vector.
+ *   a_TexCoord  unorm16 xy, mapped onto the mesh UV range.
+ */
+
+// Half the bounding box size and its center.
+uniform vec3 u_PositionScale;
+uniform vec3 u_PositionOffset;
+// UV range size in xy and minimum in zw.
+uniform vec4 u_TexCoordScaleOffset;
+
+vec4 DecodePosition(in vec4 quantized_position) {
+  return vec4(quantized_position.xyz * u_PositionScale + u_PositionOffset, 1.0);
+}
+
+vec3 DecodeOctahedralNormal(in vec2 encoded) {
+  vec3 normal = vec3(encoded, 1.0 - abs(encoded.x) - abs(encoded.y));
+  // Unfold the lower hemisphere, which the encoder mirrored over the diagonals.
+  float fold = max(-normal.z, 0.0);
+  normal.x += normal.x >= 0.0 ? -fold : fold;
+  normal.y += normal.y >= 0.0 ? -fold : fold;
+  return normalize(normal);
+}
+
+vec2 DecodeTexCoord(in vec2 quantized_uv) {
+  return quantized_uv * u_TexCoordScaleOffset.xy + u_TexCoordScaleOffset.zw;
+}
@@ -5,6 +5,7 @@ import android.support.design.widget.BaseTransientBottomBar;
 import android.support.design.widget.Snackbar;
 import android.view.View;
 import android.widget.TextView;
+import com.google.ar.core.codelab.common.profiling.TraceRecorder;
 
 /**
  * Snackbar'ı yönetmek için yardımcı sınıf. Android ile ilgili kodları gizler ve daha basit
@@ -12,6 +13,10 @@ import android.widget.TextView;
  */
 public final class SnackbarHelper {
     private static final int BACKGROUND_COLOR = 0xbf323232;
+    // İz kaydında her gönderim, UI thread'inde gösterildiği ana bir akışla bağlanır.
+    private static final TraceRecorder tracer = TraceRecorder.getInstance();
+    private static final int TRACE_POST = tracer.registerName("snackbar_post");
+    private static final int TRACE_SHOW = tracer.registerName("snackbar_show");
     private Snackbar messageSnackbar;
     private enum DismissBehavior { HIDE, SHOW, FINISH }
     private int maxLines = 2;
@@ -68,10 +73,15 @@ public final class SnackbarHelper {
 
     private void show(
             final Activity activity, final String message, final DismissBehavior dismissBehavior) {
+        final long flowId = tracer.isEnabled() ? tracer.nextFlowId() : 0;
+        tracer.begin(TRACE_POST);
+        tracer.flowStart(TRACE_POST, flowId);
         activity.runOnUiThread(
                 new Runnable() {
                     @Override
                     public void run() {
+                        tracer.begin(TRACE_SHOW);
+                        tracer.flowEnd(TRACE_POST, flowId);
                         messageSnackbar =
                                 Snackbar.make(
                                         activity.findViewById(android.R.id.content),
@@ -104,7 +114,9 @@ public final class SnackbarHelper {
                                         .findViewById(android.support.design.R.id.snackbar_text))
                                 .setMaxLines(maxLines);
                         messageSnackbar.show();
+                        tracer.end(TRACE_SHOW);
                     }
                 });
+        tracer.end(TRACE_POST);
     }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import android.view.View;
 import android.view.View.OnTouchListener;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Android GestureDetector kullanarak dokunmaları algılamak ve dokunmaları UI thread ve
@@ -15,6 +16,9 @@ import java.util.concurrent.BlockingQueue;
 public final class TapHelper implements OnTouchListener {
     private final GestureDetector gestureDetector;
     private final BlockingQueue<MotionEvent> queuedSingleTaps = new ArrayBlockingQueue<>(16);
+    // Kuyruk dolu olduğu için kaybolan dokunmalar. UI thread'inde artar, her thread'den
+    // okunabilir.
+    private final AtomicLong droppedTapCount = new AtomicLong();
 
     /**
      * TapHelper'ı oluşturur.
@@ -29,7 +33,9 @@ public final class TapHelper implements OnTouchListener {
                             @Override
                             public boolean onSingleTapUp(MotionEvent e) {
                                 // Eğer sıra varsa dokunmayı sıraya ekleyin. Kuyruk doluysa dokunma kaybolur.
-                                queuedSingleTaps.offer(e);
+                                if (!queuedSingleTaps.offer(e)) {
+                                    droppedTapCount.incrementAndGet();
+                                }
                                 return true;
                             }
 
@@ -49,6 +55,11 @@ public final class TapHelper implements OnTouchListener {
         return queuedSingleTaps.poll();
     }
 
+    /** Kuyruk dolu olduğu için işlenmeden kaybolan dokunma sayısı. */
+    public long getDroppedTapCount() {
+        return droppedTapCount.get();
+    }
+
     @Override
     public boolean onTouch(View view, MotionEvent motionEvent) {
         return gestureDetector.onTouchEvent(motionEvent);
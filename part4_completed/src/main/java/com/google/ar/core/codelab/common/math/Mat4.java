@@ -0,0 +1,146 @@
+package com.google.ar.core.codelab.common.math;
+
+/**
+ * Operations on 4x4 matrices stored in column-major order in float arrays, in place at an offset
+ * like {@code android.opengl.Matrix}. Nothing allocates. Results agree with {@code
+ * android.opengl.Matrix} up to float rounding; the terms of a product may be summed in a different
+ * order, so the last bits can differ.
+ *
+ * <p>Unlike {@code android.opengl.Matrix}, the result may be the same matrix as an operand, so
+ * products can be computed in place.
+ *
+ * <p>This class does not depend on Android.
+ */
+public final class Mat4 {
+  /** Floats per matrix. */
+  public static final int SIZE = 16;
+
+  private Mat4() {}
+
+  /** Sets {@code m} to the identity matrix. */
+  public static void setIdentity(float[] m, int offset) {
+    for (int i = 0; i < SIZE; ++i) {
+      m[offset + i] = (i % 5 == 0) ? 1.0f : 0.0f;
+    }
+  }
+
+  /** Computes {@code result = lhs * rhs}. */
+  public static void multiply(
+      float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+    float l00 = lhs[lhsOffset];
+    float l01 = lhs[lhsOffset + 1];
+    float l02 = lhs[lhsOffset + 2];
+    float l03 = lhs[lhsOffset + 3];
+    float l10 = lhs[lhsOffset + 4];
+    float l11 = lhs[lhsOffset + 5];
+    float l12 = lhs[lhsOffset + 6];
+    float l13 = lhs[lhsOffset + 7];
+    float l20 = lhs[lhsOffset + 8];
+    float l21 = lhs[lhsOffset + 9];
+    float l22 = lhs[lhsOffset + 10];
+    float l23 = lhs[lhsOffset + 11];
+    float l30 = lhs[lhsOffset + 12];
+    float l31 = lhs[lhsOffset + 13];
+    float l32 = lhs[lhsOffset + 14];
+    float l33 = lhs[lhsOffset + 15];
+    for (int column = 0; column < 4; ++column) {
+      int r = rhsOffset + column * 4;
+      float r0 = rhs[r];
+      float r1 = rhs[r + 1];
+      float r2 = rhs[r + 2];
+      float r3 = rhs[r + 3];
+      int out = resultOffset + column * 4;
+      result[out] = l00 * r0 + l10 * r1 + l20 * r2 + l30 * r3;
+      result[out + 1] = l01 * r0 + l11 * r1 + l21 * r2 + l31 * r3;
+      result[out + 2] = l02 * r0 + l12 * r1 + l22 * r2 + l32 * r3;
+      result[out + 3] = l03 * r0 + l13 * r1 + l23 * r2 + l33 * r3;
+    }
+  }
+
+  /**
+   * Computes {@code result[i] = lhs * rhs[i]} for {@code count} consecutive matrices, e.g. one
+   * view-projection matrix applied to many model matrices. {@code lhs} is loaded once for the whole
+   * batch. {@code result} may be {@code rhs} at the same offset, but must not overlap {@code lhs}.
+   */
+  public static void multiplyBatch(
+      float[] result,
+      int resultOffset,
+      float[] lhs,
+      int lhsOffset,
+      float[] rhs,
+      int rhsOffset,
+      int count) {
+    float l00 = lhs[lhsOffset];
+    float l01 = lhs[lhsOffset + 1];
+    float l02 = lhs[lhsOffset + 2];
+    float l03 = lhs[lhsOffset + 3];
+    float l10 = lhs[lhsOffset + 4];
+    float l11 = lhs[lhsOffset + 5];
+    float l12 = lhs[lhsOffset + 6];
+    float l13 = lhs[lhsOffset + 7];
+    float l20 = lhs[lhsOffset + 8];
+    float l21 = lhs[lhsOffset + 9];
+    float l22 = lhs[lhsOffset + 10];
+    float l23 = lhs[lhsOffset + 11];
+    float l30 = lhs[lhsOffset + 12];
+    float l31 = lhs[lhsOffset + 13];
+    float l32 = lhs[lhsOffset + 14];
+    float l33 = lhs[lhsOffset + 15];
+    // Each column of a product depends only on the same column of rhs, so reading a column
+    // before writing it makes the multiplication safe in place.
+    int columnCount = count * 4;
+    for (int column = 0; column < columnCount; ++column) {
+      int r = rhsOffset + column * 4;
+      float r0 = rhs[r];
+      float r1 = rhs[r + 1];
+      float r2 = rhs[r + 2];
+      float r3 = rhs[r + 3];
+      int out = resultOffset + column * 4;
+      result[out] = l00 * r0 + l10 * r1 + l20 * r2 + l30 * r3;
+      result[out + 1] = l01 * r0 + l11 * r1 + l21 * r2 + l31 * r3;
+      result[out + 2] = l02 * r0 + l12 * r1 + l22 * r2 + l32 * r3;
+      result[out + 3] = l03 * r0 + l13 * r1 + l23 * r2 + l33 * r3;
+    }
+  }
+
+  /**
+   * Computes {@code result = m * v} for a 4-component column vector. {@code result} may overlap
+   * {@code v}.
+   */
+  public static void multiplyVector(
+      float[] result, int resultOffset, float[] m, int mOffset, float[] v, int vOffset) {
+    float x = v[vOffset];
+    float y = v[vOffset + 1];
+    float z = v[vOffset + 2];
+    float w = v[vOffset + 3];
+    for (int row = 0; row < 4; ++row) {
+      result[resultOffset + row] =
+          m[mOffset + row] * x
+              + m[mOffset + 4 + row] * y
+              + m[mOffset + 8 + row] * z
+              + m[mOffset + 12 + row] * w;
+    }
+  }
+
+  /** Computes {@code result = m * scale(x, y, z)}, scaling the first three columns of {@code m}. */
+  public static void scale(
+      float[] result, int resultOffset, float[] m, int mOffset, float x, float y, float z) {
+    for (int row = 0; row < 4; ++row) {
+      result[resultOffset + row] = m[mOffset + row] * x;
+      result[resultOffset + 4 + row] = m[mOffset + 4 + row] * y;
+      result[resultOffset + 8 + row] = m[mOffset + 8 + row] * z;
+      result[resultOffset + 12 + row] = m[mOffset + 12 + row];
+    }
+  }
+
+  /**
+   * Largest length of the first three columns, the factor by which {@code m} can stretch a
+   * bounding sphere.
+   */
+  public static float getMaxAxisScale(float[] m, int offset) {
+    float x = Vec3.lengthSquared(m, offset);
+    float y = Vec3.lengthSquared(m, offset + 4);
+    float z = Vec3.lengthSquared(m, offset + 8);
+    return (float) Math.sqrt(Math.max(x, Math.max(y, z)));
+  }
+}
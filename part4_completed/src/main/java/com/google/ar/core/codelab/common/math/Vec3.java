@@ -0,0 +1,29 @@
+package com.google.ar.core.codelab.common.math;
+
+/**
+ * Operations on 3-component vectors stored in float arrays at an offset. Nothing allocates.
+ *
+ * <p>This class does not depend on Android.
+ */
+public final class Vec3 {
+  private Vec3() {}
+
+  /** Returns the dot product of the vectors at {@code a[aOffset]} and {@code b[bOffset]}. */
+  public static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+    return a[aOffset] * b[bOffset]
+        + a[aOffset + 1] * b[bOffset + 1]
+        + a[aOffset + 2] * b[bOffset + 2];
+  }
+
+  public static float lengthSquared(float[] v, int offset) {
+    return v[offset] * v[offset] + v[offset + 1] * v[offset + 1] + v[offset + 2] * v[offset + 2];
+  }
+
+  /** Scales the vector at {@code v[offset]} to unit length. The vector must not be zero. */
+  public static void normalize(float[] v, int offset) {
+    float reciprocalLength = 1.0f / (float) Math.sqrt(lengthSquared(v, offset));
+    v[offset] *= reciprocalLength;
+    v[offset + 1] *= reciprocalLength;
+    v[offset + 2] *= reciprocalLength;
+  }
+}
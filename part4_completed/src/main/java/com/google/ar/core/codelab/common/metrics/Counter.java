@@ -0,0 +1,28 @@
+package com.google.ar.core.codelab.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A value that only goes up, such as the number of uploads so far. Updates are lock-free and may
+ * come from any thread. Exported through {@link MetricsRegistry#register(String, String, Counter,
+ * String...)}.
+ */
+public final class Counter {
+  private final AtomicLong value = new AtomicLong();
+
+  public void increment() {
+    value.incrementAndGet();
+  }
+
+  /** Adds {@code delta}, which must not be negative. */
+  public void add(long delta) {
+    if (delta < 0) {
+      throw new IllegalArgumentException("Counters cannot decrease: " + delta);
+    }
+    value.addAndGet(delta);
+  }
+
+  public long get() {
+    return value.get();
+  }
+}
@@ -0,0 +1,19 @@
+package com.google.ar.core.codelab.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A value that may go up and down, such as bytes currently held. The owner sets it, typically once
+ * per frame; a scrape reads the last value set. Updates are lock-free and may come from any thread.
+ */
+public final class Gauge {
+  private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+  public void set(double value) {
+    bits.set(Double.doubleToRawLongBits(value));
+  }
+
+  public double get() {
+    return Double.longBitsToDouble(bits.get());
+  }
+}
@@ -0,0 +1,130 @@
+package com.google.ar.core.codelab.common.metrics;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+/**
+ * A minimal HTTP server that serves a {@link MetricsRegistry} in the Prometheus text format at
+ * {@code /metrics}. It listens on the loopback interface only; on a device, scrape it through
+ * {@code adb forward tcp:PORT tcp:PORT}.
+ *
+ * <p>Requests are answered one at a time on a single daemon thread, which is enough for a scraper
+ * polling every few seconds. This class does not depend on Android.
+ */
+public final class MetricsHttpServer implements Closeable {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String METRICS_PATH = "/metrics";
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final int READ_TIMEOUT_MILLIS = 2000;
+
+  private final MetricsRegistry registry;
+  private final ServerSocket serverSocket;
+  private final Thread thread;
+
+  private MetricsHttpServer(MetricsRegistry registry, ServerSocket serverSocket) {
+    this.registry = registry;
+    this.serverSocket = serverSocket;
+    this.thread = new Thread(this::serve, "metrics-http");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Starts serving {@code registry} on {@code port} of the loopback interface. Port 0 picks a free
+   * port, see {@link #getPort}.
+   */
+  public static MetricsHttpServer start(MetricsRegistry registry, int port) throws IOException {
+    ServerSocket serverSocket =
+        new ServerSocket(port, /*backlog=*/ 4, InetAddress.getLoopbackAddress());
+    MetricsHttpServer server = new MetricsHttpServer(registry, serverSocket);
+    server.thread.start();
+    return server;
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /** Stops accepting connections. A request in progress is finished first. */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+  }
+
+  private void serve() {
+    while (!serverSocket.isClosed()) {
+      try (Socket socket = serverSocket.accept()) {
+        socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+        handle(socket);
+      } catch (IOException e) {
+        // A broken or timed out connection only loses that scrape; the scraper retries on its
+        // next poll. After close(), accept() throws and the loop ends.
+      }
+    }
+  }
+
+  private void handle(Socket socket) throws IOException {
+    BufferedReader in =
+        new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+    String requestLine = in.readLine();
+    if (requestLine == null) {
+      return;
+    }
+    // The headers are not needed, but are read so that the client sees a complete exchange.
+    String header = in.readLine();
+    while (header != null && !header.isEmpty()) {
+      header = in.readLine();
+    }
+
+    String[] parts = requestLine.split(" ");
+    OutputStream out = socket.getOutputStream();
+    if (parts.length < 2 || !(parts[0].equals("GET") || parts[0].equals("HEAD"))) {
+      respond(
+          out, "405 Method Not Allowed", "Allow: GET, HEAD\r\n", "Only GET and HEAD\n", true);
+      return;
+    }
+    boolean includeBody = parts[0].equals("GET");
+    String path = parts[1];
+    int query = path.indexOf('?');
+    if (query >= 0) {
+      path = path.substring(0, query);
+    }
+    if (!path.equals(METRICS_PATH)) {
+      respond(
+          out, "404 Not Found", "", "Metrics are served at " + METRICS_PATH + "\n", includeBody);
+      return;
+    }
+    respond(out, "200 OK", "", registry.toPrometheusText(), includeBody);
+  }
+
+  /**
+   * Writes a response with {@code extraHeaders}, each ending in CRLF. The body of a HEAD request
+   * is left out, but its length is still reported.
+   */
+  private static void respond(
+      OutputStream out, String status, String extraHeaders, String body, boolean includeBody)
+      throws IOException {
+    byte[] bytes = body.getBytes(UTF_8);
+    String headers =
+        "HTTP/1.1 "
+            + status
+            + "\r\nContent-Type: "
+            + CONTENT_TYPE
+            + "\r\nContent-Length: "
+            + bytes.length
+            + "\r\nConnection: close\r\n"
+            + extraHeaders
+            + "\r\n";
+    out.write(headers.getBytes(UTF_8));
+    if (includeBody) {
+      out.write(bytes);
+    }
+    out.flush();
+  }
+}
@@ -0,0 +1,225 @@
+package com.google.ar.core.codelab.common.metrics;
+
+import com.google.ar.core.codelab.common.profiling.LatencyHistogram;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Named counters, gauges and latency summaries that can be written in the Prometheus text
+ * exposition format. Metrics are registered once; their owners update them without going through
+ * the registry, so publishing a value costs one atomic operation.
+ *
+ * <p>A metric is identified by its name and its labels, given as alternating names and values.
+ * Metrics sharing a name form one family and must have the same type. Registration and {@link
+ * #writePrometheus} are thread-safe. This class does not depend on Android or OpenGL.
+ */
+public final class MetricsRegistry {
+  private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+  private static final Pattern LABEL_NAME_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double[] SUMMARY_QUANTILES = {0.5, 0.95, 0.99};
+
+  private enum Type {
+    COUNTER("counter"),
+    GAUGE("gauge"),
+    SUMMARY("summary");
+
+    private final String text;
+
+    Type(String text) {
+      this.text = text;
+    }
+  }
+
+  /** Writes the samples of one labeled metric. */
+  private interface Series {
+    void write(Writer out, String name, String labels) throws IOException;
+  }
+
+  private static final class Family {
+    private final Type type;
+    private final String help;
+    private final Map<String, Series> series = new LinkedHashMap<>();
+
+    private Family(Type type, String help) {
+      this.type = type;
+      this.help = help;
+    }
+  }
+
+  private final Map<String, Family> families = new LinkedHashMap<>();
+
+  /** Creates a counter and registers it. */
+  public Counter counter(String name, String help, String... labels) {
+    Counter counter = new Counter();
+    register(name, help, counter, labels);
+    return counter;
+  }
+
+  /** Creates a gauge and registers it. */
+  public Gauge gauge(String name, String help, String... labels) {
+    Gauge gauge = new Gauge();
+    register(name, help, gauge, labels);
+    return gauge;
+  }
+
+  public void register(String name, String help, Counter counter, String... labels) {
+    add(
+        name,
+        help,
+        Type.COUNTER,
+        labels,
+        (out, metricName, labelText) -> writeSample(out, metricName, labelText, counter.get()));
+  }
+
+  /**
+   * Registers a counter whose value is read from {@code value} on every scrape, for counts that
+   * their owner already keeps. {@code value} is called on the scraping thread and must be
+   * thread-safe.
+   */
+  public void registerCounter(String name, String help, LongSupplier value, String... labels) {
+    add(
+        name,
+        help,
+        Type.COUNTER,
+        labels,
+        (out, metricName, labelText) ->
+            writeSample(out, metricName, labelText, value.getAsLong()));
+  }
+
+  public void register(String name, String help, Gauge gauge, String... labels) {
+    add(
+        name,
+        help,
+        Type.GAUGE,
+        labels,
+        (out, metricName, labelText) -> writeSample(out, metricName, labelText, gauge.get()));
+  }
+
+  /**
+   * Registers {@code histogram} as a summary in seconds, with the 50th, 95th and 99th percentiles
+   * as quantiles. The name should end in {@code _seconds}.
+   */
+  public void register(String name, String help, LatencyHistogram histogram, String... labels) {
+    add(
+        name,
+        help,
+        Type.SUMMARY,
+        labels,
+        (out, metricName, labelText) -> {
+          LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+          String separator = labelText.isEmpty() ? "" : ",";
+          for (double quantile : SUMMARY_QUANTILES) {
+            writeSample(
+                out,
+                metricName,
+                labelText + separator + "quantile=\"" + quantile + "\"",
+                snapshot.getPercentileNanos(quantile * 100) / NANOS_PER_SECOND);
+          }
+          writeSample(
+              out, metricName + "_sum", labelText, snapshot.getTotalNanos() / NANOS_PER_SECOND);
+          writeSample(out, metricName + "_count", labelText, snapshot.getCount());
+        });
+  }
+
+  /** Writes every registered metric in the Prometheus text format, version 0.0.4. */
+  public synchronized void writePrometheus(Writer out) throws IOException {
+    for (Map.Entry<String, Family> entry : families.entrySet()) {
+      String name = entry.getKey();
+      Family family = entry.getValue();
+      out.write("# HELP " + name + " " + escapeHelp(family.help) + "\n");
+      out.write("# TYPE " + name + " " + family.type.text + "\n");
+      for (Map.Entry<String, Series> series : family.series.entrySet()) {
+        series.getValue().write(out, name, series.getKey());
+      }
+    }
+  }
+
+  /** Returns {@link #writePrometheus} output as a string. */
+  public String toPrometheusText() {
+    StringWriter out = new StringWriter();
+    try {
+      writePrometheus(out);
+    } catch (IOException e) {
+      // StringWriter does not throw.
+      throw new IllegalStateException(e);
+    }
+    return out.toString();
+  }
+
+  private synchronized void add(
+      String name, String help, Type type, String[] labels, Series series) {
+    if (!NAME_PATTERN.matcher(name).matches()) {
+      throw new IllegalArgumentException("Invalid metric name: " + name);
+    }
+    String labelText = formatLabels(labels);
+    Family family = families.get(name);
+    if (family == null) {
+      family = new Family(type, help);
+      families.put(name, family);
+    } else if (family.type != type) {
+      throw new IllegalArgumentException(
+          "Metric " + name + " is already registered as a " + family.type.text);
+    }
+    if (family.series.containsKey(labelText)) {
+      throw new IllegalArgumentException("Metric " + name + "{" + labelText + "} already exists");
+    }
+    family.series.put(labelText, series);
+  }
+
+  private static String formatLabels(String[] labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be name/value pairs");
+    }
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      // "quantile" is added by summaries.
+      if (!LABEL_NAME_PATTERN.matcher(labels[i]).matches() || labels[i].equals("quantile")) {
+        throw new IllegalArgumentException("Invalid label name: " + labels[i]);
+      }
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append(labels[i]).append("=\"").append(escapeLabelValue(labels[i + 1])).append('"');
+    }
+    return builder.toString();
+  }
+
+  private static void writeSample(Writer out, String name, String labels, double value)
+      throws IOException {
+    out.write(name);
+    if (!labels.isEmpty()) {
+      out.write("{" + labels + "}");
+    }
+    out.write(" ");
+    out.write(formatValue(value));
+    out.write("\n");
+  }
+
+  private static String formatValue(double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    }
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return Double.toString(value);
+  }
+
+  private static String escapeHelp(String help) {
+    return help.replace("\\", "\\\\").replace("\n", "\\n");
+  }
+
+  private static String escapeLabelValue(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,261 @@
+package com.google.ar.core.codelab.common.profiling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Times the named stages of a render loop. Stages are added once during setup; every frame is then
+ * bracketed by {@link #beginFrame} and {@link #endFrame}, and each stage inside it by {@link
+ * Stage#begin} and {@link Stage#end}. CPU durations go into one {@link LatencyHistogram} per stage,
+ * and GPU durations, if a {@link GpuTimer} is set, into a second one.
+ *
+ * <p>With a {@link TraceRecorder} set, every stage also becomes a span in the trace.
+ *
+ * <p>Stages may nest. If a frame throws, {@link #abortStages} closes the stages left open and
+ * charges the failure to the innermost one, so a log line can name the stage that failed.
+ *
+ * <p>Recording does not allocate and must happen on a single thread, typically the GL thread. The
+ * histograms and {@link #report} may be read from any thread. This class does not depend on
+ * Android or OpenGL.
+ */
+public final class FrameProfiler {
+  /** Measures the GPU time of stages. Implementations run on the recording thread. */
+  public interface GpuTimer {
+    /** Called by {@link #beginFrame}; collects the results of earlier frames that are ready. */
+    void beginFrame();
+
+    /** Starts measuring {@code stage}. GPU-timed stages never nest. */
+    void begin(Stage stage);
+
+    /** Stops measuring {@code stage}. */
+    void end(Stage stage);
+  }
+
+  private static final int MAX_STAGE_DEPTH = 16;
+
+  private final LongSupplier clock;
+  private final List<Stage> stages = new ArrayList<>();
+  private final Stage frameStage;
+  private final Stage[] openStages = new Stage[MAX_STAGE_DEPTH];
+  private int openStageCount;
+  private GpuTimer gpuTimer;
+  private TraceRecorder traceRecorder;
+
+  public FrameProfiler() {
+    this(System::nanoTime);
+  }
+
+  /** Creates a profiler that reads time in nanoseconds from {@code clock}. */
+  public FrameProfiler(LongSupplier clock) {
+    this.clock = clock;
+    this.frameStage = addStage("frame", /*gpuTimed=*/ false);
+  }
+
+  /**
+   * Adds a stage. Only stages that never contain or overlap another GPU-timed stage may be {@code
+   * gpuTimed}, since GPU timer queries cannot nest.
+   */
+  public Stage addStage(String name, boolean gpuTimed) {
+    Stage stage = new Stage(this, name, stages.size(), gpuTimed);
+    if (traceRecorder != null) {
+      stage.traceNameId = traceRecorder.registerName(name);
+    }
+    stages.add(stage);
+    return stage;
+  }
+
+  /** Measures GPU time with {@code gpuTimer} from now on, or stops if it is null. */
+  public void setGpuTimer(GpuTimer gpuTimer) {
+    this.gpuTimer = gpuTimer;
+  }
+
+  /**
+   * Records every stage as a span in {@code traceRecorder} from now on, or stops if it is null.
+   * The recorder only writes while it is started.
+   */
+  public void setTraceRecorder(TraceRecorder traceRecorder) {
+    this.traceRecorder = traceRecorder;
+    if (traceRecorder != null) {
+      for (Stage stage : stages) {
+        stage.traceNameId = traceRecorder.registerName(stage.name);
+      }
+    }
+  }
+
+  /** Stages in the order they were added, starting with {@link #getFrameStage}. */
+  public List<Stage> getStages() {
+    return Collections.unmodifiableList(stages);
+  }
+
+  /** The stage spanning from {@link #beginFrame} to {@link #endFrame}. */
+  public Stage getFrameStage() {
+    return frameStage;
+  }
+
+  public void beginFrame() {
+    openStageCount = 0;
+    if (gpuTimer != null) {
+      gpuTimer.beginFrame();
+    }
+    frameStage.begin();
+  }
+
+  /** Ends the frame. Stages left open, e.g. by an early return, are dropped without recording. */
+  public void endFrame() {
+    while (openStageCount > 0 && openStages[openStageCount - 1] != frameStage) {
+      endGpuTimingAndSpan(openStages[--openStageCount]);
+    }
+    if (openStageCount > 0) {
+      frameStage.end();
+    }
+  }
+
+  /**
+   * Closes every stage of the frame except the frame itself without recording them, and counts a
+   * failure for the innermost one. If only the frame is open, the failure is charged to it. Returns
+   * the stage charged, or null if no frame is in progress.
+   */
+  public Stage abortStages() {
+    Stage failed = null;
+    while (openStageCount > 0 && openStages[openStageCount - 1] != frameStage) {
+      Stage stage = openStages[--openStageCount];
+      endGpuTimingAndSpan(stage);
+      if (failed == null) {
+        failed = stage;
+      }
+    }
+    if (failed == null && openStageCount > 0) {
+      failed = frameStage;
+    }
+    if (failed != null) {
+      failed.failureCount.incrementAndGet();
+    }
+    return failed;
+  }
+
+  /** Returns one line per stage with its sample count and p50/p95/p99/max in milliseconds. */
+  public String report() {
+    StringBuilder builder = new StringBuilder();
+    for (Stage stage : stages) {
+      appendLine(
+          builder, stage.name + " cpu", stage.cpuHistogram.snapshot(), stage.getFailureCount());
+      if (stage.gpuTimed && stage.gpuHistogram.getCount() > 0) {
+        appendLine(builder, stage.name + " gpu", stage.gpuHistogram.snapshot(), 0);
+      }
+    }
+    return builder.toString();
+  }
+
+  private static void appendLine(
+      StringBuilder builder, String label, LatencyHistogram.Snapshot snapshot, long failures) {
+    builder.append(
+        String.format(
+            Locale.US,
+            "%-24s n=%d p50=%.2f p95=%.2f p99=%.2f max=%.2f ms",
+            label,
+            snapshot.getCount(),
+            snapshot.getPercentileNanos(50) / 1e6,
+            snapshot.getPercentileNanos(95) / 1e6,
+            snapshot.getPercentileNanos(99) / 1e6,
+            snapshot.getMaxNanos() / 1e6));
+    if (failures > 0) {
+      builder.append(" failures=").append(failures);
+    }
+    builder.append('\n');
+  }
+
+  private void open(Stage stage) {
+    if (openStageCount == MAX_STAGE_DEPTH) {
+      throw new IllegalStateException("Stages nested deeper than " + MAX_STAGE_DEPTH);
+    }
+    openStages[openStageCount++] = stage;
+    if (traceRecorder != null) {
+      traceRecorder.begin(stage.traceNameId);
+    }
+    if (stage.gpuTimed && gpuTimer != null) {
+      gpuTimer.begin(stage);
+    }
+    stage.startNanos = clock.getAsLong();
+  }
+
+  private void close(Stage stage) {
+    long endNanos = clock.getAsLong();
+    if (openStageCount == 0 || openStages[openStageCount - 1] != stage) {
+      throw new IllegalStateException("Stage " + stage.name + " is not the innermost open stage");
+    }
+    --openStageCount;
+    endGpuTimingAndSpan(stage);
+    stage.cpuHistogram.record(endNanos - stage.startNanos);
+  }
+
+  /** Ends the GPU timing and trace span of {@code stage}, leaving the CPU histogram alone. */
+  private void endGpuTimingAndSpan(Stage stage) {
+    if (stage.gpuTimed && gpuTimer != null) {
+      gpuTimer.end(stage);
+    }
+    if (traceRecorder != null) {
+      traceRecorder.end(stage.traceNameId);
+    }
+  }
+
+  /** A named part of the frame. Created by {@link #addStage}. */
+  public static final class Stage {
+    private final FrameProfiler profiler;
+    private final String name;
+    private final int index;
+    private final boolean gpuTimed;
+    private final LatencyHistogram cpuHistogram = new LatencyHistogram();
+    private final LatencyHistogram gpuHistogram = new LatencyHistogram();
+    private final AtomicLong failureCount = new AtomicLong();
+    private long startNanos;
+    private int traceNameId;
+
+    private Stage(FrameProfiler profiler, String name, int index, boolean gpuTimed) {
+      this.profiler = profiler;
+      this.name = name;
+      this.index = index;
+      this.gpuTimed = gpuTimed;
+    }
+
+    public void begin() {
+      profiler.open(this);
+    }
+
+    /** Ends the stage and records its duration. Throws if it is not the innermost open stage. */
+    public void end() {
+      profiler.close(this);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** Position of the stage in {@link FrameProfiler#getStages}. */
+    public int getIndex() {
+      return index;
+    }
+
+    public boolean isGpuTimed() {
+      return gpuTimed;
+    }
+
+    /** Wall-clock durations measured on the recording thread. */
+    public LatencyHistogram getCpuHistogram() {
+      return cpuHistogram;
+    }
+
+    /** GPU durations reported by the {@link GpuTimer}, a few frames after they happened. */
+    public LatencyHistogram getGpuHistogram() {
+      return gpuHistogram;
+    }
+
+    /** Number of frames that failed while this was the innermost open stage. */
+    public long getFailureCount() {
+      return failureCount.get();
+    }
+  }
+}
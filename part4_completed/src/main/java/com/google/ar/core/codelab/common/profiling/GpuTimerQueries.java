@@ -0,0 +1,122 @@
+package com.google.ar.core.codelab.common.profiling;
+
+import android.opengl.GLES30;
+import com.google.ar.core.codelab.common.rendering.Gl;
+import com.google.ar.core.codelab.common.rendering.GlBackend;
+import com.google.ar.core.codelab.common.rendering.GlCapabilities;
+
+/**
+ * Measures GPU stage durations with {@code GL_EXT_disjoint_timer_query}. Each stage has one query
+ * per frame in flight; a result is read {@value #FRAMES_IN_FLIGHT} frames after it was issued, so
+ * reading it never waits for the GPU. Results that are not ready by then, or that overlap a
+ * disjoint event such as a frequency change, are dropped.
+ *
+ * <p>Query objects belong to the EGL context the instance was created in. Create a new instance
+ * in {@code onSurfaceCreated}. All methods must be called on the GL thread.
+ */
+public final class GpuTimerQueries implements FrameProfiler.GpuTimer {
+  private static final String EXTENSION = "GL_EXT_disjoint_timer_query";
+
+  // From GL_EXT_disjoint_timer_query.
+  private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+  private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+
+  private static final int FRAMES_IN_FLIGHT = 4;
+
+  private final Gl gl = GlBackend.get();
+  private final int stageCount;
+  // Query names indexed by [frame slot * stage count + stage index], generated on first use.
+  private final int[] queries;
+  private final boolean[] pending;
+  private final FrameProfiler.Stage[] stages;
+  private final int[] queryResult = new int[1];
+  private int slot;
+  private FrameProfiler.Stage activeStage;
+  private long droppedCount;
+
+  private GpuTimerQueries(FrameProfiler profiler) {
+    this.stageCount = profiler.getStages().size();
+    this.queries = new int[FRAMES_IN_FLIGHT * stageCount];
+    this.pending = new boolean[FRAMES_IN_FLIGHT * stageCount];
+    this.stages = profiler.getStages().toArray(new FrameProfiler.Stage[0]);
+  }
+
+  /** Returns true if the current context can time GPU work. */
+  public static boolean isSupported(GlCapabilities capabilities) {
+    // The extension reuses the query entry points of ES 3.0, which is all that is bound in Java.
+    return capabilities.isEs3() && capabilities.hasExtension(EXTENSION);
+  }
+
+  /**
+   * Creates timer queries for the stages of {@code profiler} and sets them as its GPU timer, or
+   * returns null and leaves the profiler CPU-only if the context does not support them. Stages
+   * added to the profiler afterwards are not GPU-timed.
+   */
+  public static GpuTimerQueries install(FrameProfiler profiler, GlCapabilities capabilities) {
+    if (!isSupported(capabilities)) {
+      profiler.setGpuTimer(null);
+      return null;
+    }
+    GpuTimerQueries timer = new GpuTimerQueries(profiler);
+    profiler.setGpuTimer(timer);
+    return timer;
+  }
+
+  @Override
+  public void beginFrame() {
+    slot = (slot + 1) % FRAMES_IN_FLIGHT;
+    activeStage = null;
+
+    // Reading the flag also clears it, so it covers every query finished since the last frame.
+    queryResult[0] = 0;
+    gl.glGetIntegerv(GL_GPU_DISJOINT_EXT, queryResult, 0);
+    boolean disjoint = queryResult[0] != 0;
+
+    int base = slot * stageCount;
+    for (int stage = 0; stage < stageCount; ++stage) {
+      if (!pending[base + stage]) {
+        continue;
+      }
+      pending[base + stage] = false;
+      int query = queries[base + stage];
+      gl.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult, 0);
+      if (disjoint || queryResult[0] == 0) {
+        ++droppedCount;
+        continue;
+      }
+      gl.glGetQueryObjectuiv(query, GLES30.GL_QUERY_RESULT, queryResult, 0);
+      // The result is an unsigned 32-bit count of nanoseconds.
+      stages[stage].getGpuHistogram().record(queryResult[0] & 0xFFFFFFFFL);
+    }
+  }
+
+  @Override
+  public void begin(FrameProfiler.Stage stage) {
+    int index = slot * stageCount + stage.getIndex();
+    if (activeStage != null || stage.getIndex() >= stageCount || pending[index]) {
+      return;
+    }
+    if (queries[index] == 0) {
+      queryResult[0] = 0;
+      gl.glGenQueries(1, queryResult, 0);
+      queries[index] = queryResult[0];
+    }
+    gl.glBeginQuery(GL_TIME_ELAPSED_EXT, queries[index]);
+    activeStage = stage;
+  }
+
+  @Override
+  public void end(FrameProfiler.Stage stage) {
+    if (activeStage != stage) {
+      return;
+    }
+    gl.glEndQuery(GL_TIME_ELAPSED_EXT);
+    pending[slot * stageCount + stage.getIndex()] = true;
+    activeStage = null;
+  }
+
+  /** Number of results dropped because they were not ready in time or overlapped a disjoint. */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+}
@@ -0,0 +1,145 @@
+package com.google.ar.core.codelab.common.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds with a fixed relative precision, in the style of
+ * HdrHistogram. Each power of two is split into {@value #SUB_BUCKET_COUNT} linear buckets, so a
+ * recorded value is known to within about 3% from 32 ns up to {@link #MAX_VALUE}. All buckets are
+ * allocated up front.
+ *
+ * <p>{@link #record} does not allocate or lock and may be called from any thread. {@link
+ * #snapshot} may run concurrently with recording; buckets are read one at a time, so a snapshot
+ * taken while values are being recorded may miss the most recent of them. This class does not
+ * depend on Android or OpenGL.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_VALUE_BITS = 36;
+
+  /** Largest value that is told apart from larger ones, about 68 seconds. */
+  public static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+  private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /** Adds one duration. Negative values count as 0, and values above {@link #MAX_VALUE} as it. */
+  public void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+    counts.incrementAndGet(bucketIndex(value));
+    totalCount.incrementAndGet();
+    totalNanos.addAndGet(value);
+    long max = maxNanos.get();
+    while (value > max && !maxNanos.compareAndSet(max, value)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /** Number of values recorded since construction or the last {@link #reset}. */
+  public long getCount() {
+    return totalCount.get();
+  }
+
+  /** Discards all values. Values recorded concurrently with the reset may be partly kept. */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; ++i) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    totalNanos.set(0);
+    maxNanos.set(0);
+  }
+
+  /** Copies the current distribution. Allocates; call it on demand, not every frame. */
+  public Snapshot snapshot() {
+    long[] bucketCounts = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; ++i) {
+      bucketCounts[i] = counts.get(i);
+      count += bucketCounts[i];
+    }
+    return new Snapshot(bucketCounts, count, totalNanos.get(), maxNanos.get());
+  }
+
+  /**
+   * Values below 2 * {@value #SUB_BUCKET_COUNT} get a bucket each. Above that, a value whose
+   * highest bit is {@code SUB_BUCKET_BITS + shift} falls into one of {@value #SUB_BUCKET_COUNT}
+   * buckets {@code 1 << shift} wide.
+   */
+  static int bucketIndex(long value) {
+    int shift = Math.max(63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS, 0);
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+  /** Smallest value that falls into bucket {@code index}. */
+  static long bucketLowerBound(int index) {
+    int shift = Math.max((index >> SUB_BUCKET_BITS) - 1, 0);
+    return (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+  }
+
+  /** Largest value that falls into bucket {@code index}. */
+  static long bucketUpperBound(int index) {
+    int shift = Math.max((index >> SUB_BUCKET_BITS) - 1, 0);
+    return bucketLowerBound(index) + (1L << shift) - 1;
+  }
+
+  /** An immutable copy of a histogram's distribution. */
+  public static final class Snapshot {
+    private final long[] bucketCounts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    private Snapshot(long[] bucketCounts, long count, long totalNanos, long maxNanos) {
+      this.bucketCounts = bucketCounts;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    /** Sum of all recorded values. */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    /** Mean of the recorded values, or 0 if there are none. */
+    public double getMeanNanos() {
+      return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * Returns the value below or at which {@code percentile} percent of the recorded values lie,
+     * rounded up to the end of its bucket and never above the recorded maximum. Returns 0 if the
+     * histogram is empty.
+     */
+    public long getPercentileNanos(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      double fraction = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+      long rank = Math.max((long) Math.ceil(fraction * count), 1);
+      long seen = 0;
+      for (int i = 0; i < bucketCounts.length; ++i) {
+        seen += bucketCounts[i];
+        if (seen >= rank) {
+          return Math.min(bucketUpperBound(i), maxNanos);
+        }
+      }
+      return maxNanos;
+    }
+  }
+}
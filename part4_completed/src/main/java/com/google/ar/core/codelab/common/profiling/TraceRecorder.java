@@ -0,0 +1,332 @@
+package com.google.ar.core.codelab.common.profiling;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records timeline events into a fixed-size ring buffer and writes them as Chrome trace-event JSON,
+ * which chrome://tracing and ui.perfetto.dev open directly. Events are spans ({@link #begin} /
+ * {@link #end}), {@link #counter} samples, {@link #instant} markers, and flows that connect a
+ * span on one frame or thread to a later one ({@link #flowStart} / {@link #flowEnd}).
+ *
+ * <p>Event names are registered once with {@link #registerName}; recording then takes only ids and
+ * longs, so it neither allocates nor locks and may be called from any thread. While recording is
+ * stopped, every method returns after one volatile read. Once the ring is full, the oldest events
+ * are overwritten.
+ *
+ * <p>There is one recorder per process so that helpers can record without it being passed around.
+ * This class does not depend on Android or OpenGL.
+ */
+public final class TraceRecorder {
+  private static TraceRecorder instance;
+
+  /** Number of events kept by {@link #getInstance}, about 40 seconds of a typical frame loop. */
+  public static final int DEFAULT_CAPACITY = 1 << 15;
+
+  // Each event is three longs: the header, the timestamp in nanoseconds and an argument. The header
+  // packs the type, the thread index and the name id; 0 marks a slot that is being written.
+  private static final int EVENT_LONGS = 3;
+  private static final int TYPE_SHIFT = 56;
+  private static final int THREAD_SHIFT = 32;
+  private static final long THREAD_MASK = 0xFFFFFF;
+  private static final long NAME_MASK = 0xFFFFFFFFL;
+
+  private static final int TYPE_BEGIN = 1;
+  private static final int TYPE_END = 2;
+  private static final int TYPE_COUNTER = 3;
+  private static final int TYPE_INSTANT = 4;
+  private static final int TYPE_FLOW_START = 5;
+  private static final int TYPE_FLOW_END = 6;
+
+  private final int capacity;
+  private final AtomicLongArray events;
+  private final AtomicLong nextEvent = new AtomicLong();
+  private final AtomicLong nextFlowId = new AtomicLong(1);
+  private final List<String> names = new ArrayList<>();
+  private final List<String> threadNames = new ArrayList<>();
+  private final ThreadLocal<int[]> threadIndex = new ThreadLocal<>();
+  private volatile boolean enabled;
+  private volatile long startNanos;
+
+  /** Creates a recorder that keeps the last {@code capacity} events, a power of two. */
+  TraceRecorder(int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    this.capacity = capacity;
+    this.events = new AtomicLongArray(capacity * EVENT_LONGS);
+  }
+
+  public static synchronized TraceRecorder getInstance() {
+    if (instance == null) {
+      instance = new TraceRecorder(DEFAULT_CAPACITY);
+    }
+    return instance;
+  }
+
+  /** Returns the id of {@code name}, adding it if needed. Call during setup, not per event. */
+  public synchronized int registerName(String name) {
+    int id = names.indexOf(name);
+    if (id >= 0) {
+      return id;
+    }
+    names.add(name);
+    return names.size() - 1;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Discards earlier events and starts recording. */
+  public synchronized void start() {
+    enabled = false;
+    for (int i = 0; i < events.length(); ++i) {
+      events.set(i, 0);
+    }
+    nextEvent.set(0);
+    startNanos = System.nanoTime();
+    enabled = true;
+  }
+
+  /** Stops recording. The events stay in the ring until the next {@link #start}. */
+  public void stop() {
+    enabled = false;
+  }
+
+  /** Opens a span on the calling thread. Spans on one thread must nest. */
+  public void begin(int nameId) {
+    if (enabled) {
+      record(TYPE_BEGIN, nameId, 0);
+    }
+  }
+
+  /** Closes the innermost span opened with {@link #begin} on the calling thread. */
+  public void end(int nameId) {
+    if (enabled) {
+      record(TYPE_END, nameId, 0);
+    }
+  }
+
+  /** Records the current value of a counter track. */
+  public void counter(int nameId, long value) {
+    if (enabled) {
+      record(TYPE_COUNTER, nameId, value);
+    }
+  }
+
+  /** Records a point in time on the calling thread. */
+  public void instant(int nameId) {
+    if (enabled) {
+      record(TYPE_INSTANT, nameId, 0);
+    }
+  }
+
+  /**
+   * Starts flow {@code id} in the span currently open on the calling thread. The matching {@link
+   * #flowEnd} with the same name and id draws an arrow to the span open when it is called.
+   */
+  public void flowStart(int nameId, long id) {
+    if (enabled) {
+      record(TYPE_FLOW_START, nameId, id);
+    }
+  }
+
+  /** Ends flow {@code id} in the span currently open on the calling thread. */
+  public void flowEnd(int nameId, long id) {
+    if (enabled) {
+      record(TYPE_FLOW_END, nameId, id);
+    }
+  }
+
+  /** Returns an id not used by any other caller, for flows without a natural id. */
+  public long nextFlowId() {
+    return nextFlowId.getAndIncrement();
+  }
+
+  private void record(int type, int nameId, long argument) {
+    long timestamp = System.nanoTime();
+    long header =
+        ((long) type << TYPE_SHIFT)
+            | ((currentThreadIndex() & THREAD_MASK) << THREAD_SHIFT)
+            | (nameId & NAME_MASK);
+    int base = (int) (nextEvent.getAndIncrement() & (capacity - 1)) * EVENT_LONGS;
+    events.set(base, 0);
+    events.lazySet(base + 1, timestamp);
+    events.lazySet(base + 2, argument);
+    events.set(base, header);
+  }
+
+  private long currentThreadIndex() {
+    int[] index = threadIndex.get();
+    if (index == null) {
+      index = new int[] {registerThread(Thread.currentThread().getName())};
+      threadIndex.set(index);
+    }
+    return index[0];
+  }
+
+  private synchronized int registerThread(String name) {
+    threadNames.add(name);
+    return threadNames.size() - 1;
+  }
+
+  /**
+   * Writes the events in the ring as a Chrome trace-event JSON object. Call {@link #stop} first;
+   * events recorded during the write may be missing or cut off.
+   *
+   * <p>Once the ring has wrapped, the oldest events written may close spans or end flows whose
+   * start was overwritten. Such span ends and flow ends are left out, so every {@code E} follows
+   * its {@code B} on the same thread and every {@code f} follows an {@code s} with its name and id.
+   */
+  public synchronized void writeJson(Writer out) throws IOException {
+    out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+    boolean first = true;
+    for (int thread = 0; thread < threadNames.size(); ++thread) {
+      first = writeSeparator(out, first);
+      out.write("{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":");
+      out.write(Integer.toString(thread + 1));
+      out.write(",\"args\":{\"name\":");
+      writeString(out, threadNames.get(thread));
+      out.write("}}");
+    }
+
+    // Open spans per thread, and the flows started within the window, as "nameId:id".
+    int[] depths = new int[threadNames.size()];
+    Set<String> startedFlows = new HashSet<>();
+    long end = nextEvent.get();
+    for (long event = Math.max(end - capacity, 0); event < end; ++event) {
+      int base = (int) (event & (capacity - 1)) * EVENT_LONGS;
+      long header = events.get(base);
+      long timestamp = events.get(base + 1);
+      long argument = events.get(base + 2);
+      if (header == 0 || events.get(base) != header) {
+        continue;
+      }
+      int type = (int) (header >>> TYPE_SHIFT);
+      int thread = (int) ((header >>> THREAD_SHIFT) & THREAD_MASK);
+      int nameId = (int) (header & NAME_MASK);
+      if (type == TYPE_BEGIN) {
+        ++depths[thread];
+      } else if (type == TYPE_END) {
+        if (depths[thread] == 0) {
+          continue;
+        }
+        --depths[thread];
+      } else if (type == TYPE_FLOW_START) {
+        startedFlows.add(nameId + ":" + argument);
+      } else if (type == TYPE_FLOW_END && !startedFlows.contains(nameId + ":" + argument)) {
+        continue;
+      }
+      first = writeSeparator(out, first);
+      writeEvent(out, type, thread, nameId, timestamp, argument);
+    }
+    out.write("\n]}\n");
+  }
+
+  /**
+   * Writes the trace to a new file in {@code directory}, which is created if needed, and returns
+   * the file. Call {@link #stop} first.
+   */
+  public File dumpTo(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create " + directory);
+    }
+    File file = new File(directory, "trace-" + System.currentTimeMillis() + ".json");
+    try (Writer out =
+        new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")))) {
+      writeJson(out);
+    }
+    return file;
+  }
+
+  private void writeEvent(
+      Writer out, int type, int thread, int nameId, long timestamp, long argument)
+      throws IOException {
+    out.write("{\"name\":");
+    writeString(out, nameId < names.size() ? names.get(nameId) : "#" + nameId);
+    out.write(",\"cat\":\"app\",\"ph\":\"");
+    out.write(phase(type));
+    out.write("\",\"ts\":");
+    out.write(String.format(Locale.US, "%.3f", (timestamp - startNanos) / 1e3));
+    out.write(",\"pid\":1,\"tid\":");
+    out.write(Integer.toString(thread + 1));
+    switch (type) {
+      case TYPE_COUNTER:
+        out.write(",\"args\":{\"value\":");
+        out.write(Long.toString(argument));
+        out.write("}");
+        break;
+      case TYPE_INSTANT:
+        out.write(",\"s\":\"t\"");
+        break;
+      case TYPE_FLOW_START:
+        out.write(",\"id\":");
+        out.write(Long.toString(argument));
+        break;
+      case TYPE_FLOW_END:
+        // Bind to the enclosing span rather than to the next one that starts.
+        out.write(",\"bp\":\"e\",\"id\":");
+        out.write(Long.toString(argument));
+        break;
+      default:
+        break;
+    }
+    out.write("}");
+  }
+
+  private static String phase(int type) {
+    switch (type) {
+      case TYPE_BEGIN:
+        return "B";
+      case TYPE_END:
+        return "E";
+      case TYPE_COUNTER:
+        return "C";
+      case TYPE_INSTANT:
+        return "i";
+      case TYPE_FLOW_START:
+        return "s";
+      case TYPE_FLOW_END:
+        return "f";
+      default:
+        throw new IllegalArgumentException("Unknown event type " + type);
+    }
+  }
+
+  private static boolean writeSeparator(Writer out, boolean first) throws IOException {
+    if (!first) {
+      out.write(",\n");
+    }
+    return false;
+  }
+
+  private static void writeString(Writer out, String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write(String.format(Locale.US, "\\u%04x", (int) c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+}
@@ -0,0 +1,675 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import com.google.ar.core.codelab.common.math.Mat4;
+import com.google.ar.core.codelab.common.math.Vec3;
+import com.google.ar.core.codelab.common.metrics.Counter;
+import com.google.ar.core.codelab.common.metrics.MetricsRegistry;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Draws the levels of detail of a mesh loaded from an OBJ file with a diffuse texture, as a single
+ * object or as instances. Loading, instance and level-of-detail bookkeeping and the draw loops live
+ * here; subclasses supply their shader programs and set the uniforms only they use through the
+ * hooks below.
+ *
+ * @param <P> Type of the subclass's shader programs.
+ */
+public abstract class AbstractObjectRenderer<P extends AbstractObjectRenderer.ObjectProgram> {
+  private static final int COORDS_PER_VERTEX = 3;
+
+  // Note: the last component must be zero to avoid applying the translational part of the matrix.
+  private static final float[] LIGHT_DIRECTION = new float[] {0.250f, 0.866f, 0.433f, 0.0f};
+  private final float[] viewLightDirection = new float[4];
+
+  private final String tag;
+  private final String metricsLabel;
+
+  private Gl gl;
+  private final GlValidator validator = GlValidator.getInstance();
+  GlStateCache glState;
+  // Only set on OpenGL ES 3.0, where the instanced programs exist; null otherwise.
+  private FrameUniformBuffer frameUniforms;
+  private final InstanceBuffer instances = new InstanceBuffer();
+  // Levels of detail of the mesh, from full detail at index 0 to the coarsest.
+  private final GpuMesh[] lods = new GpuMesh[LodSelector.LEVEL_COUNT];
+  private final LodSelector lodSelector = new LodSelector();
+  private GpuTexture diffuseTexture;
+  // Incremented whenever the assets are (re)requested or released.
+  private int loadGeneration;
+
+  // Temporary matrices allocated here to reduce number of allocations for each frame.
+  private final float[] modelMatrix = new float[16];
+  private final float[] modelViewMatrix = new float[16];
+  private final float[] modelViewProjectionMatrix = new float[16];
+  // Model-view matrices of all instances, for the non-instanced fallback of drawInstances.
+  private float[] modelViewMatrices = new float[0];
+
+  // Set some default material properties to use for lighting.
+  private float ambient = 0.3f;
+  private float diffuse = 1.0f;
+  private float specular = 1.0f;
+  private float specularPower = 6.0f;
+
+  // Counted whether or not they are published with registerMetrics.
+  private final Counter drawCallCounter = new Counter();
+  private final Counter instanceCounter = new Counter();
+
+  /**
+   * @param tag Log tag of the subclass, also used for its shader programs.
+   * @param metricsLabel Value of the {@code renderer} label of the published metrics.
+   */
+  AbstractObjectRenderer(String tag, String metricsLabel) {
+    this.tag = tag;
+    this.metricsLabel = metricsLabel;
+  }
+
+  /**
+   * Creates and initializes OpenGL resources needed for rendering the model.
+   *
+   * @param context Context for loading the shader and below-named model and texture assets.
+   * @param objAssetName Name of the OBJ file containing the model geometry.
+   * @param diffuseTextureAssetName Name of the PNG file containing the diffuse texture map.
+   */
+  public void createOnGlThread(Context context, String objAssetName, String diffuseTextureAssetName)
+      throws IOException {
+    createOnGlThread(context, objAssetName, diffuseTextureAssetName, GlCapabilities.es2());
+  }
+
+  /**
+   * Creates and initializes OpenGL resources needed for rendering the model. On OpenGL ES 3.0 this
+   * also prepares the instanced path used by {@link #drawInstances}.
+   *
+   * @param context Context for loading the shader and below-named model and texture assets.
+   * @param objAssetName Name of the OBJ file containing the model geometry.
+   * @param diffuseTextureAssetName Name of the PNG file containing the diffuse texture map.
+   * @param capabilities Capabilities of the current context.
+   */
+  public void createOnGlThread(
+      Context context,
+      String objAssetName,
+      String diffuseTextureAssetName,
+      GlCapabilities capabilities)
+      throws IOException {
+    createPrograms(ShaderLibrary.getInstance(context), capabilities);
+    ++loadGeneration;
+
+    // Meshes and textures are shared with other renderers drawing the same assets.
+    GpuResourceCache resources = GpuResourceCache.getInstance(context);
+    diffuseTexture = resources.acquireTexture(diffuseTextureAssetName);
+    for (int level = 0; level < lods.length; ++level) {
+      lods[level] = resources.acquireMesh(objAssetName, level);
+    }
+  }
+
+  /**
+   * Like {@link #createOnGlThread(Context, String, String, GlCapabilities)}, but loads the mesh and
+   * texture through {@code loader} instead of blocking. The shaders are still compiled here. The
+   * object is not drawn until {@link #isReady}; coarser levels of detail that are still loading
+   * are substituted by the finest loaded level.
+   *
+   * @param loader Loader whose {@link AssetLoader#drainUploads} is called on this GL thread.
+   */
+  public void createOnGlThread(
+      Context context,
+      String objAssetName,
+      String diffuseTextureAssetName,
+      GlCapabilities capabilities,
+      AssetLoader loader)
+      throws IOException {
+    createPrograms(ShaderLibrary.getInstance(context), capabilities);
+
+    // Meshes and textures are shared with other renderers drawing the same assets.
+    GpuResourceCache resources = GpuResourceCache.getInstance(context);
+    // Loads finishing after a later release or create belong to a stale request.
+    int generation = ++loadGeneration;
+    resources.acquireTextureAsync(
+        loader,
+        diffuseTextureAssetName,
+        new AssetLoader.Callback<GpuTexture>() {
+          @Override
+          public void onLoaded(GpuTexture texture) {
+            if (generation != loadGeneration) {
+              resources.release(texture);
+              return;
+            }
+            diffuseTexture = texture;
+          }
+
+          @Override
+          public void onFailed(IOException e) {
+            // Logged by the loader; the object is never drawn.
+          }
+        });
+    for (int level = 0; level < lods.length; ++level) {
+      int lodLevel = level;
+      resources.acquireMeshAsync(
+          loader,
+          objAssetName,
+          lodLevel,
+          new AssetLoader.Callback<GpuMesh>() {
+            @Override
+            public void onLoaded(GpuMesh mesh) {
+              if (generation != loadGeneration) {
+                resources.release(mesh);
+                return;
+              }
+              lods[lodLevel] = mesh;
+            }
+
+            @Override
+            public void onFailed(IOException e) {
+              // Logged by the loader; the object is never drawn without level 0.
+            }
+          });
+    }
+  }
+
+  /**
+   * Like {@link #createOnGlThread(Context, String, String, GlCapabilities)}, but compiles the
+   * shaders with {@code shaderLibrary} and draws meshes and a texture that are already uploaded,
+   * so that JVM tests and benchmarks can draw without Android assets. The caller keeps owning
+   * them; {@link #release} must not be called afterwards.
+   *
+   * @param lods Levels of detail of the mesh, from full detail at index 0. Missing coarser levels
+   *     are substituted by the finest one given.
+   */
+  void createOnGlThread(
+      ShaderLibrary shaderLibrary,
+      GpuMesh[] lods,
+      GpuTexture diffuseTexture,
+      GlCapabilities capabilities)
+      throws IOException {
+    createPrograms(shaderLibrary, capabilities);
+    ++loadGeneration;
+    for (int level = 0; level < this.lods.length; ++level) {
+      this.lods[level] = level < lods.length ? lods[level] : null;
+    }
+    this.diffuseTexture = diffuseTexture;
+  }
+
+  private void createPrograms(ShaderLibrary shaderLibrary, GlCapabilities capabilities)
+      throws IOException {
+    gl = GlBackend.get();
+    glState = GlStateCache.getInstance();
+    onCreatePrograms(shaderLibrary, capabilities.isEs3());
+    if (capabilities.isEs3()) {
+      instances.createOnGlThread();
+      frameUniforms = FrameUniformBuffer.getInstance();
+    } else {
+      frameUniforms = null;
+    }
+    Mat4.setIdentity(modelMatrix, 0);
+  }
+
+  /**
+   * Links the subclass's programs. Called on the GL thread by every {@code createOnGlThread}.
+   *
+   * @param instanced Whether to also link the instanced variants, which need OpenGL ES 3.0.
+   */
+  abstract void onCreatePrograms(ShaderLibrary shaderLibrary, boolean instanced)
+      throws IOException;
+
+  /**
+   * Returns the program to draw with next, the instanced variant if {@code instanced}. Only called
+   * with {@code instanced} set after {@link #onCreatePrograms} linked the instanced variants.
+   */
+  abstract P getActiveProgram(boolean instanced);
+
+  /**
+   * Called before the program of a draw is selected, while other programs and render targets may
+   * still be bound.
+   */
+  void onBeginDraw() {}
+
+  /**
+   * Sets camera data of the non-instanced {@code program} beyond the matrices, light direction and
+   * color correction set here. The instanced programs read it from {@link FrameUniformBuffer}
+   * instead. The program is in use.
+   */
+  void setCameraUniforms(P program) {}
+
+  /**
+   * Sets the subclass's per-draw uniforms and state for {@code program} after the diffuse texture
+   * is bound to unit 0. The program is in use.
+   */
+  void setDrawUniforms(P program) {}
+
+  /** Depth texture uv transform for {@link FrameUniformBuffer#update}, or null. */
+  float[] getUvTransform() {
+    return null;
+  }
+
+  /** Called once after every {@link #draw} and {@link #drawInstances} that drew anything. */
+  void onEndDraws() {}
+
+  /**
+   * Releases this renderer's references to its shared meshes and texture. Must be called on the GL
+   * thread; the renderer cannot draw until {@link #createOnGlThread} is called again.
+   */
+  public void release(Context context) {
+    ++loadGeneration;
+    GpuResourceCache resources = GpuResourceCache.getInstance(context);
+    for (int level = 0; level < lods.length; ++level) {
+      resources.release(lods[level]);
+      lods[level] = null;
+    }
+    resources.release(diffuseTexture);
+    diffuseTexture = null;
+    instances.release();
+  }
+
+  /**
+   * Publishes the number of draw calls issued and instances drawn by this renderer to {@code
+   * registry}, labeled with the renderer's metrics label.
+   */
+  public void registerMetrics(MetricsRegistry registry) {
+    registry.register(
+        "renderer_draw_calls_total",
+        "Draw calls issued by a renderer.",
+        drawCallCounter,
+        "renderer",
+        metricsLabel);
+    registry.register(
+        "renderer_instances_drawn_total",
+        "Object instances drawn by a renderer.",
+        instanceCounter,
+        "renderer",
+        metricsLabel);
+  }
+
+  /**
+   * Whether the full-detail mesh and the texture are loaded. Until then the draw methods do
+   * nothing.
+   */
+  public boolean isReady() {
+    return lods[0] != null && diffuseTexture != null;
+  }
+
+  /**
+   * Object-space bounds of the loaded mesh, for {@link FrustumCuller#isVisible}. Requires {@link
+   * #isReady}.
+   */
+  public MeshBounds getBounds() {
+    return lods[0].getBounds();
+  }
+
+  /**
+   * Sets the screen sizes at which {@link #drawInstances} switches to coarser levels of detail.
+   *
+   * @param screenSizes Projected diameters of the bounding sphere as fractions of the viewport
+   *     height, in decreasing order. An instance at least {@code screenSizes[i]} tall uses level
+   *     {@code i}; smaller ones use the next level.
+   */
+  public void setLodScreenSizes(float... screenSizes) {
+    lodSelector.setScreenSizes(screenSizes);
+  }
+
+  /**
+   * Updates the object model matrix and applies scaling.
+   *
+   * @param modelMatrix A 4x4 model-to-world transformation matrix, stored in column-major order.
+   * @param scaleFactor A separate scaling factor to apply before the {@code modelMatrix}.
+   * @see Mat4
+   */
+  public void updateModelMatrix(float[] modelMatrix, float scaleFactor) {
+    Mat4.scale(this.modelMatrix, 0, modelMatrix, 0, scaleFactor, scaleFactor, scaleFactor);
+  }
+
+  /**
+   * Sets the surface characteristics of the rendered model.
+   *
+   * @param ambient Intensity of non-directional surface illumination.
+   * @param diffuse Diffuse (matte) surface reflectivity.
+   * @param specular Specular (shiny) surface reflectivity.
+   * @param specularPower Surface shininess. Larger values result in a smaller, sharper specular
+   *     highlight.
+   */
+  public void setMaterialProperties(
+      float ambient, float diffuse, float specular, float specularPower) {
+    this.ambient = ambient;
+    this.diffuse = diffuse;
+    this.specular = specular;
+    this.specularPower = specularPower;
+  }
+
+  /** Removes all instances added with {@link #addInstance}. Call once per frame before adding. */
+  public void clearInstances() {
+    instances.clear();
+  }
+
+  /**
+   * Adds an instance for {@link #drawInstances}.
+   *
+   * @param modelMatrix A 4x4 model-to-world transformation matrix, stored in column-major order.
+   * @param scaleFactor A separate scaling factor to apply before the {@code modelMatrix}.
+   */
+  public void addInstance(float[] modelMatrix, float scaleFactor) {
+    addInstance(modelMatrix, 0, scaleFactor);
+  }
+
+  /**
+   * Adds an instance for {@link #drawInstances}, reading the model matrix from an array of packed
+   * matrices.
+   *
+   * @param modelMatrices Array holding a column-major 4x4 model-to-world matrix at {@code offset}.
+   * @param offset Index of the first matrix element in {@code modelMatrices}.
+   * @param scaleFactor A separate scaling factor to apply before the model matrix.
+   */
+  public void addInstance(float[] modelMatrices, int offset, float scaleFactor) {
+    instances.add(modelMatrices, offset, scaleFactor);
+  }
+
+  /**
+   * Draws every instance added since the last {@link #clearInstances}, each with a level of detail
+   * picked from its size on screen. On OpenGL ES 3.0 this is one instanced draw call per level in
+   * use; otherwise each instance is drawn separately.
+   */
+  public void drawInstances(
+      float[] cameraView,
+      float[] cameraPerspective,
+      float[] colorCorrectionRgba,
+      float[] objColor) {
+    int instanceCount = instances.getCount();
+    if (instanceCount == 0 || !isReady()) {
+      return;
+    }
+    instanceCounter.add(instanceCount);
+    if (frameUniforms == null) {
+      // All model-view matrices are computed in one batch, then each instance is drawn.
+      if (modelViewMatrices.length < instances.getMatrices().length) {
+        modelViewMatrices = new float[instances.getMatrices().length];
+      }
+      Mat4.multiplyBatch(
+          modelViewMatrices, 0, cameraView, 0, instances.getMatrices(), 0, instanceCount);
+      for (int i = 0; i < instanceCount; ++i) {
+        GpuMesh lod = lods[selectLevel(i, cameraView, cameraPerspective)];
+        draw(
+            modelViewMatrices,
+            instances.getMatrixOffset(i),
+            cameraPerspective,
+            colorCorrectionRgba,
+            objColor,
+            lod);
+      }
+      onEndDraws();
+      return;
+    }
+
+    validator.check(tag, "Before draw");
+
+    onBeginDraw();
+    P program = getActiveProgram(/*instanced=*/ true);
+    // Camera data goes into the uniform buffer shared by all programs; the light direction is
+    // transformed per instance in the vertex shader.
+    frameUniforms.update(
+        cameraView, cameraPerspective, LIGHT_DIRECTION, colorCorrectionRgba, getUvTransform());
+
+    glState.useProgram(program.program);
+
+    for (int i = 0; i < instanceCount; ++i) {
+      instances.setLevel(i, selectLevel(i, cameraView, cameraPerspective));
+    }
+    instances.upload();
+    // One instanced draw per level of detail in use.
+    for (int level = 0; level < lods.length; ++level) {
+      int levelCount = instances.getLevelCount(level);
+      if (levelCount == 0) {
+        continue;
+      }
+      drawMesh(program, lods[level], objColor, instances.getLevelFirst(level), levelCount);
+    }
+    glState.bindVertexArray(0);
+    onEndDraws();
+
+    validator.check(tag, "After draw");
+  }
+
+  public void draw(
+      float[] cameraView,
+      float[] cameraPerspective,
+      float[] colorCorrectionRgba,
+      float[] objColor) {
+    if (!isReady()) {
+      return;
+    }
+    instanceCounter.increment();
+    Mat4.multiply(modelViewMatrix, 0, cameraView, 0, modelMatrix, 0);
+    draw(modelViewMatrix, 0, cameraPerspective, colorCorrectionRgba, objColor, lods[0]);
+    onEndDraws();
+  }
+
+  /** Draws {@code lod} with the model-view matrix at {@code modelViews[modelViewOffset]}. */
+  private void draw(
+      float[] modelViews,
+      int modelViewOffset,
+      float[] cameraPerspective,
+      float[] colorCorrectionRgba,
+      float[] objColor,
+      GpuMesh lod) {
+
+    validator.check(tag, "Before draw");
+
+    // Build the ModelViewProjection matrix for calculating object position.
+    Mat4.multiply(modelViewProjectionMatrix, 0, cameraPerspective, 0, modelViews, modelViewOffset);
+
+    onBeginDraw();
+    P program = getActiveProgram(/*instanced=*/ false);
+    glState.useProgram(program.program);
+
+    // Set the lighting environment properties.
+    Mat4.multiplyVector(viewLightDirection, 0, modelViews, modelViewOffset, LIGHT_DIRECTION, 0);
+    Vec3.normalize(viewLightDirection, 0);
+    glState.uniform4f(
+        program.lightingParametersUniform,
+        viewLightDirection[0],
+        viewLightDirection[1],
+        viewLightDirection[2],
+        1.f);
+
+    // Set the ModelViewProjection matrix in the shader.
+    glState.uniformMatrix4fv(program.modelViewUniform, modelViews, modelViewOffset);
+    glState.uniformMatrix4fv(program.modelViewProjectionUniform, modelViewProjectionMatrix, 0);
+    glState.uniform4fv(program.colorCorrectionParameterUniform, colorCorrectionRgba, 0);
+    setCameraUniforms(program);
+
+    drawMesh(program, lod, objColor, /*firstInstance=*/ 0, /*instanceCount=*/ 0);
+
+    validator.check(tag, "After draw");
+  }
+
+  /**
+   * Sets the per-draw uniforms shared by all programs and draws {@code lod}. If {@code
+   * instanceCount} is positive, the instances uploaded from {@code firstInstance} on are drawn with
+   * the vertex arrays of {@code lod}. The program must be in use. Camera data, which the instanced
+   * programs read from {@link FrameUniformBuffer}, is set by the caller.
+   */
+  private void drawMesh(
+      P program, GpuMesh lod, float[] objColor, int firstInstance, int instanceCount) {
+    // Set the object color property.
+    glState.uniform4fv(program.colorUniform, objColor, 0);
+
+    // Set the object material properties.
+    glState.uniform4f(program.materialParametersUniform, ambient, diffuse, specular, specularPower);
+
+    // Attach the object texture.
+    glState.bindTexture(0, GLES20.GL_TEXTURE_2D, diffuseTexture.getTextureId());
+    glState.uniform1i(program.textureUniform, 0);
+
+    setDrawUniforms(program);
+
+    // Set the values that decode the quantized vertices.
+    glState.uniform3fv(program.positionScaleUniform, lod.getPositionScale(), 0);
+    glState.uniform3fv(program.positionOffsetUniform, lod.getPositionOffset(), 0);
+    glState.uniform4fv(program.texCoordScaleOffsetUniform, lod.getTexCoordScaleOffset(), 0);
+
+    drawCallCounter.add(lod.getSubmeshCount());
+    if (instanceCount > 0) {
+      // Each vertex array already holds the attributes and index buffer of its submesh; only the
+      // instance matrices, which start at a different instance per level, are pointed here.
+      for (int submesh = 0; submesh < lod.getSubmeshCount(); ++submesh) {
+        glState.bindVertexArray(lod.getVertexArray(submesh));
+        instances.setModelMatrixPointer(GpuMesh.MODEL_MATRIX_LOCATION, firstInstance);
+        gl.glDrawElementsInstanced(
+            GLES20.GL_TRIANGLES,
+            lod.getSubmeshIndexCount(submesh),
+            lod.getIndexType(),
+            lod.getSubmeshIndexOffset(submesh),
+            instanceCount);
+      }
+      return;
+    }
+
+    // Enable exactly the vertex arrays of this program. Bindings are left in place afterwards, so
+    // the next draw of the same mesh and textures changes nothing.
+    glState.setVertexAttribArrays(program.attributeMask);
+
+    glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, lod.getIndexBufferId());
+    // Meshes too large for the index type are drawn in parts, each with its own vertex range.
+    for (int submesh = 0; submesh < lod.getSubmeshCount(); ++submesh) {
+      setVertexAttributes(program, lod, lod.getSubmeshVertexOffset(submesh));
+      gl.glDrawElements(
+          GLES20.GL_TRIANGLES,
+          lod.getSubmeshIndexCount(submesh),
+          lod.getIndexType(),
+          lod.getSubmeshIndexOffset(submesh));
+    }
+  }
+
+  /**
+   * Points the mesh attributes at the vertex buffer of {@code lod}, starting {@code vertexOffset}
+   * bytes in.
+   */
+  private void setVertexAttributes(P program, GpuMesh lod, int vertexOffset) {
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, lod.getVertexBufferId());
+
+    gl.glVertexAttribPointer(
+        program.positionAttribute,
+        COORDS_PER_VERTEX,
+        GLES20.GL_SHORT,
+        true,
+        QuantizedVertexData.VERTEX_STRIDE,
+        vertexOffset + QuantizedVertexData.POSITION_OFFSET);
+    gl.glVertexAttribPointer(
+        program.normalAttribute,
+        2,
+        GLES20.GL_SHORT,
+        true,
+        QuantizedVertexData.VERTEX_STRIDE,
+        vertexOffset + QuantizedVertexData.NORMAL_OFFSET);
+    gl.glVertexAttribPointer(
+        program.texCoordAttribute,
+        2,
+        GLES20.GL_UNSIGNED_SHORT,
+        true,
+        QuantizedVertexData.VERTEX_STRIDE,
+        vertexOffset + QuantizedVertexData.TEXCOORD_OFFSET);
+  }
+
+  /** Picks the level of detail of instance {@code index} from its size on screen. */
+  private int selectLevel(int index, float[] cameraView, float[] cameraPerspective) {
+    int level =
+        lodSelector.select(
+            instances.getMatrices(),
+            instances.getMatrixOffset(index),
+            lods[0].getBounds(),
+            cameraView,
+            cameraPerspective,
+            lods.length);
+    // Levels still loading fall back to finer ones; level 0 is loaded once ready.
+    while (lods[level] == null) {
+      --level;
+    }
+    return level;
+  }
+
+  /**
+   * A linked object program variant and the shader locations every object shader has. Subclasses
+   * look up the locations of their own uniforms in a subclass of this.
+   */
+  static class ObjectProgram {
+    final int program;
+
+    // Shader location: model view projection matrix. Only used by the non-instanced variants.
+    final int modelViewUniform;
+    final int modelViewProjectionUniform;
+
+    // Shader location: object attributes.
+    final int positionAttribute;
+    final int normalAttribute;
+    final int texCoordAttribute;
+
+    // Shader location: vertex dequantization values.
+    final int positionScaleUniform;
+    final int positionOffsetUniform;
+    final int texCoordScaleOffsetUniform;
+
+    // Shader location: texture sampler.
+    final int textureUniform;
+
+    // Shader location: environment, material and object color properties.
+    final int lightingParametersUniform;
+    final int materialParametersUniform;
+    final int colorUniform;
+
+    // Shader location: color correction property. Only used by the non-instanced variants.
+    final int colorCorrectionParameterUniform;
+
+    // Vertex attribute arrays enabled while drawing, see GlStateCache#setVertexAttribArrays.
+    final long attributeMask;
+
+    /**
+     * Links a program variant and looks up its shared locations.
+     *
+     * @param defines Defines of the variant; {@code INSTANCED} and the GLSL version are added here.
+     */
+    ObjectProgram(
+        String tag,
+        ShaderLibrary shaderLibrary,
+        String vertexShaderName,
+        String fragmentShaderName,
+        Map<String, Integer> defines,
+        boolean instanced)
+        throws IOException {
+      defines.put("INSTANCED", instanced ? 1 : 0);
+      // The instanced variants read camera data from FrameUniformBuffer, which needs GLSL ES 3.00.
+      defines.put(ShaderPreprocessor.GLSL_300_ES, instanced ? 1 : 0);
+      program = shaderLibrary.getProgram(tag, vertexShaderName, fragmentShaderName, defines);
+      GlStateCache.getInstance().useProgram(program);
+
+      ShaderUtil.checkGLError(tag, "Program creation");
+
+      Gl gl = GlBackend.get();
+      modelViewUniform = gl.glGetUniformLocation(program, "u_ModelView");
+      modelViewProjectionUniform = gl.glGetUniformLocation(program, "u_ModelViewProjection");
+
+      positionAttribute = gl.glGetAttribLocation(program, "a_Position");
+      normalAttribute = gl.glGetAttribLocation(program, "a_Normal");
+      texCoordAttribute = gl.glGetAttribLocation(program, "a_TexCoord");
+
+      positionScaleUniform = gl.glGetUniformLocation(program, "u_PositionScale");
+      positionOffsetUniform = gl.glGetUniformLocation(program, "u_PositionOffset");
+      texCoordScaleOffsetUniform = gl.glGetUniformLocation(program, "u_TexCoordScaleOffset");
+
+      textureUniform = gl.glGetUniformLocation(program, "u_Texture");
+
+      lightingParametersUniform = gl.glGetUniformLocation(program, "u_LightingParameters");
+      materialParametersUniform = gl.glGetUniformLocation(program, "u_MaterialParameters");
+      colorCorrectionParameterUniform =
+          gl.glGetUniformLocation(program, "u_ColorCorrectionParameters");
+      colorUniform = gl.glGetUniformLocation(program, "u_ObjColor");
+
+      attributeMask =
+          GlStateCache.attributeBit(positionAttribute)
+              | GlStateCache.attributeBit(normalAttribute)
+              | GlStateCache.attributeBit(texCoordAttribute);
+      if (instanced) {
+        FrameUniformBuffer.bindProgram(program);
+      }
+
+      ShaderUtil.checkGLError(tag, "Program parameters");
+    }
+  }
+}
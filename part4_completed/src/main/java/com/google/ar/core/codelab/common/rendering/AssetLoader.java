@@ -0,0 +1,207 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads assets in two halves: the CPU-bound part (file I/O, parsing, decoding) runs on background
+ * threads, and the GL part runs on the GL thread from {@link #drainUploads}, a few uploads per
+ * frame within a time budget. Finished background work waits in a bounded staging queue, so loaders
+ * that outpace the GL thread block instead of holding many decoded assets in memory.
+ *
+ * <p>The time each asset spends loading, waiting in the queue and uploading is recorded in a
+ * {@link Timing}.
+ */
+public final class AssetLoader {
+  private static final String TAG = AssetLoader.class.getSimpleName();
+
+  private static final int THREAD_COUNT = 2;
+  private static final int STAGING_CAPACITY = 4;
+
+  /**
+   * Work to load one asset.
+   *
+   * @param <D> data produced in the background and handed to the GL thread.
+   * @param <R> resource produced on the GL thread.
+   */
+  public interface Job<D, R> {
+    /** Loads and decodes the asset. Runs on a background thread. */
+    D load() throws IOException;
+
+    /** Creates GL objects from {@code data}. Runs on the GL thread. */
+    R upload(D data);
+  }
+
+  /** Receives the result of a {@link Job} on the GL thread. */
+  public interface Callback<R> {
+    void onLoaded(R resource);
+
+    void onFailed(IOException e);
+  }
+
+  /** Latencies of one asset, in milliseconds. */
+  public static final class Timing {
+    private final long loadMillis;
+    private final long queueMillis;
+    private final long uploadMillis;
+
+    Timing(long loadMillis, long queueMillis, long uploadMillis) {
+      this.loadMillis = loadMillis;
+      this.queueMillis = queueMillis;
+      this.uploadMillis = uploadMillis;
+    }
+
+    /** Background time, from the start of {@link Job#load} until the data was staged. */
+    public long getLoadMillis() {
+      return loadMillis;
+    }
+
+    /** Time spent in the staging queue waiting for the GL thread. */
+    public long getQueueMillis() {
+      return queueMillis;
+    }
+
+    /** GL thread time spent in {@link Job#upload}. */
+    public long getUploadMillis() {
+      return uploadMillis;
+    }
+  }
+
+  /** A finished background load waiting for the GL thread. */
+  private static final class Staged<D, R> {
+    final String name;
+    final Job<D, R> job;
+    final Callback<R> callback;
+    final D data;
+    final IOException error;
+    final long loadMillis;
+    final long stagedAt;
+
+    Staged(
+        String name,
+        Job<D, R> job,
+        Callback<R> callback,
+        D data,
+        IOException error,
+        long loadMillis) {
+      this.name = name;
+      this.job = job;
+      this.callback = callback;
+      this.data = data;
+      this.error = error;
+      this.loadMillis = loadMillis;
+      this.stagedAt = SystemClock.elapsedRealtime();
+    }
+
+    /** Finishes the load on the GL thread and returns the upload time. */
+    long finish() {
+      if (error != null) {
+        callback.onFailed(error);
+        return 0;
+      }
+      long start = SystemClock.elapsedRealtime();
+      R resource = job.upload(data);
+      long uploadMillis = SystemClock.elapsedRealtime() - start;
+      callback.onLoaded(resource);
+      return uploadMillis;
+    }
+  }
+
+  private final ExecutorService executor =
+      Executors.newFixedThreadPool(
+          THREAD_COUNT,
+          runnable ->
+              new Thread(
+                  () -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                  },
+                  TAG));
+  private final BlockingQueue<Staged<?, ?>> staging = new ArrayBlockingQueue<>(STAGING_CAPACITY);
+  private final Map<String, Timing> timings = Collections.synchronizedMap(new HashMap<>());
+
+  /**
+   * Starts loading an asset. {@code callback} is called from {@link #drainUploads} on the GL thread
+   * once the asset is uploaded or has failed to load.
+   *
+   * @param name Name under which the {@link Timing} is recorded.
+   */
+  public <D, R> void submit(String name, Job<D, R> job, Callback<R> callback) {
+    executor.execute(
+        () -> {
+          long start = SystemClock.elapsedRealtime();
+          D data = null;
+          IOException error = null;
+          try {
+            data = job.load();
+          } catch (IOException e) {
+            error = e;
+          }
+          long loadMillis = SystemClock.elapsedRealtime() - start;
+          try {
+            // Blocks while the GL thread is behind, bounding the memory held by staged data.
+            staging.put(new Staged<>(name, job, callback, data, error, loadMillis));
+          } catch (InterruptedException e) {
+            // Shutting down; the GL thread no longer wants the data.
+            Thread.currentThread().interrupt();
+          }
+        });
+  }
+
+  /**
+   * Uploads staged assets until the queue is empty or {@code budgetMillis} has passed. At least one
+   * staged asset is uploaded per call, so loading always makes progress. Must be called on the GL
+   * thread, typically at the start of each frame.
+   *
+   * @return the number of assets finished.
+   */
+  public int drainUploads(long budgetMillis) {
+    long start = SystemClock.elapsedRealtime();
+    int finished = 0;
+    while (finished == 0 || SystemClock.elapsedRealtime() - start < budgetMillis) {
+      Staged<?, ?> staged = staging.poll();
+      if (staged == null) {
+        break;
+      }
+      long queueMillis = SystemClock.elapsedRealtime() - staged.stagedAt;
+      long uploadMillis = staged.finish();
+      if (staged.error != null) {
+        Log.e(TAG, "Failed to load " + staged.name, staged.error);
+      } else {
+        timings.put(staged.name, new Timing(staged.loadMillis, queueMillis, uploadMillis));
+        Log.d(
+            TAG,
+            staged.name
+                + ": load "
+                + staged.loadMillis
+                + " ms, queued "
+                + queueMillis
+                + " ms, upload "
+                + uploadMillis
+                + " ms");
+      }
+      ++finished;
+    }
+    return finished;
+  }
+
+  /** Returns the latencies of {@code name}, or null if it has not finished loading. */
+  public Timing getTiming(String name) {
+    return timings.get(name);
+  }
+
+  /** Stops the background threads. Loads in progress are abandoned. */
+  public void shutdown() {
+    executor.shutdownNow();
+    staging.clear();
+  }
+}
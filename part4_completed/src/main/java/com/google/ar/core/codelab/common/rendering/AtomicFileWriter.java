@@ -0,0 +1,51 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Replaces files so that readers, and the next run after a crash, see either the old content or
+ * the new one. The content goes to a temporary file in the same directory, which is synced and
+ * then renamed over the target.
+ */
+final class AtomicFileWriter {
+  /** Suffix of the temporary files, which an interrupted write may leave behind. */
+  static final String TEMP_SUFFIX = ".tmp";
+
+  /** Writes the content of a file. */
+  interface Content {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  private AtomicFileWriter() {}
+
+  /**
+   * Writes {@code content} to {@code file}, creating its directory if needed.
+   *
+   * @param tempPrefix Start of the temporary file's name, at least three characters long.
+   */
+  static void write(File file, String tempPrefix, Content content) throws IOException {
+    File directory = file.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create " + directory);
+    }
+    File temp = File.createTempFile(tempPrefix, TEMP_SUFFIX, directory);
+    try {
+      try (FileOutputStream out = new FileOutputStream(temp)) {
+        BufferedOutputStream buffered = new BufferedOutputStream(out);
+        content.writeTo(buffered);
+        buffered.flush();
+        out.getFD().sync();
+      }
+      if (!temp.renameTo(file)) {
+        throw new IOException("Cannot rename " + temp + " to " + file);
+      }
+    } finally {
+      // No-op after a successful rename.
+      temp.delete();
+    }
+  }
+}
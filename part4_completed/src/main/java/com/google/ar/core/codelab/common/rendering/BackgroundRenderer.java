@@ -46,6 +46,10 @@ public class BackgroundRenderer {
   private FloatBuffer quadCoords;
   private FloatBuffer quadTexCoords;
 
+  private Gl gl;
+  private final GlValidator validator = GlValidator.getInstance();
+  private GlStateCache glState;
+
   private int quadProgram;
 
   private int quadPositionParam;
@@ -74,16 +78,19 @@ public class BackgroundRenderer {
    * @param context Needed to access shader source.
    */
   public void createOnGlThread(Context context) throws IOException {
+    gl = GlBackend.get();
+    glState = GlStateCache.getInstance();
+
     // Generate the background texture.
     int[] textures = new int[1];
-    GLES20.glGenTextures(1, textures, 0);
+    gl.glGenTextures(1, textures, 0);
     textureId = textures[0];
     int textureTarget = GLES11Ext.GL_TEXTURE_EXTERNAL_OES;
-    GLES20.glBindTexture(textureTarget, textureId);
-    GLES20.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-    GLES20.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-    GLES20.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-    GLES20.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+    glState.bindTexture(0, textureTarget, textureId);
+    gl.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+    gl.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+    gl.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+    gl.glTexParameteri(textureTarget, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
 
     int numVertices = 4;
     if (numVertices != QUAD_COORDS.length / COORDS_PER_VERTEX) {
@@ -101,48 +108,47 @@ public class BackgroundRenderer {
     bbTexCoordsTransformed.order(ByteOrder.nativeOrder());
     quadTexCoords = bbTexCoordsTransformed.asFloatBuffer();
 
-    int vertexShader =
-        ShaderUtil.loadGLShader(TAG, context, GLES20.GL_VERTEX_SHADER, CAMERA_VERTEX_SHADER_NAME);
-    int fragmentShader =
-        ShaderUtil.loadGLShader(TAG, context, GLES20.GL_FRAGMENT_SHADER, CAMERA_FRAGMENT_SHADER_NAME);
-
-    quadProgram = GLES20.glCreateProgram();
-    GLES20.glAttachShader(quadProgram, vertexShader);
-    GLES20.glAttachShader(quadProgram, fragmentShader);
-    GLES20.glLinkProgram(quadProgram);
-    GLES20.glUseProgram(quadProgram);
+    quadProgram =
+        ShaderLibrary.getInstance(context)
+            .getProgram(
+                TAG,
+                CAMERA_VERTEX_SHADER_NAME,
+                CAMERA_FRAGMENT_SHADER_NAME,
+                /*defineValues=*/ null);
+    glState.useProgram(quadProgram);
 
     ShaderUtil.checkGLError(TAG, "Program creation");
 
-    quadPositionParam = GLES20.glGetAttribLocation(quadProgram, "a_Position");
-    quadTexCoordParam = GLES20.glGetAttribLocation(quadProgram, "a_TexCoord");
+    quadPositionParam = gl.glGetAttribLocation(quadProgram, "a_Position");
+    quadTexCoordParam = gl.glGetAttribLocation(quadProgram, "a_TexCoord");
 
     ShaderUtil.checkGLError(TAG, "Program parameters");
   }
 
   public void createDepthShaders(Context context, int depthTextureId) throws IOException {
     // Loads shader for rendering depth map.
-    int vertexShader =
-        ShaderUtil.loadGLShader(
-            TAG, context, GLES20.GL_VERTEX_SHADER, DEPTH_VERTEX_SHADER_NAME);
-    int fragmentShader =
-        ShaderUtil.loadGLShader(
-            TAG, context, GLES20.GL_FRAGMENT_SHADER, DEPTH_FRAGMENT_SHADER_NAME);
-
-    depthProgram = GLES20.glCreateProgram();
-    GLES20.glAttachShader(depthProgram, vertexShader);
-    GLES20.glAttachShader(depthProgram, fragmentShader);
-    GLES20.glLinkProgram(depthProgram);
-    GLES20.glUseProgram(depthProgram);
+    depthProgram =
+        ShaderLibrary.getInstance(context)
+            .getProgram(
+                TAG, DEPTH_VERTEX_SHADER_NAME, DEPTH_FRAGMENT_SHADER_NAME, /*defineValues=*/ null);
+    glState.useProgram(depthProgram);
     ShaderUtil.checkGLError(TAG, "Program creation");
 
-    depthTextureParam = GLES20.glGetUniformLocation(depthProgram, "u_Depth");
-    depthRangeToRenderMmParam = GLES20.glGetUniformLocation(depthProgram, "u_DepthRangeToRenderMm");
+    depthTextureParam = gl.glGetUniformLocation(depthProgram, "u_Depth");
+    depthRangeToRenderMmParam = gl.glGetUniformLocation(depthProgram, "u_DepthRangeToRenderMm");
     ShaderUtil.checkGLError(TAG, "Program parameters");
 
-    depthQuadPositionParam = GLES20.glGetAttribLocation(depthProgram, "a_Position");
-    depthQuadTexCoordParam = GLES20.glGetAttribLocation(depthProgram, "a_TexCoord");
+    depthQuadPositionParam = gl.glGetAttribLocation(depthProgram, "a_Position");
+    depthQuadTexCoordParam = gl.glGetAttribLocation(depthProgram, "a_TexCoord");
+
+    this.depthTextureId = depthTextureId;
+  }
 
+  /**
+   * Sets the depth texture sampled by {@link #drawDepth(Frame)}. Call this every frame when the
+   * depth texture is multi-buffered and its name changes between uploads.
+   */
+  public void setDepthTexture(int depthTextureId) {
     this.depthTextureId = depthTextureId;
   }
 
@@ -185,37 +191,36 @@ public class BackgroundRenderer {
 
     // No need to test or write depth, the screen quad has arbitrary depth, and is expected
     // to be drawn first.
-    GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-    GLES20.glDepthMask(false);
+    glState.setDepthTest(false);
+    glState.setDepthMask(false);
 
-    GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-    GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+    glState.bindTexture(0, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
 
-    GLES20.glUseProgram(quadProgram);
+    glState.useProgram(quadProgram);
+
+    // The quad is read from client memory, which requires no bound array buffer.
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
     // Set the vertex positions.
-    GLES20.glVertexAttribPointer(
+    gl.glVertexAttribPointer(
         quadPositionParam, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, quadCoords);
 
     // Set the texture coordinates.
-    GLES20.glVertexAttribPointer(
+    gl.glVertexAttribPointer(
         quadTexCoordParam, TEXCOORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, quadTexCoords);
 
     // Enable vertex arrays
-    GLES20.glEnableVertexAttribArray(quadPositionParam);
-    GLES20.glEnableVertexAttribArray(quadTexCoordParam);
-
-    GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+    glState.setVertexAttribArrays(
+        GlStateCache.attributeBit(quadPositionParam)
+            | GlStateCache.attributeBit(quadTexCoordParam));
 
-    // Disable vertex arrays
-    GLES20.glDisableVertexAttribArray(quadPositionParam);
-    GLES20.glDisableVertexAttribArray(quadTexCoordParam);
+    gl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
     // Restore the depth state for further drawing.
-    GLES20.glDepthMask(true);
-    GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+    glState.setDepthMask(true);
+    glState.setDepthTest(true);
 
-    ShaderUtil.checkGLError(TAG, "BackgroundRendererDraw");
+    validator.check(TAG, "BackgroundRendererDraw");
   }
 
   public void drawDepth(@NonNull Frame frame) {
@@ -236,40 +241,39 @@ public class BackgroundRenderer {
 
     // No need to test or write depth, the screen quad has arbitrary depth, and is expected
     // to be drawn first.
-    GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-    GLES20.glDepthMask(false);
-    GLES20.glEnable(GLES20.GL_BLEND);
-    GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+    glState.setDepthTest(false);
+    glState.setDepthMask(false);
+    glState.setBlend(true);
+    glState.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
 
-    GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, depthTextureId);
-    GLES20.glUseProgram(depthProgram);
-    GLES20.glUniform1i(depthTextureParam, 0);
+    glState.bindTexture(0, GLES20.GL_TEXTURE_2D, depthTextureId);
+    glState.useProgram(depthProgram);
+    glState.uniform1i(depthTextureParam, 0);
 
     depthRangeToRenderMm += 50.0f;
     if (depthRangeToRenderMm > MAX_DEPTH_RANGE_TO_RENDER_MM) {
       depthRangeToRenderMm = 0.0f;
     }
-    GLES20.glUniform1f(depthRangeToRenderMmParam, depthRangeToRenderMm);
+    glState.uniform1f(depthRangeToRenderMmParam, depthRangeToRenderMm);
 
     // Set the vertex positions and texture coordinates.
-    GLES20.glVertexAttribPointer(
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    gl.glVertexAttribPointer(
         depthQuadPositionParam, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, quadCoords);
-    GLES20.glVertexAttribPointer(
+    gl.glVertexAttribPointer(
         depthQuadTexCoordParam, TEXCOORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, quadTexCoords);
 
     // Draws the quad.
-    GLES20.glEnableVertexAttribArray(depthQuadPositionParam);
-    GLES20.glEnableVertexAttribArray(depthQuadTexCoordParam);
-    GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-    GLES20.glDisableVertexAttribArray(depthQuadPositionParam);
-    GLES20.glDisableVertexAttribArray(depthQuadTexCoordParam);
+    glState.setVertexAttribArrays(
+        GlStateCache.attributeBit(depthQuadPositionParam)
+            | GlStateCache.attributeBit(depthQuadTexCoordParam));
+    gl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
     // Restore the depth state for further drawing.
-    GLES20.glDepthMask(true);
-    GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+    glState.setDepthMask(true);
+    glState.setDepthTest(true);
 
-    ShaderUtil.checkGLError(TAG, "BackgroundRendererDraw");
+    validator.check(TAG, "BackgroundRendererDraw");
   }
 
   /**
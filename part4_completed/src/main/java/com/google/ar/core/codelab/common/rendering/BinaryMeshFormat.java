@@ -0,0 +1,200 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes {@link MeshData} in a compact binary form that can be memory-mapped and handed
+ * to {@code glBufferData} without parsing. Besides the full-precision vertices, which mesh
+ * simplification needs, the file holds the {@link QuantizedVertexData} that {@link GpuMesh}
+ * uploads, so loading a mesh never quantizes it. The layout, in little-endian order, is:
+ *
+ * <pre>
+ *   int      magic ("AMSH")
+ *   int      format version
+ *   int      vertex stride in bytes
+ *   int      vertex count
+ *   int      index size in bytes
+ *   int      index count
+ *   int      quantized vertex stride in bytes
+ *   float[3] bounds minimum, float[3] bounds maximum, float[3] bounds center, float radius
+ *   float[4] texture coordinate scale and offset of the quantized vertices
+ *   long     CRC32 of the vertex, quantized vertex and index bytes
+ *   vertex bytes, then quantized vertex bytes, then index bytes
+ * </pre>
+ *
+ * <p>This class does not depend on Android or OpenGL.
+ */
+public final class BinaryMeshFormat {
+  private static final int MAGIC = 0x48534D41; // "AMSH" in little-endian order.
+  // Version 2: meshes are stored after MeshOptimizer reordering.
+  // Version 3: quantized vertices and their bounds are stored too.
+  private static final int FORMAT_VERSION = 3;
+  static final int HEADER_SIZE = 7 * 4 + 14 * 4 + 8;
+
+  private static final int CHECKSUM_CHUNK_SIZE = 8192;
+
+  private BinaryMeshFormat() {}
+
+  /**
+   * Writes {@code mesh} to {@code out}. The stream is not closed.
+   *
+   * @throws IOException If writing fails.
+   */
+  public static void write(MeshData mesh, OutputStream out) throws IOException {
+    QuantizedVertexData quantized = mesh.getQuantizedVertices();
+    ByteBuffer vertexData = mesh.getVertexData().duplicate();
+    ByteBuffer quantizedVertexData = quantized.getVertexData().duplicate();
+    ByteBuffer indexData = mesh.getIndexData().duplicate();
+    if (mesh.getVertexData().order() != ByteOrder.LITTLE_ENDIAN) {
+      throw new IOException("Binary meshes can only be written on little-endian devices");
+    }
+
+    CRC32 crc = new CRC32();
+    updateChecksum(crc, vertexData.duplicate());
+    updateChecksum(crc, quantizedVertexData.duplicate());
+    updateChecksum(crc, indexData.duplicate());
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC);
+    header.putInt(FORMAT_VERSION);
+    header.putInt(MeshData.VERTEX_STRIDE);
+    header.putInt(mesh.getVertexCount());
+    header.putInt(mesh.getIndexSize());
+    header.putInt(mesh.getIndexCount());
+    header.putInt(QuantizedVertexData.VERTEX_STRIDE);
+    MeshBounds bounds = quantized.getBounds();
+    for (int axis = 0; axis < 3; ++axis) {
+      header.putFloat(bounds.getMin(axis));
+    }
+    for (int axis = 0; axis < 3; ++axis) {
+      header.putFloat(bounds.getMax(axis));
+    }
+    for (int axis = 0; axis < 3; ++axis) {
+      header.putFloat(bounds.getCenter(axis));
+    }
+    header.putFloat(bounds.getRadius());
+    for (float value : quantized.getTexCoordScaleOffset()) {
+      header.putFloat(value);
+    }
+    header.putLong(crc.getValue());
+    header.flip();
+
+    WritableByteChannel channel = Channels.newChannel(out);
+    writeFully(channel, header);
+    writeFully(channel, vertexData);
+    writeFully(channel, quantizedVertexData);
+    writeFully(channel, indexData);
+  }
+
+  /**
+   * Reads a mesh written by {@link #write}. The returned mesh shares memory with {@code data}, so a
+   * memory-mapped file is never copied on the Java heap.
+   *
+   * @throws IOException If the data is truncated, corrupt, or from another format version.
+   */
+  public static MeshData read(ByteBuffer data) throws IOException {
+    if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+      throw new IOException("Binary meshes can only be read on little-endian devices");
+    }
+    ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (header.remaining() < HEADER_SIZE) {
+      throw new IOException("Binary mesh too short: " + header.remaining() + " bytes");
+    }
+    if (header.getInt() != MAGIC) {
+      throw new IOException("Not a binary mesh");
+    }
+    int version = header.getInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported binary mesh version " + version);
+    }
+    int vertexStride = header.getInt();
+    int vertexCount = header.getInt();
+    int indexSize = header.getInt();
+    int indexCount = header.getInt();
+    int quantizedVertexStride = header.getInt();
+    float[] min = readFloats(header, 3);
+    float[] max = readFloats(header, 3);
+    float[] center = readFloats(header, 3);
+    float radius = header.getFloat();
+    float[] texCoordScaleOffset = readFloats(header, 4);
+    long checksum = header.getLong();
+    if (vertexStride != MeshData.VERTEX_STRIDE
+        || quantizedVertexStride != QuantizedVertexData.VERTEX_STRIDE
+        || (indexSize != MeshData.INDEX_SIZE_16 && indexSize != MeshData.INDEX_SIZE_32)) {
+      throw new IOException(
+          "Unsupported binary mesh layout: "
+              + vertexStride
+              + "/"
+              + quantizedVertexStride
+              + "/"
+              + indexSize);
+    }
+    long vertexBytes = (long) vertexCount * vertexStride;
+    long quantizedVertexBytes = (long) vertexCount * quantizedVertexStride;
+    long indexBytes = (long) indexCount * indexSize;
+    if (vertexCount < 0
+        || indexCount < 0
+        || header.remaining() < vertexBytes + quantizedVertexBytes + indexBytes) {
+      throw new IOException("Binary mesh truncated");
+    }
+
+    ByteBuffer vertexData = slice(header, (int) vertexBytes);
+    ByteBuffer quantizedVertexData = slice(header, (int) quantizedVertexBytes);
+    ByteBuffer indexData = slice(header, (int) indexBytes);
+
+    CRC32 crc = new CRC32();
+    updateChecksum(crc, vertexData.duplicate());
+    updateChecksum(crc, quantizedVertexData.duplicate());
+    updateChecksum(crc, indexData.duplicate());
+    if (crc.getValue() != checksum) {
+      throw new IOException("Binary mesh checksum mismatch");
+    }
+    QuantizedVertexData quantized =
+        new QuantizedVertexData(
+            quantizedVertexData, new MeshBounds(min, max, center, radius), texCoordScaleOffset);
+    return new MeshData(vertexData, indexData, indexSize, quantized);
+  }
+
+  /** Returns the next {@code length} bytes of {@code buffer} as a native-order view. */
+  private static ByteBuffer slice(ByteBuffer buffer, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(view.position() + length);
+    buffer.position(buffer.position() + length);
+    return view.slice().order(ByteOrder.nativeOrder());
+  }
+
+  private static float[] readFloats(ByteBuffer buffer, int count) {
+    float[] values = new float[count];
+    for (int i = 0; i < count; ++i) {
+      values[i] = buffer.getFloat();
+    }
+    return values;
+  }
+
+  private static void updateChecksum(CRC32 crc, ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      return;
+    }
+    // CRC32.update(ByteBuffer) needs API 26, so direct and mapped buffers go through a chunk.
+    byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK_SIZE, buffer.remaining())];
+    while (buffer.hasRemaining()) {
+      int length = Math.min(chunk.length, buffer.remaining());
+      buffer.get(chunk, 0, length);
+      crc.update(chunk, 0, length);
+    }
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Prefilters the packed depth texture with a separable two-pass blur into an offscreen texture at
+ * depth resolution. Running this once per depth frame lets the occlusion shader replace its 25
+ * dependent depth fetches per fragment with a single fetch.
+ */
+public class DepthBlurFilter {
+  private static final String TAG = DepthBlurFilter.class.getSimpleName();
+
+  // Shader names.
+  private static final String VERTEX_SHADER_NAME = "shaders/screenquad.vert";
+  private static final String FRAGMENT_SHADER_NAME = "shaders/depth_blur.frag";
+
+  private static final int COORDS_PER_VERTEX = 2;
+  private static final int TEXCOORDS_PER_VERTEX = 2;
+  private static final int FLOAT_SIZE = 4;
+
+  private static final float[] QUAD_COORDS =
+      new float[] {
+        -1.0f, -1.0f, +1.0f, -1.0f, -1.0f, +1.0f, +1.0f, +1.0f,
+      };
+  private static final float[] QUAD_TEXCOORDS =
+      new float[] {
+        0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f,
+      };
+
+  private FloatBuffer quadCoords;
+  private FloatBuffer quadTexCoords;
+
+  private Gl gl;
+  private final GlValidator validator = GlValidator.getInstance();
+  private GlStateCache glState;
+  private int program;
+  private int positionAttribute;
+  private int texCoordAttribute;
+  private int depthTextureUniform;
+  private int tapOffsetUniform;
+
+  // Index 0 holds the horizontal pass result, index 1 the final result.
+  private final int[] textures = new int[] {0, 0};
+  private final int[] framebuffers = new int[] {0, 0};
+  private int width = -1;
+  private int height = -1;
+
+  // Viewport of the default framebuffer, restored after filtering.
+  private int viewportWidth = -1;
+  private int viewportHeight = -1;
+
+  /**
+   * Creates the blur program. Must be called on the OpenGL thread.
+   *
+   * @param context Needed to access shader source.
+   */
+  public void createOnGlThread(Context context) throws IOException {
+    createOnGlThread(ShaderLibrary.getInstance(context));
+  }
+
+  /** Creates the blur program with the shaders of {@code shaderLibrary}. */
+  void createOnGlThread(ShaderLibrary shaderLibrary) throws IOException {
+    gl = GlBackend.get();
+    glState = GlStateCache.getInstance();
+    quadCoords = createFloatBuffer(QUAD_COORDS);
+    quadTexCoords = createFloatBuffer(QUAD_TEXCOORDS);
+
+    program =
+        shaderLibrary.getProgram(
+            TAG, VERTEX_SHADER_NAME, FRAGMENT_SHADER_NAME, /*defineValues=*/ null);
+    glState.useProgram(program);
+    ShaderUtil.checkGLError(TAG, "Program creation");
+
+    positionAttribute = gl.glGetAttribLocation(program, "a_Position");
+    texCoordAttribute = gl.glGetAttribLocation(program, "a_TexCoord");
+    depthTextureUniform = gl.glGetUniformLocation(program, "u_Depth");
+    tapOffsetUniform = gl.glGetUniformLocation(program, "u_TapOffset");
+    ShaderUtil.checkGLError(TAG, "Program parameters");
+
+    gl.glGenTextures(2, textures, 0);
+    gl.glGenFramebuffers(2, framebuffers, 0);
+    width = -1;
+    height = -1;
+  }
+
+  /**
+   * Sets the viewport that {@link #filter} restores, the full size of the surface. Call from
+   * {@code onSurfaceChanged}.
+   */
+  public void setViewport(int width, int height) {
+    viewportWidth = width;
+    viewportHeight = height;
+  }
+
+  /**
+   * Blurs {@code depthTextureId} into the texture returned by {@link #getFilteredTexture()}.
+   * Afterwards the default framebuffer is bound with the viewport of {@link #setViewport}, and the
+   * depth test, depth mask and blend state are as the filter found them.
+   *
+   * @param depthTextureId Packed RG depth texture, as produced by ARCore.
+   * @param depthWidth Width of the depth texture in texels.
+   * @param depthHeight Height of the depth texture in texels.
+   * @param tapOffsetU Horizontal distance between blur taps, in texture coordinates.
+   * @param tapOffsetV Vertical distance between blur taps, in texture coordinates.
+   */
+  public void filter(
+      int depthTextureId, int depthWidth, int depthHeight, float tapOffsetU, float tapOffsetV) {
+    if (depthWidth <= 0 || depthHeight <= 0) {
+      return;
+    }
+    if (viewportWidth < 0) {
+      throw new IllegalStateException("setViewport must be called before filter");
+    }
+    if (depthWidth != width || depthHeight != height) {
+      allocateTargets(depthWidth, depthHeight);
+    }
+
+    boolean depthTest = glState.isDepthTestEnabled();
+    boolean depthMask = glState.isDepthMaskEnabled();
+    boolean blend = glState.isBlendEnabled();
+    glState.setDepthTest(false);
+    glState.setDepthMask(false);
+    glState.setBlend(false);
+    gl.glViewport(0, 0, width, height);
+
+    glState.useProgram(program);
+    glState.uniform1i(depthTextureUniform, 0);
+
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    quadCoords.position(0);
+    quadTexCoords.position(0);
+    gl.glVertexAttribPointer(
+        positionAttribute, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, quadCoords);
+    gl.glVertexAttribPointer(
+        texCoordAttribute, TEXCOORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, quadTexCoords);
+    glState.setVertexAttribArrays(
+        GlStateCache.attributeBit(positionAttribute)
+            | GlStateCache.attributeBit(texCoordAttribute));
+
+    // Horizontal pass: raw depth -> textures[0].
+    gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffers[0]);
+    glState.bindTexture(0, GLES20.GL_TEXTURE_2D, depthTextureId);
+    glState.uniform2f(tapOffsetUniform, tapOffsetU, 0.0f);
+    gl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+    // Vertical pass: textures[0] -> textures[1].
+    gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffers[1]);
+    glState.bindTexture(0, GLES20.GL_TEXTURE_2D, textures[0]);
+    glState.uniform2f(tapOffsetUniform, 0.0f, tapOffsetV);
+    gl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+    // Restore the state expected by the main pass.
+    gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+    gl.glViewport(0, 0, viewportWidth, viewportHeight);
+    glState.setDepthTest(depthTest);
+    glState.setDepthMask(depthMask);
+    glState.setBlend(blend);
+
+    validator.check(TAG, "Depth blur");
+  }
+
+  /** Returns the prefiltered depth texture, in the same packed RG encoding as the input. */
+  public int getFilteredTexture() {
+    return textures[1];
+  }
+
+  private void allocateTargets(int newWidth, int newHeight) {
+    for (int i = 0; i < textures.length; ++i) {
+      glState.bindTexture(0, GLES20.GL_TEXTURE_2D, textures[i]);
+      gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+      gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+      gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+      gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+      gl.glTexImage2D(
+          GLES20.GL_TEXTURE_2D,
+          0,
+          GLES20.GL_RGBA,
+          newWidth,
+          newHeight,
+          0,
+          GLES20.GL_RGBA,
+          GLES20.GL_UNSIGNED_BYTE,
+          null);
+
+      gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffers[i]);
+      gl.glFramebufferTexture2D(
+          GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, textures[i], 0);
+      int status = gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+      if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+        throw new RuntimeException("Depth blur framebuffer incomplete: " + status);
+      }
+    }
+    gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+    width = newWidth;
+    height = newHeight;
+  }
+
+  private static FloatBuffer createFloatBuffer(float[] values) {
+    FloatBuffer buffer =
+        ByteBuffer.allocateDirect(values.length * FLOAT_SIZE)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+    buffer.put(values);
+    buffer.position(0);
+    return buffer;
+  }
+}
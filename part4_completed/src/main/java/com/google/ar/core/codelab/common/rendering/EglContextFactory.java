@@ -0,0 +1,48 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLSurfaceView;
+import android.util.Log;
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * Creates an OpenGL ES 3.0 context for a {@link GLSurfaceView}, and an ES 2.0 context on devices
+ * that cannot create one. {@link GlCapabilities#query} reports which one was created, and the
+ * renderers' ES 3.0 paths follow it.
+ *
+ * <p>Keep {@link GLSurfaceView#setEGLContextClientVersion} at 2 so that the config chooser picks
+ * a config both versions can render to.
+ */
+public final class EglContextFactory implements GLSurfaceView.EGLContextFactory {
+  private static final String TAG = EglContextFactory.class.getSimpleName();
+
+  // EGL_CONTEXT_CLIENT_VERSION from EGL14, which EGL10 does not define.
+  private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+  @Override
+  public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+    EGLContext context = createContext(egl, display, config, 3);
+    if (context == EGL10.EGL_NO_CONTEXT) {
+      Log.w(TAG, "OpenGL ES 3.0 context unavailable, falling back to 2.0: " + egl.eglGetError());
+      context = createContext(egl, display, config, 2);
+    }
+    return context;
+  }
+
+  @Override
+  public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+    if (!egl.eglDestroyContext(display, context)) {
+      String message = "eglDestroyContext failed: " + egl.eglGetError();
+      Log.e(TAG, message);
+      throw new RuntimeException(message);
+    }
+  }
+
+  private static EGLContext createContext(
+      EGL10 egl, EGLDisplay display, EGLConfig config, int clientVersion) {
+    int[] attributes = {EGL_CONTEXT_CLIENT_VERSION, clientVersion, EGL10.EGL_NONE};
+    return egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, attributes);
+  }
+}
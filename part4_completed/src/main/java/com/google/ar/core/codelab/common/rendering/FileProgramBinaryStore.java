@@ -0,0 +1,69 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link ProgramBinaryStore} that keeps one file per key in a directory. Values are written with
+ * {@link AtomicFileWriter}, so a crash during a write leaves either the old value or the new one.
+ */
+public final class FileProgramBinaryStore implements ProgramBinaryStore {
+  private static final String FILE_SUFFIX = ".bin";
+
+  private final File directory;
+
+  public FileProgramBinaryStore(File directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public byte[] load(String key) throws IOException {
+    File file = fileFor(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (InputStream in = new FileInputStream(file)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+      byte[] chunk = new byte[8192];
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        out.write(chunk, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  @Override
+  public void store(String key, byte[] data) throws IOException {
+    AtomicFileWriter.write(fileFor(key), key, out -> out.write(data));
+  }
+
+  @Override
+  public void remove(String key) throws IOException {
+    File file = fileFor(key);
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Cannot delete " + file);
+    }
+  }
+
+  /** Deletes every stored value and any temporary file left behind by an interrupted write. */
+  public void clear() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(FILE_SUFFIX) || name.endsWith(AtomicFileWriter.TEMP_SUFFIX)) {
+        file.delete();
+      }
+    }
+  }
+
+  private File fileFor(String key) {
+    return new File(directory, key + FILE_SUFFIX);
+  }
+}
@@ -0,0 +1,52 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Scratch arrays that live for one frame. Call {@link #reset} at the start of every frame, then
+ * take arrays with {@link #floats}; an array is valid until the next reset. Each request is
+ * answered with the array handed out at the same position in the previous frame, so a frame loop
+ * that asks for the same sizes in the same order allocates nothing once it is warmed up.
+ *
+ * <p>Not thread-safe; use one arena per render thread. This class does not depend on Android or
+ * OpenGL.
+ */
+public final class FrameArena {
+  private static final int INITIAL_CAPACITY = 8;
+
+  private float[][] floatArrays = new float[INITIAL_CAPACITY][];
+  private int floatArrayCount;
+  private int nextFloatArray;
+  private long allocationCount;
+
+  /** Returns every array to the arena. Arrays taken before the call must no longer be used. */
+  public void reset() {
+    nextFloatArray = 0;
+  }
+
+  /** Returns a zero-filled array of {@code length} floats, valid until the next {@link #reset}. */
+  public float[] floats(int length) {
+    if (nextFloatArray < floatArrayCount && floatArrays[nextFloatArray].length == length) {
+      float[] array = floatArrays[nextFloatArray++];
+      Arrays.fill(array, 0.0f);
+      return array;
+    }
+    // The sequence of sizes changed, or the frame needs more arrays than before.
+    if (nextFloatArray == floatArrays.length) {
+      floatArrays = Arrays.copyOf(floatArrays, floatArrays.length * 2);
+    }
+    float[] array = new float[length];
+    floatArrays[nextFloatArray++] = array;
+    floatArrayCount = Math.max(floatArrayCount, nextFloatArray);
+    ++allocationCount;
+    return array;
+  }
+
+  /**
+   * Number of arrays created since construction. A count that keeps growing after the first few
+   * frames means the frame loop requests different sizes from frame to frame.
+   */
+  public long getAllocationCount() {
+    return allocationCount;
+  }
+}
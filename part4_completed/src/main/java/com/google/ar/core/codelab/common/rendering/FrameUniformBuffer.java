@@ -0,0 +1,129 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import com.google.ar.core.codelab.common.math.Mat4;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Camera data that is the same for every object in a frame, held in one uniform buffer bound to
+ * {@link #BINDING}. Programs declaring the {@code FrameUniforms} block of {@code
+ * shaders/frame_uniforms.glsl} read it after {@link #bindProgram}. Requires OpenGL ES 3.0.
+ *
+ * <p>Every renderer calls {@link #update} with its view of the frame before drawing. The buffer is
+ * only uploaded when the data differs from what it already holds, so after the first renderer in a
+ * frame the others upload nothing. Like {@link GlStateCache}, there is one instance per EGL
+ * context, and all methods must be called on the GL thread.
+ */
+public final class FrameUniformBuffer {
+  private static FrameUniformBuffer instance;
+
+  /** Uniform buffer binding point of the {@code FrameUniforms} block. */
+  public static final int BINDING = 0;
+
+  private static final String BLOCK_NAME = "FrameUniforms";
+
+  // Offsets in floats of the block members in the std140 layout; a mat3 takes three vec4 columns.
+  private static final int VIEW_OFFSET = 0;
+  private static final int VIEW_PROJECTION_OFFSET = 16;
+  private static final int LIGHT_DIRECTION_OFFSET = 32;
+  private static final int COLOR_CORRECTION_OFFSET = 36;
+  private static final int UV_TRANSFORM_OFFSET = 40;
+  private static final int FLOAT_COUNT = 52;
+  private static final int BYTE_SIZE = FLOAT_COUNT * 4;
+
+  private Gl gl;
+  private Object glContext;
+  private int bufferId;
+  private final float[] data = new float[FLOAT_COUNT];
+  private final float[] uploaded = new float[FLOAT_COUNT];
+  private boolean hasUploaded;
+  private final FloatBuffer uploadBuffer =
+      ByteBuffer.allocateDirect(BYTE_SIZE).order(ByteOrder.nativeOrder()).asFloatBuffer();
+  private long uploadCount;
+
+  private FrameUniformBuffer() {}
+
+  /** Returns the buffer of the current EGL context, creating it on first use. */
+  public static synchronized FrameUniformBuffer getInstance() {
+    if (instance == null) {
+      instance = new FrameUniformBuffer();
+    }
+    instance.bindToCurrentContext();
+    return instance;
+  }
+
+  /** Connects the {@code FrameUniforms} block of {@code program}, if it has one, to the buffer. */
+  public static void bindProgram(int program) {
+    Gl gl = GlBackend.get();
+    int blockIndex = gl.glGetUniformBlockIndex(program, BLOCK_NAME);
+    if (blockIndex != GLES30.GL_INVALID_INDEX) {
+      gl.glUniformBlockBinding(program, blockIndex, BINDING);
+    }
+  }
+
+  /**
+   * Sets the camera data of the frame, uploading it if it changed.
+   *
+   * @param view Column-major view matrix.
+   * @param projection Column-major projection matrix.
+   * @param modelLightDirection Direction towards the light in model space, with w = 0.
+   * @param colorCorrectionRgba Color correction of the light estimate.
+   * @param uvTransform Column-major 3x3 screen to depth texture transform, or null to keep the
+   *     current one.
+   */
+  public void update(
+      float[] view,
+      float[] projection,
+      float[] modelLightDirection,
+      float[] colorCorrectionRgba,
+      float[] uvTransform) {
+    System.arraycopy(view, 0, data, VIEW_OFFSET, Mat4.SIZE);
+    Mat4.multiply(data, VIEW_PROJECTION_OFFSET, projection, 0, view, 0);
+    System.arraycopy(modelLightDirection, 0, data, LIGHT_DIRECTION_OFFSET, 4);
+    System.arraycopy(colorCorrectionRgba, 0, data, COLOR_CORRECTION_OFFSET, 4);
+    if (uvTransform != null) {
+      for (int column = 0; column < 3; ++column) {
+        System.arraycopy(uvTransform, column * 3, data, UV_TRANSFORM_OFFSET + column * 4, 3);
+      }
+    }
+    if (hasUploaded && Arrays.equals(data, uploaded)) {
+      return;
+    }
+    System.arraycopy(data, 0, uploaded, 0, FLOAT_COUNT);
+    hasUploaded = true;
+    uploadBuffer.clear();
+    uploadBuffer.put(data);
+    uploadBuffer.flip();
+    gl.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, bufferId);
+    gl.glBufferSubData(GLES30.GL_UNIFORM_BUFFER, 0, BYTE_SIZE, uploadBuffer);
+    gl.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, 0);
+    ++uploadCount;
+  }
+
+  /** Number of times the buffer contents were uploaded in the current EGL context. */
+  public long getUploadCount() {
+    return uploadCount;
+  }
+
+  private void bindToCurrentContext() {
+    gl = GlBackend.get();
+    Object current = gl.getCurrentContext();
+    if (current != null && !current.equals(glContext)) {
+      glContext = current;
+      int[] buffers = new int[1];
+      gl.glGenBuffers(1, buffers, 0);
+      bufferId = buffers[0];
+      gl.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, bufferId);
+      gl.glBufferData(GLES30.GL_UNIFORM_BUFFER, BYTE_SIZE, null, GLES20.GL_DYNAMIC_DRAW);
+      gl.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, 0);
+      // Only this class uses the binding point, so it stays bound for the life of the context.
+      gl.glBindBufferBase(GLES30.GL_UNIFORM_BUFFER, BINDING, bufferId);
+      hasUploaded = false;
+      uploadCount = 0;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import com.google.ar.core.codelab.common.math.Mat4;
+
+/**
+ * Rejects mesh instances that lie entirely outside the view frustum. The six planes are extracted
+ * from the view-projection matrix once per frame with {@link #update}; each instance is then tested
+ * with its bounding sphere and, if the sphere straddles a plane, with its transformed bounding box.
+ * Counters of visible and culled instances are reset by every {@link #update}.
+ */
+public final class FrustumCuller {
+  private static final int PLANE_COUNT = 6;
+
+  private final float[] viewProjectionMatrix = new float[16];
+  // Each plane is (a, b, c, d) with a unit normal pointing into the frustum.
+  private final float[] planes = new float[PLANE_COUNT * 4];
+
+  private int visibleCount;
+  private int culledCount;
+
+  /**
+   * Extracts the frustum planes for this frame and resets the counters.
+   *
+   * @param projectionMatrix 4x4 projection matrix, column-major.
+   * @param viewMatrix 4x4 view matrix, column-major.
+   */
+  public void update(float[] projectionMatrix, float[] viewMatrix) {
+    Mat4.multiply(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+    float[] m = viewProjectionMatrix;
+    // A clip-space point is inside when -w <= x, y, z <= w, so each plane is the last row of the
+    // matrix plus or minus one of the others. Row r, column c is m[c * 4 + r].
+    for (int i = 0; i < PLANE_COUNT; ++i) {
+      int row = i / 2;
+      float sign = (i % 2 == 0) ? 1.0f : -1.0f;
+      float a = m[3] + sign * m[row];
+      float b = m[7] + sign * m[4 + row];
+      float c = m[11] + sign * m[8 + row];
+      float d = m[15] + sign * m[12 + row];
+      float inverseLength = 1.0f / (float) Math.sqrt(a * a + b * b + c * c);
+      planes[i * 4] = a * inverseLength;
+      planes[i * 4 + 1] = b * inverseLength;
+      planes[i * 4 + 2] = c * inverseLength;
+      planes[i * 4 + 3] = d * inverseLength;
+    }
+    visibleCount = 0;
+    culledCount = 0;
+  }
+
+  /**
+   * Returns whether an instance may be visible and updates the counters.
+   *
+   * @param modelMatrix Array holding the instance's model matrix, as passed to {@code addInstance}.
+   * @param offset Index of the matrix in {@code modelMatrix}.
+   * @param scaleFactor Uniform scale applied on top of the model matrix.
+   * @param bounds Object-space bounds of the mesh.
+   */
+  public boolean isVisible(float[] modelMatrix, int offset, float scaleFactor, MeshBounds bounds) {
+    float[] m = modelMatrix;
+    float cx = bounds.getCenter(0);
+    float cy = bounds.getCenter(1);
+    float cz = bounds.getCenter(2);
+    float worldX = (m[offset] * cx + m[offset + 4] * cy + m[offset + 8] * cz) * scaleFactor;
+    float worldY = (m[offset + 1] * cx + m[offset + 5] * cy + m[offset + 9] * cz) * scaleFactor;
+    float worldZ = (m[offset + 2] * cx + m[offset + 6] * cy + m[offset + 10] * cz) * scaleFactor;
+    worldX += m[offset + 12];
+    worldY += m[offset + 13];
+    worldZ += m[offset + 14];
+    float worldRadius =
+        bounds.getRadius() * Math.abs(scaleFactor) * Mat4.getMaxAxisScale(m, offset);
+
+    float ex = bounds.getExtent(0) * scaleFactor;
+    float ey = bounds.getExtent(1) * scaleFactor;
+    float ez = bounds.getExtent(2) * scaleFactor;
+    for (int i = 0; i < PLANE_COUNT; ++i) {
+      float a = planes[i * 4];
+      float b = planes[i * 4 + 1];
+      float c = planes[i * 4 + 2];
+      float distance = a * worldX + b * worldY + c * worldZ + planes[i * 4 + 3];
+      if (distance >= worldRadius) {
+        continue;
+      }
+      // The sphere crosses or misses the plane; the box projected on the plane normal is tighter.
+      float boxRadius =
+          Math.abs(ex * (a * m[offset] + b * m[offset + 1] + c * m[offset + 2]))
+              + Math.abs(ey * (a * m[offset + 4] + b * m[offset + 5] + c * m[offset + 6]))
+              + Math.abs(ez * (a * m[offset + 8] + b * m[offset + 9] + c * m[offset + 10]));
+      if (distance < -Math.min(worldRadius, boxRadius)) {
+        ++culledCount;
+        return false;
+      }
+    }
+    ++visibleCount;
+    return true;
+  }
+
+  /** Instances that passed {@link #isVisible} since the last {@link #update}. */
+  public int getVisibleCount() {
+    return visibleCount;
+  }
+
+  /** Instances rejected by {@link #isVisible} since the last {@link #update}. */
+  public int getCulledCount() {
+    return culledCount;
+  }
+}
@@ -0,0 +1,211 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.graphics.Bitmap;
+import java.nio.Buffer;
+
+/**
+ * The OpenGL ES entry points used by the renderers. Methods have the names and arguments of the
+ * {@code GLES20} and {@code GLES30} bindings, so a renderer calls {@code gl.glBindBuffer(...)}
+ * where it would call {@code GLES20.glBindBuffer(...)}.
+ *
+ * <p>Renderers get their instance from {@link GlBackend}. On a device it is {@link AndroidGl};
+ * JVM tests and benchmarks install a recording implementation instead, which runs without a GPU
+ * and counts the commands issued, so that a test can assert the GL call budget of a frame.
+ */
+public interface Gl {
+  /**
+   * Returns an object identifying the current context, or null if there is none. Caches of GL
+   * objects compare it between calls to notice that their objects died with an earlier context.
+   */
+  Object getCurrentContext();
+
+  /** Uploads {@code bitmap} like {@code GLUtils.texImage2D}. */
+  void texImage2D(int target, int level, Bitmap bitmap, int border);
+
+  // OpenGL ES 2.0.
+
+  void glActiveTexture(int texture);
+
+  void glAttachShader(int program, int shader);
+
+  void glBindBuffer(int target, int buffer);
+
+  void glBindFramebuffer(int target, int framebuffer);
+
+  void glBindTexture(int target, int texture);
+
+  void glBlendFunc(int sfactor, int dfactor);
+
+  void glBufferData(int target, int size, Buffer data, int usage);
+
+  void glBufferSubData(int target, int offset, int size, Buffer data);
+
+  int glCheckFramebufferStatus(int target);
+
+  void glClear(int mask);
+
+  void glClearColor(float red, float green, float blue, float alpha);
+
+  void glCompileShader(int shader);
+
+  void glCompressedTexImage2D(
+      int target,
+      int level,
+      int internalformat,
+      int width,
+      int height,
+      int border,
+      int imageSize,
+      Buffer data);
+
+  int glCreateProgram();
+
+  int glCreateShader(int type);
+
+  void glDeleteBuffers(int n, int[] buffers, int offset);
+
+  void glDeleteProgram(int program);
+
+  void glDeleteShader(int shader);
+
+  void glDeleteTextures(int n, int[] textures, int offset);
+
+  void glDepthMask(boolean flag);
+
+  void glDisable(int cap);
+
+  void glDisableVertexAttribArray(int index);
+
+  void glDrawArrays(int mode, int first, int count);
+
+  void glDrawElements(int mode, int count, int type, int offset);
+
+  void glEnable(int cap);
+
+  void glEnableVertexAttribArray(int index);
+
+  void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+
+  void glGenBuffers(int n, int[] buffers, int offset);
+
+  void glGenFramebuffers(int n, int[] framebuffers, int offset);
+
+  void glGenTextures(int n, int[] textures, int offset);
+
+  void glGenerateMipmap(int target);
+
+  int glGetAttribLocation(int program, String name);
+
+  int glGetError();
+
+  void glGetIntegerv(int pname, int[] params, int offset);
+
+  String glGetProgramInfoLog(int program);
+
+  void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+  String glGetShaderInfoLog(int shader);
+
+  void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+  String glGetString(int name);
+
+  int glGetUniformLocation(int program, String name);
+
+  void glLinkProgram(int program);
+
+  void glShaderSource(int shader, String string);
+
+  void glTexImage2D(
+      int target,
+      int level,
+      int internalformat,
+      int width,
+      int height,
+      int border,
+      int format,
+      int type,
+      Buffer pixels);
+
+  void glTexParameteri(int target, int pname, int param);
+
+  void glTexSubImage2D(
+      int target,
+      int level,
+      int xoffset,
+      int yoffset,
+      int width,
+      int height,
+      int format,
+      int type,
+      Buffer pixels);
+
+  void glUniform1f(int location, float x);
+
+  void glUniform1i(int location, int x);
+
+  void glUniform2f(int location, float x, float y);
+
+  void glUniform3fv(int location, int count, float[] v, int offset);
+
+  void glUniform4f(int location, float x, float y, float z, float w);
+
+  void glUniform4fv(int location, int count, float[] v, int offset);
+
+  void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset);
+
+  void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+  void glUseProgram(int program);
+
+  void glVertexAttribPointer(
+      int indx, int size, int type, boolean normalized, int stride, int offset);
+
+  void glVertexAttribPointer(
+      int indx, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+  void glViewport(int x, int y, int width, int height);
+
+  // OpenGL ES 3.0. Callers check {@link GlCapabilities#isEs3} first.
+
+  void glBeginQuery(int target, int id);
+
+  void glBindBufferBase(int target, int index, int buffer);
+
+  void glBindVertexArray(int array);
+
+  void glDeleteVertexArrays(int n, int[] arrays, int offset);
+
+  void glDrawElementsInstanced(int mode, int count, int type, int indicesOffset, int instanceCount);
+
+  void glEndQuery(int target);
+
+  void glGenQueries(int n, int[] ids, int offset);
+
+  void glGenVertexArrays(int n, int[] arrays, int offset);
+
+  void glGetProgramBinary(
+      int program,
+      int bufSize,
+      int[] length,
+      int lengthOffset,
+      int[] binaryFormat,
+      int binaryFormatOffset,
+      Buffer binary);
+
+  void glGetQueryObjectuiv(int id, int pname, int[] params, int offset);
+
+  int glGetUniformBlockIndex(int program, String uniformBlockName);
+
+  Buffer glMapBufferRange(int target, int offset, int length, int access);
+
+  void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+
+  void glProgramParameteri(int program, int pname, int value);
+
+  void glUniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding);
+
+  boolean glUnmapBuffer(int target);
+
+  void glVertexAttribDivisor(int index, int divisor);
+}
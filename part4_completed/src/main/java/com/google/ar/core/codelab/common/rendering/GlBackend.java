@@ -0,0 +1,31 @@
+package com.google.ar.core.codelab.common.rendering;
+
+/**
+ * Holds the {@link Gl} that renderers issue their commands to, {@link AndroidGl} unless replaced.
+ *
+ * <p>Renderers and helpers read the backend when they create their GL objects, and the
+ * per-context singletons such as {@link GlStateCache} read it in {@code getInstance}. A JVM test
+ * therefore calls {@link #set} with a recording {@link Gl} before creating anything, then resets
+ * the recorder and draws a frame to count the commands it issued.
+ */
+public final class GlBackend {
+  private static volatile Gl gl = new AndroidGl();
+
+  private GlBackend() {}
+
+  public static Gl get() {
+    return gl;
+  }
+
+  /**
+   * Sends the commands of everything created from now on to {@code gl}. The per-context
+   * singletons start over with it, as with a new EGL context, unless it reports the same current
+   * context as the previous backend.
+   */
+  public static void set(Gl gl) {
+    if (gl == null) {
+      throw new IllegalArgumentException("gl must not be null");
+    }
+    GlBackend.gl = gl;
+  }
+}
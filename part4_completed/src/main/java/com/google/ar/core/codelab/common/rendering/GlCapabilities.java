@@ -0,0 +1,134 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLES20;
+
+/**
+ * Describes the OpenGL ES version and extensions of the current context. Query once on the GL
+ * thread, typically in {@code onSurfaceCreated}, and pass the result to renderers that have
+ * optional ES 3.0 paths.
+ */
+public final class GlCapabilities {
+  private final int majorVersion;
+  private final int minorVersion;
+  private final String extensions;
+  private final String renderer;
+  private final String driverVersion;
+
+  GlCapabilities(String versionString, String extensions, String renderer) {
+    int[] version = parseVersion(versionString);
+    this.majorVersion = version[0];
+    this.minorVersion = version[1];
+    this.extensions = extensions == null ? "" : extensions;
+    this.renderer = renderer == null ? "" : renderer;
+    this.driverVersion = versionString == null ? "" : versionString;
+  }
+
+  /** Queries the current context. Must be called on a thread with a current EGL context. */
+  public static GlCapabilities query() {
+    Gl gl = GlBackend.get();
+    return new GlCapabilities(
+        gl.glGetString(GLES20.GL_VERSION),
+        gl.glGetString(GLES20.GL_EXTENSIONS),
+        gl.glGetString(GLES20.GL_RENDERER));
+  }
+
+  /** Capabilities of a plain ES 2.0 context without extensions. */
+  public static GlCapabilities es2() {
+    return new GlCapabilities("OpenGL ES 2.0", "", "");
+  }
+
+  public int getMajorVersion() {
+    return majorVersion;
+  }
+
+  public int getMinorVersion() {
+    return minorVersion;
+  }
+
+  /** Returns true if the context supports at least OpenGL ES 3.0. */
+  public boolean isEs3() {
+    return majorVersion >= 3;
+  }
+
+  /** Returns true if index buffers may hold {@code GL_UNSIGNED_INT} indices. */
+  public boolean supportsUnsignedIntIndices() {
+    return isEs3() || hasExtension("GL_OES_element_index_uint");
+  }
+
+  /**
+   * Returns true if textures in the compressed {@code internalFormat} can be uploaded. Only the
+   * formats of {@link KtxTexture} are known; others return false. ETC1 data is a subset of ETC2,
+   * so it is accepted on every ES 3.0 context.
+   */
+  public boolean supportsCompressedFormat(int internalFormat) {
+    switch (internalFormat) {
+      case KtxTexture.ETC1_RGB8:
+        return isEs3() || hasExtension("GL_OES_compressed_ETC1_RGB8_texture");
+      case KtxTexture.ETC2_RGB8:
+      case KtxTexture.ETC2_RGBA8_EAC:
+        return isEs3();
+      case KtxTexture.ASTC_4X4_RGBA:
+        return hasExtension("GL_KHR_texture_compression_astc_ldr");
+      default:
+        return false;
+    }
+  }
+
+  /** Returns true if {@code name} appears in the extension string. */
+  public boolean hasExtension(String name) {
+    int index = extensions.indexOf(name);
+    while (index >= 0) {
+      int end = index + name.length();
+      boolean startsToken = index == 0 || extensions.charAt(index - 1) == ' ';
+      boolean endsToken = end == extensions.length() || extensions.charAt(end) == ' ';
+      if (startsToken && endsToken) {
+        return true;
+      }
+      index = extensions.indexOf(name, end);
+    }
+    return false;
+  }
+
+  /** The GL_RENDERER string, e.g. "Adreno (TM) 640". */
+  public String getRenderer() {
+    return renderer;
+  }
+
+  /** The full GL_VERSION string, which also identifies the driver build. */
+  public String getDriverVersion() {
+    return driverVersion;
+  }
+
+  /** Parses "OpenGL ES 3.2 V@415.0 ..." into {3, 2}. Unknown strings are treated as ES 2.0. */
+  static int[] parseVersion(String versionString) {
+    int[] result = new int[] {2, 0};
+    if (versionString == null) {
+      return result;
+    }
+    String prefix = "OpenGL ES ";
+    int start = versionString.indexOf(prefix);
+    if (start < 0) {
+      return result;
+    }
+    start += prefix.length();
+    // Skip the optional profile, e.g. "OpenGL ES-CM 1.1".
+    int dot = versionString.indexOf('.', start);
+    if (dot <= start) {
+      return result;
+    }
+    try {
+      result[0] = Integer.parseInt(versionString.substring(start, dot).trim());
+      int end = dot + 1;
+      while (end < versionString.length() && Character.isDigit(versionString.charAt(end))) {
+        ++end;
+      }
+      if (end > dot + 1) {
+        result[1] = Integer.parseInt(versionString.substring(dot + 1, end));
+      }
+    } catch (NumberFormatException e) {
+      result[0] = 2;
+      result[1] = 0;
+    }
+    return result;
+  }
+}
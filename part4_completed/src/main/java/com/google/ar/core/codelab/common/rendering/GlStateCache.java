@@ -0,0 +1,589 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import java.util.Arrays;
+
+/**
+ * Shadows the GL state that the renderers change on every draw and skips calls that would not
+ * change it: the current program, texture bindings per unit, array and element buffer bindings,
+ * the bound vertex array object, enabled vertex attribute arrays, depth and blend state, and the
+ * uniform values of each program. Counters of issued and elided calls cover the frame since the
+ * last {@link #beginFrame}.
+ *
+ * <p>The shadow is only correct while every change goes through this class. Texture, buffer and
+ * program bindings are also changed by uploads and by ARCore, so they are forgotten by {@link
+ * #beginFrame}, which must be called after those and before the frame's draws. Like {@link
+ * ShaderLibrary}, the instance resets itself when {@link #getInstance} is called with a different
+ * current EGL context. All methods must be called on the GL thread.
+ */
+public final class GlStateCache {
+  private static GlStateCache instance;
+
+  private static final int UNKNOWN = -1;
+  private static final int TARGET_2D = 0;
+  private static final int TARGET_EXTERNAL_OES = 1;
+  private static final int TARGET_COUNT = 2;
+  private static final int INITIAL_TEXTURE_UNITS = 8;
+
+  private Gl gl;
+  private Object glContext;
+
+  private int program;
+  private int activeTextureUnit;
+  // Texture bound to each (unit, target) pair, at unit * TARGET_COUNT + target.
+  private int[] textures = new int[INITIAL_TEXTURE_UNITS * TARGET_COUNT];
+  private int arrayBuffer;
+  // The element buffer and enabled arrays of the default vertex array object, vertex array 0.
+  private int elementArrayBuffer;
+  private long enabledAttributes;
+  private int vertexArray;
+  private boolean depthTest;
+  private boolean depthMask;
+  private boolean blend;
+  private int blendSource;
+  private int blendDestination;
+  // Uniform values indexed by program name.
+  private UniformValues[] uniformValues = new UniformValues[0];
+
+  private int issuedCount;
+  private int elidedCount;
+
+  private GlStateCache() {}
+
+  /** Returns the state cache of the current EGL context. */
+  public static synchronized GlStateCache getInstance() {
+    if (instance == null) {
+      instance = new GlStateCache();
+    }
+    instance.bindToCurrentContext();
+    return instance;
+  }
+
+  /**
+   * Forgets the program, texture and buffer bindings, which uploads and ARCore change directly,
+   * and resets the counters. Call once per frame after {@code Session.update()} and any uploads,
+   * before drawing.
+   */
+  public void beginFrame() {
+    program = UNKNOWN;
+    activeTextureUnit = UNKNOWN;
+    Arrays.fill(textures, UNKNOWN);
+    arrayBuffer = UNKNOWN;
+    elementArrayBuffer = UNKNOWN;
+    issuedCount = 0;
+    elidedCount = 0;
+  }
+
+  public void useProgram(int program) {
+    if (this.program == program) {
+      ++elidedCount;
+      return;
+    }
+    this.program = program;
+    gl.glUseProgram(program);
+    ++issuedCount;
+  }
+
+  /**
+   * Binds {@code texture} to {@code target}, which must be {@code GL_TEXTURE_2D} or {@code
+   * GL_TEXTURE_EXTERNAL_OES}, on texture unit {@code unit} (0 for {@code GL_TEXTURE0}).
+   */
+  public void bindTexture(int unit, int target, int texture) {
+    int slot = unit * TARGET_COUNT + textureTargetIndex(target);
+    if (slot >= textures.length) {
+      int oldLength = textures.length;
+      textures = Arrays.copyOf(textures, Math.max(oldLength * 2, slot + TARGET_COUNT));
+      Arrays.fill(textures, oldLength, textures.length, UNKNOWN);
+    }
+    if (textures[slot] == texture) {
+      ++elidedCount;
+      return;
+    }
+    activeTexture(unit);
+    textures[slot] = texture;
+    gl.glBindTexture(target, texture);
+    ++issuedCount;
+  }
+
+  /**
+   * Binds {@code buffer} to {@code GL_ARRAY_BUFFER} or {@code GL_ELEMENT_ARRAY_BUFFER}. The element
+   * buffer binding belongs to the bound vertex array object; while one other than 0 is bound, it
+   * is set without being shadowed.
+   */
+  public void bindBuffer(int target, int buffer) {
+    if (target != GLES20.GL_ARRAY_BUFFER && target != GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+      throw new IllegalArgumentException("Untracked buffer target " + target);
+    }
+    boolean isArrayBuffer = target == GLES20.GL_ARRAY_BUFFER;
+    if (!isArrayBuffer && vertexArray != 0) {
+      gl.glBindBuffer(target, buffer);
+      ++issuedCount;
+      return;
+    }
+    int current = isArrayBuffer ? arrayBuffer : elementArrayBuffer;
+    if (current == buffer) {
+      ++elidedCount;
+      return;
+    }
+    if (isArrayBuffer) {
+      arrayBuffer = buffer;
+    } else {
+      elementArrayBuffer = buffer;
+    }
+    gl.glBindBuffer(target, buffer);
+    ++issuedCount;
+  }
+
+  /** Deletes buffers, forgetting any binding of them as GL does. */
+  public void deleteBuffers(int... buffers) {
+    for (int buffer : buffers) {
+      if (arrayBuffer == buffer) {
+        arrayBuffer = 0;
+      }
+      if (elementArrayBuffer == buffer) {
+        elementArrayBuffer = 0;
+      }
+    }
+    gl.glDeleteBuffers(buffers.length, buffers, 0);
+    ++issuedCount;
+  }
+
+  /**
+   * Binds a vertex array object. Requires OpenGL ES 3.0 unless {@code vertexArray} is 0, which is
+   * always bound on OpenGL ES 2.0 and therefore never issued there. Mesh uploads bind element
+   * buffers directly, which would record them into the bound vertex array, so bind 0 again after
+   * drawing with another.
+   */
+  public void bindVertexArray(int vertexArray) {
+    if (this.vertexArray == vertexArray) {
+      ++elidedCount;
+      return;
+    }
+    this.vertexArray = vertexArray;
+    gl.glBindVertexArray(vertexArray);
+    ++issuedCount;
+  }
+
+  /** Deletes vertex array objects, reverting to vertex array 0 if one of them is bound. */
+  public void deleteVertexArrays(int... vertexArrays) {
+    for (int deleted : vertexArrays) {
+      if (vertexArray == deleted) {
+        vertexArray = 0;
+      }
+    }
+    gl.glDeleteVertexArrays(vertexArrays.length, vertexArrays, 0);
+    ++issuedCount;
+  }
+
+  /** Deletes a texture, forgetting any binding of it as GL does. */
+  public void deleteTexture(int texture) {
+    for (int i = 0; i < textures.length; ++i) {
+      if (textures[i] == texture) {
+        textures[i] = 0;
+      }
+    }
+    gl.glDeleteTextures(1, new int[] {texture}, 0);
+    ++issuedCount;
+  }
+
+  /** Returns the bit of attribute {@code location} for {@link #setVertexAttribArrays}. */
+  public static long attributeBit(int location) {
+    return location < 0 ? 0 : 1L << location;
+  }
+
+  /**
+   * Binds vertex array 0, then enables exactly its vertex attribute arrays whose bits are set in
+   * {@code mask}, see {@link #attributeBit}, and disables all others. Arrays already in the wanted
+   * state are not touched.
+   */
+  public void setVertexAttribArrays(long mask) {
+    bindVertexArray(0);
+    long changed = enabledAttributes ^ mask;
+    if (changed == 0) {
+      ++elidedCount;
+      return;
+    }
+    while (changed != 0) {
+      int location = Long.numberOfTrailingZeros(changed);
+      if ((mask & (1L << location)) != 0) {
+        gl.glEnableVertexAttribArray(location);
+      } else {
+        gl.glDisableVertexAttribArray(location);
+      }
+      ++issuedCount;
+      changed &= changed - 1;
+    }
+    enabledAttributes = mask;
+  }
+
+  public boolean isDepthTestEnabled() {
+    return depthTest;
+  }
+
+  public boolean isDepthMaskEnabled() {
+    return depthMask;
+  }
+
+  public boolean isBlendEnabled() {
+    return blend;
+  }
+
+  public void setDepthTest(boolean enabled) {
+    if (depthTest == enabled) {
+      ++elidedCount;
+      return;
+    }
+    depthTest = enabled;
+    setCapability(GLES20.GL_DEPTH_TEST, enabled);
+  }
+
+  public void setDepthMask(boolean enabled) {
+    if (depthMask == enabled) {
+      ++elidedCount;
+      return;
+    }
+    depthMask = enabled;
+    gl.glDepthMask(enabled);
+    ++issuedCount;
+  }
+
+  public void setBlend(boolean enabled) {
+    if (blend == enabled) {
+      ++elidedCount;
+      return;
+    }
+    blend = enabled;
+    setCapability(GLES20.GL_BLEND, enabled);
+  }
+
+  public void blendFunc(int source, int destination) {
+    if (blendSource == source && blendDestination == destination) {
+      ++elidedCount;
+      return;
+    }
+    blendSource = source;
+    blendDestination = destination;
+    gl.glBlendFunc(source, destination);
+    ++issuedCount;
+  }
+
+  // The uniform setters below ignore location -1, which GL ignores too and which inactive or
+  // optimized-out uniforms return; such calls are neither issued nor counted as elided.
+
+  /** Sets an {@code int} or sampler uniform of the current program. */
+  public void uniform1i(int location, int value) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, value)) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniform1i(location, value);
+    ++issuedCount;
+  }
+
+  /** Sets a {@code float} uniform of the current program. */
+  public void uniform1f(int location, float x) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, Float.floatToRawIntBits(x))) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniform1f(location, x);
+    ++issuedCount;
+  }
+
+  /** Sets a {@code vec2} uniform of the current program. */
+  public void uniform2f(int location, float x, float y) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, x, y, 0.0f, 0.0f, 2)) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniform2f(location, x, y);
+    ++issuedCount;
+  }
+
+  /** Sets a {@code vec4} uniform of the current program. */
+  public void uniform4f(int location, float x, float y, float z, float w) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, x, y, z, w, 4)) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniform4f(location, x, y, z, w);
+    ++issuedCount;
+  }
+
+  /** Sets a {@code vec3} uniform of the current program from {@code value[offset]}. */
+  public void uniform3fv(int location, float[] value, int offset) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, value, offset, 3)) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniform3fv(location, 1, value, offset);
+    ++issuedCount;
+  }
+
+  /** Sets a {@code vec4} uniform of the current program from {@code value[offset]}. */
+  public void uniform4fv(int location, float[] value, int offset) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, value, offset, 4)) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniform4fv(location, 1, value, offset);
+    ++issuedCount;
+  }
+
+  /** Sets a {@code mat3} uniform of the current program from column-major {@code value}. */
+  public void uniformMatrix3fv(int location, float[] value, int offset) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, value, offset, 9)) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniformMatrix3fv(location, 1, false, value, offset);
+    ++issuedCount;
+  }
+
+  /** Sets a {@code mat4} uniform of the current program from column-major {@code value}. */
+  public void uniformMatrix4fv(int location, float[] value, int offset) {
+    if (location < 0) {
+      return;
+    }
+    UniformValues values = currentUniformValues();
+    if (values != null && values.matches(location, value, offset, 16)) {
+      ++elidedCount;
+      return;
+    }
+    gl.glUniformMatrix4fv(location, 1, false, value, offset);
+    ++issuedCount;
+  }
+
+  /** State-changing calls made since the last {@link #beginFrame}. */
+  public int getIssuedCount() {
+    return issuedCount;
+  }
+
+  /** Calls skipped since the last {@link #beginFrame} because they would not change the state. */
+  public int getElidedCount() {
+    return elidedCount;
+  }
+
+  private void activeTexture(int unit) {
+    if (activeTextureUnit == unit) {
+      ++elidedCount;
+      return;
+    }
+    activeTextureUnit = unit;
+    gl.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+    ++issuedCount;
+  }
+
+  private void setCapability(int capability, boolean enabled) {
+    if (enabled) {
+      gl.glEnable(capability);
+    } else {
+      gl.glDisable(capability);
+    }
+    ++issuedCount;
+  }
+
+  private static int textureTargetIndex(int target) {
+    switch (target) {
+      case GLES20.GL_TEXTURE_2D:
+        return TARGET_2D;
+      case GLES11Ext.GL_TEXTURE_EXTERNAL_OES:
+        return TARGET_EXTERNAL_OES;
+      default:
+        throw new IllegalArgumentException("Untracked texture target " + target);
+    }
+  }
+
+  /** Returns the uniform values of the current program, or null if the program is unknown. */
+  private UniformValues currentUniformValues() {
+    if (program <= 0) {
+      return null;
+    }
+    if (program >= uniformValues.length) {
+      uniformValues = Arrays.copyOf(uniformValues, Math.max(uniformValues.length * 2, program + 1));
+    }
+    UniformValues values = uniformValues[program];
+    if (values == null) {
+      values = new UniformValues();
+      uniformValues[program] = values;
+    }
+    return values;
+  }
+
+  private void bindToCurrentContext() {
+    gl = GlBackend.get();
+    Object current = gl.getCurrentContext();
+    if (current != null && !current.equals(glContext)) {
+      // A new context starts from the GL defaults, and its program names mean other programs.
+      glContext = current;
+      beginFrame();
+      enabledAttributes = 0;
+      vertexArray = 0;
+      depthTest = false;
+      depthMask = true;
+      blend = false;
+      blendSource = GLES20.GL_ONE;
+      blendDestination = GLES20.GL_ZERO;
+      uniformValues = new UniformValues[0];
+    }
+  }
+
+  /**
+   * Last values set for the uniforms of one program, compared bitwise; {@link #matches} stores the
+   * new value when it differs. Locations are arbitrary driver-chosen integers, so each one seen is
+   * given a dense slot in an open-addressed table, and the values of the slots are packed one
+   * after another with room for exactly the components first set. Locations are never negative;
+   * the setters drop location -1 before looking up the table.
+   */
+  private static final class UniformValues {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_VALUES = 64;
+
+    // Table from location to the start and length of its values in bits, EMPTY where unused.
+    private int[] locations = newTable(INITIAL_CAPACITY);
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int slotCount;
+    private int[] bits = new int[INITIAL_VALUES];
+    private int valueCount;
+    // Start of the values of the location found by the last find.
+    private int base;
+
+    boolean matches(int location, int value) {
+      boolean same = find(location, 1) && bits[base] == value;
+      bits[base] = value;
+      return same;
+    }
+
+    boolean matches(int location, float x, float y, float z, float w, int count) {
+      boolean same = find(location, count);
+      same &= store(base, x);
+      same &= store(base + 1, y);
+      if (count > 2) {
+        same &= store(base + 2, z);
+        same &= store(base + 3, w);
+      }
+      return same;
+    }
+
+    boolean matches(int location, float[] value, int offset, int count) {
+      boolean same = find(location, count);
+      for (int i = 0; i < count; ++i) {
+        same &= store(base + i, value[offset + i]);
+      }
+      return same;
+    }
+
+    /**
+     * Points {@link #base} at the values of {@code location}, adding a slot with room for {@code
+     * count} values if there is none, and returns whether the location already held a value.
+     */
+    private boolean find(int location, int count) {
+      int mask = locations.length - 1;
+      int index = hash(location) & mask;
+      while (locations[index] != EMPTY) {
+        if (locations[index] == location) {
+          if (sizes[index] < count) {
+            // The same location set with more components than before; GL would reject the call,
+            // but the shadow must not overrun the neighbouring slot.
+            offsets[index] = allocate(count);
+            sizes[index] = count;
+            base = offsets[index];
+            return false;
+          }
+          base = offsets[index];
+          return true;
+        }
+        index = (index + 1) & mask;
+      }
+      locations[index] = location;
+      offsets[index] = allocate(count);
+      sizes[index] = count;
+      base = offsets[index];
+      if (++slotCount * 2 > locations.length) {
+        rehash(locations.length * 2);
+      }
+      return false;
+    }
+
+    private int allocate(int count) {
+      int start = valueCount;
+      valueCount += count;
+      if (valueCount > bits.length) {
+        bits = Arrays.copyOf(bits, Math.max(bits.length * 2, valueCount));
+      }
+      return start;
+    }
+
+    private void rehash(int capacity) {
+      int[] oldLocations = locations;
+      int[] oldOffsets = offsets;
+      int[] oldSizes = sizes;
+      locations = newTable(capacity);
+      offsets = new int[capacity];
+      sizes = new int[capacity];
+      int mask = capacity - 1;
+      for (int i = 0; i < oldLocations.length; ++i) {
+        if (oldLocations[i] == EMPTY) {
+          continue;
+        }
+        int index = hash(oldLocations[i]) & mask;
+        while (locations[index] != EMPTY) {
+          index = (index + 1) & mask;
+        }
+        locations[index] = oldLocations[i];
+        offsets[index] = oldOffsets[i];
+        sizes[index] = oldSizes[i];
+      }
+    }
+
+    /** Stores {@code value} at {@code index}, returning whether it was already there. */
+    private boolean store(int index, float value) {
+      int valueBits = Float.floatToRawIntBits(value);
+      boolean same = bits[index] == valueBits;
+      bits[index] = valueBits;
+      return same;
+    }
+
+    private static int[] newTable(int capacity) {
+      int[] table = new int[capacity];
+      Arrays.fill(table, EMPTY);
+      return table;
+    }
+
+    private static int hash(int location) {
+      int h = location * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
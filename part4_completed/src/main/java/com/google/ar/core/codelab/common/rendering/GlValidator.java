@@ -0,0 +1,138 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLES20;
+import android.util.Log;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks for GL errors at the checkpoints that renderers mark on their per-frame paths with {@link
+ * #check}. Reading the error flag with {@code glGetError} can make the driver finish the commands
+ * queued before it, so how many checkpoints actually read it depends on the {@link Mode}.
+ *
+ * <p>An error is logged and thrown as a {@link RuntimeException}, like {@link
+ * ShaderUtil#checkGLError}, which remains the check for one-time setup. The message names the
+ * checkpoint that found the error and the last one of the frame that passed, which bracket the
+ * commands that raised it.
+ *
+ * <p>There is one validator per process. The mode may be changed from any thread and applies to
+ * the next checkpoint; {@link #beginFrame} and {@link #check} must be called on the GL thread.
+ */
+public final class GlValidator {
+  private static final String TAG = GlValidator.class.getSimpleName();
+
+  private static GlValidator instance;
+
+  /** How often checkpoints read the GL error flag. */
+  public enum Mode {
+    /** Never. A checkpoint costs one field read, so release builds can leave them in place. */
+    OFF,
+    /**
+     * On every checkpoint of one frame in {@link #setSampleInterval N}. An error raised in a frame
+     * in between is reported by the first checkpoint of the next checked frame.
+     */
+    SAMPLED,
+    /** On every checkpoint of every frame. */
+    FULL
+  }
+
+  /** Frames between checked frames in {@link Mode#SAMPLED}, about once a second. */
+  public static final int DEFAULT_SAMPLE_INTERVAL = 60;
+
+  private volatile Mode mode = Mode.FULL;
+  private volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+  private long frameIndex;
+  private boolean sampledFrame = true;
+  // The last checkpoint of the current frame that found no error, or null.
+  private String lastPassedTag;
+  private String lastPassedLabel;
+
+  private final AtomicLong checkCount = new AtomicLong();
+  private final AtomicLong errorCount = new AtomicLong();
+
+  GlValidator() {}
+
+  public static synchronized GlValidator getInstance() {
+    if (instance == null) {
+      instance = new GlValidator();
+    }
+    return instance;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public void setMode(Mode mode) {
+    if (mode == null) {
+      throw new IllegalArgumentException("mode must not be null");
+    }
+    this.mode = mode;
+  }
+
+  public int getSampleInterval() {
+    return sampleInterval;
+  }
+
+  /** Sets how many frames apart the checked frames of {@link Mode#SAMPLED} are, at least 1. */
+  public void setSampleInterval(int frames) {
+    if (frames < 1) {
+      throw new IllegalArgumentException("Sample interval must be at least 1: " + frames);
+    }
+    sampleInterval = frames;
+  }
+
+  /** Starts a frame. Call once per frame before its first checkpoint. */
+  public void beginFrame() {
+    sampledFrame = frameIndex % sampleInterval == 0;
+    ++frameIndex;
+    lastPassedTag = null;
+    lastPassedLabel = null;
+  }
+
+  /**
+   * Marks a checkpoint. If the mode calls for it, reads and clears every pending GL error.
+   *
+   * @param label Describes the commands issued just before, such as {@code "After draw"}.
+   * @throws RuntimeException If an OpenGL error is detected.
+   */
+  public void check(String tag, String label) {
+    Mode current = mode;
+    if (current == Mode.OFF || (current == Mode.SAMPLED && !sampledFrame)) {
+      return;
+    }
+    checkCount.incrementAndGet();
+    Gl gl = GlBackend.get();
+    int lastError = GLES20.GL_NO_ERROR;
+    // Drain the queue of all errors.
+    int error;
+    while ((error = gl.glGetError()) != GLES20.GL_NO_ERROR) {
+      lastError = error;
+    }
+    if (lastError != GLES20.GL_NO_ERROR) {
+      errorCount.incrementAndGet();
+      String message =
+          tag
+              + ": "
+              + label
+              + ": glError "
+              + lastError
+              + (lastPassedLabel == null
+                  ? " before any checkpoint of the frame passed"
+                  : " after " + lastPassedTag + ": " + lastPassedLabel + " passed");
+      Log.e(TAG, message);
+      throw new RuntimeException(message);
+    }
+    lastPassedTag = tag;
+    lastPassedLabel = label;
+  }
+
+  /** Number of checkpoints that read the error flag. May be called from any thread. */
+  public long getCheckCount() {
+    return checkCount.get();
+  }
+
+  /** Number of checkpoints that found an error. May be called from any thread. */
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+}
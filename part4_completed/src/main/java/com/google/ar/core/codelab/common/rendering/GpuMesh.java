@@ -0,0 +1,274 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLES20;
+import java.nio.ByteBuffer;
+
+/**
+ * Vertex and index buffers of a {@link MeshData}, shared through {@link GpuResourceCache}. Vertices
+ * are uploaded as {@link QuantizedVertexData}, whose constants describe the layout; the values to
+ * decode them are available from this class.
+ *
+ * <p>A mesh is drawn as one or more submeshes. Each submesh is {@link #getSubmeshIndexCount}
+ * indices of {@link #getIndexType} starting at byte {@link #getSubmeshIndexOffset} of the index
+ * buffer, referring to vertices starting at byte {@link #getSubmeshVertexOffset} of the vertex
+ * buffer. Meshes with 32-bit indices are split only when the context cannot draw them directly.
+ *
+ * <p>On OpenGL ES 3.0 each submesh also has a vertex array object, see {@link #getVertexArray},
+ * with attributes at the fixed locations below. The GLSL ES 3.00 shader variants declare the same
+ * locations, so the vertex arrays work with all of them.
+ */
+public final class GpuMesh {
+  private static final String TAG = GpuMesh.class.getSimpleName();
+
+  // Attribute locations of the vertex arrays; a mat4 takes four consecutive locations.
+  static final int POSITION_LOCATION = 0;
+  static final int NORMAL_LOCATION = 1;
+  static final int TEXCOORD_LOCATION = 2;
+  static final int MODEL_MATRIX_LOCATION = 3;
+
+  private final Gl gl = GlBackend.get();
+  private final String assetName;
+  private final int vertexBufferId;
+  private final int indexBufferId;
+  private final int indexCount;
+  private final int indexType;
+  private final int[] submeshVertexOffsets;
+  private final int[] submeshIndexOffsets;
+  private final int[] submeshIndexCounts;
+  private final long byteSize;
+  private final long savedByteSize;
+  private final MeshBounds bounds;
+  private final float[] positionScale;
+  private final float[] positionOffset;
+  private final float[] texCoordScaleOffset;
+  // One vertex array per submesh, recorded on first use; null until then.
+  private int[] vertexArrayIds;
+  int refCount;
+
+  private GpuMesh(
+      String assetName,
+      int vertexBufferId,
+      int indexBufferId,
+      int indexCount,
+      int indexType,
+      int[] submeshVertexOffsets,
+      int[] submeshIndexOffsets,
+      int[] submeshIndexCounts,
+      long byteSize,
+      long savedByteSize,
+      MeshBounds bounds,
+      QuantizedVertexData vertices) {
+    this.assetName = assetName;
+    this.vertexBufferId = vertexBufferId;
+    this.indexBufferId = indexBufferId;
+    this.indexCount = indexCount;
+    this.indexType = indexType;
+    this.submeshVertexOffsets = submeshVertexOffsets;
+    this.submeshIndexOffsets = submeshIndexOffsets;
+    this.submeshIndexCounts = submeshIndexCounts;
+    this.byteSize = byteSize;
+    this.savedByteSize = savedByteSize;
+    this.bounds = bounds;
+    this.positionScale = vertices.getPositionScale();
+    this.positionOffset = vertices.getPositionOffset();
+    this.texCoordScaleOffset = vertices.getTexCoordScaleOffset();
+  }
+
+  /**
+   * Uploads the {@link MeshData#getQuantizedVertices quantized vertices} of {@code mesh} and its
+   * indices into new static buffers. Meshes with 32-bit indices use {@code GL_UNSIGNED_INT} if
+   * {@code capabilities} allow it, and are split into 16-bit submeshes otherwise. Must be called
+   * on the GL thread.
+   */
+  static GpuMesh upload(String assetName, MeshData mesh, GlCapabilities capabilities) {
+    Gl gl = GlBackend.get();
+    QuantizedVertexData vertices = mesh.getQuantizedVertices();
+    ByteBuffer vertexData = vertices.getVertexData();
+    ByteBuffer indexData = mesh.getIndexData();
+    int indexType = GLES20.GL_UNSIGNED_SHORT;
+    int[] submeshVertexOffsets = {0};
+    int[] submeshIndexOffsets = {0};
+    int[] submeshIndexCounts = {mesh.getIndexCount()};
+
+    if (mesh.getIndexSize() == MeshData.INDEX_SIZE_32) {
+      if (capabilities.supportsUnsignedIntIndices()) {
+        indexType = GLES20.GL_UNSIGNED_INT;
+      } else {
+        MeshSplitter.Packed split =
+            MeshSplitter.pack(
+                MeshSplitter.split(mesh, MeshData.MAX_16_BIT_VERTEX_COUNT),
+                vertexData,
+                QuantizedVertexData.VERTEX_STRIDE);
+        submeshVertexOffsets = split.getVertexOffsets();
+        submeshIndexOffsets = split.getIndexOffsets();
+        submeshIndexCounts = split.getIndexCounts();
+        vertexData = split.getVertexData();
+        indexData = split.getIndexData();
+      }
+    }
+
+    int[] buffers = new int[2];
+    gl.glGenBuffers(2, buffers, 0);
+
+    gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+    gl.glBufferData(
+        GLES20.GL_ARRAY_BUFFER, vertexData.remaining(), vertexData, GLES20.GL_STATIC_DRAW);
+    gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+    gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, buffers[1]);
+    gl.glBufferData(
+        GLES20.GL_ELEMENT_ARRAY_BUFFER, indexData.remaining(), indexData, GLES20.GL_STATIC_DRAW);
+    gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+    ShaderUtil.checkGLError(TAG, "Mesh buffer load");
+
+    return new GpuMesh(
+        assetName,
+        buffers[0],
+        buffers[1],
+        mesh.getIndexCount(),
+        indexType,
+        submeshVertexOffsets,
+        submeshIndexOffsets,
+        submeshIndexCounts,
+        (long) vertexData.remaining() + indexData.remaining(),
+        (long) mesh.getVertexData().remaining() - vertexData.remaining(),
+        vertices.getBounds(),
+        vertices);
+  }
+
+  void delete() {
+    GlStateCache glState = GlStateCache.getInstance();
+    if (vertexArrayIds != null) {
+      glState.deleteVertexArrays(vertexArrayIds);
+      vertexArrayIds = null;
+    }
+    glState.deleteBuffers(vertexBufferId, indexBufferId);
+  }
+
+  /**
+   * Returns the vertex array object of {@code submesh}, recording all of them on first use. Each
+   * one holds the index buffer and the quantized attributes of the submesh at {@link
+   * #POSITION_LOCATION}, {@link #NORMAL_LOCATION} and {@link #TEXCOORD_LOCATION}. The four columns
+   * of a per-instance matrix at {@link #MODEL_MATRIX_LOCATION} are enabled with a divisor of 1, but
+   * must be pointed at the instances before each draw. Requires OpenGL ES 3.0; must be called on
+   * the GL thread.
+   */
+  int getVertexArray(int submesh) {
+    if (vertexArrayIds == null) {
+      vertexArrayIds = new int[getSubmeshCount()];
+      gl.glGenVertexArrays(vertexArrayIds.length, vertexArrayIds, 0);
+      GlStateCache glState = GlStateCache.getInstance();
+      for (int i = 0; i < vertexArrayIds.length; ++i) {
+        recordVertexArray(glState, vertexArrayIds[i], submeshVertexOffsets[i]);
+      }
+      ShaderUtil.checkGLError(TAG, "Vertex array creation");
+    }
+    return vertexArrayIds[submesh];
+  }
+
+  private void recordVertexArray(GlStateCache glState, int vertexArray, int vertexOffset) {
+    glState.bindVertexArray(vertexArray);
+    glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferId);
+    gl.glVertexAttribPointer(
+        POSITION_LOCATION,
+        3,
+        GLES20.GL_SHORT,
+        true,
+        QuantizedVertexData.VERTEX_STRIDE,
+        vertexOffset + QuantizedVertexData.POSITION_OFFSET);
+    gl.glVertexAttribPointer(
+        NORMAL_LOCATION,
+        2,
+        GLES20.GL_SHORT,
+        true,
+        QuantizedVertexData.VERTEX_STRIDE,
+        vertexOffset + QuantizedVertexData.NORMAL_OFFSET);
+    gl.glVertexAttribPointer(
+        TEXCOORD_LOCATION,
+        2,
+        GLES20.GL_UNSIGNED_SHORT,
+        true,
+        QuantizedVertexData.VERTEX_STRIDE,
+        vertexOffset + QuantizedVertexData.TEXCOORD_OFFSET);
+    // Enabled arrays are vertex array state, so they are set directly rather than shadowed.
+    gl.glEnableVertexAttribArray(POSITION_LOCATION);
+    gl.glEnableVertexAttribArray(NORMAL_LOCATION);
+    gl.glEnableVertexAttribArray(TEXCOORD_LOCATION);
+    for (int column = 0; column < 4; ++column) {
+      gl.glEnableVertexAttribArray(MODEL_MATRIX_LOCATION + column);
+      gl.glVertexAttribDivisor(MODEL_MATRIX_LOCATION + column, 1);
+    }
+  }
+
+  public String getAssetName() {
+    return assetName;
+  }
+
+  public int getVertexBufferId() {
+    return vertexBufferId;
+  }
+
+  public int getIndexBufferId() {
+    return indexBufferId;
+  }
+
+  /** Number of indices in the index buffer. */
+  public int getIndexCount() {
+    return indexCount;
+  }
+
+  /** {@code GL_UNSIGNED_SHORT} or {@code GL_UNSIGNED_INT}. */
+  public int getIndexType() {
+    return indexType;
+  }
+
+  public int getSubmeshCount() {
+    return submeshIndexCounts.length;
+  }
+
+  /** Byte offset of the first vertex of {@code submesh}, to add to the attribute offsets. */
+  public int getSubmeshVertexOffset(int submesh) {
+    return submeshVertexOffsets[submesh];
+  }
+
+  /** Byte offset of the first index of {@code submesh}, for {@code glDrawElements}. */
+  public int getSubmeshIndexOffset(int submesh) {
+    return submeshIndexOffsets[submesh];
+  }
+
+  public int getSubmeshIndexCount(int submesh) {
+    return submeshIndexCounts[submesh];
+  }
+
+  /** Bytes of GPU memory used by both buffers. */
+  public long getByteSize() {
+    return byteSize;
+  }
+
+  /** Bytes of GPU memory saved by quantizing the vertices, compared to {@link MeshData} floats. */
+  public long getSavedByteSize() {
+    return savedByteSize;
+  }
+
+  /** Half the bounding box size per axis, for {@code u_PositionScale}. Do not modify. */
+  public float[] getPositionScale() {
+    return positionScale;
+  }
+
+  /** Bounding box center, for {@code u_PositionOffset}. Do not modify. */
+  public float[] getPositionOffset() {
+    return positionOffset;
+  }
+
+  /** UV range size in xy and minimum in zw, for {@code u_TexCoordScaleOffset}. Do not modify. */
+  public float[] getTexCoordScaleOffset() {
+    return texCoordScaleOffset;
+  }
+
+  /** Object-space bounds of the vertex positions, computed once at upload. */
+  public MeshBounds getBounds() {
+    return bounds;
+  }
+}
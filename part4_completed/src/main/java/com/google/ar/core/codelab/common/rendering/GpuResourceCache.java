@@ -0,0 +1,441 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference-counted GPU meshes and textures keyed by asset name, so renderers that draw the same
+ * model share one set of buffers and one texture. Every {@code acquire} must be balanced by a
+ * {@code release}; the GL objects are deleted when the last user releases them.
+ *
+ * <p>Like {@link ShaderLibrary}, the cache forgets its entries when {@link #getInstance} is called
+ * with a different current EGL context, since the objects died with the old context. All methods
+ * must be called on the GL thread.
+ *
+ * <p>A texture is read pre-compressed from a KTX file next to the image asset, with the same name
+ * and a {@code .ktx} extension, when one exists in a format the context supports. Otherwise the
+ * image itself is decoded. The codelab assets include no KTX files, so its models are decoded
+ * until one is added, for example {@code models/andy.ktx} encoded as ETC2 for every ES 3.0 device.
+ *
+ * <p>The {@code acquire...Async} variants load through an {@link AssetLoader} instead of blocking.
+ * Requests for an asset that is already loading share the one load. If a blocking {@code acquire}
+ * uploads the same asset while it loads, the cached copy wins and the late one is deleted.
+ */
+public final class GpuResourceCache {
+  private static final String TAG = GpuResourceCache.class.getSimpleName();
+
+  private static final String KTX_EXTENSION = ".ktx";
+
+  private static GpuResourceCache instance;
+
+  /** Reads the assets behind the cache; the app reads them from the assets of a {@link Context}. */
+  interface AssetSource {
+    /** Opens an asset file. Safe to call from any thread. */
+    InputStream open(String assetName) throws IOException;
+
+    /** Loads a level of detail of an OBJ asset, see {@link MeshCache#loadLod}. Any thread. */
+    MeshData loadMesh(String objAssetName, int lodLevel) throws IOException;
+  }
+
+  private final AssetSource assets;
+  private final Map<String, GpuMesh> meshes = new HashMap<>();
+  private final Map<String, GpuTexture> textures = new HashMap<>();
+  private final Map<String, List<AssetLoader.Callback<GpuMesh>>> pendingMeshes = new HashMap<>();
+  private final Map<String, List<AssetLoader.Callback<GpuTexture>>> pendingTextures =
+      new HashMap<>();
+  private Object glContext;
+  private GlCapabilities capabilities = GlCapabilities.es2();
+
+  private long meshBytes;
+  private long meshBytesSaved;
+  private long textureBytes;
+
+  /**
+   * Creates a cache of its own, bound to the current context of {@link GlBackend}. Tests use it to
+   * load assets from the source tree instead of the assets of a {@link Context}.
+   */
+  GpuResourceCache(AssetSource assets) {
+    this.assets = assets;
+    bindToCurrentContext();
+  }
+
+  /** Returns the shared cache, loading assets through {@code context}. */
+  public static synchronized GpuResourceCache getInstance(Context context) {
+    if (instance == null) {
+      Context applicationContext = context.getApplicationContext();
+      instance =
+          new GpuResourceCache(
+              new AssetSource() {
+                @Override
+                public InputStream open(String assetName) throws IOException {
+                  return applicationContext.getAssets().open(assetName);
+                }
+
+                @Override
+                public MeshData loadMesh(String objAssetName, int lodLevel) throws IOException {
+                  return MeshCache.loadLod(applicationContext, objAssetName, lodLevel);
+                }
+              });
+    }
+    instance.bindToCurrentContext();
+    return instance;
+  }
+
+  /**
+   * Returns the mesh for an OBJ asset, loading it through {@link MeshCache} and uploading it on
+   * first use.
+   */
+  public GpuMesh acquireMesh(String objAssetName) throws IOException {
+    return acquireMesh(objAssetName, /*lodLevel=*/ 0);
+  }
+
+  /**
+   * Returns level of detail {@code lodLevel} of an OBJ asset, loading it through {@link
+   * MeshCache#loadLod} and uploading it on first use. Level 0 is the mesh of {@link
+   * #acquireMesh(String)}.
+   */
+  public GpuMesh acquireMesh(String objAssetName, int lodLevel) throws IOException {
+    String key = meshKey(objAssetName, lodLevel);
+    GpuMesh mesh = meshes.get(key);
+    if (mesh == null) {
+      MeshData meshData = assets.loadMesh(objAssetName, lodLevel);
+      mesh = GpuMesh.upload(key, meshData, capabilities);
+      putMesh(mesh);
+    }
+    ++mesh.refCount;
+    return mesh;
+  }
+
+  /**
+   * Like {@link #acquireMesh(String, int)}, but parses the mesh on a background thread of {@code
+   * loader} and uploads it from {@link AssetLoader#drainUploads}. {@code callback} receives the
+   * acquired mesh on the GL thread, immediately if it is already cached.
+   */
+  public void acquireMeshAsync(
+      AssetLoader loader,
+      String objAssetName,
+      int lodLevel,
+      AssetLoader.Callback<GpuMesh> callback) {
+    String key = meshKey(objAssetName, lodLevel);
+    GpuMesh cached = meshes.get(key);
+    if (cached != null) {
+      ++cached.refCount;
+      callback.onLoaded(cached);
+      return;
+    }
+    List<AssetLoader.Callback<GpuMesh>> waiting = pendingMeshes.get(key);
+    if (waiting != null) {
+      waiting.add(callback);
+      return;
+    }
+    waiting = new ArrayList<>();
+    waiting.add(callback);
+    pendingMeshes.put(key, waiting);
+    GlCapabilities uploadCapabilities = capabilities;
+    loader.submit(
+        key,
+        new AssetLoader.Job<MeshData, GpuMesh>() {
+          @Override
+          public MeshData load() throws IOException {
+            return assets.loadMesh(objAssetName, lodLevel);
+          }
+
+          @Override
+          public GpuMesh upload(MeshData meshData) {
+            return GpuMesh.upload(key, meshData, uploadCapabilities);
+          }
+        },
+        new AssetLoader.Callback<GpuMesh>() {
+          @Override
+          public void onLoaded(GpuMesh mesh) {
+            List<AssetLoader.Callback<GpuMesh>> callbacks = pendingMeshes.remove(key);
+            if (callbacks == null) {
+              // The context was replaced while loading; nobody is waiting for this mesh.
+              mesh.delete();
+              return;
+            }
+            GpuMesh cached = meshes.get(key);
+            if (cached != null) {
+              // A blocking acquireMesh uploaded it meanwhile; its holders release that copy.
+              mesh.delete();
+              mesh = cached;
+            } else {
+              putMesh(mesh);
+            }
+            mesh.refCount += callbacks.size();
+            for (AssetLoader.Callback<GpuMesh> waiter : callbacks) {
+              waiter.onLoaded(mesh);
+            }
+          }
+
+          @Override
+          public void onFailed(IOException e) {
+            List<AssetLoader.Callback<GpuMesh>> callbacks = pendingMeshes.remove(key);
+            if (callbacks != null) {
+              for (AssetLoader.Callback<GpuMesh> waiter : callbacks) {
+                waiter.onFailed(e);
+              }
+            }
+          }
+        });
+  }
+
+  /** Returns the texture for an image asset, loading and uploading it on first use. */
+  public GpuTexture acquireTexture(String imageAssetName) throws IOException {
+    GpuTexture texture = textures.get(imageAssetName);
+    if (texture == null) {
+      texture = loadTexture(imageAssetName, capabilities).upload(imageAssetName);
+      putTexture(texture);
+    }
+    ++texture.refCount;
+    return texture;
+  }
+
+  /**
+   * Like {@link #acquireTexture}, but reads the texture on a background thread of {@code loader}
+   * and uploads it from {@link AssetLoader#drainUploads}. {@code callback} receives the acquired
+   * texture on the GL thread, immediately if it is already cached.
+   */
+  public void acquireTextureAsync(
+      AssetLoader loader, String imageAssetName, AssetLoader.Callback<GpuTexture> callback) {
+    GpuTexture cached = textures.get(imageAssetName);
+    if (cached != null) {
+      ++cached.refCount;
+      callback.onLoaded(cached);
+      return;
+    }
+    List<AssetLoader.Callback<GpuTexture>> waiting = pendingTextures.get(imageAssetName);
+    if (waiting != null) {
+      waiting.add(callback);
+      return;
+    }
+    waiting = new ArrayList<>();
+    waiting.add(callback);
+    pendingTextures.put(imageAssetName, waiting);
+    GlCapabilities uploadCapabilities = capabilities;
+    loader.submit(
+        imageAssetName,
+        new AssetLoader.Job<TextureSource, GpuTexture>() {
+          @Override
+          public TextureSource load() throws IOException {
+            return loadTexture(imageAssetName, uploadCapabilities);
+          }
+
+          @Override
+          public GpuTexture upload(TextureSource source) {
+            return source.upload(imageAssetName);
+          }
+        },
+        new AssetLoader.Callback<GpuTexture>() {
+          @Override
+          public void onLoaded(GpuTexture texture) {
+            List<AssetLoader.Callback<GpuTexture>> callbacks =
+                pendingTextures.remove(imageAssetName);
+            if (callbacks == null) {
+              // The context was replaced while loading; nobody is waiting for this texture.
+              texture.delete();
+              return;
+            }
+            GpuTexture cached = textures.get(imageAssetName);
+            if (cached != null) {
+              // A blocking acquireTexture uploaded it meanwhile; its holders release that copy.
+              texture.delete();
+              texture = cached;
+            } else {
+              putTexture(texture);
+            }
+            texture.refCount += callbacks.size();
+            for (AssetLoader.Callback<GpuTexture> waiter : callbacks) {
+              waiter.onLoaded(texture);
+            }
+          }
+
+          @Override
+          public void onFailed(IOException e) {
+            List<AssetLoader.Callback<GpuTexture>> callbacks =
+                pendingTextures.remove(imageAssetName);
+            if (callbacks != null) {
+              for (AssetLoader.Callback<GpuTexture> waiter : callbacks) {
+                waiter.onFailed(e);
+              }
+            }
+          }
+        });
+  }
+
+  /** Drops one reference to {@code mesh}, deleting its buffers if it was the last. */
+  public void release(GpuMesh mesh) {
+    if (mesh == null || mesh.refCount <= 0) {
+      return;
+    }
+    if (--mesh.refCount == 0 && meshes.get(mesh.getAssetName()) == mesh) {
+      meshes.remove(mesh.getAssetName());
+      meshBytes -= mesh.getByteSize();
+      meshBytesSaved -= mesh.getSavedByteSize();
+      mesh.delete();
+    }
+  }
+
+  /** Drops one reference to {@code texture}, deleting it if it was the last. */
+  public void release(GpuTexture texture) {
+    if (texture == null || texture.refCount <= 0) {
+      return;
+    }
+    if (--texture.refCount == 0 && textures.get(texture.getAssetName()) == texture) {
+      textures.remove(texture.getAssetName());
+      textureBytes -= texture.getByteSize();
+      texture.delete();
+    }
+  }
+
+  public int getMeshCount() {
+    return meshes.size();
+  }
+
+  public int getTextureCount() {
+    return textures.size();
+  }
+
+  /** Bytes of GPU memory held by cached vertex and index buffers. */
+  public long getMeshBytes() {
+    return meshBytes;
+  }
+
+  /** Bytes of GPU memory that vertex quantization saves across the cached meshes. */
+  public long getMeshBytesSaved() {
+    return meshBytesSaved;
+  }
+
+  /** Estimated bytes of GPU memory held by cached textures, including mipmaps. */
+  public long getTextureBytes() {
+    return textureBytes;
+  }
+
+  public long getTotalBytes() {
+    return meshBytes + textureBytes;
+  }
+
+  private static String meshKey(String objAssetName, int lodLevel) {
+    return lodLevel == 0 ? objAssetName : objAssetName + "#lod" + lodLevel;
+  }
+
+  private void putMesh(GpuMesh mesh) {
+    meshes.put(mesh.getAssetName(), mesh);
+    meshBytes += mesh.getByteSize();
+    meshBytesSaved += mesh.getSavedByteSize();
+  }
+
+  private void putTexture(GpuTexture texture) {
+    textures.put(texture.getAssetName(), texture);
+    textureBytes += texture.getByteSize();
+    Log.d(
+        TAG,
+        texture.getAssetName()
+            + ": "
+            + texture.getWidth()
+            + "x"
+            + texture.getHeight()
+            + (texture.isCompressed()
+                ? " compressed 0x" + Integer.toHexString(texture.getInternalFormat())
+                : " RGBA")
+            + ", "
+            + texture.getByteSize()
+            + " bytes");
+  }
+
+  /**
+   * Reads the KTX file next to {@code imageAssetName} if there is one that {@code capabilities}
+   * can sample, and decodes the image otherwise. Safe to call from any thread.
+   */
+  private TextureSource loadTexture(String imageAssetName, GlCapabilities capabilities)
+      throws IOException {
+    String ktxAssetName = getKtxAssetName(imageAssetName);
+    try (InputStream inputStream = assets.open(ktxAssetName)) {
+      KtxTexture ktx = KtxTexture.read(inputStream);
+      if (capabilities.supportsCompressedFormat(ktx.getInternalFormat())) {
+        return new TextureSource(ktx, capabilities);
+      }
+      Log.i(TAG, ktxAssetName + " uses an unsupported format; decoding " + imageAssetName);
+    } catch (FileNotFoundException e) {
+      // No compressed version; decode the image.
+    } catch (IOException e) {
+      Log.w(TAG, "Cannot read " + ktxAssetName + "; decoding " + imageAssetName, e);
+    }
+    return new TextureSource(decodeBitmap(imageAssetName));
+  }
+
+  /** Replaces the extension of {@code imageAssetName}, e.g. "models/andy.png", with ".ktx". */
+  private static String getKtxAssetName(String imageAssetName) {
+    int extension = imageAssetName.lastIndexOf('.');
+    if (extension <= imageAssetName.lastIndexOf('/')) {
+      return imageAssetName + KTX_EXTENSION;
+    }
+    return imageAssetName.substring(0, extension) + KTX_EXTENSION;
+  }
+
+  /** Decodes an image asset. Safe to call from any thread. */
+  private Bitmap decodeBitmap(String imageAssetName) throws IOException {
+    Bitmap bitmap;
+    try (InputStream inputStream = assets.open(imageAssetName)) {
+      bitmap = BitmapFactory.decodeStream(inputStream);
+    }
+    if (bitmap == null) {
+      throw new IOException("Cannot decode " + imageAssetName);
+    }
+    return bitmap;
+  }
+
+  /** Texture data ready for upload: a compressed KTX texture or a decoded bitmap. */
+  private static final class TextureSource {
+    private final KtxTexture ktx;
+    private final GlCapabilities capabilities;
+    private final Bitmap bitmap;
+
+    TextureSource(KtxTexture ktx, GlCapabilities capabilities) {
+      this.ktx = ktx;
+      this.capabilities = capabilities;
+      this.bitmap = null;
+    }
+
+    TextureSource(Bitmap bitmap) {
+      this.ktx = null;
+      this.capabilities = null;
+      this.bitmap = bitmap;
+    }
+
+    /** Uploads the data on the GL thread, recycling the bitmap if there is one. */
+    GpuTexture upload(String assetName) {
+      if (ktx != null) {
+        return GpuTexture.upload(assetName, ktx, capabilities);
+      }
+      GpuTexture texture = GpuTexture.upload(assetName, bitmap);
+      bitmap.recycle();
+      return texture;
+    }
+  }
+
+  private void bindToCurrentContext() {
+    Object current = GlBackend.get().getCurrentContext();
+    if (current != null && !current.equals(glContext)) {
+      // Objects from the previous context are gone with it; references to them are stale.
+      meshes.clear();
+      textures.clear();
+      pendingMeshes.clear();
+      pendingTextures.clear();
+      meshBytes = 0;
+      meshBytesSaved = 0;
+      textureBytes = 0;
+      glContext = current;
+      capabilities = GlCapabilities.query();
+    }
+  }
+}
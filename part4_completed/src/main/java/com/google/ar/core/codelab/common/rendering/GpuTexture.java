@@ -0,0 +1,160 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+/**
+ * A mipmapped 2D texture, decoded from an image asset or read pre-compressed from a KTX file, and
+ * shared through {@link GpuResourceCache}.
+ */
+public final class GpuTexture {
+  private static final String TAG = GpuTexture.class.getSimpleName();
+
+  private static final int BYTES_PER_TEXEL = 4;
+
+  private final String assetName;
+  private final int textureId;
+  private final int width;
+  private final int height;
+  private final int internalFormat;
+  private final long byteSize;
+  int refCount;
+
+  private GpuTexture(
+      String assetName, int textureId, int width, int height, int internalFormat, long byteSize) {
+    this.assetName = assetName;
+    this.textureId = textureId;
+    this.width = width;
+    this.height = height;
+    this.internalFormat = internalFormat;
+    this.byteSize = byteSize;
+  }
+
+  /**
+   * Uploads {@code bitmap} into a new texture with trilinear filtering. Must be called on the GL
+   * thread. The bitmap is not recycled.
+   */
+  static GpuTexture upload(String assetName, Bitmap bitmap) {
+    Gl gl = GlBackend.get();
+    int textureId = createTexture();
+    gl.glTexParameteri(
+        GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
+    gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+    gl.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+    gl.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+    gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+    ShaderUtil.checkGLError(TAG, "Texture loading");
+
+    // The full mipmap chain adds about one third to the base level.
+    long baseLevel = (long) bitmap.getWidth() * bitmap.getHeight() * BYTES_PER_TEXEL;
+    return new GpuTexture(
+        assetName,
+        textureId,
+        bitmap.getWidth(),
+        bitmap.getHeight(),
+        GLES20.GL_RGBA,
+        baseLevel + baseLevel / 3);
+  }
+
+  /**
+   * Uploads the stored mip levels of {@code ktx} as they are, without decoding or generating
+   * mipmaps. Must be called on the GL thread, and {@code capabilities} must support the format.
+   *
+   * <p>A texture without a complete mipmap chain is sampled from its stored levels only on
+   * OpenGL ES 3.0, and from level 0 with bilinear filtering otherwise.
+   */
+  static GpuTexture upload(String assetName, KtxTexture ktx, GlCapabilities capabilities) {
+    Gl gl = GlBackend.get();
+    int internalFormat = ktx.getInternalFormat();
+    if (internalFormat == KtxTexture.ETC1_RGB8
+        && !capabilities.hasExtension("GL_OES_compressed_ETC1_RGB8_texture")) {
+      // ES 3.0 without the ETC1 extension still decodes the same blocks as ETC2.
+      internalFormat = KtxTexture.ETC2_RGB8;
+    }
+
+    int textureId = createTexture();
+    int levelCount = ktx.getLevelCount();
+    for (int level = 0; level < levelCount; ++level) {
+      gl.glCompressedTexImage2D(
+          GLES20.GL_TEXTURE_2D,
+          level,
+          internalFormat,
+          Math.max(ktx.getWidth() >> level, 1),
+          Math.max(ktx.getHeight() >> level, 1),
+          /*border=*/ 0,
+          ktx.getLevel(level).remaining(),
+          ktx.getLevel(level));
+    }
+
+    int minFilter = GLES20.GL_LINEAR_MIPMAP_LINEAR;
+    if (!ktx.hasFullMipChain()) {
+      if (capabilities.isEs3()) {
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MAX_LEVEL, levelCount - 1);
+      } else {
+        minFilter = GLES20.GL_LINEAR;
+      }
+    }
+    gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, minFilter);
+    gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+    gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+    ShaderUtil.checkGLError(TAG, "Compressed texture loading");
+
+    return new GpuTexture(
+        assetName,
+        textureId,
+        ktx.getWidth(),
+        ktx.getHeight(),
+        internalFormat,
+        ktx.getByteSize());
+  }
+
+  /** Generates a texture and leaves it bound to {@code GL_TEXTURE_2D} on unit 0. */
+  private static int createTexture() {
+    Gl gl = GlBackend.get();
+    final int[] textures = new int[1];
+    gl.glActiveTexture(GLES20.GL_TEXTURE0);
+    gl.glGenTextures(textures.length, textures, 0);
+    gl.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
+    return textures[0];
+  }
+
+  void delete() {
+    GlStateCache.getInstance().deleteTexture(textureId);
+  }
+
+  public String getAssetName() {
+    return assetName;
+  }
+
+  public int getTextureId() {
+    return textureId;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /** {@code GL_RGBA} for decoded images, or the compressed format of a KTX texture. */
+  public int getInternalFormat() {
+    return internalFormat;
+  }
+
+  public boolean isCompressed() {
+    return internalFormat != GLES20.GL_RGBA;
+  }
+
+  /**
+   * Bytes of GPU memory. Exact for compressed textures; for decoded images, estimated with the
+   * generated mipmap chain counted as one third extra.
+   */
+  public long getByteSize() {
+    return byteSize;
+  }
+}
@@ -0,0 +1,182 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLES20;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Per-instance model matrices for instanced drawing. Matrices are collected on the CPU each frame
+ * with {@link #add}, then streamed into one dynamic vertex buffer and exposed as a {@code mat4}
+ * attribute with a divisor of 1. Storage only grows, so a steady instance count does not allocate.
+ *
+ * <p>Each instance also carries a level of detail. {@link #upload} groups the matrices by level, so
+ * every level can be drawn with one instanced call starting at {@link #getLevelFirst}.
+ */
+final class InstanceBuffer {
+  private static final int FLOATS_PER_MATRIX = 16;
+  private static final int BYTES_PER_MATRIX = FLOATS_PER_MATRIX * 4;
+  private static final int INITIAL_CAPACITY = 16;
+  static final int MAX_LEVELS = 8;
+
+  private float[] matrices = new float[INITIAL_CAPACITY * FLOATS_PER_MATRIX];
+  private int[] levels = new int[INITIAL_CAPACITY];
+  private final int[] levelFirst = new int[MAX_LEVELS];
+  private final int[] levelCount = new int[MAX_LEVELS];
+  private FloatBuffer uploadBuffer = allocate(INITIAL_CAPACITY);
+  private int count;
+
+  private Gl gl;
+  private GlStateCache glState;
+  private int bufferId;
+  private int bufferCapacity;
+
+  /** Creates the GL buffer. Must be called on the GL thread. */
+  void createOnGlThread() {
+    gl = GlBackend.get();
+    glState = GlStateCache.getInstance();
+    int[] buffers = new int[1];
+    gl.glGenBuffers(1, buffers, 0);
+    bufferId = buffers[0];
+    bufferCapacity = 0;
+  }
+
+  void clear() {
+    count = 0;
+  }
+
+  /**
+   * Appends {@code modelMatrix} scaled uniformly by {@code scaleFactor}, the same transform that
+   * the renderers' {@code updateModelMatrix} builds. The matrix is read from {@code
+   * modelMatrix[offset]} onwards.
+   */
+  void add(float[] modelMatrix, int offset, float scaleFactor) {
+    int required = (count + 1) * FLOATS_PER_MATRIX;
+    if (required > matrices.length) {
+      float[] grown = new float[matrices.length * 2];
+      System.arraycopy(matrices, 0, grown, 0, count * FLOATS_PER_MATRIX);
+      matrices = grown;
+      int[] grownLevels = new int[levels.length * 2];
+      System.arraycopy(levels, 0, grownLevels, 0, count);
+      levels = grownLevels;
+    }
+    int destination = count * FLOATS_PER_MATRIX;
+    // Multiplying by a scale matrix on the right scales the first three columns.
+    for (int i = 0; i < 12; ++i) {
+      matrices[destination + i] = modelMatrix[offset + i] * scaleFactor;
+    }
+    for (int i = 12; i < FLOATS_PER_MATRIX; ++i) {
+      matrices[destination + i] = modelMatrix[offset + i];
+    }
+    levels[count] = 0;
+    ++count;
+  }
+
+  /** Sets the level of detail of instance {@code index}, from 0 to {@link #MAX_LEVELS} - 1. */
+  void setLevel(int index, int level) {
+    levels[index] = level;
+  }
+
+  int getLevel(int index) {
+    return levels[index];
+  }
+
+  /** Index of the first uploaded instance of {@code level}; valid after {@link #upload}. */
+  int getLevelFirst(int level) {
+    return levelFirst[level];
+  }
+
+  /** Number of uploaded instances of {@code level}; valid after {@link #upload}. */
+  int getLevelCount(int level) {
+    return levelCount[level];
+  }
+
+  /** Returns the column-major matrix of instance {@code index}, starting at the returned index. */
+  int getMatrixOffset(int index) {
+    return index * FLOATS_PER_MATRIX;
+  }
+
+  /** Backing array of {@link #getMatrixOffset}. Do not modify. */
+  float[] getMatrices() {
+    return matrices;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  /** Streams the collected matrices into the GL buffer, grouped by level of detail. */
+  void upload() {
+    if (uploadBuffer.capacity() < count * FLOATS_PER_MATRIX) {
+      uploadBuffer = allocate(matrices.length / FLOATS_PER_MATRIX);
+    }
+    // Counting sort: most frames use one or two levels, and the order within a level is kept.
+    for (int level = 0; level < MAX_LEVELS; ++level) {
+      levelCount[level] = 0;
+    }
+    for (int i = 0; i < count; ++i) {
+      ++levelCount[levels[i]];
+    }
+    int first = 0;
+    for (int level = 0; level < MAX_LEVELS; ++level) {
+      levelFirst[level] = first;
+      first += levelCount[level];
+    }
+    uploadBuffer.clear();
+    for (int level = 0; level < MAX_LEVELS; ++level) {
+      if (levelCount[level] == 0) {
+        continue;
+      }
+      for (int i = 0; i < count; ++i) {
+        if (levels[i] == level) {
+          uploadBuffer.put(matrices, i * FLOATS_PER_MATRIX, FLOATS_PER_MATRIX);
+        }
+      }
+    }
+    uploadBuffer.flip();
+
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, bufferId);
+    if (count > bufferCapacity) {
+      bufferCapacity = uploadBuffer.capacity() / FLOATS_PER_MATRIX;
+    }
+    // Respecifying the storage orphans last frame's contents, so the driver does not have to wait
+    // for the draw that still reads them.
+    gl.glBufferData(
+        GLES20.GL_ARRAY_BUFFER, bufferCapacity * BYTES_PER_MATRIX, null, GLES20.GL_DYNAMIC_DRAW);
+    gl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, count * BYTES_PER_MATRIX, uploadBuffer);
+  }
+
+  /**
+   * Points the four column attributes starting at {@code location} at the matrices uploaded from
+   * {@code firstInstance} on. The columns must already be enabled with a divisor of 1, as in the
+   * vertex arrays of {@link GpuMesh}, which must be bound. ES 3.0 has no base instance, so the
+   * offset goes into the attribute pointer instead.
+   */
+  void setModelMatrixPointer(int location, int firstInstance) {
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, bufferId);
+    for (int column = 0; column < 4; ++column) {
+      gl.glVertexAttribPointer(
+          location + column,
+          4,
+          GLES20.GL_FLOAT,
+          false,
+          BYTES_PER_MATRIX,
+          firstInstance * BYTES_PER_MATRIX + column * 4 * 4);
+    }
+  }
+
+  /** Deletes the GL buffer. */
+  void release() {
+    if (bufferId != 0) {
+      glState.deleteBuffers(bufferId);
+      bufferId = 0;
+      bufferCapacity = 0;
+    }
+  }
+
+  private static FloatBuffer allocate(int matrixCount) {
+    return ByteBuffer.allocateDirect(matrixCount * BYTES_PER_MATRIX)
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+  }
+}
@@ -0,0 +1,241 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A block-compressed 2D texture read from a KTX 1.1 container, ready for {@code
+ * glCompressedTexImage2D}. The layout is:
+ *
+ * <pre>
+ *   byte[12] identifier ("«KTX 11»\r\n\x1A\n")
+ *   int      endianness (0x04030201 in the writer's order)
+ *   int      glType, glTypeSize, glFormat, glInternalFormat, glBaseInternalFormat
+ *   int      pixelWidth, pixelHeight, pixelDepth
+ *   int      numberOfArrayElements, numberOfFaces, numberOfMipmapLevels
+ *   int      bytesOfKeyValueData, followed by that many bytes
+ *   for each mip level: int imageSize, imageSize bytes, padding to a multiple of 4
+ * </pre>
+ *
+ * <p>Only single-face, non-array 2D textures in one of the formats of {@link #getBlockWidth} are
+ * accepted. This class does not depend on Android or OpenGL.
+ */
+public final class KtxTexture {
+  /** {@code GL_ETC1_RGB8_OES}, from {@code GL_OES_compressed_ETC1_RGB8_texture}. */
+  public static final int ETC1_RGB8 = 0x8D64;
+  /** {@code GL_COMPRESSED_RGB8_ETC2}, core in OpenGL ES 3.0. */
+  public static final int ETC2_RGB8 = 0x9274;
+  /** {@code GL_COMPRESSED_RGBA8_ETC2_EAC}, core in OpenGL ES 3.0. */
+  public static final int ETC2_RGBA8_EAC = 0x9278;
+  /** {@code GL_COMPRESSED_RGBA_ASTC_4x4_KHR}, from {@code GL_KHR_texture_compression_astc_ldr}. */
+  public static final int ASTC_4X4_RGBA = 0x93B0;
+
+  private static final byte[] IDENTIFIER = {
+    (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+  };
+  private static final int ENDIANNESS = 0x04030201;
+  static final int HEADER_SIZE = IDENTIFIER.length + 13 * 4;
+
+  private static final int INITIAL_READ_CAPACITY = 64 * 1024;
+
+  private final int internalFormat;
+  private final int width;
+  private final int height;
+  private final List<ByteBuffer> levels;
+
+  private KtxTexture(int internalFormat, int width, int height, List<ByteBuffer> levels) {
+    this.internalFormat = internalFormat;
+    this.width = width;
+    this.height = height;
+    this.levels = Collections.unmodifiableList(levels);
+  }
+
+  /**
+   * Reads a whole KTX stream into a direct buffer and parses it. The stream is not closed.
+   *
+   * @throws IOException If reading fails or the data is not a supported KTX texture.
+   */
+  public static KtxTexture read(InputStream in) throws IOException {
+    ReadableByteChannel channel = Channels.newChannel(in);
+    ByteBuffer data = ByteBuffer.allocateDirect(INITIAL_READ_CAPACITY);
+    while (channel.read(data) >= 0) {
+      if (!data.hasRemaining()) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(data.capacity() * 2);
+        data.flip();
+        grown.put(data);
+        data = grown;
+      }
+    }
+    data.flip();
+    return parse(data);
+  }
+
+  /**
+   * Parses a KTX texture. The mip levels share memory with {@code data}.
+   *
+   * @throws IOException If the data is truncated, malformed, or not a supported texture.
+   */
+  public static KtxTexture parse(ByteBuffer data) throws IOException {
+    ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (header.remaining() < HEADER_SIZE) {
+      throw new IOException("KTX texture too short: " + header.remaining() + " bytes");
+    }
+    for (byte expected : IDENTIFIER) {
+      if (header.get() != expected) {
+        throw new IOException("Not a KTX 1.1 texture");
+      }
+    }
+    int endianness = header.getInt();
+    if (endianness == Integer.reverseBytes(ENDIANNESS)) {
+      header.order(ByteOrder.BIG_ENDIAN);
+    } else if (endianness != ENDIANNESS) {
+      throw new IOException("Invalid KTX endianness 0x" + Integer.toHexString(endianness));
+    }
+    int glType = header.getInt();
+    header.getInt(); // glTypeSize, 1 for compressed data.
+    int glFormat = header.getInt();
+    int internalFormat = header.getInt();
+    header.getInt(); // glBaseInternalFormat, implied by the internal format.
+    int width = header.getInt();
+    int height = header.getInt();
+    int depth = header.getInt();
+    int arrayElements = header.getInt();
+    int faces = header.getInt();
+    int levelCount = header.getInt();
+    int keyValueBytes = header.getInt();
+
+    if (glType != 0 || glFormat != 0) {
+      throw new IOException("KTX texture is not block-compressed");
+    }
+    if (getBlockWidth(internalFormat) == 0) {
+      throw new IOException("Unsupported KTX format 0x" + Integer.toHexString(internalFormat));
+    }
+    if (width <= 0 || height <= 0 || depth != 0 || arrayElements != 0 || faces != 1) {
+      throw new IOException("KTX texture is not a single 2D image");
+    }
+    // Zero levels asks the loader to generate mipmaps, which compressed formats cannot do.
+    levelCount = Math.max(levelCount, 1);
+    if (levelCount > getFullMipCount(width, height)) {
+      throw new IOException("KTX texture has " + levelCount + " mip levels");
+    }
+    if (keyValueBytes < 0 || keyValueBytes > header.remaining()) {
+      throw new IOException("KTX texture truncated");
+    }
+    header.position(header.position() + keyValueBytes);
+
+    List<ByteBuffer> levels = new ArrayList<>(levelCount);
+    for (int level = 0; level < levelCount; ++level) {
+      if (header.remaining() < 4) {
+        throw new IOException("KTX texture truncated");
+      }
+      int imageSize = header.getInt();
+      int levelWidth = Math.max(width >> level, 1);
+      int levelHeight = Math.max(height >> level, 1);
+      long expectedSize = getImageSize(internalFormat, levelWidth, levelHeight);
+      if (imageSize != expectedSize) {
+        throw new IOException(
+            "KTX level " + level + " has " + imageSize + " bytes, expected " + expectedSize);
+      }
+      if (header.remaining() < imageSize) {
+        throw new IOException("KTX texture truncated");
+      }
+      ByteBuffer image = header.duplicate();
+      image.limit(image.position() + imageSize);
+      levels.add(image.slice().order(ByteOrder.nativeOrder()));
+      int padding = 3 - ((imageSize + 3) % 4);
+      header.position(Math.min(header.position() + imageSize + padding, header.limit()));
+    }
+    return new KtxTexture(internalFormat, width, height, levels);
+  }
+
+  /** Width in texels of one compressed block of {@code internalFormat}, or 0 if unsupported. */
+  public static int getBlockWidth(int internalFormat) {
+    switch (internalFormat) {
+      case ETC1_RGB8:
+      case ETC2_RGB8:
+      case ETC2_RGBA8_EAC:
+      case ASTC_4X4_RGBA:
+        return 4;
+      default:
+        return 0;
+    }
+  }
+
+  /** Bytes of one compressed block of {@code internalFormat}, or 0 if unsupported. */
+  public static int getBlockBytes(int internalFormat) {
+    switch (internalFormat) {
+      case ETC1_RGB8:
+      case ETC2_RGB8:
+        return 8;
+      case ETC2_RGBA8_EAC:
+      case ASTC_4X4_RGBA:
+        return 16;
+      default:
+        return 0;
+    }
+  }
+
+  /** Bytes of a {@code width} by {@code height} image; all supported blocks are square. */
+  public static long getImageSize(int internalFormat, int width, int height) {
+    int block = getBlockWidth(internalFormat);
+    if (block == 0) {
+      return 0;
+    }
+    long blocksWide = (width + block - 1) / block;
+    long blocksHigh = (height + block - 1) / block;
+    return blocksWide * blocksHigh * getBlockBytes(internalFormat);
+  }
+
+  /** Number of levels in a complete mipmap chain down to 1x1. */
+  public static int getFullMipCount(int width, int height) {
+    int size = Math.max(width, height);
+    int count = 1;
+    while (size > 1) {
+      size >>= 1;
+      ++count;
+    }
+    return count;
+  }
+
+  public int getInternalFormat() {
+    return internalFormat;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getLevelCount() {
+    return levels.size();
+  }
+
+  /** Whether the texture stores every level down to 1x1, so it can be sampled with mipmaps. */
+  public boolean hasFullMipChain() {
+    return levels.size() == getFullMipCount(width, height);
+  }
+
+  /** Compressed data of mip level {@code level}, positioned at its start. */
+  public ByteBuffer getLevel(int level) {
+    return levels.get(level).duplicate();
+  }
+
+  /** Total bytes of compressed data across all levels. */
+  public long getByteSize() {
+    long size = 0;
+    for (ByteBuffer level : levels) {
+      size += level.remaining();
+    }
+    return size;
+  }
+}
@@ -0,0 +1,76 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import com.google.ar.core.codelab.common.math.Mat4;
+
+/**
+ * Picks a level of detail for a mesh instance from its size on screen. The size is the projected
+ * diameter of the instance's bounding sphere as a fraction of the viewport height; level {@code i}
+ * is used while the size is at least {@code screenSizes[i]}, and the last level below all
+ * thresholds.
+ */
+final class LodSelector {
+  /** Thresholds for {@link #LEVEL_COUNT} levels: full detail down to a quarter of the screen. */
+  static final float[] DEFAULT_SCREEN_SIZES = {0.25f, 0.1f, 0.04f};
+
+  static final int LEVEL_COUNT = DEFAULT_SCREEN_SIZES.length + 1;
+
+  private float[] screenSizes = DEFAULT_SCREEN_SIZES;
+
+  /**
+   * Sets the screen size thresholds, in decreasing order. Levels beyond {@code screenSizes.length}
+   * are not used.
+   */
+  void setScreenSizes(float[] screenSizes) {
+    for (int i = 1; i < screenSizes.length; ++i) {
+      if (screenSizes[i] > screenSizes[i - 1]) {
+        throw new IllegalArgumentException("Screen sizes must be in decreasing order");
+      }
+    }
+    this.screenSizes = screenSizes.clone();
+  }
+
+  /**
+   * Returns the level for an instance, between 0 and {@code levelCount - 1}.
+   *
+   * @param modelMatrices Array holding the scaled model matrix of the instance at {@code offset}.
+   * @param offset Index of the matrix in {@code modelMatrices}.
+   * @param bounds Object-space bounds of the full-detail mesh.
+   * @param viewMatrix 4x4 view matrix, column-major.
+   * @param projectionMatrix 4x4 perspective projection matrix, column-major.
+   * @param levelCount Number of available levels.
+   */
+  int select(
+      float[] modelMatrices,
+      int offset,
+      MeshBounds bounds,
+      float[] viewMatrix,
+      float[] projectionMatrix,
+      int levelCount) {
+    float[] m = modelMatrices;
+    float cx = bounds.getCenter(0);
+    float cy = bounds.getCenter(1);
+    float cz = bounds.getCenter(2);
+    float worldX = m[offset] * cx + m[offset + 4] * cy + m[offset + 8] * cz + m[offset + 12];
+    float worldY = m[offset + 1] * cx + m[offset + 5] * cy + m[offset + 9] * cz + m[offset + 13];
+    float worldZ = m[offset + 2] * cx + m[offset + 6] * cy + m[offset + 10] * cz + m[offset + 14];
+    // The camera looks down -z, so the distance in front of it is the negated view-space z.
+    float viewZ =
+        viewMatrix[2] * worldX + viewMatrix[6] * worldY + viewMatrix[10] * worldZ + viewMatrix[14];
+    float distance = -viewZ;
+    float radius = bounds.getRadius() * Mat4.getMaxAxisScale(m, offset);
+    if (distance <= radius) {
+      // The camera is inside or right next to the sphere.
+      return 0;
+    }
+    // projectionMatrix[5] maps a view-space height at unit distance to half the viewport height.
+    float screenSize = radius * projectionMatrix[5] / distance;
+
+    int lastLevel = Math.min(levelCount - 1, screenSizes.length);
+    for (int level = 0; level < lastLevel; ++level) {
+      if (screenSize >= screenSizes[level]) {
+        return level;
+      }
+    }
+    return lastLevel;
+  }
+}
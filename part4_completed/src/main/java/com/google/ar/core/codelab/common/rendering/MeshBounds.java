@@ -0,0 +1,82 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Object-space bounding volumes of a {@link MeshData}: an axis-aligned box and a sphere around the
+ * box center that encloses every vertex. Used by {@link FrustumCuller} to reject instances before
+ * any GL call.
+ */
+public final class MeshBounds {
+  private final float[] min;
+  private final float[] max;
+  private final float[] center;
+  private final float radius;
+
+  MeshBounds(float[] min, float[] max, float[] center, float radius) {
+    this.min = min;
+    this.max = max;
+    this.center = center;
+    this.radius = radius;
+  }
+
+  /** Computes the bounds of all vertex positions in {@code mesh}. */
+  public static MeshBounds compute(MeshData mesh) {
+    ByteBuffer vertexData = mesh.getVertexData();
+    int base = vertexData.position() + MeshData.POSITION_OFFSET;
+    int vertexCount = mesh.getVertexCount();
+    if (vertexCount == 0) {
+      return new MeshBounds(new float[3], new float[3], new float[3], 0.0f);
+    }
+
+    float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+    float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    for (int i = 0; i < vertexCount; ++i) {
+      int position = base + i * MeshData.VERTEX_STRIDE;
+      for (int axis = 0; axis < 3; ++axis) {
+        float value = vertexData.getFloat(position + axis * 4);
+        min[axis] = Math.min(min[axis], value);
+        max[axis] = Math.max(max[axis], value);
+      }
+    }
+
+    float[] center = new float[3];
+    for (int axis = 0; axis < 3; ++axis) {
+      center[axis] = (min[axis] + max[axis]) * 0.5f;
+    }
+    // Half the box diagonal also encloses the mesh, but the farthest vertex is usually closer.
+    float radiusSquared = 0.0f;
+    for (int i = 0; i < vertexCount; ++i) {
+      int position = base + i * MeshData.VERTEX_STRIDE;
+      float dx = vertexData.getFloat(position) - center[0];
+      float dy = vertexData.getFloat(position + 4) - center[1];
+      float dz = vertexData.getFloat(position + 8) - center[2];
+      radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+    }
+    return new MeshBounds(min, max, center, (float) Math.sqrt(radiusSquared));
+  }
+
+  /** Coordinate {@code axis} (0 to 2) of the box minimum. */
+  public float getMin(int axis) {
+    return min[axis];
+  }
+
+  /** Coordinate {@code axis} (0 to 2) of the box maximum. */
+  public float getMax(int axis) {
+    return max[axis];
+  }
+
+  /** Coordinate {@code axis} (0 to 2) of the box and sphere center. */
+  public float getCenter(int axis) {
+    return center[axis];
+  }
+
+  /** Half the box size along {@code axis} (0 to 2). */
+  public float getExtent(int axis) {
+    return (max[axis] - min[axis]) * 0.5f;
+  }
+
+  public float getRadius() {
+    return radius;
+  }
+}
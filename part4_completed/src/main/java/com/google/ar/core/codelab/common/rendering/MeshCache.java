@@ -0,0 +1,157 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Loads OBJ assets through a {@link BinaryMeshFormat} cache. The first run parses the OBJ,
+ * reorders it with {@link MeshOptimizer}, quantizes it and writes the binary form; later runs
+ * memory-map it, so OBJ parsing, {@code convertToRenderable}, reordering and quantization are
+ * skipped. The cache lives in the code
+ * cache directory, which Android clears when the app (and with it the assets) is updated.
+ *
+ * <p>Simplified levels of detail from {@link #loadLod} are cached the same way, next to the full
+ * mesh.
+ */
+public final class MeshCache {
+  private static final String TAG = MeshCache.class.getSimpleName();
+
+  private static final String DIRECTORY = "meshes";
+  private static final String FILE_SUFFIX = ".mesh";
+  private static final String LOD_SUFFIX = ".lod";
+
+  // Each level keeps about half the triangles of the previous one, and may deviate from the full
+  // mesh by this fraction of its bounding radius per level.
+  private static final float LOD_ERROR_PER_LEVEL = 0.02f;
+
+  private MeshCache() {}
+
+  /**
+   * Returns the renderable mesh for an OBJ asset.
+   *
+   * @param context Context for the assets and the cache directory.
+   * @param objAssetName Name of the OBJ file containing the model geometry.
+   */
+  public static MeshData load(Context context, String objAssetName) throws IOException {
+    File file = cacheFile(context, objAssetName);
+    MeshData cached = mapIfPresent(file);
+    if (cached != null) {
+      return cached;
+    }
+
+    MeshData mesh;
+    try (InputStream objInputStream = context.getAssets().open(objAssetName)) {
+      mesh = optimize(objAssetName, MeshData.readObj(objInputStream));
+    }
+    try {
+      write(mesh, file);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write mesh cache " + file, e);
+    }
+    return mesh;
+  }
+
+  /**
+   * Returns a simplified version of an OBJ asset for level of detail {@code level}. Level 0 is the
+   * full mesh; level {@code n} targets {@code 1 / 2^n} of its triangles.
+   *
+   * @param context Context for the assets and the cache directory.
+   * @param objAssetName Name of the OBJ file containing the model geometry.
+   * @param level Level of detail, 0 or more.
+   */
+  public static MeshData loadLod(Context context, String objAssetName, int level)
+      throws IOException {
+    if (level == 0) {
+      return load(context, objAssetName);
+    }
+    File file = cacheFile(context, objAssetName + LOD_SUFFIX + level);
+    MeshData cached = mapIfPresent(file);
+    if (cached != null) {
+      return cached;
+    }
+
+    MeshData full = load(context, objAssetName);
+    float maxError =
+        full.getQuantizedVertices().getBounds().getRadius() * LOD_ERROR_PER_LEVEL * level;
+    MeshSimplifier.Result result =
+        MeshSimplifier.simplify(full, (full.getIndexCount() >> level) / 3 * 3, maxError);
+    Log.d(
+        TAG,
+        objAssetName
+            + " LOD "
+            + level
+            + ": "
+            + full.getIndexCount() / 3
+            + " -> "
+            + result.getMesh().getIndexCount() / 3
+            + " triangles, error "
+            + result.getError());
+    MeshData lod = optimize(objAssetName + LOD_SUFFIX + level, result.getMesh());
+    try {
+      write(lod, file);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write mesh cache " + file, e);
+    }
+    return lod;
+  }
+
+  /** Memory-maps a binary mesh file. The mapping stays valid after the file is closed. */
+  public static MeshData map(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return BinaryMeshFormat.read(data);
+    }
+  }
+
+  /**
+   * Writes a binary mesh file. The data goes to a temporary file that is renamed over {@code file},
+   * so readers never see a partial mesh.
+   */
+  public static void write(MeshData mesh, File file) throws IOException {
+    AtomicFileWriter.write(file, file.getName(), out -> BinaryMeshFormat.write(mesh, out));
+  }
+
+  /** Runs {@link MeshOptimizer#optimize} and logs the cache miss ratios before and after. */
+  private static MeshData optimize(String name, MeshData mesh) {
+    float acmrBefore = MeshOptimizer.computeAcmr(mesh);
+    MeshData optimized = MeshOptimizer.optimize(mesh);
+    int savedBytesPerVertex = MeshData.VERTEX_STRIDE - QuantizedVertexData.VERTEX_STRIDE;
+    Log.d(
+        TAG,
+        name
+            + ": ACMR "
+            + acmrBefore
+            + " -> "
+            + MeshOptimizer.computeAcmr(optimized)
+            + ", quantized vertices save "
+            + optimized.getVertexCount() * savedBytesPerVertex
+            + " bytes");
+    return optimized;
+  }
+
+  private static File cacheFile(Context context, String name) {
+    return new File(
+        new File(context.getCodeCacheDir(), DIRECTORY), name.replace('/', '_') + FILE_SUFFIX);
+  }
+
+  /** Maps {@code file} if it exists, deleting it and returning null if it cannot be read. */
+  private static MeshData mapIfPresent(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      return map(file);
+    } catch (IOException e) {
+      Log.w(TAG, "Discarding unreadable mesh cache " + file, e);
+      file.delete();
+      return null;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjData;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Triangulated, single-indexed mesh ready to be copied into GL buffers. Vertices are interleaved as
+ * position (3 floats), normal (3 floats) and texture coordinate (2 floats). Indices are unsigned
+ * shorts, or unsigned ints when there are more vertices than 16 bits can address. Both buffers are
+ * in native byte order and may be views of a memory-mapped file.
+ */
+public final class MeshData {
+  public static final int POSITION_OFFSET = 0;
+  public static final int NORMAL_OFFSET = 3 * 4;
+  public static final int TEXCOORD_OFFSET = 6 * 4;
+  public static final int VERTEX_STRIDE = 8 * 4;
+  public static final int INDEX_SIZE_16 = 2;
+  public static final int INDEX_SIZE_32 = 4;
+
+  /** Largest vertex count that 16-bit indices can address. */
+  public static final int MAX_16_BIT_VERTEX_COUNT = 0x10000;
+
+  private final ByteBuffer vertexData;
+  private final ByteBuffer indexData;
+  private final int indexSize;
+  private final int vertexCount;
+  private final int indexCount;
+  // Computed on first use unless the mesh was read with it.
+  private QuantizedVertexData quantizedVertices;
+
+  MeshData(ByteBuffer vertexData, ByteBuffer indexData, int indexSize) {
+    this(vertexData, indexData, indexSize, null);
+  }
+
+  /**
+   * @param quantizedVertices The vertices of {@code vertexData} in the GPU layout, or null to
+   *     quantize them when first needed.
+   */
+  MeshData(
+      ByteBuffer vertexData,
+      ByteBuffer indexData,
+      int indexSize,
+      QuantizedVertexData quantizedVertices) {
+    this.vertexData = vertexData;
+    this.indexData = indexData;
+    this.indexSize = indexSize;
+    this.vertexCount = vertexData.remaining() / VERTEX_STRIDE;
+    this.indexCount = indexData.remaining() / indexSize;
+    this.quantizedVertices = quantizedVertices;
+  }
+
+  /**
+   * Creates a mesh from interleaved vertices and an index array, using 16-bit indices whenever the
+   * vertex count allows.
+   */
+  static MeshData create(ByteBuffer vertexData, int[] indices) {
+    int vertexCount = vertexData.remaining() / VERTEX_STRIDE;
+    int indexSize = vertexCount > MAX_16_BIT_VERTEX_COUNT ? INDEX_SIZE_32 : INDEX_SIZE_16;
+    ByteBuffer indexData =
+        ByteBuffer.allocateDirect(indices.length * indexSize).order(ByteOrder.nativeOrder());
+    for (int index : indices) {
+      if (indexSize == INDEX_SIZE_32) {
+        indexData.putInt(index);
+      } else {
+        indexData.putShort((short) index);
+      }
+    }
+    indexData.flip();
+    return new MeshData(vertexData, indexData, indexSize);
+  }
+
+  /**
+   * Parses an OBJ file and prepares it for rendering: triangulates it, makes texture coordinates
+   * and normals unambiguous and converts it to single-indexed data.
+   */
+  public static MeshData readObj(InputStream objInputStream) throws IOException {
+    return fromObj(ObjUtils.convertToRenderable(ObjReader.read(objInputStream)));
+  }
+
+  /** Interleaves an OBJ that was already passed through {@link ObjUtils#convertToRenderable}. */
+  public static MeshData fromObj(Obj obj) {
+    int[] indices = ObjData.getFaceVertexIndicesArray(obj, 3);
+    float[] positions = ObjData.getVerticesArray(obj);
+    float[] texCoords = ObjData.getTexCoordsArray(obj, 2);
+    float[] normals = ObjData.getNormalsArray(obj);
+
+    int vertexCount = positions.length / 3;
+
+    ByteBuffer vertexData =
+        ByteBuffer.allocateDirect(vertexCount * VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < vertexCount; ++i) {
+      vertexData.putFloat(positions[3 * i]);
+      vertexData.putFloat(positions[3 * i + 1]);
+      vertexData.putFloat(positions[3 * i + 2]);
+      if (normals.length > 0) {
+        vertexData.putFloat(normals[3 * i]);
+        vertexData.putFloat(normals[3 * i + 1]);
+        vertexData.putFloat(normals[3 * i + 2]);
+      } else {
+        vertexData.putFloat(0.0f).putFloat(0.0f).putFloat(0.0f);
+      }
+      if (texCoords.length > 0) {
+        vertexData.putFloat(texCoords[2 * i]);
+        vertexData.putFloat(texCoords[2 * i + 1]);
+      } else {
+        vertexData.putFloat(0.0f).putFloat(0.0f);
+      }
+    }
+    vertexData.flip();
+
+    return create(vertexData, indices);
+  }
+
+  /** Interleaved vertex data, positioned at the first vertex. Do not modify the position. */
+  public ByteBuffer getVertexData() {
+    return vertexData;
+  }
+
+  /**
+   * Indices of {@link #getIndexSize} bytes each, positioned at the first index. Do not modify the
+   * position.
+   */
+  public ByteBuffer getIndexData() {
+    return indexData;
+  }
+
+  /**
+   * Vertices in the layout that {@link GpuMesh} uploads. Meshes read by {@link BinaryMeshFormat}
+   * carry them from the file; others are quantized on the first call.
+   */
+  public synchronized QuantizedVertexData getQuantizedVertices() {
+    if (quantizedVertices == null) {
+      quantizedVertices = QuantizedVertexData.quantize(this);
+    }
+    return quantizedVertices;
+  }
+
+  /** {@link #INDEX_SIZE_16} or {@link #INDEX_SIZE_32}. */
+  public int getIndexSize() {
+    return indexSize;
+  }
+
+  /** Returns index {@code i} as an unsigned value. */
+  public int getIndex(int i) {
+    int offset = indexData.position() + i * indexSize;
+    if (indexSize == INDEX_SIZE_32) {
+      return indexData.getInt(offset);
+    }
+    return indexData.getShort(offset) & 0xFFFF;
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  public int getIndexCount() {
+    return indexCount;
+  }
+}
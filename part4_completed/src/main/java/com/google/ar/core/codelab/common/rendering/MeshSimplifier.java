@@ -0,0 +1,439 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Reduces the triangle count of a {@link MeshData} by quadric error edge collapse (Garland and
+ * Heckbert). Each collapse moves one vertex onto a neighbour, so surviving vertices keep their
+ * original normals and texture coordinates. Vertices on open borders and on attribute seams, where
+ * {@code convertToRenderable} split a position into several vertices, are never moved; this keeps
+ * the silhouette and the texture mapping intact.
+ *
+ * <p>The error of a collapse is the square root of the sum of squared distances from the new
+ * position to the planes of the original triangles around the merged vertices. It is an upper bound
+ * on the distance to each of those planes, in model units.
+ *
+ * <p>This class does not depend on Android or OpenGL.
+ */
+public final class MeshSimplifier {
+  /** A simplified mesh and the largest collapse error that produced it. */
+  public static final class Result {
+    private final MeshData mesh;
+    private final float error;
+
+    Result(MeshData mesh, float error) {
+      this.mesh = mesh;
+      this.error = error;
+    }
+
+    public MeshData getMesh() {
+      return mesh;
+    }
+
+    /** Largest error of any collapse, in model units; zero if nothing was collapsed. */
+    public float getError() {
+      return error;
+    }
+  }
+
+  private static final int QUADRIC_SIZE = 10;
+
+  private MeshSimplifier() {}
+
+  /**
+   * Collapses edges in order of increasing error until at most {@code targetIndexCount} indices
+   * remain or the next collapse would exceed {@code maxError}.
+   *
+   * @param mesh Mesh to simplify; it is not modified.
+   * @param targetIndexCount Desired number of indices, three per triangle.
+   * @param maxError Largest allowed collapse error, in model units.
+   */
+  public static Result simplify(MeshData mesh, int targetIndexCount, float maxError) {
+    return new Collapser(mesh).run(targetIndexCount, (double) maxError * maxError);
+  }
+
+  /** One candidate collapse of {@code from} onto {@code to}. */
+  private static final class Collapse implements Comparable<Collapse> {
+    final double cost;
+    final int from;
+    final int to;
+    final int fromVersion;
+    final int toVersion;
+
+    Collapse(double cost, int from, int to, int fromVersion, int toVersion) {
+      this.cost = cost;
+      this.from = from;
+      this.to = to;
+      this.fromVersion = fromVersion;
+      this.toVersion = toVersion;
+    }
+
+    @Override
+    public int compareTo(Collapse other) {
+      return Double.compare(cost, other.cost);
+    }
+  }
+
+  /** A vertex position compared bit for bit. */
+  private static final class Position {
+    final int x;
+    final int y;
+    final int z;
+
+    Position(float x, float y, float z) {
+      this.x = Float.floatToIntBits(x);
+      this.y = Float.floatToIntBits(y);
+      this.z = Float.floatToIntBits(z);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Position)) {
+        return false;
+      }
+      Position position = (Position) other;
+      return x == position.x && y == position.y && z == position.z;
+    }
+
+    @Override
+    public int hashCode() {
+      return (x * 31 + y) * 31 + z;
+    }
+  }
+
+  private static final class Collapser {
+    private final MeshData mesh;
+    private final int vertexCount;
+    private final float[] positions;
+    private final int[] triangles;
+    private final boolean[] triangleRemoved;
+    private final double[] quadrics;
+    private final boolean[] locked;
+    private final boolean[] vertexRemoved;
+    private final int[] versions;
+    // Triangles around each vertex. Lists only grow; removed triangles are skipped when read.
+    private final int[][] vertexTriangles;
+    private final int[] vertexTriangleCounts;
+    private final PriorityQueue<Collapse> queue = new PriorityQueue<>();
+    private int triangleCount;
+
+    Collapser(MeshData mesh) {
+      this.mesh = mesh;
+      vertexCount = mesh.getVertexCount();
+      positions = readPositions(mesh);
+      triangles = readIndices(mesh);
+      triangleCount = triangles.length / 3;
+      triangleRemoved = new boolean[triangleCount];
+      quadrics = new double[vertexCount * QUADRIC_SIZE];
+      locked = new boolean[vertexCount];
+      vertexRemoved = new boolean[vertexCount];
+      versions = new int[vertexCount];
+      vertexTriangles = new int[vertexCount][];
+      vertexTriangleCounts = new int[vertexCount];
+
+      for (int t = 0; t < triangleCount; ++t) {
+        addPlaneQuadric(t);
+        for (int corner = 0; corner < 3; ++corner) {
+          appendTriangle(triangles[t * 3 + corner], t);
+        }
+      }
+      lockBordersAndSeams();
+    }
+
+    Result run(int targetIndexCount, double maxCost) {
+      for (int t = 0; t < triangles.length / 3; ++t) {
+        for (int corner = 0; corner < 3; ++corner) {
+          int a = triangles[t * 3 + corner];
+          int b = triangles[t * 3 + (corner + 1) % 3];
+          // Each interior edge appears in two triangles with opposite winding; queue it once.
+          if (a < b) {
+            enqueue(a, b);
+          }
+        }
+      }
+
+      double worstCost = 0.0;
+      while (triangleCount * 3 > targetIndexCount && !queue.isEmpty()) {
+        Collapse collapse = queue.poll();
+        if (collapse.cost > maxCost) {
+          break;
+        }
+        if (vertexRemoved[collapse.from]
+            || vertexRemoved[collapse.to]
+            || versions[collapse.from] != collapse.fromVersion
+            || versions[collapse.to] != collapse.toVersion
+            || flipsTriangle(collapse.from, collapse.to)) {
+          continue;
+        }
+        apply(collapse.from, collapse.to);
+        worstCost = Math.max(worstCost, collapse.cost);
+      }
+      return new Result(compact(), (float) Math.sqrt(worstCost));
+    }
+
+    private void enqueue(int a, int b) {
+      double[] merged = new double[QUADRIC_SIZE];
+      for (int i = 0; i < QUADRIC_SIZE; ++i) {
+        merged[i] = quadrics[a * QUADRIC_SIZE + i] + quadrics[b * QUADRIC_SIZE + i];
+      }
+      double aOntoB = locked[a] ? Double.POSITIVE_INFINITY : evaluate(merged, b);
+      double bOntoA = locked[b] ? Double.POSITIVE_INFINITY : evaluate(merged, a);
+      if (aOntoB == Double.POSITIVE_INFINITY && bOntoA == Double.POSITIVE_INFINITY) {
+        return;
+      }
+      if (aOntoB <= bOntoA) {
+        queue.add(new Collapse(aOntoB, a, b, versions[a], versions[b]));
+      } else {
+        queue.add(new Collapse(bOntoA, b, a, versions[b], versions[a]));
+      }
+    }
+
+    /** Returns whether moving {@code from} onto {@code to} would turn any triangle over. */
+    private boolean flipsTriangle(int from, int to) {
+      for (int i = 0; i < vertexTriangleCounts[from]; ++i) {
+        int t = vertexTriangles[from][i];
+        if (triangleRemoved[t] || contains(t, to)) {
+          continue;
+        }
+        double[] before = normal(t, from, from);
+        double[] after = normal(t, from, to);
+        double dot = before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+        if (dot <= 0.0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void apply(int from, int to) {
+      for (int i = 0; i < vertexTriangleCounts[from]; ++i) {
+        int t = vertexTriangles[from][i];
+        if (triangleRemoved[t]) {
+          continue;
+        }
+        if (contains(t, to)) {
+          triangleRemoved[t] = true;
+          --triangleCount;
+          continue;
+        }
+        for (int corner = 0; corner < 3; ++corner) {
+          if (triangles[t * 3 + corner] == from) {
+            triangles[t * 3 + corner] = to;
+          }
+        }
+        appendTriangle(to, t);
+      }
+      for (int i = 0; i < QUADRIC_SIZE; ++i) {
+        quadrics[to * QUADRIC_SIZE + i] += quadrics[from * QUADRIC_SIZE + i];
+      }
+      vertexRemoved[from] = true;
+      ++versions[to];
+
+      // Costs of every edge around the merged vertex changed.
+      for (int i = 0; i < vertexTriangleCounts[to]; ++i) {
+        int t = vertexTriangles[to][i];
+        if (triangleRemoved[t]) {
+          continue;
+        }
+        for (int corner = 0; corner < 3; ++corner) {
+          int other = triangles[t * 3 + corner];
+          if (other != to) {
+            enqueue(to, other);
+          }
+        }
+      }
+    }
+
+    /** Writes the surviving triangles and the vertices they use into a new mesh. */
+    private MeshData compact() {
+      int[] remap = new int[vertexCount];
+      Arrays.fill(remap, -1);
+      int newVertexCount = 0;
+      for (int t = 0; t < triangleRemoved.length; ++t) {
+        if (triangleRemoved[t]) {
+          continue;
+        }
+        for (int corner = 0; corner < 3; ++corner) {
+          int vertex = triangles[t * 3 + corner];
+          if (remap[vertex] < 0) {
+            remap[vertex] = newVertexCount++;
+          }
+        }
+      }
+
+      ByteBuffer source = mesh.getVertexData();
+      ByteBuffer vertexData =
+          ByteBuffer.allocateDirect(newVertexCount * MeshData.VERTEX_STRIDE)
+              .order(ByteOrder.nativeOrder());
+      for (int vertex = 0; vertex < vertexCount; ++vertex) {
+        if (remap[vertex] < 0) {
+          continue;
+        }
+        int sourceOffset = source.position() + vertex * MeshData.VERTEX_STRIDE;
+        int targetOffset = remap[vertex] * MeshData.VERTEX_STRIDE;
+        for (int i = 0; i < MeshData.VERTEX_STRIDE; i += 4) {
+          vertexData.putFloat(targetOffset + i, source.getFloat(sourceOffset + i));
+        }
+      }
+
+      int[] indices = new int[triangleCount * 3];
+      int next = 0;
+      for (int t = 0; t < triangleRemoved.length; ++t) {
+        if (!triangleRemoved[t]) {
+          for (int corner = 0; corner < 3; ++corner) {
+            indices[next++] = remap[triangles[t * 3 + corner]];
+          }
+        }
+      }
+      return MeshData.create(vertexData, indices);
+    }
+
+    /**
+     * Locks vertices whose position is shared with another vertex (a seam) and vertices on an edge
+     * that only one triangle uses (a border), comparing edges by position.
+     */
+    private void lockBordersAndSeams() {
+      Map<Position, Integer> canonical = new HashMap<>();
+      int[] welded = new int[vertexCount];
+      for (int vertex = 0; vertex < vertexCount; ++vertex) {
+        // Exact equality is intended: seams are split copies of the same OBJ position.
+        Position key =
+            new Position(
+                positions[vertex * 3], positions[vertex * 3 + 1], positions[vertex * 3 + 2]);
+        Integer first = canonical.get(key);
+        if (first == null) {
+          canonical.put(key, vertex);
+          welded[vertex] = vertex;
+        } else {
+          welded[vertex] = first;
+          locked[vertex] = true;
+          locked[first] = true;
+        }
+      }
+
+      Map<Long, Integer> edgeUses = new HashMap<>();
+      for (int t = 0; t < triangleCount; ++t) {
+        for (int corner = 0; corner < 3; ++corner) {
+          long key = edgeKey(t, corner, welded);
+          Integer uses = edgeUses.get(key);
+          edgeUses.put(key, uses == null ? 1 : uses + 1);
+        }
+      }
+      for (int t = 0; t < triangleCount; ++t) {
+        for (int corner = 0; corner < 3; ++corner) {
+          if (edgeUses.get(edgeKey(t, corner, welded)) == 1) {
+            locked[triangles[t * 3 + corner]] = true;
+            locked[triangles[t * 3 + (corner + 1) % 3]] = true;
+          }
+        }
+      }
+    }
+
+    private long edgeKey(int t, int corner, int[] welded) {
+      int a = welded[triangles[t * 3 + corner]];
+      int b = welded[triangles[t * 3 + (corner + 1) % 3]];
+      return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private void addPlaneQuadric(int t) {
+      double[] n = normal(t, -1, -1);
+      double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+      if (length == 0.0) {
+        return;
+      }
+      double a = n[0] / length;
+      double b = n[1] / length;
+      double c = n[2] / length;
+      int v = triangles[t * 3];
+      double d = -(a * positions[v * 3] + b * positions[v * 3 + 1] + c * positions[v * 3 + 2]);
+      double[] plane = {a * a, a * b, a * c, a * d, b * b, b * c, b * d, c * c, c * d, d * d};
+      for (int corner = 0; corner < 3; ++corner) {
+        int base = triangles[t * 3 + corner] * QUADRIC_SIZE;
+        for (int i = 0; i < QUADRIC_SIZE; ++i) {
+          quadrics[base + i] += plane[i];
+        }
+      }
+    }
+
+    /** Sum of squared plane distances of vertex {@code v}'s position under quadric {@code q}. */
+    private double evaluate(double[] q, int v) {
+      double x = positions[v * 3];
+      double y = positions[v * 3 + 1];
+      double z = positions[v * 3 + 2];
+      double cost =
+          q[0] * x * x
+              + 2 * q[1] * x * y
+              + 2 * q[2] * x * z
+              + 2 * q[3] * x
+              + q[4] * y * y
+              + 2 * q[5] * y * z
+              + 2 * q[6] * y
+              + q[7] * z * z
+              + 2 * q[8] * z
+              + q[9];
+      // Rounding can make a zero cost slightly negative.
+      return Math.max(cost, 0.0);
+    }
+
+    /** Unnormalized normal of triangle {@code t} with {@code from} replaced by {@code to}. */
+    private double[] normal(int t, int from, int to) {
+      int[] v = new int[3];
+      for (int corner = 0; corner < 3; ++corner) {
+        int vertex = triangles[t * 3 + corner];
+        v[corner] = vertex == from ? to : vertex;
+      }
+      double e1x = positions[v[1] * 3] - positions[v[0] * 3];
+      double e1y = positions[v[1] * 3 + 1] - positions[v[0] * 3 + 1];
+      double e1z = positions[v[1] * 3 + 2] - positions[v[0] * 3 + 2];
+      double e2x = positions[v[2] * 3] - positions[v[0] * 3];
+      double e2y = positions[v[2] * 3 + 1] - positions[v[0] * 3 + 1];
+      double e2z = positions[v[2] * 3 + 2] - positions[v[0] * 3 + 2];
+      return new double[] {e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x};
+    }
+
+    private boolean contains(int t, int vertex) {
+      return triangles[t * 3] == vertex
+          || triangles[t * 3 + 1] == vertex
+          || triangles[t * 3 + 2] == vertex;
+    }
+
+    private void appendTriangle(int vertex, int t) {
+      int[] list = vertexTriangles[vertex];
+      int count = vertexTriangleCounts[vertex];
+      if (list == null) {
+        list = new int[8];
+      } else if (count == list.length) {
+        list = Arrays.copyOf(list, count * 2);
+      }
+      list[count] = t;
+      vertexTriangles[vertex] = list;
+      vertexTriangleCounts[vertex] = count + 1;
+    }
+
+    private static float[] readPositions(MeshData mesh) {
+      ByteBuffer vertexData = mesh.getVertexData();
+      float[] positions = new float[mesh.getVertexCount() * 3];
+      for (int i = 0; i < mesh.getVertexCount(); ++i) {
+        int offset =
+            vertexData.position() + i * MeshData.VERTEX_STRIDE + MeshData.POSITION_OFFSET;
+        positions[i * 3] = vertexData.getFloat(offset);
+        positions[i * 3 + 1] = vertexData.getFloat(offset + 4);
+        positions[i * 3 + 2] = vertexData.getFloat(offset + 8);
+      }
+      return positions;
+    }
+
+    private static int[] readIndices(MeshData mesh) {
+      int[] indices = new int[mesh.getIndexCount()];
+      for (int i = 0; i < indices.length; ++i) {
+        indices[i] = mesh.getIndex(i);
+      }
+      return indices;
+    }
+  }
+}
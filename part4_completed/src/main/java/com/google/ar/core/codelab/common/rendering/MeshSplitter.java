@@ -0,0 +1,195 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a mesh into submeshes that 16-bit indices can address, for contexts without 32-bit index
+ * support. Triangles are taken in index buffer order, so a mesh already ordered by {@link
+ * MeshOptimizer} produces compact submeshes; vertices on a boundary are duplicated into every
+ * submesh that uses them.
+ *
+ * <p>This class does not depend on Android or OpenGL.
+ */
+public final class MeshSplitter {
+  /** A range of triangles with its own vertex numbering. */
+  public static final class Submesh {
+    private final int[] vertices;
+    private final int[] indices;
+
+    Submesh(int[] vertices, int[] indices) {
+      this.vertices = vertices;
+      this.indices = indices;
+    }
+
+    /** Mesh vertex for each local vertex. Do not modify. */
+    public int[] getVertices() {
+      return vertices;
+    }
+
+    /** Triangle indices into {@link #getVertices}, each below the split's vertex limit. */
+    public int[] getIndices() {
+      return indices;
+    }
+  }
+
+  /** Vertex and 16-bit index buffers that hold every submesh of a split one after another. */
+  public static final class Packed {
+    private final ByteBuffer vertexData;
+    private final ByteBuffer indexData;
+    private final int[] vertexOffsets;
+    private final int[] indexOffsets;
+    private final int[] indexCounts;
+
+    Packed(
+        ByteBuffer vertexData,
+        ByteBuffer indexData,
+        int[] vertexOffsets,
+        int[] indexOffsets,
+        int[] indexCounts) {
+      this.vertexData = vertexData;
+      this.indexData = indexData;
+      this.vertexOffsets = vertexOffsets;
+      this.indexOffsets = indexOffsets;
+      this.indexCounts = indexCounts;
+    }
+
+    /** Vertices of all submeshes, positioned at the first. */
+    public ByteBuffer getVertexData() {
+      return vertexData;
+    }
+
+    /** Unsigned short indices of all submeshes, positioned at the first. */
+    public ByteBuffer getIndexData() {
+      return indexData;
+    }
+
+    /** Byte offset of the first vertex of each submesh in {@link #getVertexData}. Do not modify. */
+    public int[] getVertexOffsets() {
+      return vertexOffsets;
+    }
+
+    /** Byte offset of the first index of each submesh in {@link #getIndexData}. Do not modify. */
+    public int[] getIndexOffsets() {
+      return indexOffsets;
+    }
+
+    /** Number of indices of each submesh. Do not modify. */
+    public int[] getIndexCounts() {
+      return indexCounts;
+    }
+  }
+
+  private MeshSplitter() {}
+
+  /**
+   * Splits {@code mesh} so that no submesh uses more than {@code maxVertices} vertices.
+   *
+   * @param mesh Mesh to split; it is not modified.
+   * @param maxVertices Vertex limit per submesh, at least 3.
+   */
+  public static List<Submesh> split(MeshData mesh, int maxVertices) {
+    if (maxVertices < 3) {
+      throw new IllegalArgumentException("A submesh needs room for a triangle: " + maxVertices);
+    }
+    List<Submesh> submeshes = new ArrayList<>();
+    int[] localIndex = new int[mesh.getVertexCount()];
+    Arrays.fill(localIndex, -1);
+    int[] vertices = new int[Math.min(maxVertices, mesh.getVertexCount())];
+    int vertexCount = 0;
+    int[] indices = new int[mesh.getIndexCount()];
+    int indexCount = 0;
+
+    int[] triangle = new int[3];
+    for (int i = 0; i + 2 < mesh.getIndexCount(); i += 3) {
+      int newVertices = 0;
+      for (int corner = 0; corner < 3; ++corner) {
+        triangle[corner] = mesh.getIndex(i + corner);
+        if (localIndex[triangle[corner]] < 0 && !repeats(triangle, corner)) {
+          ++newVertices;
+        }
+      }
+      if (vertexCount + newVertices > maxVertices) {
+        submeshes.add(finish(vertices, vertexCount, indices, indexCount, localIndex));
+        vertexCount = 0;
+        indexCount = 0;
+      }
+      for (int corner = 0; corner < 3; ++corner) {
+        int vertex = triangle[corner];
+        if (localIndex[vertex] < 0) {
+          localIndex[vertex] = vertexCount;
+          vertices[vertexCount++] = vertex;
+        }
+        indices[indexCount++] = localIndex[vertex];
+      }
+    }
+    if (indexCount > 0) {
+      submeshes.add(finish(vertices, vertexCount, indices, indexCount, localIndex));
+    }
+    return submeshes;
+  }
+
+  /**
+   * Copies the vertices of each submesh out of {@code vertexData} and its indices into new native
+   * order buffers, submesh after submesh.
+   *
+   * @param submeshes Result of {@link #split} with at most 65,536 vertices per submesh.
+   * @param vertexData Vertices of the split mesh, positioned at the first; it is not modified.
+   * @param vertexStride Bytes per vertex, a multiple of 4.
+   */
+  public static Packed pack(List<Submesh> submeshes, ByteBuffer vertexData, int vertexStride) {
+    int[] vertexOffsets = new int[submeshes.size()];
+    int[] indexOffsets = new int[submeshes.size()];
+    int[] indexCounts = new int[submeshes.size()];
+    int vertexCount = 0;
+    int indexCount = 0;
+    for (Submesh submesh : submeshes) {
+      vertexCount += submesh.getVertices().length;
+      indexCount += submesh.getIndices().length;
+    }
+    ByteBuffer packedVertexData =
+        ByteBuffer.allocateDirect(vertexCount * vertexStride).order(ByteOrder.nativeOrder());
+    ByteBuffer packedIndexData =
+        ByteBuffer.allocateDirect(indexCount * MeshData.INDEX_SIZE_16)
+            .order(ByteOrder.nativeOrder());
+    for (int i = 0; i < submeshes.size(); ++i) {
+      Submesh submesh = submeshes.get(i);
+      vertexOffsets[i] = packedVertexData.position();
+      indexOffsets[i] = packedIndexData.position();
+      indexCounts[i] = submesh.getIndices().length;
+      for (int vertex : submesh.getVertices()) {
+        int offset = vertexData.position() + vertex * vertexStride;
+        for (int j = 0; j < vertexStride; j += 4) {
+          packedVertexData.putInt(vertexData.getInt(offset + j));
+        }
+      }
+      for (int index : submesh.getIndices()) {
+        packedIndexData.putShort((short) index);
+      }
+    }
+    packedVertexData.flip();
+    packedIndexData.flip();
+    return new Packed(packedVertexData, packedIndexData, vertexOffsets, indexOffsets, indexCounts);
+  }
+
+  /** Copies out the current submesh and clears the local numbering of its vertices. */
+  private static Submesh finish(
+      int[] vertices, int vertexCount, int[] indices, int indexCount, int[] localIndex) {
+    for (int i = 0; i < vertexCount; ++i) {
+      localIndex[vertices[i]] = -1;
+    }
+    return new Submesh(Arrays.copyOf(vertices, vertexCount), Arrays.copyOf(indices, indexCount));
+  }
+
+  private static boolean repeats(int[] triangle, int corner) {
+    for (int i = 0; i < corner; ++i) {
+      if (triangle[i] == triangle[corner]) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -14,104 +14,69 @@
  */
 package com.google.ar.core.codelab.common.rendering;
 
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
-import de.javagl.obj.Obj;
-import de.javagl.obj.ObjData;
-import de.javagl.obj.ObjReader;
-import de.javagl.obj.ObjUtils;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
-
-/** Renders an object loaded from an OBJ file in OpenGL. */
-public class OcclusionObjectRenderer {
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders an object loaded from an OBJ file in OpenGL, hiding the parts behind real-world surfaces
+ * in the depth texture. Its metrics are labeled {@code renderer="occlusion_object"}.
+ */
+public class OcclusionObjectRenderer
+    extends AbstractObjectRenderer<OcclusionObjectRenderer.OcclusionProgram> {
   private static final String TAG = OcclusionObjectRenderer.class.getSimpleName();
 
   // Shader names.
   private static final String VERTEX_SHADER_NAME = "shaders/occlusion_object.vert";
   private static final String FRAGMENT_SHADER_NAME = "shaders/occlusion_object.frag";
 
-  private static final int COORDS_PER_VERTEX = 3;
-
-  // Note: the last component must be zero to avoid applying the translational part of the matrix.
-  private static final float[] LIGHT_DIRECTION = new float[] {0.250f, 0.866f, 0.433f, 0.0f};
-  private final float[] viewLightDirection = new float[4];
-
-  // Object vertex buffer variables.
-  private int vertexBufferId;
-  private int verticesBaseAddress;
-  private int texCoordsBaseAddress;
-  private int normalsBaseAddress;
-  private int indexBufferId;
-  private int indexCount;
-
-  private int program;
-  private final int[] textures = new int[1];
-
-  // Shader location: model view projection matrix.
-  private int modelViewUniform;
-  private int modelViewProjectionUniform;
-
-  // Shader location: object attributes.
-  private int positionAttribute;
-  private int normalAttribute;
-  private int texCoordAttribute;
-
-  // Shader location: texture sampler.
-  private int textureUniform;
-
-  // Shader location: environment properties.
-  private int lightingParametersUniform;
-
-  // Shader location: material properties.
-  private int materialParametersUniform;
-
-  // Shader location: color correction property
-  private int colorCorrectionParameterUniform;
-
-  // Shader location: object color property (to change the primary color of the object).
-  private int colorUniform;
-
-  // Shader location: depth texture
-  private int depthTextureUniform;
-
-  // Shader location: transform to depth uvs
-  private int depthUvTransformUniform;
+  /** Selects how the occlusion shader smooths the depth-based visibility. */
+  public enum OcclusionMode {
+    /** Blurs visibility in the fragment shader with 25 depth fetches per fragment. */
+    LEGACY_25_TAP(25, false),
+    /** Blurs visibility over the center and its four neighbors, 5 depth fetches per fragment. */
+    CROSS_5_TAP(5, false),
+    /**
+     * Blurs the depth texture once per depth frame at depth resolution, then fetches it once per
+     * fragment. Call {@link #onDepthUpdated()} whenever the depth texture content changes.
+     */
+    PREFILTERED(1, true);
+
+    private final int occlusionTaps;
+    private final boolean prefiltered;
+
+    OcclusionMode(int occlusionTaps, boolean prefiltered) {
+      this.occlusionTaps = occlusionTaps;
+      this.prefiltered = prefiltered;
+    }
 
-  // Shader location: depth tolerance property
-  private int depthToleranceUniform;
+    /** Value of the {@code OCCLUSION_TAPS} define for this mode's shader variant. */
+    public int getOcclusionTaps() {
+      return occlusionTaps;
+    }
 
-  // Shader location: maximum transparency for the occluded part.
-  private int occlusionAlphaUniform;
+    /** Whether the shader samples the output of {@link DepthBlurFilter}. */
+    public boolean isPrefiltered() {
+      return prefiltered;
+    }
+  }
 
-  // Shader location: Amount of blur applied to the occlusion effect.
-  private int occlusionBlurUniform;
+  // One program variant per occlusion mode, indexed by ordinal.
+  private final OcclusionProgram[] programs = new OcclusionProgram[OcclusionMode.values().length];
+  // Instanced variants, only created on OpenGL ES 3.0; null otherwise.
+  private OcclusionProgram[] instancedPrograms;
 
-  // Shader location: The aspect ratio of the depth texture.
-  private int depthAspectRatioUniform;
+  private final DepthBlurFilter depthBlurFilter = new DepthBlurFilter();
+  private OcclusionMode occlusionMode = OcclusionMode.LEGACY_25_TAP;
+  private boolean prefilteredDepthStale = true;
+  private int depthWidth = -1;
+  private int depthHeight = -1;
 
   private float[] uvTransform = null;
   private int depthTextureId;
-
-  // Temporary matrices allocated here to reduce number of allocations for each frame.
-  private final float[] modelMatrix = new float[16];
-  private final float[] modelViewMatrix = new float[16];
-  private final float[] modelViewProjectionMatrix = new float[16];
-
-  // Set some default material properties to use for lighting.
-  private float ambient = 0.3f;
-  private float diffuse = 1.0f;
-  private float specular = 1.0f;
-  private float specularPower = 6.0f;
+  // Depth texture the current draw samples, resolved by onBeginDraw.
+  private int sampledDepthTexture;
 
   // Occlusions parameters.
   private float depthAspectRatio = 0.0f;
@@ -119,277 +84,179 @@ public class OcclusionObjectRenderer {
   private final float occlusionsAlpha = 0.0f;
   private final float occlusionsBlur = 0.01f;
 
-  public OcclusionObjectRenderer() {}
+  public OcclusionObjectRenderer() {
+    super(TAG, "occlusion_object");
+  }
 
-  /**
-   * Creates and initializes OpenGL resources needed for rendering the model.
-   *
-   * @param context Context for loading the shader and below-named model and texture assets.
-   * @param objAssetName Name of the OBJ file containing the model geometry.
-   * @param diffuseTextureAssetName Name of the PNG file containing the diffuse texture map.
-   */
-  public void createOnGlThread(Context context, String objAssetName, String diffuseTextureAssetName)
-      throws IOException {
-    final int vertexShader =
-        ShaderUtil.loadGLShader(TAG, context, GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_NAME);
-    final int fragmentShader =
-        ShaderUtil.loadGLShader(TAG, context, GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_NAME);
-
-    program = GLES20.glCreateProgram();
-    GLES20.glAttachShader(program, vertexShader);
-    GLES20.glAttachShader(program, fragmentShader);
-    GLES20.glLinkProgram(program);
-    GLES20.glUseProgram(program);
-
-    ShaderUtil.checkGLError(TAG, "Program creation");
-
-    modelViewUniform = GLES20.glGetUniformLocation(program, "u_ModelView");
-    modelViewProjectionUniform = GLES20.glGetUniformLocation(program, "u_ModelViewProjection");
-
-    positionAttribute = GLES20.glGetAttribLocation(program, "a_Position");
-    normalAttribute = GLES20.glGetAttribLocation(program, "a_Normal");
-    texCoordAttribute = GLES20.glGetAttribLocation(program, "a_TexCoord");
-
-    textureUniform = GLES20.glGetUniformLocation(program, "u_Texture");
-
-    lightingParametersUniform = GLES20.glGetUniformLocation(program, "u_LightingParameters");
-    materialParametersUniform = GLES20.glGetUniformLocation(program, "u_MaterialParameters");
-    colorCorrectionParameterUniform =
-        GLES20.glGetUniformLocation(program, "u_ColorCorrectionParameters");
-    colorUniform = GLES20.glGetUniformLocation(program, "u_ObjColor");
-
-    // Occlusions Uniforms.
-    depthTextureUniform = GLES20.glGetUniformLocation(program, "u_Depth");
-    depthUvTransformUniform = GLES20.glGetUniformLocation(program, "u_UvTransform");
-    depthToleranceUniform = GLES20.glGetUniformLocation(program, "u_DepthTolerancePerMm");
-    occlusionAlphaUniform = GLES20.glGetUniformLocation(program, "u_OcclusionAlpha");
-    occlusionBlurUniform = GLES20.glGetUniformLocation(program, "u_OcclusionBlurAmount");
-    depthAspectRatioUniform = GLES20.glGetUniformLocation(program, "u_DepthAspectRatio");
-
-    ShaderUtil.checkGLError(TAG, "Program parameters");
-
-    // Read the texture.
-    Bitmap textureBitmap =
-        BitmapFactory.decodeStream(context.getAssets().open(diffuseTextureAssetName));
-
-    GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-    GLES20.glGenTextures(textures.length, textures, 0);
-    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
-
-    GLES20.glTexParameteri(
-        GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
-    GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-    GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, textureBitmap, 0);
-    GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
-    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-
-    textureBitmap.recycle();
-
-    ShaderUtil.checkGLError(TAG, "Texture loading");
-
-    // Read the obj file.
-    InputStream objInputStream = context.getAssets().open(objAssetName);
-    Obj obj = ObjReader.read(objInputStream);
-
-    // Prepare the Obj so that its structure is suitable for
-    // rendering with OpenGL:
-    // 1. Triangulate it
-    // 2. Make sure that texture coordinates are not ambiguous
-    // 3. Make sure that normals are not ambiguous
-    // 4. Convert it to single-indexed data
-    obj = ObjUtils.convertToRenderable(obj);
-
-    // OpenGL does not use Java arrays. ByteBuffers are used instead to provide data in a format
-    // that OpenGL understands.
-
-    // Obtain the data from the OBJ, as direct buffers:
-    IntBuffer wideIndices = ObjData.getFaceVertexIndices(obj, 3);
-    FloatBuffer vertices = ObjData.getVertices(obj);
-    FloatBuffer texCoords = ObjData.getTexCoords(obj, 2);
-    FloatBuffer normals = ObjData.getNormals(obj);
-
-    // Convert int indices to shorts for GL ES 2.0 compatibility
-    ShortBuffer indices =
-        ByteBuffer.allocateDirect(2 * wideIndices.limit())
-            .order(ByteOrder.nativeOrder())
-            .asShortBuffer();
-    while (wideIndices.hasRemaining()) {
-      indices.put((short) wideIndices.get());
+  @Override
+  void onCreatePrograms(ShaderLibrary shaderLibrary, boolean instanced) throws IOException {
+    instancedPrograms = instanced ? new OcclusionProgram[OcclusionMode.values().length] : null;
+    for (OcclusionMode mode : OcclusionMode.values()) {
+      programs[mode.ordinal()] =
+          new OcclusionProgram(shaderLibrary, mode.getOcclusionTaps(), /*instanced=*/ false);
+      if (instancedPrograms != null) {
+        instancedPrograms[mode.ordinal()] =
+            new OcclusionProgram(shaderLibrary, mode.getOcclusionTaps(), /*instanced=*/ true);
+      }
     }
-    indices.rewind();
-
-    int[] buffers = new int[2];
-    GLES20.glGenBuffers(2, buffers, 0);
-    vertexBufferId = buffers[0];
-    indexBufferId = buffers[1];
-
-    // Load vertex buffer
-    verticesBaseAddress = 0;
-    texCoordsBaseAddress = verticesBaseAddress + 4 * vertices.limit();
-    normalsBaseAddress = texCoordsBaseAddress + 4 * texCoords.limit();
-    final int totalBytes = normalsBaseAddress + 4 * normals.limit();
-
-    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferId);
-    GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, totalBytes, null, GLES20.GL_STATIC_DRAW);
-    GLES20.glBufferSubData(
-        GLES20.GL_ARRAY_BUFFER, verticesBaseAddress, 4 * vertices.limit(), vertices);
-    GLES20.glBufferSubData(
-        GLES20.GL_ARRAY_BUFFER, texCoordsBaseAddress, 4 * texCoords.limit(), texCoords);
-    GLES20.glBufferSubData(
-        GLES20.GL_ARRAY_BUFFER, normalsBaseAddress, 4 * normals.limit(), normals);
-    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-
-    // Load index buffer
-    GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
-    indexCount = indices.limit();
-    GLES20.glBufferData(
-        GLES20.GL_ELEMENT_ARRAY_BUFFER, 2 * indexCount, indices, GLES20.GL_STATIC_DRAW);
-    GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-
-    ShaderUtil.checkGLError(TAG, "OBJ buffer load");
-
-    Matrix.setIdentityM(modelMatrix, 0);
+    depthBlurFilter.createOnGlThread(shaderLibrary);
+    prefilteredDepthStale = true;
   }
 
-  /**
-   * Updates the object model matrix and applies scaling.
-   *
-   * @param modelMatrix A 4x4 model-to-world transformation matrix, stored in column-major order.
-   * @param scaleFactor A separate scaling factor to apply before the {@code modelMatrix}.
-   * @see Matrix
-   */
-  public void updateModelMatrix(float[] modelMatrix, float scaleFactor) {
-    float[] scaleMatrix = new float[16];
-    Matrix.setIdentityM(scaleMatrix, 0);
-    scaleMatrix[0] = scaleFactor;
-    scaleMatrix[5] = scaleFactor;
-    scaleMatrix[10] = scaleFactor;
-    Matrix.multiplyMM(this.modelMatrix, 0, modelMatrix, 0, scaleMatrix, 0);
+  @Override
+  OcclusionProgram getActiveProgram(boolean instanced) {
+    return (instanced ? instancedPrograms : programs)[occlusionMode.ordinal()];
   }
 
-  /**
-   * Sets the surface characteristics of the rendered model.
-   *
-   * @param ambient Intensity of non-directional surface illumination.
-   * @param diffuse Diffuse (matte) surface reflectivity.
-   * @param specular Specular (shiny) surface reflectivity.
-   * @param specularPower Surface shininess. Larger values result in a smaller, sharper specular
-   *     highlight.
-   */
-  public void setMaterialProperties(
-      float ambient, float diffuse, float specular, float specularPower) {
-    this.ambient = ambient;
-    this.diffuse = diffuse;
-    this.specular = specular;
-    this.specularPower = specularPower;
+  @Override
+  void onBeginDraw() {
+    // Resolve the depth texture first: a stale prefiltered texture is refreshed here, which uses
+    // its own program and render target.
+    sampledDepthTexture = getSampledDepthTexture();
   }
 
-  public void draw(
-      float[] cameraView,
-      float[] cameraPerspective,
-      float[] colorCorrectionRgba,
-      float[] objColor) {
-
-    ShaderUtil.checkGLError(TAG, "Before draw");
-
-    // Build the ModelView and ModelViewProjection matrices
-    // for calculating object position and light.
-    Matrix.multiplyMM(modelViewMatrix, 0, cameraView, 0, modelMatrix, 0);
-    Matrix.multiplyMM(modelViewProjectionMatrix, 0, cameraPerspective, 0, modelViewMatrix, 0);
-
-    GLES20.glUseProgram(program);
-
-    // Set the lighting environment properties.
-    Matrix.multiplyMV(viewLightDirection, 0, modelViewMatrix, 0, LIGHT_DIRECTION, 0);
-    normalizeVec3(viewLightDirection);
-    GLES20.glUniform4f(
-        lightingParametersUniform,
-        viewLightDirection[0],
-        viewLightDirection[1],
-        viewLightDirection[2],
-        1.f);
-    GLES20.glUniform4fv(colorCorrectionParameterUniform, 1, colorCorrectionRgba, 0);
-
-    // Set the object color property.
-    GLES20.glUniform4fv(colorUniform, 1, objColor, 0);
-
-    // Set the object material properties.
-    GLES20.glUniform4f(materialParametersUniform, ambient, diffuse, specular, specularPower);
-
-    // Attach the object texture.
-    GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
-    GLES20.glUniform1i(textureUniform, 0);
-
-    // Occlusion parameters.
-    // Attach the depth texture.
-    GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
-    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, depthTextureId);
-    GLES20.glUniform1i(depthTextureUniform, 1);
-
+  @Override
+  void setCameraUniforms(OcclusionProgram program) {
     // Set the depth texture uv transform.
-    GLES20.glUniformMatrix3fv(depthUvTransformUniform, 1, false, uvTransform, 0);
-    GLES20.glUniform1f(depthToleranceUniform, depthTolerancePerMm);
-    GLES20.glUniform1f(occlusionAlphaUniform, occlusionsAlpha);
-    GLES20.glUniform1f(occlusionBlurUniform, occlusionsBlur);
-    GLES20.glUniform1f(depthAspectRatioUniform, depthAspectRatio);
-
-    // Set the vertex attributes.
-    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferId);
-
-    GLES20.glVertexAttribPointer(
-        positionAttribute, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, verticesBaseAddress);
-    GLES20.glVertexAttribPointer(normalAttribute, 3, GLES20.GL_FLOAT, false, 0, normalsBaseAddress);
-    GLES20.glVertexAttribPointer(
-        texCoordAttribute, 2, GLES20.GL_FLOAT, false, 0, texCoordsBaseAddress);
+    glState.uniformMatrix3fv(program.depthUvTransformUniform, uvTransform, 0);
+  }
 
-    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+  @Override
+  void setDrawUniforms(OcclusionProgram program) {
+    // Attach the depth texture.
+    glState.bindTexture(1, GLES20.GL_TEXTURE_2D, sampledDepthTexture);
+    glState.uniform1i(program.depthTextureUniform, 1);
+
+    glState.uniform1f(program.depthToleranceUniform, depthTolerancePerMm);
+    glState.uniform1f(program.occlusionAlphaUniform, occlusionsAlpha);
+    glState.uniform1f(program.occlusionBlurUniform, occlusionsBlur);
+    glState.uniform1f(program.depthAspectRatioUniform, depthAspectRatio);
+
+    // Set blend mode for occlusion alpha-blending. Reverted once all draws are done, see
+    // onEndDraws().
+    glState.setBlend(true);
+    glState.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+  }
 
-    // Set the ModelViewProjection matrix in the shader.
-    GLES20.glUniformMatrix4fv(modelViewUniform, 1, false, modelViewMatrix, 0);
-    GLES20.glUniformMatrix4fv(modelViewProjectionUniform, 1, false, modelViewProjectionMatrix, 0);
+  @Override
+  float[] getUvTransform() {
+    return uvTransform;
+  }
 
-    // Enable vertex arrays
-    GLES20.glEnableVertexAttribArray(positionAttribute);
-    GLES20.glEnableVertexAttribArray(normalAttribute);
-    GLES20.glEnableVertexAttribArray(texCoordAttribute);
+  /** Reverts the blend mode set by {@link #setDrawUniforms} for whatever is drawn next. */
+  @Override
+  void onEndDraws() {
+    glState.setBlend(false);
+    glState.setDepthMask(true);
+  }
 
-    // Set blend mode for occlusion alpha-blending.
-    GLES20.glEnable(GLES20.GL_BLEND);
-    GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+  public void setUvTransformMatrix(float[] transform) {
+    uvTransform = transform;
+  }
 
-    GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
-    GLES20.glDrawElements(GLES20.GL_TRIANGLES, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
-    GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+  /**
+   * Sets the size of the surface, which the depth prefilter restores as the viewport after drawing
+   * offscreen. Call from {@code onSurfaceChanged}.
+   */
+  public void setViewport(int width, int height) {
+    depthBlurFilter.setViewport(width, height);
+  }
 
-    // Revert blend mode.
-    GLES20.glDisable(GLES20.GL_BLEND);
-    GLES20.glDepthMask(true);
+  public void setDepthTexture(int textureId, int width, int height) {
+    depthTextureId = textureId;
+    depthWidth = width;
+    depthHeight = height;
+    depthAspectRatio = (float) width / (float) height;
+  }
 
-    // Disable vertex arrays
-    GLES20.glDisableVertexAttribArray(positionAttribute);
-    GLES20.glDisableVertexAttribArray(normalAttribute);
-    GLES20.glDisableVertexAttribArray(texCoordAttribute);
+  /**
+   * Selects the occlusion pipeline. Every variant is compiled in {@link #createOnGlThread} and
+   * cached by {@link ShaderLibrary}, so switching never recompiles shaders.
+   */
+  public void setOcclusionMode(OcclusionMode mode) {
+    occlusionMode = mode;
+  }
 
-    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+  public OcclusionMode getOcclusionMode() {
+    return occlusionMode;
+  }
 
-    ShaderUtil.checkGLError(TAG, "After draw");
+  /**
+   * Notifies the renderer that the depth texture content changed. In {@link
+   * OcclusionMode#PREFILTERED} mode this runs the depth blur, so call it once per new depth frame
+   * before drawing the background, to avoid switching render targets mid-frame.
+   */
+  public void onDepthUpdated() {
+    prefilteredDepthStale = true;
+    if (occlusionMode.isPrefiltered()) {
+      prefilterDepth();
+    }
   }
 
-  private static void normalizeVec3(float[] v) {
-    float reciprocalLength = 1.0f / (float) Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
-    v[0] *= reciprocalLength;
-    v[1] *= reciprocalLength;
-    v[2] *= reciprocalLength;
+  private void prefilterDepth() {
+    if (depthWidth <= 0 || depthHeight <= 0) {
+      return;
+    }
+    // Same tap spacing as GetBlurredVisibilityAroundUV in the legacy shader.
+    depthBlurFilter.filter(
+        depthTextureId,
+        depthWidth,
+        depthHeight,
+        occlusionsBlur,
+        occlusionsBlur * depthAspectRatio);
+    prefilteredDepthStale = false;
   }
 
-  public void setUvTransformMatrix(float[] transform) {
-    uvTransform = transform;
+  private OcclusionProgram getActiveProgram() {
+    return programs[occlusionMode.ordinal()];
   }
 
-  public void setDepthTexture(int textureId, int width, int height) {
-    depthTextureId = textureId;
-    depthAspectRatio = (float) width / (float) height;
+  private int getSampledDepthTexture() {
+    if (!occlusionMode.isPrefiltered()) {
+      return depthTextureId;
+    }
+    if (prefilteredDepthStale) {
+      // Only happens right after switching modes; regular updates go through onDepthUpdated().
+      prefilterDepth();
+    }
+    return depthBlurFilter.getFilteredTexture();
   }
 
+  /** A linked occlusion program variant and the locations of its occlusion uniforms. */
+  static final class OcclusionProgram extends AbstractObjectRenderer.ObjectProgram {
+    // Shader location: occlusion parameters.
+    final int depthTextureUniform;
+    final int depthUvTransformUniform;
+    final int depthToleranceUniform;
+    final int occlusionAlphaUniform;
+    final int occlusionBlurUniform;
+    final int depthAspectRatioUniform;
+
+    OcclusionProgram(ShaderLibrary shaderLibrary, int occlusionTaps, boolean instanced)
+        throws IOException {
+      super(
+          TAG,
+          shaderLibrary,
+          VERTEX_SHADER_NAME,
+          FRAGMENT_SHADER_NAME,
+          occlusionDefines(occlusionTaps),
+          instanced);
+
+      Gl gl = GlBackend.get();
+      depthTextureUniform = gl.glGetUniformLocation(program, "u_Depth");
+      depthUvTransformUniform = gl.glGetUniformLocation(program, "u_UvTransform");
+      depthToleranceUniform = gl.glGetUniformLocation(program, "u_DepthTolerancePerMm");
+      occlusionAlphaUniform = gl.glGetUniformLocation(program, "u_OcclusionAlpha");
+      occlusionBlurUniform = gl.glGetUniformLocation(program, "u_OcclusionBlurAmount");
+      depthAspectRatioUniform = gl.glGetUniformLocation(program, "u_DepthAspectRatio");
+
+      ShaderUtil.checkGLError(TAG, "Occlusion program parameters");
+    }
+
+    private static Map<String, Integer> occlusionDefines(int occlusionTaps) {
+      Map<String, Integer> defines = new HashMap<>();
+      defines.put("OCCLUSION_TAPS", occlusionTaps);
+      return defines;
+    }
+  }
 }
@@ -0,0 +1,241 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * Persists linked programs with {@code glGetProgramBinary} so later launches can skip compiling
+ * shaders from source. Requires OpenGL ES 3.0; see {@link #isSupported}.
+ *
+ * <p>Each program has one entry, named after its shader files and defines. The entry records a hash
+ * of the preprocessed sources together with the GL renderer and driver version, so editing a
+ * shader or updating the driver makes the entry stale; stale, corrupt or rejected entries are
+ * removed and the program is compiled from source again. Everything except {@link #load} and
+ * {@link #save} is plain Java.
+ */
+public final class ProgramBinaryCache {
+  private static final String TAG = ProgramBinaryCache.class.getSimpleName();
+
+  private static final int MAGIC = 0x50424331; // "PBC1"
+  private static final int FORMAT_VERSION = 1;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final int ENTRY_NAME_LENGTH = 16;
+
+  private final Gl gl = GlBackend.get();
+  private final ProgramBinaryStore store;
+  private final String driverId;
+
+  private int hitCount;
+  private int missCount;
+  private int storeCount;
+
+  /**
+   * @param store Where serialized binaries are kept.
+   * @param capabilities Capabilities of the current context, which identify the driver.
+   */
+  public ProgramBinaryCache(ProgramBinaryStore store, GlCapabilities capabilities) {
+    this(store, capabilities.getRenderer() + '\n' + capabilities.getDriverVersion());
+  }
+
+  ProgramBinaryCache(ProgramBinaryStore store, String driverId) {
+    this.store = store;
+    this.driverId = driverId;
+  }
+
+  /**
+   * Returns true if the current context can save and restore program binaries. Must be called on
+   * the GL thread.
+   */
+  public static boolean isSupported(GlCapabilities capabilities) {
+    if (!capabilities.isEs3()) {
+      return false;
+    }
+    Gl gl = GlBackend.get();
+    int[] formatCount = new int[1];
+    gl.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formatCount, 0);
+    return formatCount[0] > 0;
+  }
+
+  /** Returns the hash that identifies a program built from these sources by this driver. */
+  public String computeSourceHash(String vertexSource, String fragmentSource) {
+    return sha256Hex(vertexSource + '\0' + fragmentSource + '\0' + driverId);
+  }
+
+  /**
+   * Loads the cached binary for {@code programName} into {@code program}.
+   *
+   * @param programName Stable name of the program, e.g. its shader files and defines.
+   * @param sourceHash Result of {@link #computeSourceHash} for the current sources.
+   * @param program A program object without attached shaders.
+   * @return true if {@code program} is now linked and ready to use.
+   */
+  public boolean load(String programName, String sourceHash, int program) {
+    String entryName = entryName(programName);
+    byte[] binary;
+    int[] binaryFormat = new int[1];
+    try {
+      byte[] data = store.load(entryName);
+      binary = data == null ? null : decode(data, sourceHash, binaryFormat);
+      if (data != null && binary == null) {
+        store.remove(entryName);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to read program binary for " + programName, e);
+      binary = null;
+    }
+    if (binary == null) {
+      ++missCount;
+      return false;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length).order(ByteOrder.nativeOrder());
+    buffer.put(binary).position(0);
+    gl.glProgramBinary(program, binaryFormat[0], buffer, binary.length);
+
+    final int[] linkStatus = new int[1];
+    gl.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+    if (linkStatus[0] == 0) {
+      // The driver may reject binaries from an older build even if it reports the same version.
+      Log.w(TAG, "Driver rejected program binary for " + programName);
+      try {
+        store.remove(entryName);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to remove program binary for " + programName, e);
+      }
+      ++missCount;
+      return false;
+    }
+    ++hitCount;
+    return true;
+  }
+
+  /**
+   * Saves the binary of a linked program. The program should have been linked with {@code
+   * GL_PROGRAM_BINARY_RETRIEVABLE_HINT} set. Failures are logged and otherwise ignored.
+   */
+  public void save(String programName, String sourceHash, int program) {
+    final int[] length = new int[1];
+    gl.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+    if (length[0] <= 0) {
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+    final int[] binaryFormat = new int[1];
+    gl.glGetProgramBinary(program, length[0], length, 0, binaryFormat, 0, buffer);
+    byte[] binary = new byte[length[0]];
+    buffer.position(0);
+    buffer.get(binary);
+
+    try {
+      store.store(entryName(programName), encode(sourceHash, binaryFormat[0], binary));
+      ++storeCount;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write program binary for " + programName, e);
+    }
+  }
+
+  /** Number of programs restored from the cache. */
+  public int getHitCount() {
+    return hitCount;
+  }
+
+  /** Number of programs that had no usable cache entry. */
+  public int getMissCount() {
+    return missCount;
+  }
+
+  /** Number of program binaries written. */
+  public int getStoreCount() {
+    return storeCount;
+  }
+
+  /** Maps a program name to a short, file-name-safe store key. */
+  static String entryName(String programName) {
+    return sha256Hex(programName).substring(0, ENTRY_NAME_LENGTH);
+  }
+
+  /** Serializes a binary with a header and checksum. */
+  static byte[] encode(String sourceHash, int binaryFormat, byte[] binary) {
+    CRC32 crc = new CRC32();
+    crc.update(binary, 0, binary.length);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(binary.length + 128);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(sourceHash);
+      out.writeInt(binaryFormat);
+      out.writeInt(binary.length);
+      out.write(binary);
+      out.writeLong(crc.getValue());
+    } catch (IOException e) {
+      // ByteArrayOutputStream does not throw.
+      throw new AssertionError(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Parses an entry written by {@link #encode}.
+   *
+   * @param expectedSourceHash The hash the entry must have been written for.
+   * @param binaryFormat Receives the binary format in element 0.
+   * @return The program binary, or null if the entry is stale or corrupt.
+   */
+  static byte[] decode(byte[] data, String expectedSourceHash, int[] binaryFormat) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      if (!expectedSourceHash.equals(in.readUTF())) {
+        return null;
+      }
+      int format = in.readInt();
+      int length = in.readInt();
+      if (length < 0 || length > in.available()) {
+        return null;
+      }
+      byte[] binary = new byte[length];
+      in.readFully(binary);
+      CRC32 crc = new CRC32();
+      crc.update(binary, 0, binary.length);
+      if (in.readLong() != crc.getValue()) {
+        return null;
+      }
+      binaryFormat[0] = format;
+      return binary;
+    } catch (IOException e) {
+      // Truncated entry.
+      return null;
+    }
+  }
+
+  private static String sha256Hex(String text) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java and Android runtime provides SHA-256.
+      throw new AssertionError(e);
+    }
+    byte[] hash = digest.digest(text.getBytes(UTF_8));
+    char[] hex = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; ++i) {
+      hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+      hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+    }
+    return new String(hex);
+  }
+}
@@ -0,0 +1,21 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.IOException;
+
+/**
+ * Persistent key-value storage for serialized program binaries. Keys are short lowercase hex
+ * strings, safe to use as file names.
+ */
+public interface ProgramBinaryStore {
+  /** Returns the bytes stored under {@code key}, or null if there are none. */
+  byte[] load(String key) throws IOException;
+
+  /**
+   * Stores {@code data} under {@code key}, replacing any previous value. Implementations must never
+   * leave a partially written value visible to {@link #load}.
+   */
+  void store(String key, byte[] data) throws IOException;
+
+  /** Removes the value stored under {@code key}, if any. */
+  void remove(String key) throws IOException;
+}
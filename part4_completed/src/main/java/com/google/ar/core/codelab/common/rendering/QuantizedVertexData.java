@@ -0,0 +1,182 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact GPU vertex layout for a {@link MeshData}, 16 bytes per vertex instead of 32:
+ *
+ * <pre>
+ *   short[4] position, normalized, mapped onto the mesh bounding box (the fourth is padding)
+ *   short[2] normal, octahedral-encoded, normalized
+ *   ushort[2] texture coordinate, normalized, mapped onto the mesh UV range
+ * </pre>
+ *
+ * <p>Shaders undo the position and texture coordinate mappings with the values from {@link
+ * #getPositionScale}, {@link #getPositionOffset} and {@link #getTexCoordScaleOffset}; see {@code
+ * shaders/vertex_quantization.glsl}.
+ */
+public final class QuantizedVertexData {
+  public static final int POSITION_OFFSET = 0;
+  public static final int NORMAL_OFFSET = 4 * 2;
+  public static final int TEXCOORD_OFFSET = 6 * 2;
+  public static final int VERTEX_STRIDE = 8 * 2;
+
+  private static final float SHORT_MAX = Short.MAX_VALUE;
+  private static final float UNSIGNED_SHORT_MAX = 0xFFFF;
+
+  private final ByteBuffer vertexData;
+  private final MeshBounds bounds;
+  private final float[] positionScale;
+  private final float[] positionOffset;
+  private final float[] texCoordScaleOffset;
+
+  /**
+   * Wraps vertices quantized earlier, such as those stored by {@link BinaryMeshFormat}.
+   *
+   * @param vertexData Vertices in the layout described above, positioned at the first vertex.
+   * @param bounds Bounds of the positions before quantization, which define their mapping.
+   * @param texCoordScaleOffset Mapping of the texture coordinates, as from {@link
+   *     #getTexCoordScaleOffset}.
+   */
+  QuantizedVertexData(ByteBuffer vertexData, MeshBounds bounds, float[] texCoordScaleOffset) {
+    this.vertexData = vertexData;
+    this.bounds = bounds;
+    this.texCoordScaleOffset = texCoordScaleOffset;
+    positionScale = new float[3];
+    positionOffset = new float[3];
+    for (int axis = 0; axis < 3; ++axis) {
+      positionScale[axis] = bounds.getExtent(axis);
+      positionOffset[axis] = bounds.getCenter(axis);
+    }
+  }
+
+  /**
+   * Quantizes the vertices of {@code mesh}. Indices are unaffected. Prefer {@link
+   * MeshData#getQuantizedVertices}, which quantizes each mesh only once.
+   */
+  public static QuantizedVertexData quantize(MeshData mesh) {
+    ByteBuffer source = mesh.getVertexData();
+    int base = source.position();
+    int vertexCount = mesh.getVertexCount();
+
+    MeshBounds bounds = MeshBounds.compute(mesh);
+
+    float[] texCoordMin = {Float.MAX_VALUE, Float.MAX_VALUE};
+    float[] texCoordMax = {-Float.MAX_VALUE, -Float.MAX_VALUE};
+    for (int i = 0; i < vertexCount; ++i) {
+      int offset = base + i * MeshData.VERTEX_STRIDE + MeshData.TEXCOORD_OFFSET;
+      for (int axis = 0; axis < 2; ++axis) {
+        float value = source.getFloat(offset + axis * 4);
+        texCoordMin[axis] = Math.min(texCoordMin[axis], value);
+        texCoordMax[axis] = Math.max(texCoordMax[axis], value);
+      }
+    }
+    float[] texCoordScaleOffset = new float[4];
+    if (vertexCount > 0) {
+      texCoordScaleOffset[0] = texCoordMax[0] - texCoordMin[0];
+      texCoordScaleOffset[1] = texCoordMax[1] - texCoordMin[1];
+      texCoordScaleOffset[2] = texCoordMin[0];
+      texCoordScaleOffset[3] = texCoordMin[1];
+    }
+
+    float[] positionScale = new float[3];
+    float[] positionOffset = new float[3];
+    for (int axis = 0; axis < 3; ++axis) {
+      positionScale[axis] = bounds.getExtent(axis);
+      positionOffset[axis] = bounds.getCenter(axis);
+    }
+    ByteBuffer vertexData =
+        ByteBuffer.allocateDirect(vertexCount * VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+    float[] normal = new float[3];
+    float[] encodedNormal = new float[2];
+    for (int i = 0; i < vertexCount; ++i) {
+      int offset = base + i * MeshData.VERTEX_STRIDE;
+      for (int axis = 0; axis < 3; ++axis) {
+        float value = source.getFloat(offset + MeshData.POSITION_OFFSET + axis * 4);
+        vertexData.putShort(
+            toSnorm(divideOrZero(value - positionOffset[axis], positionScale[axis])));
+      }
+      vertexData.putShort((short) 0);
+
+      for (int axis = 0; axis < 3; ++axis) {
+        normal[axis] = source.getFloat(offset + MeshData.NORMAL_OFFSET + axis * 4);
+      }
+      encodeOctahedral(normal, encodedNormal);
+      vertexData.putShort(toSnorm(encodedNormal[0]));
+      vertexData.putShort(toSnorm(encodedNormal[1]));
+
+      for (int axis = 0; axis < 2; ++axis) {
+        float value = source.getFloat(offset + MeshData.TEXCOORD_OFFSET + axis * 4);
+        float unit = divideOrZero(value - texCoordScaleOffset[2 + axis], texCoordScaleOffset[axis]);
+        vertexData.putShort((short) Math.round(clamp(unit, 0.0f, 1.0f) * UNSIGNED_SHORT_MAX));
+      }
+    }
+    vertexData.flip();
+    return new QuantizedVertexData(vertexData, bounds, texCoordScaleOffset);
+  }
+
+  /**
+   * Maps a unit vector onto the [-1, 1] square: the octahedron |x| + |y| + |z| = 1 is projected
+   * onto the xy plane and its lower half folded over the diagonals.
+   */
+  static void encodeOctahedral(float[] normal, float[] encoded) {
+    float sum = Math.abs(normal[0]) + Math.abs(normal[1]) + Math.abs(normal[2]);
+    if (sum == 0.0f) {
+      encoded[0] = 0.0f;
+      encoded[1] = 0.0f;
+      return;
+    }
+    float x = normal[0] / sum;
+    float y = normal[1] / sum;
+    if (normal[2] < 0.0f) {
+      float foldedX = (1.0f - Math.abs(y)) * (x >= 0.0f ? 1.0f : -1.0f);
+      float foldedY = (1.0f - Math.abs(x)) * (y >= 0.0f ? 1.0f : -1.0f);
+      x = foldedX;
+      y = foldedY;
+    }
+    encoded[0] = x;
+    encoded[1] = y;
+  }
+
+  /** Vertices in the layout described above, positioned at the first vertex. */
+  public ByteBuffer getVertexData() {
+    return vertexData;
+  }
+
+  public int getByteSize() {
+    return vertexData.remaining();
+  }
+
+  /** Object-space bounds of the positions before quantization. */
+  public MeshBounds getBounds() {
+    return bounds;
+  }
+
+  /** Half the bounding box size per axis, for {@code u_PositionScale}. Do not modify. */
+  public float[] getPositionScale() {
+    return positionScale;
+  }
+
+  /** Bounding box center, for {@code u_PositionOffset}. Do not modify. */
+  public float[] getPositionOffset() {
+    return positionOffset;
+  }
+
+  /** UV range size in xy and minimum in zw, for {@code u_TexCoordScaleOffset}. Do not modify. */
+  public float[] getTexCoordScaleOffset() {
+    return texCoordScaleOffset;
+  }
+
+  private static short toSnorm(float value) {
+    return (short) Math.round(clamp(value, -1.0f, 1.0f) * SHORT_MAX);
+  }
+
+  private static float divideOrZero(float numerator, float denominator) {
+    return denominator == 0.0f ? 0.0f : numerator / denominator;
+  }
+
+  private static float clamp(float value, float min, float max) {
+    return Math.max(min, Math.min(max, value));
+  }
+}
@@ -0,0 +1,202 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of preprocessed shader sources, compiled shaders and linked programs.
+ *
+ * <p>Programs are keyed by vertex shader, fragment shader and defines, so renderers that ask for
+ * the same variant share one program and switching between variants at runtime never recompiles.
+ * Compiled objects belong to the EGL context they were created in; when {@link #getInstance} is
+ * called with a different current context, the shader and program caches are dropped while the
+ * preprocessed sources are kept.
+ *
+ * <p>With a {@link ProgramBinaryCache} set, programs not yet linked in this context are first
+ * restored from their saved binaries, and programs compiled from source are saved for next time.
+ */
+public final class ShaderLibrary {
+  private static ShaderLibrary instance;
+
+  private final ShaderPreprocessor preprocessor;
+  private final Map<String, Integer> shaders = new HashMap<>();
+  private final Map<String, Integer> programs = new HashMap<>();
+  private Gl gl;
+  private Object glContext;
+  private ProgramBinaryCache programBinaryCache;
+
+  private int compiledShaderCount;
+  private int linkedProgramCount;
+  private int programCacheHits;
+
+  /**
+   * Creates a library of its own, bound to the current context of {@link GlBackend}. Tests use it
+   * to read shaders from the source tree instead of the assets of a {@link Context}.
+   */
+  ShaderLibrary(ShaderPreprocessor preprocessor) {
+    this.preprocessor = preprocessor;
+    bindToCurrentContext();
+  }
+
+  /**
+   * Returns the shared library, reading shader files from the assets of {@code context}. Must be
+   * called on the GL thread.
+   */
+  public static synchronized ShaderLibrary getInstance(Context context) {
+    if (instance == null) {
+      instance =
+          new ShaderLibrary(new ShaderPreprocessor(new AssetSourceLoader(context.getAssets())));
+    }
+    instance.bindToCurrentContext();
+    return instance;
+  }
+
+  public ShaderPreprocessor getPreprocessor() {
+    return preprocessor;
+  }
+
+  /**
+   * Enables loading and saving program binaries. Pass null to always compile from source. Only set
+   * a cache if {@link ProgramBinaryCache#isSupported} returns true for the current context.
+   */
+  public void setProgramBinaryCache(ProgramBinaryCache programBinaryCache) {
+    this.programBinaryCache = programBinaryCache;
+  }
+
+  public ProgramBinaryCache getProgramBinaryCache() {
+    return programBinaryCache;
+  }
+
+  /**
+   * Returns a linked program for the given shader pair and defines, compiling and linking it on
+   * first use.
+   *
+   * @param tag Log tag of the caller, used in error messages.
+   * @param vertexFilename Asset name of the vertex shader.
+   * @param fragmentFilename Asset name of the fragment shader.
+   * @param defineValues Macros defined in both shaders, or null.
+   * @return The program object handle.
+   */
+  public int getProgram(
+      String tag,
+      String vertexFilename,
+      String fragmentFilename,
+      Map<String, Integer> defineValues)
+      throws IOException {
+    String key =
+        vertexFilename
+            + '|'
+            + fragmentFilename
+            + '|'
+            + ShaderPreprocessor.definesKey(defineValues);
+    Integer cached = programs.get(key);
+    if (cached != null) {
+      ++programCacheHits;
+      return cached;
+    }
+
+    int program = gl.glCreateProgram();
+    String sourceHash = null;
+    if (programBinaryCache != null) {
+      sourceHash =
+          programBinaryCache.computeSourceHash(
+              preprocessor.getSource(vertexFilename, defineValues),
+              preprocessor.getSource(fragmentFilename, defineValues));
+      if (programBinaryCache.load(key, sourceHash, program)) {
+        programs.put(key, program);
+        return program;
+      }
+      gl.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+    }
+
+    int vertexShader = getShader(tag, GLES20.GL_VERTEX_SHADER, vertexFilename, defineValues);
+    int fragmentShader = getShader(tag, GLES20.GL_FRAGMENT_SHADER, fragmentFilename, defineValues);
+    gl.glAttachShader(program, vertexShader);
+    gl.glAttachShader(program, fragmentShader);
+    gl.glLinkProgram(program);
+    ShaderUtil.checkLinkStatus(tag, program);
+    ++linkedProgramCount;
+
+    if (programBinaryCache != null) {
+      programBinaryCache.save(key, sourceHash, program);
+    }
+    programs.put(key, program);
+    return program;
+  }
+
+  /**
+   * Returns a compiled shader object for the given file and defines, compiling it on first use.
+   */
+  public int getShader(String tag, int type, String filename, Map<String, Integer> defineValues)
+      throws IOException {
+    String key = type + "|" + filename + '|' + ShaderPreprocessor.definesKey(defineValues);
+    Integer cached = shaders.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    String source = preprocessor.getSource(filename, defineValues);
+    int shader = ShaderUtil.compileShader(tag, type, source);
+    ++compiledShaderCount;
+    shaders.put(key, shader);
+    return shader;
+  }
+
+  /** Number of shader compilations performed in the current EGL context. */
+  public int getCompiledShaderCount() {
+    return compiledShaderCount;
+  }
+
+  /** Number of programs linked in the current EGL context. */
+  public int getLinkedProgramCount() {
+    return linkedProgramCount;
+  }
+
+  /** Number of {@link #getProgram} calls answered from the cache. */
+  public int getProgramCacheHits() {
+    return programCacheHits;
+  }
+
+  private void bindToCurrentContext() {
+    gl = GlBackend.get();
+    Object current = gl.getCurrentContext();
+    if (current != null && !current.equals(glContext)) {
+      // Objects from the previous context are gone with it; only the sources remain valid.
+      shaders.clear();
+      programs.clear();
+      compiledShaderCount = 0;
+      linkedProgramCount = 0;
+      programCacheHits = 0;
+      glContext = current;
+    }
+  }
+
+  /** Reads shader files from the application assets. */
+  private static final class AssetSourceLoader implements ShaderPreprocessor.SourceLoader {
+    private final AssetManager assets;
+
+    AssetSourceLoader(AssetManager assets) {
+      this.assets = assets;
+    }
+
+    @Override
+    public String load(String filename) throws IOException {
+      try (InputStream inputStream = assets.open(filename);
+          BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+          sb.append(line).append('\n');
+        }
+        return sb.toString();
+      }
+    }
+  }
+}
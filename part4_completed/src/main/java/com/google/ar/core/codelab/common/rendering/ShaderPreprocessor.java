@@ -0,0 +1,165 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Expands {@code #include "file"} directives and injects {@code #define} variants into shader
+ * source. Each file is read and expanded at most once; later requests are served from a cache. This
+ * class does not touch OpenGL, so it can be exercised on the JVM with an in-memory {@link
+ * SourceLoader}.
+ */
+public final class ShaderPreprocessor {
+  private static final String INCLUDE_DIRECTIVE = "#include";
+  private static final String VERSION_300_ES_DIRECTIVE = "#version 300 es\n";
+
+  /**
+   * Define that selects GLSL ES 3.00. When it is set to a nonzero value, {@link #getSource} also
+   * emits the {@code #version 300 es} directive, which shaders shared with GLSL ES 1.00 cannot
+   * contain themselves; see {@code shaders/glsl_compat_vertex.glsl}.
+   */
+  public static final String GLSL_300_ES = "GLSL_300_ES";
+
+  /** Supplies raw shader text by file name. */
+  public interface SourceLoader {
+    String load(String filename) throws IOException;
+  }
+
+  private final SourceLoader loader;
+  private final Map<String, String> expandedSources = new HashMap<>();
+  private final Deque<String> includeStack = new ArrayDeque<>();
+  private int loadCount;
+
+  public ShaderPreprocessor(SourceLoader loader) {
+    this.loader = loader;
+  }
+
+  /**
+   * Returns the source of {@code filename} with all includes expanded and the given macros defined.
+   *
+   * @param filename Name of the shader file, as understood by the {@link SourceLoader}.
+   * @param defineValues Names and values of the preprocessor macros to define, or null.
+   */
+  public synchronized String getSource(String filename, Map<String, Integer> defineValues)
+      throws IOException {
+    return insertDefines(getExpandedSource(filename), defineValues);
+  }
+
+  /** Returns the source of {@code filename} with all includes expanded. */
+  public synchronized String getExpandedSource(String filename) throws IOException {
+    String cached = expandedSources.get(filename);
+    if (cached != null) {
+      return cached;
+    }
+    if (includeStack.contains(filename)) {
+      throw new IOException("Recursive shader include: " + includeStack + " -> " + filename);
+    }
+    includeStack.push(filename);
+    try {
+      String raw = loader.load(filename);
+      ++loadCount;
+      String expanded = expandIncludes(raw);
+      expandedSources.put(filename, expanded);
+      return expanded;
+    } finally {
+      includeStack.pop();
+    }
+  }
+
+  /** Number of files read through the {@link SourceLoader} so far. */
+  public synchronized int getLoadCount() {
+    return loadCount;
+  }
+
+  /** Drops all cached sources, e.g. after shader assets were replaced during development. */
+  public synchronized void clear() {
+    expandedSources.clear();
+  }
+
+  private String expandIncludes(String raw) throws IOException {
+    StringBuilder sb = new StringBuilder(raw.length());
+    int lineStart = 0;
+    while (lineStart < raw.length()) {
+      int lineEnd = raw.indexOf('\n', lineStart);
+      if (lineEnd < 0) {
+        lineEnd = raw.length();
+      }
+      String line = raw.substring(lineStart, lineEnd);
+      if (line.endsWith("\r")) {
+        line = line.substring(0, line.length() - 1);
+      }
+      String includeFilename = parseInclude(line);
+      if (includeFilename != null) {
+        sb.append(getExpandedSource(includeFilename));
+      } else {
+        sb.append(line).append('\n');
+      }
+      lineStart = lineEnd + 1;
+    }
+    return sb.toString();
+  }
+
+  /** Returns the file named by an {@code #include} line, or null if the line is not an include. */
+  static String parseInclude(String line) {
+    String trimmed = line.trim();
+    if (!trimmed.startsWith(INCLUDE_DIRECTIVE)) {
+      return null;
+    }
+    String argument = trimmed.substring(INCLUDE_DIRECTIVE.length()).trim();
+    if (argument.length() < 2 || argument.charAt(0) != '"') {
+      return null;
+    }
+    int close = argument.indexOf('"', 1);
+    if (close < 0) {
+      return null;
+    }
+    return argument.substring(1, close);
+  }
+
+  /**
+   * Inserts {@code #define} lines into shader source. The defines go after a leading {@code
+   * #version} directive, if any, since that must be the first line of the shader. A nonzero {@link
+   * #GLSL_300_ES} define adds that directive to source without one.
+   */
+  static String insertDefines(String code, Map<String, Integer> defineValues) {
+    if (defineValues == null || defineValues.isEmpty()) {
+      return code;
+    }
+    Integer glsl300Es = defineValues.get(GLSL_300_ES);
+    if (glsl300Es != null && glsl300Es != 0 && !code.startsWith("#version")) {
+      code = VERSION_300_ES_DIRECTIVE + code;
+    }
+    StringBuilder defines = new StringBuilder();
+    for (Map.Entry<String, Integer> entry : new TreeMap<>(defineValues).entrySet()) {
+      defines.append("#define ").append(entry.getKey()).append(' ').append(entry.getValue());
+      defines.append('\n');
+    }
+    if (code.startsWith("#version")) {
+      int lineEnd = code.indexOf('\n') + 1;
+      if (lineEnd == 0) {
+        return code + "\n" + defines;
+      }
+      return code.substring(0, lineEnd) + defines + code.substring(lineEnd);
+    }
+    return defines + code;
+  }
+
+  /**
+   * Returns a canonical key for a set of defines, independent of map iteration order. Used to key
+   * compiled shader and program caches.
+   */
+  public static String definesKey(Map<String, Integer> defineValues) {
+    if (defineValues == null || defineValues.isEmpty()) {
+      return "";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Integer> entry : new TreeMap<>(defineValues).entrySet()) {
+      sb.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
+    }
+    return sb.toString();
+  }
+}
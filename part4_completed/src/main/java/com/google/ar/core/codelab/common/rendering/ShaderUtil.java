@@ -17,10 +17,8 @@ package com.google.ar.core.codelab.common.rendering;
 import android.content.Context;
 import android.opengl.GLES20;
 import android.util.Log;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.Map;
 
 /** Shader helper functions. */
 public class ShaderUtil {
@@ -33,19 +31,47 @@ public class ShaderUtil {
    */
   public static int loadGLShader(String tag, Context context, int type, String filename)
       throws IOException {
-    String code = readShaderFileFromAssets(context, filename);
-    int shader = GLES20.glCreateShader(type);
-    GLES20.glShaderSource(shader, code);
-    GLES20.glCompileShader(shader);
+    return loadGLShader(tag, context, type, filename, null);
+  }
+
+  /**
+   * Converts a raw text file, saved as a resource, into an OpenGL ES shader, prepending a {@code
+   * #define} for each entry of {@code defineValues}. The shader is shared through {@link
+   * ShaderLibrary}, so asking for the same variant twice compiles it once.
+   *
+   * @param type The type of shader we will be creating.
+   * @param filename The filename of the asset file about to be turned into a shader.
+   * @param defineValues Names and values of the preprocessor macros to define, or null.
+   * @return The shader object handler.
+   */
+  public static int loadGLShader(
+      String tag, Context context, int type, String filename, Map<String, Integer> defineValues)
+      throws IOException {
+    return ShaderLibrary.getInstance(context).getShader(tag, type, filename, defineValues);
+  }
+
+  /**
+   * Compiles shader source into a new shader object.
+   *
+   * @param type The type of shader we will be creating.
+   * @param code Fully preprocessed shader source.
+   * @return The shader object handler.
+   * @throws RuntimeException If compilation fails.
+   */
+  static int compileShader(String tag, int type, String code) {
+    Gl gl = GlBackend.get();
+    int shader = gl.glCreateShader(type);
+    gl.glShaderSource(shader, code);
+    gl.glCompileShader(shader);
 
     // Get the compilation status.
     final int[] compileStatus = new int[1];
-    GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+    gl.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
 
     // If the compilation failed, delete the shader.
     if (compileStatus[0] == 0) {
-      Log.e(tag, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shader));
-      GLES20.glDeleteShader(shader);
+      Log.e(tag, "Error compiling shader: " + gl.glGetShaderInfoLog(shader));
+      gl.glDeleteShader(shader);
       shader = 0;
     }
 
@@ -57,16 +83,35 @@ public class ShaderUtil {
   }
 
   /**
-   * Checks if we've had an error inside of OpenGL ES, and if so what that error is.
+   * Checks that a program linked successfully.
+   *
+   * @throws RuntimeException If linking failed.
+   */
+  static void checkLinkStatus(String tag, int program) {
+    Gl gl = GlBackend.get();
+    final int[] linkStatus = new int[1];
+    gl.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+    if (linkStatus[0] == 0) {
+      String log = gl.glGetProgramInfoLog(program);
+      Log.e(tag, "Error linking program: " + log);
+      gl.glDeleteProgram(program);
+      throw new RuntimeException("Error linking program: " + log);
+    }
+  }
+
+  /**
+   * Checks if we've had an error inside of OpenGL ES, and if so what that error is. Checks on the
+   * per-frame paths go through {@link GlValidator} instead, which can skip them.
    *
    * @param label Label to report in case of error.
    * @throws RuntimeException If an OpenGL error is detected.
    */
   public static void checkGLError(String tag, String label) {
+    Gl gl = GlBackend.get();
     int lastError = GLES20.GL_NO_ERROR;
     // Drain the queue of all errors.
     int error;
-    while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+    while ((error = gl.glGetError()) != GLES20.GL_NO_ERROR) {
       Log.e(tag, label + ": glError " + error);
       lastError = error;
     }
@@ -74,33 +119,4 @@ public class ShaderUtil {
       throw new RuntimeException(label + ": glError " + lastError);
     }
   }
-
-  /**
-   * Converts a raw shader file into a string.
-   *
-   * @param filename The filename of the shader file about to be turned into a shader.
-   * @return The context of the text file, or null in case of error.
-   */
-  private static String readShaderFileFromAssets(Context context, String filename)
-      throws IOException {
-    try (InputStream inputStream = context.getAssets().open(filename);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-      StringBuilder sb = new StringBuilder();
-      String line;
-      while ((line = reader.readLine()) != null) {
-        String[] tokens = line.split(" ", -1);
-        if (tokens[0].equals("#include")) {
-          String includeFilename = tokens[1];
-          includeFilename = includeFilename.replace("\"", "");
-          if (includeFilename.equals(filename)) {
-            throw new IOException("Do not include the calling file.");
-          }
-          sb.append(readShaderFileFromAssets(context, includeFilename));
-        } else {
-          sb.append(line).append("\n");
-        }
-      }
-      return sb.toString();
-    }
-  }
 }
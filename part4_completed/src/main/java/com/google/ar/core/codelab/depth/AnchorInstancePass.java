@@ -0,0 +1,79 @@
+package com.google.ar.core.codelab.depth;
+
+import com.google.ar.core.codelab.common.rendering.FrustumCuller;
+import com.google.ar.core.codelab.common.rendering.MeshBounds;
+
+/**
+ * Karenin anchor adımı: anchor pozlarını günceller, görüş hacminin tamamen dışında kalanları
+ * eler ve kalanları çizilecek örnekler olarak ekler. Kararlı durumda bellek ayırmaz; pozlar
+ * {@link AnchorStore} içindeki hazır dizilere okunur ve örnekler doğrudan alıcıya verilir.
+ *
+ * <p>ARCore'da {@code Anchor.getPose()} her çağrıda yeni bir {@code Pose} ayırır ve pozu okumanın
+ * başka yolu yoktur. Bu yüzden uygulamada takip edilen anchor başına kare başına bir {@code Pose}
+ * ayırması bilinen bir istisnadır; bu sınıfın kendisi ve {@link AnchorStore} ayırmaz. Sınıf
+ * ARCore'a bağlı değildir, bu yüzden JVM üzerinde sahte anchor türleriyle çalıştırılabilir.
+ *
+ * @param <A> anchor türü, uygulamada {@code com.google.ar.core.Anchor}.
+ */
+public final class AnchorInstancePass<A> {
+  /** Görünür bir anchor'ı çizilecek örneklere ekler; uygulamada renderer'ın addInstance'ı. */
+  public interface InstanceSink {
+    void addInstance(float[] modelMatrices, int offset, float scaleFactor);
+  }
+
+  private final AnchorStore<A> anchors;
+  private final AnchorStore.PoseSource<? super A> poseSource;
+  private final FrustumCuller frustumCuller;
+  private int trackedCount;
+  private int visibleCount;
+
+  public AnchorInstancePass(
+      AnchorStore<A> anchors,
+      AnchorStore.PoseSource<? super A> poseSource,
+      FrustumCuller frustumCuller) {
+    this.anchors = anchors;
+    this.poseSource = poseSource;
+    this.frustumCuller = frustumCuller;
+  }
+
+  /**
+   * Pozları günceller ve görünür anchor'ları {@code sink}'e ekler. Her karede bir kez çağrılır.
+   *
+   * @param objectBounds çizilecek modelin sınırları; model henüz yüklenmediyse null. Bu durumda
+   *     pozlar yine güncellenir ama hiçbir örnek eklenmez.
+   * @return görünür anchor sayısı.
+   */
+  public int run(
+      float[] projectionMatrix,
+      float[] viewMatrix,
+      MeshBounds objectBounds,
+      float scaleFactor,
+      InstanceSink sink) {
+    trackedCount = anchors.updatePoses(poseSource);
+    visibleCount = 0;
+    if (objectBounds == null) {
+      return 0;
+    }
+    frustumCuller.update(projectionMatrix, viewMatrix);
+    float[] anchorMatrices = anchors.getPoseMatrices();
+    for (int i = 0; i < trackedCount; ++i) {
+      int offset = anchors.getTrackedSlot(i) * AnchorStore.MATRIX_SIZE;
+      if (!frustumCuller.isVisible(anchorMatrices, offset, scaleFactor, objectBounds)) {
+        continue;
+      }
+      sink.addInstance(anchorMatrices, offset, scaleFactor);
+      ++visibleCount;
+    }
+    return visibleCount;
+  }
+
+  /** Son {@link #run} çağrısında takip edilen anchor sayısı. */
+  public int getTrackedCount() {
+    return trackedCount;
+  }
+
+  /** Son {@link #run} çağrısında çizime eklenen anchor sayısı. */
+  public int getVisibleCount() {
+    return visibleCount;
+  }
+}
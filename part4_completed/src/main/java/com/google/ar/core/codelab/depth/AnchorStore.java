@@ -0,0 +1,149 @@
+package com.google.ar.core.codelab.depth;
+
+/**
+ * Sabit kapasiteli bir halka tampon içinde anchor'ları ve her birinin önbelleğe alınmış poz
+ * matrisini tutar. Kapasite dolduğunda en eski anchor O(1) maliyetle çıkarılır.
+ *
+ * <p>Veriler yapı dizisi yerine dizi yapısı (struct-of-arrays) olarak saklanır: anchor
+ * referansları, poz matrisleri ve takip durumları ayrı, önceden ayrılmış dizilerdedir. {@link
+ * #updatePoses} her karede yalnızca takip edilen girişleri {@link #getTrackedSlot} listesine yazar;
+ * kararlı durumda hiçbir anchor için bellek ayrılmaz. Sınıf ARCore'a bağlı değildir, bu yüzden
+ * JVM üzerinde sahte anchor türleriyle çalıştırılabilir.
+ *
+ * @param <A> anchor türü, uygulamada {@code com.google.ar.core.Anchor}.
+ */
+public final class AnchorStore<A> {
+  /** Poz matrisi başına float sayısı (sütun öncelikli 4x4). */
+  public static final int MATRIX_SIZE = 16;
+
+  /** Bir anchor'ın güncel pozunu okur. */
+  public interface PoseSource<A> {
+    /**
+     * Anchor takip ediliyorsa pozunu {@code matrices} içine {@code offset} konumundan başlayarak
+     * yazar ve true döner; takip edilmiyorsa diziye dokunmadan false döner.
+     */
+    boolean readPose(A anchor, float[] matrices, int offset);
+  }
+
+  private final Object[] anchors;
+  private final float[] poseMatrices;
+  private final boolean[] tracking;
+  private final int[] trackedSlots;
+  private int head;
+  private int size;
+  private int trackedCount;
+
+  /** @param capacity aynı anda tutulabilecek en fazla anchor sayısı. */
+  public AnchorStore(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Kapasite pozitif olmalı: " + capacity);
+    }
+    anchors = new Object[capacity];
+    poseMatrices = new float[capacity * MATRIX_SIZE];
+    tracking = new boolean[capacity];
+    trackedSlots = new int[capacity];
+  }
+
+  /**
+   * Yeni bir anchor ekler. Kapasite doluysa en eski anchor çıkarılır ve döndürülür; çağıran onu
+   * ayırmalıdır (ARCore için {@code detach()}).
+   *
+   * @return çıkarılan anchor ya da yer varsa null.
+   */
+  public A add(A anchor) {
+    A evicted = null;
+    int slot;
+    if (size == anchors.length) {
+      slot = head;
+      evicted = get(0);
+      head = next(head);
+    } else {
+      slot = slotOf(size);
+      ++size;
+    }
+    anchors[slot] = anchor;
+    tracking[slot] = false;
+    return evicted;
+  }
+
+  /**
+   * Tüm anchor'ların pozlarını okur ve takip edilenlerin listesini yeniler. Her karede bir kez,
+   * çizimden önce çağrılmalıdır.
+   *
+   * @return takip edilen anchor sayısı.
+   */
+  public int updatePoses(PoseSource<? super A> source) {
+    trackedCount = 0;
+    for (int i = 0; i < size; ++i) {
+      int slot = slotOf(i);
+      @SuppressWarnings("unchecked")
+      A anchor = (A) anchors[slot];
+      boolean isTracking = source.readPose(anchor, poseMatrices, slot * MATRIX_SIZE);
+      tracking[slot] = isTracking;
+      if (isTracking) {
+        trackedSlots[trackedCount++] = slot;
+      }
+    }
+    return trackedCount;
+  }
+
+  /** Son {@link #updatePoses} çağrısında takip edilen anchor sayısı. */
+  public int getTrackedCount() {
+    return trackedCount;
+  }
+
+  /**
+   * Takip edilen {@code index}. girişin yuvası. Pozu {@link #getPoseMatrices()} içinde {@code slot
+   * * MATRIX_SIZE} konumundadır.
+   */
+  public int getTrackedSlot(int index) {
+    return trackedSlots[index];
+  }
+
+  /** Tüm yuvaların poz matrisleri. Yalnızca takip edilen yuvalar güncel veri içerir. */
+  public float[] getPoseMatrices() {
+    return poseMatrices;
+  }
+
+  /** Yuvadaki anchor son {@link #updatePoses} çağrısında takip ediliyor muydu. */
+  public boolean isTracking(int slot) {
+    return tracking[slot];
+  }
+
+  /** Eskiden yeniye {@code index}. anchor. */
+  @SuppressWarnings("unchecked")
+  public A get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+    }
+    return (A) anchors[slotOf(index)];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return anchors.length;
+  }
+
+  /** Tüm anchor'ları bırakır. Çağıran, gerekiyorsa önce {@link #get} ile onları ayırmalıdır. */
+  public void clear() {
+    for (int i = 0; i < anchors.length; ++i) {
+      anchors[i] = null;
+      tracking[i] = false;
+    }
+    head = 0;
+    size = 0;
+    trackedCount = 0;
+  }
+
+  private int slotOf(int index) {
+    int slot = head + index;
+    return slot >= anchors.length ? slot - anchors.length : slot;
+  }
+
+  private int next(int slot) {
+    return slot + 1 == anchors.length ? 0 : slot + 1;
+  }
+}
@@ -0,0 +1,89 @@
+package com.google.ar.core.codelab.depth;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * DEPTH16 görüntü düzlemlerini {@link DepthFrame} içine kopyalar. Android sınıflarına bağlı
+ * değildir, bu yüzden sentetik tamponlarla doğrudan JVM üzerinde çalıştırılabilir.
+ *
+ * <p>Satırlar sıkıca paketlendiğinde tüm düzlem tek bir toplu {@link ShortBuffer#get(short[], int,
+ * int)} çağrısıyla, aksi halde satır satır kopyalanır. Piksel başına kutulama ya da nesne oluşturma
+ * yapılmaz.
+ */
+public final class Depth16Decoder {
+  /** DEPTH16 biçiminde derinlik aralığını tutan alt 13 bit. Üst 3 bit güven değeridir. */
+  public static final int DEPTH16_RANGE_MASK = 0x1FFF;
+
+  private static final int BYTES_PER_PIXEL = 2;
+
+  private Depth16Decoder() {}
+
+  /**
+   * Bir DEPTH16 düzlemini {@code out} karesine kopyalar.
+   *
+   * @param plane düzlem verisi. Konumu ve sınırı değiştirilmez.
+   * @param width piksel cinsinden genişlik.
+   * @param height piksel cinsinden yükseklik.
+   * @param rowStrideBytes bir satırın bayt cinsinden uzunluğu.
+   * @param pixelStrideBytes ardışık iki piksel arasındaki bayt sayısı (DEPTH16 için normalde 2).
+   * @param timestampNs karenin zaman damgası.
+   * @param stripConfidence true ise üst 3 güven biti temizlenir. {@code acquireDepthImage16Bits()}
+   *     görüntüleri için false, eski {@code acquireDepthImage()} görüntüleri için true olmalıdır.
+   * @param out sonucun yazılacağı kare.
+   */
+  public static void decode(
+      ByteBuffer plane,
+      int width,
+      int height,
+      int rowStrideBytes,
+      int pixelStrideBytes,
+      long timestampNs,
+      boolean stripConfidence,
+      DepthFrame out) {
+    if (rowStrideBytes < width * pixelStrideBytes || pixelStrideBytes < BYTES_PER_PIXEL) {
+      throw new IllegalArgumentException(
+          "Geçersiz adım: rowStride=" + rowStrideBytes + ", pixelStride=" + pixelStrideBytes);
+    }
+    int requiredBytes = height == 0 ? 0 : (height - 1) * rowStrideBytes + width * pixelStrideBytes;
+    if (plane.remaining() < requiredBytes) {
+      throw new IllegalArgumentException(
+          "Derinlik düzlemi çok küçük: " + plane.remaining() + " < " + requiredBytes);
+    }
+
+    out.reset(width, height, timestampNs);
+    short[] dst = out.getData();
+
+    if (pixelStrideBytes == BYTES_PER_PIXEL) {
+      ShortBuffer src = plane.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+      int rowStrideShorts = rowStrideBytes / BYTES_PER_PIXEL;
+      if (rowStrideBytes == width * BYTES_PER_PIXEL) {
+        src.get(dst, 0, width * height);
+      } else {
+        for (int y = 0; y < height; ++y) {
+          src.position(y * rowStrideShorts);
+          src.get(dst, y * width, width);
+        }
+      }
+    } else {
+      // Seyrek piksel adımı: ARCore'da görülmez, ama yine de doğru sonuç üretilir.
+      ByteBuffer src = plane.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      int base = src.position();
+      for (int y = 0; y < height; ++y) {
+        int rowOffset = base + y * rowStrideBytes;
+        int dstOffset = y * width;
+        for (int x = 0; x < width; ++x) {
+          dst[dstOffset + x] = src.getShort(rowOffset + x * pixelStrideBytes);
+        }
+      }
+    }
+
+    if (stripConfidence) {
+      int count = width * height;
+      for (int i = 0; i < count; ++i) {
+        dst[i] = (short) (dst[i] & DEPTH16_RANGE_MASK);
+      }
+    }
+  }
+}
@@ -42,17 +42,30 @@ import com.google.ar.core.codelab.common.helpers.FullScreenHelper;
 import com.google.ar.core.codelab.common.helpers.SnackbarHelper;
 import com.google.ar.core.codelab.common.helpers.TapHelper;
 import com.google.ar.core.codelab.common.helpers.TrackingStateHelper;
+import com.google.ar.core.codelab.common.metrics.MetricsHttpServer;
+import com.google.ar.core.codelab.common.metrics.MetricsRegistry;
+import com.google.ar.core.codelab.common.profiling.FrameProfiler;
+import com.google.ar.core.codelab.common.profiling.GpuTimerQueries;
+import com.google.ar.core.codelab.common.profiling.TraceRecorder;
+import com.google.ar.core.codelab.common.rendering.AssetLoader;
 import com.google.ar.core.codelab.common.rendering.BackgroundRenderer;
+import com.google.ar.core.codelab.common.rendering.EglContextFactory;
+import com.google.ar.core.codelab.common.rendering.FileProgramBinaryStore;
+import com.google.ar.core.codelab.common.rendering.GlCapabilities;
+import com.google.ar.core.codelab.common.rendering.GlValidator;
+import com.google.ar.core.codelab.common.rendering.GpuResourceCache;
 import com.google.ar.core.codelab.common.rendering.ObjectRenderer;
 import com.google.ar.core.codelab.common.rendering.OcclusionObjectRenderer;
+import com.google.ar.core.codelab.common.rendering.ProgramBinaryCache;
+import com.google.ar.core.codelab.common.rendering.ShaderLibrary;
 import com.google.ar.core.exceptions.CameraNotAvailableException;
 import com.google.ar.core.exceptions.UnavailableApkTooOldException;
 import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
 import com.google.ar.core.exceptions.UnavailableDeviceNotCompatibleException;
 import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
 import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
@@ -79,20 +92,84 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
   private final BackgroundRenderer backgroundRenderer = new BackgroundRenderer();
   private final ObjectRenderer virtualObject = new ObjectRenderer();
   private final OcclusionObjectRenderer occludedVirtualObject = new OcclusionObjectRenderer();
-
-  // Geçici matris, her bir çerçeve için yapılan işlemleri azaltmak için burada ayrılmıştır.
-  private final float[] anchorMatrix = new float[16];
-
-  private static final String SEARCHING_PLANE_MESSAGE = "Lütfen yavaşça etrafta dolaşın...";
-  private static final String PLANES_FOUND_MESSAGE = "Nesneleri yerleştirmek için dokunun.";
-  private static final String DEPTH_NOT_AVAILABLE_MESSAGE = "[Bu cihazda derinlik desteklenmiyor]";
-
-  // Dokunarak oluşturulan nesneler için renkli bir şekilde kullanılan Anchor'lar.
-  private static final float[] OBJECT_COLOR = new float[] {139.0f, 195.0f, 74.0f, 255.0f};
-  private final ArrayList<Anchor> anchors = new ArrayList<>();
+  // Modeller ve dokular arka planda okunur; GL yüklemeleri her karede sınırlı bir sürede yapılır.
+  private final AssetLoader assetLoader = new AssetLoader();
+
+  // Aynı anda tutulan en fazla anchor sayısı. Dolduğunda en eski anchor ayrılır.
+  private static final int MAX_ANCHORS = 2048;
+  private final AnchorStore<Anchor> anchors = new AnchorStore<>(MAX_ANCHORS);
+
+  // Takip edilen bir düzlemi hatırlar; böylece düzlem bulunduktan sonra her karede tüm düzlemlerin
+  // koleksiyonu alınmaz.
+  private final PlaneTrackingMonitor<Plane> planeTracking =
+          new PlaneTrackingMonitor<>(
+                  new PlaneTrackingMonitor.PlaneSource<Plane>() {
+                    @Override
+                    public Iterable<Plane> getAllPlanes() {
+                      return session.getAllTrackables(Plane.class);
+                    }
+
+                    @Override
+                    public boolean isTracking(Plane plane) {
+                      return plane.getTrackingState() == TrackingState.TRACKING;
+                    }
+                  });
+
+  // Çizim yollarındaki glGetError kontrolleri. Her kontrol sürücüyü bekletebildiği için hata
+  // ayıklama derlemelerinde yalnızca her GlValidator.DEFAULT_SAMPLE_INTERVAL karede bir kontrol
+  // edilir, sürüm derlemelerinde hiç edilmez. Bir hatanın yerini bulmak için FULL seçilebilir; mod
+  // çalışırken de glValidator.setMode ile değiştirilebilir.
+  private static final GlValidator.Mode GL_VALIDATION_MODE =
+          BuildConfig.DEBUG ? GlValidator.Mode.SAMPLED : GlValidator.Mode.OFF;
+  private final GlValidator glValidator = GlValidator.getInstance();
+
+  // onDrawFrame'in aşamalarının süreleri. Kare düştüğünde hangi aşamanın yavaş olduğunu gösterir;
+  // özet onPause'da loglanır. Destekleyen cihazlarda GPU süreleri de ölçülür.
+  private final FrameProfiler profiler = new FrameProfiler();
+
+  // Zaman çizelgesi izi. Derinlik düğmesine uzun basılınca kayıt başlar, tekrar uzun basılınca
+  // durur ve Chrome trace JSON olarak uygulama depolamasına yazılır. Kapalıyken maliyeti yok
+  // denecek kadar azdır.
+  private final TraceRecorder tracer = TraceRecorder.getInstance();
+
+  // İz dosyalarının yazıldığı dizin.
+  private static final String TRACE_DIRECTORY = "traces";
+
+  // Saha testlerinde okunan ölçümler. Aktivite ve renderer'lar değerleri her karede buraya yazar.
+  private final MetricsRegistry metrics = new MetricsRegistry();
+
+  // onDrawFrame'in her karede çalışan gövdesi. ARCore oturumunu ve görünümleri aşağıdaki
+  // ArFrameSource ve ArStatusView üzerinden kullanır; aşamalarını profiler'a, ölçümlerini
+  // metrics'e ekler.
+  private final ArFrameSource frameSource = new ArFrameSource();
+  private final FrameRenderer<Anchor> frameRenderer =
+          new FrameRenderer<>(
+                  frameSource,
+                  new ArStatusView(),
+                  anchors,
+                  planeTracking,
+                  depthTexture,
+                  virtualObject,
+                  occludedVirtualObject,
+                  assetLoader,
+                  profiler,
+                  metrics);
+
+  // true yapıldığında ölçümler localhost:METRICS_PORT/metrics adresinde Prometheus metin biçiminde
+  // sunulur. Cihazdan okumak için: adb forward tcp:9464 tcp:9464
+  // INTERNET izni yalnızca src/debug bildiriminde olduğundan sunucu sürüm derlemelerinde başlamaz.
+  private static final boolean METRICS_SERVER_ENABLED = false;
+  private static final int METRICS_PORT = 9464;
+  private MetricsHttpServer metricsServer;
+
+  // Büyük nesnelerde parça maliyetini karşılaştırmak için LEGACY_25_TAP ile değiştirilebilir.
+  private static final OcclusionObjectRenderer.OcclusionMode OCCLUSION_MODE =
+          OcclusionObjectRenderer.OcclusionMode.PREFILTERED;
+
+  // Derlenmiş shader programlarının saklandığı dizin. Uygulama güncellendiğinde sistem temizler.
+  private static final String PROGRAM_BINARY_DIRECTORY = "program_binaries";
 
   private boolean showDepthMap = true;
-  private boolean calculateUVTransform = true;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -100,14 +177,29 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
     setContentView(R.layout.activity_main);
     surfaceView = findViewById(R.id.surfaceview);
     displayRotationHelper = new DisplayRotationHelper(/*context=*/ this);
+    profiler.setTraceRecorder(tracer);
+    glValidator.setMode(GL_VALIDATION_MODE);
 
     // Dokunma dinleyicisini kur.
     tapHelper = new TapHelper(/*context=*/ this);
     surfaceView.setOnTouchListener(tapHelper);
 
+    // Ölçümleri kaydet ve isteğe bağlı olarak yerel HTTP sunucusunu başlat.
+    registerMetrics();
+    if (METRICS_SERVER_ENABLED && BuildConfig.DEBUG) {
+      try {
+        metricsServer = MetricsHttpServer.start(metrics, METRICS_PORT);
+      } catch (IOException e) {
+        Log.e(TAG, "Ölçüm sunucusu başlatılamadı", e);
+      }
+    }
+
     // Renderer'ı kur.
     surfaceView.setPreserveEGLContextOnPause(true);
+    // Yapılandırma seçicisi ES 2.0 ile kalır; bağlam fabrikası önce ES 3.0 ister, olmazsa 2.0'a
+    // döner.
     surfaceView.setEGLContextClientVersion(2);
+    surfaceView.setEGLContextFactory(new EglContextFactory());
     surfaceView.setEGLConfigChooser(8, 8, 8, 8, 16, 0); // Alpha, düzlem karıştırma için kullanılır.
     surfaceView.setRenderer(this);
     surfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
@@ -120,12 +212,76 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
             view -> {
               if (isDepthSupported) {
                 showDepthMap = !showDepthMap;
+                frameRenderer.setShowDepthMap(showDepthMap);
                 toggleDepthButton.setText(showDepthMap ? R.string.hide_depth : R.string.show_depth);
               } else {
                 showDepthMap = false;
+                frameRenderer.setShowDepthMap(false);
                 toggleDepthButton.setText(R.string.depth_not_available);
               }
             });
+    toggleDepthButton.setOnLongClickListener(view -> toggleTracing());
+  }
+
+  // Aşama süreleri, renderer sayaçları ve kaybolan dokunmalar, sahipleri zaten tuttuğu için
+  // yalnızca bir kez kaydedilir; diğer değerler her karede onDrawFrame'de güncellenir.
+  private void registerMetrics() {
+    for (FrameProfiler.Stage stage : profiler.getStages()) {
+      metrics.register(
+              "frame_stage_seconds",
+              "Duration of each stage of onDrawFrame.",
+              stage.getCpuHistogram(),
+              "stage", stage.getName(), "clock", "cpu");
+      if (stage.isGpuTimed()) {
+        metrics.register(
+                "frame_stage_seconds",
+                "Duration of each stage of onDrawFrame.",
+                stage.getGpuHistogram(),
+                "stage", stage.getName(), "clock", "gpu");
+      }
+    }
+    metrics.registerCounter(
+            "taps_dropped_total",
+            "Taps lost because the tap queue was full.",
+            tapHelper::getDroppedTapCount);
+    metrics.registerCounter(
+            "gl_error_checks_total",
+            "Draw path checkpoints that read the GL error flag.",
+            glValidator::getCheckCount);
+    metrics.registerCounter(
+            "gl_errors_total",
+            "Draw path checkpoints that found a GL error.",
+            glValidator::getErrorCount);
+    virtualObject.registerMetrics(metrics);
+    occludedVirtualObject.registerMetrics(metrics);
+  }
+
+  // İz kaydını başlatır ya da durdurup dosyaya yazar. Yazma işlemi UI thread'ini bekletmemek için
+  // ayrı bir thread'de yapılır.
+  private boolean toggleTracing() {
+    if (!tracer.isEnabled()) {
+      tracer.start();
+      Toast.makeText(this, "İz kaydı başladı", Toast.LENGTH_SHORT).show();
+      return true;
+    }
+    tracer.stop();
+    File directory = getExternalFilesDir(TRACE_DIRECTORY);
+    final File traceDirectory =
+            directory != null ? directory : new File(getFilesDir(), TRACE_DIRECTORY);
+    new Thread(
+            () -> {
+              try {
+                File file = tracer.dumpTo(traceDirectory);
+                runOnUiThread(
+                        () -> Toast.makeText(this, "İz kaydedildi: " + file.getPath(),
+                                Toast.LENGTH_LONG).show());
+              } catch (IOException e) {
+                Log.e(TAG, "İz dosyası yazılamadı", e);
+              }
+            },
+            "trace-dump")
+            .start();
+    return true;
   }
 
   @Override
@@ -212,6 +368,22 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
       surfaceView.onPause();
       session.pause();
     }
+    Log.i(TAG, "Kare aşama süreleri:\n" + profiler.report());
+  }
+
+  @Override
+  protected void onDestroy() {
+    // Devam eden asset yüklemelerini bırak ve arka plan thread'lerini durdur.
+    assetLoader.shutdown();
+    if (metricsServer != null) {
+      try {
+        metricsServer.close();
+      } catch (IOException e) {
+        Log.w(TAG, "Ölçüm sunucusu kapatılamadı", e);
+      }
+      metricsServer = null;
+    }
+    super.onDestroy();
   }
 
   @Override
@@ -239,24 +411,53 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
 
     // Rendering nesnelerini hazırla. Bu, shader'ları okuma içerir, bu nedenle IOException fırlatabilir.
     try {
+      GlCapabilities glCapabilities = GlCapabilities.query();
+      GpuResourceCache gpuResources = GpuResourceCache.getInstance(/*context=*/ this);
+      // Zaman sorguları bağlama aittir; yeni bağlamda yeniden oluşturulur.
+      GpuTimerQueries.install(profiler, glCapabilities);
+
+      // Shader'lar bir önceki açılışta kaydedilen ikili programlardan yüklenir, böylece ilk kare
+      // kaynak derlemesini beklemez. ES 3.0 yoksa her seferinde kaynaktan derlenir.
+      if (ProgramBinaryCache.isSupported(glCapabilities)) {
+        File programBinaryDirectory = new File(getCodeCacheDir(), PROGRAM_BINARY_DIRECTORY);
+        ShaderLibrary.getInstance(/*context=*/ this)
+                .setProgramBinaryCache(
+                        new ProgramBinaryCache(
+                                new FileProgramBinaryStore(programBinaryDirectory),
+                                glCapabilities));
+      }
+
       // Derinlik dokusu, nesne gizliliği ve render için kullanılır.
-      depthTexture.createOnGlThread();
+      depthTexture.createOnGlThread(DepthTextureHandler.UploadMode.PIXEL_BUFFER, glCapabilities);
 
       // Texture oluştur ve ARCore session'a geç, update() sırasında doldurulması için.
       backgroundRenderer.createOnGlThread(/*context=*/ this);
       backgroundRenderer.createDepthShaders(/*context=*/ this, depthTexture.getDepthTexture());
 
-      virtualObject.createOnGlThread(/*context=*/ this, "models/andy.obj", "models/andy.png");
+      // Model ve doku arka planda yüklenir; nesneler hazır olduklarında görünür.
+      virtualObject.createOnGlThread(
+              /*context=*/ this,
+              "models/andy.obj",
+              "models/andy.png",
+              glCapabilities,
+              assetLoader);
       virtualObject.setMaterialProperties(0.0f, 2.0f, 0.5f, 6.0f);
 
       if (isDepthSupported) {
-        occludedVirtualObject.createOnGlThread(/*context=*/ this, "models/andy.obj", "models/andy.png");
+        occludedVirtualObject.createOnGlThread(
+                /*context=*/ this,
+                "models/andy.obj",
+                "models/andy.png",
+                glCapabilities,
+                assetLoader);
         occludedVirtualObject.setDepthTexture(
                 depthTexture.getDepthTexture(),
                 depthTexture.getDepthWidth(),
                 depthTexture.getDepthHeight());
         occludedVirtualObject.setMaterialProperties(0.0f, 2.0f, 0.5f, 6.0f);
+        occludedVirtualObject.setOcclusionMode(OCCLUSION_MODE);
       }
+      frameRenderer.onSurfaceCreated(gpuResources, isDepthSupported);
     } catch (IOException e) {
       Log.e(TAG, "Asset dosyası okuma başarısız oldu", e);
     }
@@ -266,6 +467,7 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
   public void onSurfaceChanged(GL10 gl, int width, int height) {
     displayRotationHelper.onSurfaceChanged(width, height);
     GLES20.glViewport(0, 0, width, height);
+    occludedVirtualObject.setViewport(width, height);
   }
 
   @Override
@@ -280,141 +482,142 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
     // video arka planı uygun şekilde ayarlanabilir.
     displayRotationHelper.updateSessionIfNeeded(session);
 
-    try {
-      session.setCameraTextureName(backgroundRenderer.getTextureId());
-
-      // ARSession'dan güncel çerçeveyi al. Konfigürasyon UpdateMode.BLOCKING olarak ayarlandığında
-      // (varsayılan olarak), bu, render'ı kameranın kare hızına ayarlar.
-      Frame frame = session.update();
-      Camera camera = frame.getCamera();
-
-      if (frame.hasDisplayGeometryChanged() || calculateUVTransform) {
-        calculateUVTransform = false;
-        float[] transform = getTextureTransformMatrix(frame);
-        occludedVirtualObject.setUvTransformMatrix(transform);
-      }
-// Bu çerçeve için en son derinlik görüntüsünü alır.
-      if (isDepthSupported) {
-        depthTexture.update(frame);
-      }
-
-// Her karede bir dokunma işlemini ele alır.
-      handleTap(frame, camera);
-
-// Eğer çerçeve hazırsa, kamera önizleme görüntüsünü GL yüzeyine çizer.
-      backgroundRenderer.draw(frame);
-      if (showDepthMap) {
-        backgroundRenderer.drawDepth(frame);
-      }
-
-// Ekrana dokunulduğunda ekranın kilidini açık tut, ancak takip durduğunda kilitlemeye izin ver.
-      trackingStateHelper.updateKeepScreenOnFlag(camera.getTrackingState());
-
-// Takip yapılmıyorsa, 3D nesneleri çizme; takip hatası durumunu göster.
-      if (camera.getTrackingState() == TrackingState.PAUSED) {
-        messageSnackbarHelper.showMessage(
-                this, TrackingStateHelper.getTrackingFailureReasonString(camera));
-        return;
-      }
-
-// Projeksiyon matrisini al.
-      float[] projmtx = new float[16];
-      camera.getProjectionMatrix(projmtx, 0, 0.1f, 100.0f);
-
-// Kamera matrisini al ve çiz.
-      float[] viewmtx = new float[16];
-      camera.getViewMatrix(viewmtx, 0);
+    frameRenderer.drawFrame();
+  }
 
-// Görüntünün ortalama yoğunluğundan aydınlatmayı hesapla.
-// İlk üç bileşen renk ölçekleme faktörleridir.
-// Sonuncusu gamma uzayındaki ortalama piksel yoğunluğudur.
-      final float[] colorCorrectionRgba = new float[4];
-      frame.getLightEstimate().getColorCorrection(colorCorrectionRgba, 0);
+  // Oturumun son karesini FrameRenderer'a verir. Tüm metotlar GL thread'inde çağrılır.
+  private final class ArFrameSource implements FrameRenderer.FrameSource<Anchor> {
+    private Frame frame;
+    private Camera camera;
 
-// Bu noktada takip hatası yok. Uçaklar bulunup bulunmadığına bağlı olarak kullanıcıya ne yapılacağını bildirin.
-      String messageToShow = "";
-      if (hasTrackingPlane()) {
-        messageToShow = PLANES_FOUND_MESSAGE;
-      } else {
-        messageToShow = SEARCHING_PLANE_MESSAGE;
-      }
-      if (!isDepthSupported) {
-        messageToShow += "\n" +  DEPTH_NOT_AVAILABLE_MESSAGE;
+    @Override
+    public void update() {
+      session.setCameraTextureName(backgroundRenderer.getTextureId());
+      // ARSession'dan güncel çerçeveyi al.
+      try {
+        frame = session.update();
+      } catch (CameraNotAvailableException e) {
+        throw new IllegalStateException(e);
       }
-      messageSnackbarHelper.showMessage(this, messageToShow);
+      camera = frame.getCamera();
+    }
 
-// Dokunma ile oluşturulan anchor'ları görselleştir.
-      float scaleFactor = 1.0f;
-      for (Anchor anchor : anchors) {
-        if (anchor.getTrackingState() != TrackingState.TRACKING) {
-          continue;
-        }
-        // Bir Anchor'ın dünya uzayındaki mevcut durumunu al. Anchor pozisyonu
-        // ARCore'un dünya tahminini iyileştirdikçe güncellenir.
-        anchor.getPose().toMatrix(anchorMatrix, 0);
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return frame.hasDisplayGeometryChanged();
+    }
 
-        // Model ve gölgesini güncelle ve çiz.
-        if (isDepthSupported) {
-          occludedVirtualObject.updateModelMatrix(anchorMatrix, scaleFactor);
-          occludedVirtualObject.draw(viewmtx, projmtx, colorCorrectionRgba, OBJECT_COLOR);
-        } else {
-          virtualObject.updateModelMatrix(anchorMatrix, scaleFactor);
-          virtualObject.draw(viewmtx, projmtx, colorCorrectionRgba, OBJECT_COLOR);
-        }
-      }
+    @Override
+    public void getUvTransform(float[] uvTransform) {
+      getTextureTransformMatrix(frame, uvTransform);
+    }
 
-    } catch (Throwable t) {
-// İstisnasız durumlar nedeniyle uygulamanın çökmesini önleyin.
-      Log.e(TAG, "OpenGL thread üzerinde istisna", t);
+    @Override
+    public boolean updateDepth(DepthTextureHandler depthTexture) {
+      return depthTexture.update(frame);
     }
-  }
 
-  // Yalnızca bir dokunma işlemi işle, çünkü dokunmalar genellikle kare hızına göre düşük frekanstır.
-  private void handleTap(Frame frame, Camera camera) {
-    MotionEvent tap = tapHelper.poll();
-    if (tap != null && camera.getTrackingState() == TrackingState.TRACKING) {
+    @Override
+    public Anchor pollTapAnchor(float[] planeNormal) {
+      MotionEvent tap = tapHelper.poll();
+      if (tap == null || camera.getTrackingState() != TrackingState.TRACKING) {
+        return null;
+      }
       for (HitResult hit : frame.hitTest(tap)) {
         // Herhangi bir uçağın vurulup vurulmadığını ve vurulan yerin uçak çokgeni içinde olup olmadığını kontrol edin.
         Trackable trackable = hit.getTrackable();
         // Bir uçağa veya yönlendirilmiş bir noktaya vurulduysa bir anchor oluşturun.
         if ((trackable instanceof Plane
                 && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())
-                && (calculateDistanceToPlane(hit.getHitPose(), camera.getPose()) > 0))
+                && (calculateDistanceToPlane(hit.getHitPose(), camera.getPose(), planeNormal) > 0))
                 || (trackable instanceof Point
                 && ((Point) trackable).getOrientationMode()
                 == OrientationMode.ESTIMATED_SURFACE_NORMAL)) {
           // Vurulanları derinliğine göre sırala. Sadece uçağa veya yönlendirilmiş bir noktaya en yakın vuruşu düşünün.
-          // Oluşturulan nesnelerin sayısını sınırlayın. Bu, hem
-          // rendering sistemi hem de ARCore'u aşırı yüklemekten kaçınır.
-          if (anchors.size() >= 20) {
-            anchors.get(0).detach();
-            anchors.remove(0);
-          }
-
           // Bir Anchor eklemek, ARCore'un bu konumu
           // uzayda takip etmesi gerektiğini belirtir. Bu anchor, 3D modeli
           // hem dünya hem de uçağa göre doğru konumlandırmak için Plane üzerinde oluşturulur.
-          anchors.add(hit.createAnchor());
-          break;
+          return hit.createAnchor();
         }
       }
+      return null;
     }
-  }
 
-  // En az bir uçağın algılanıp algılanmadığını kontrol eder.
-  private boolean hasTrackingPlane() {
-    for (Plane plane : session.getAllTrackables(Plane.class)) {
-      if (plane.getTrackingState() == TrackingState.TRACKING) {
-        return true;
+    @Override
+    public void detach(Anchor anchor) {
+      anchor.detach();
+    }
+
+    // Bir Anchor'ın dünya uzayındaki mevcut durumunu okur. Anchor pozisyonu ARCore'un dünya
+    // tahminini iyileştirdikçe güncellenir. getPose() ARCore içinde her çağrıda yeni bir Pose
+    // ayırır; okumanın başka yolu olmadığından bu, karenin bilinen tek anchor başına ayırmasıdır.
+    @Override
+    public boolean readPose(Anchor anchor, float[] matrices, int offset) {
+      if (anchor.getTrackingState() != TrackingState.TRACKING) {
+        return false;
       }
+      anchor.getPose().toMatrix(matrices, offset);
+      return true;
+    }
+
+    @Override
+    public void setBackgroundDepthTexture(int depthTexture) {
+      backgroundRenderer.setDepthTexture(depthTexture);
+    }
+
+    @Override
+    public void drawBackground(boolean showDepthMap) {
+      backgroundRenderer.draw(frame);
+      if (showDepthMap) {
+        backgroundRenderer.drawDepth(frame);
+      }
+    }
+
+    @Override
+    public boolean isTrackingPaused() {
+      return camera.getTrackingState() == TrackingState.PAUSED;
+    }
+
+    @Override
+    public void getProjectionMatrix(float[] projectionMatrix, float near, float far) {
+      camera.getProjectionMatrix(projectionMatrix, 0, near, far);
+    }
+
+    @Override
+    public void getViewMatrix(float[] viewMatrix) {
+      camera.getViewMatrix(viewMatrix, 0);
+    }
+
+    @Override
+    public void getColorCorrection(float[] colorCorrectionRgba) {
+      frame.getLightEstimate().getColorCorrection(colorCorrectionRgba, 0);
+    }
+  }
+
+  // FrameRenderer'ın kullanıcıya gösterdiği durum.
+  private final class ArStatusView implements FrameRenderer.StatusView {
+    @Override
+    public void updateKeepScreenOn() {
+      trackingStateHelper.updateKeepScreenOnFlag(frameSource.camera.getTrackingState());
+    }
+
+    @Override
+    public void showTrackingFailure() {
+      messageSnackbarHelper.showMessage(
+              DepthCodelabActivity.this,
+              TrackingStateHelper.getTrackingFailureReasonString(frameSource.camera));
+    }
+
+    @Override
+    public void showMessage(String message) {
+      messageSnackbarHelper.showMessage(DepthCodelabActivity.this, message);
     }
-    return false;
   }
 
   // cameraPose'dan planePose'a kadar olan düzleme normal mesafeyi hesaplar, verilen planePose'un y ekseni
 // düzlemin normaliyle paralel olmalıdır, örneğin düzlemin merkezi durumu veya vuruş testi durumu.
-  private static float calculateDistanceToPlane(Pose planePose, Pose cameraPose) {
-    float[] normal = new float[3];
+  // normal, en az 3 elemanlı geçici bir dizidir.
+  private static float calculateDistanceToPlane(Pose planePose, Pose cameraPose, float[] normal) {
     float cameraX = cameraPose.tx();
     float cameraY = cameraPose.ty();
     float cameraZ = cameraPose.tz();
@@ -427,12 +630,11 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
   }
 
   /**
-   * Bu yöntem, ekran uzayındaki uvs'yi doğru bir şekilde eşleştirmek için kullanılan bir dönüşüm matrisi döndürür.
-   * Cihazın yönelimini dikkate alır.
+   * Bu yöntem, ekran uzayındaki uvs'yi doğru bir şekilde eşleştirmek için kullanılan bir dönüşüm
+   * matrisini {@code uvTransform}'a yazar. Cihazın yönelimini dikkate alır.
    */
-  private static float[] getTextureTransformMatrix(Frame frame) {
+  private static void getTextureTransformMatrix(Frame frame, float[] uvTransform) {
     float[] frameTransform = new float[6];
-    float[] uvTransform = new float[9];
 // NDC uzayındaki orijin ve iki ana eksenden oluşan koordinat çiftleri.
     float[] ndcBasis = {0, 0, 1, 0, 0, 1};
 
@@ -455,7 +657,5 @@ public class DepthCodelabActivity extends AppCompatActivity implements GLSurface
     uvTransform[6] = ndcOriginX;
     uvTransform[7] = ndcOriginY;
     uvTransform[8] = 1;
-
-    return uvTransform;
   }
 }
\ No newline at end of file
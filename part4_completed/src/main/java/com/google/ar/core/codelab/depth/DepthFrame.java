@@ -0,0 +1,79 @@
+package com.google.ar.core.codelab.depth;
+
+import java.nio.ShortBuffer;
+
+/**
+ * CPU tarafında tutulan tek bir derinlik karesi. Değerler milimetre cinsinden, satır satır bir
+ * {@code short[]} içinde saklanır. Nesne tekrar kullanılmak üzere tasarlanmıştır: dizi yalnızca
+ * daha büyük bir kare geldiğinde yeniden ayrılır, böylece kararlı durumda her karede bellek ayrılmaz.
+ */
+public final class DepthFrame {
+  private short[] data = new short[0];
+  private ShortBuffer view = ShortBuffer.wrap(data);
+  private int width;
+  private int height;
+  private int rowStride;
+  private long timestampNs = -1;
+
+  /**
+   * Kareyi verilen boyutlar için hazırlar. Gerekirse arka plan dizisini büyütür, içeriği
+   * temizlemez.
+   *
+   * @param width piksel cinsinden genişlik.
+   * @param height piksel cinsinden yükseklik.
+   * @param timestampNs derinlik görüntüsünün zaman damgası (nanosaniye).
+   */
+  public void reset(int width, int height, long timestampNs) {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("Geçersiz derinlik boyutu: " + width + "x" + height);
+    }
+    int required = width * height;
+    if (data.length < required) {
+      data = new short[required];
+      view = ShortBuffer.wrap(data);
+    }
+    this.width = width;
+    this.height = height;
+    this.rowStride = width;
+    this.timestampNs = timestampNs;
+  }
+
+  /** Ham derinlik dizisi. Geçerli bölge ilk {@code rowStride * height} elemandır. */
+  public short[] getData() {
+    return data;
+  }
+
+  /** Geçerli bölgeyi kapsayan, konumu sıfırlanmış bir {@link ShortBuffer} görünümü döndürür. */
+  public ShortBuffer asShortBuffer() {
+    view.clear();
+    view.limit(rowStride * height);
+    return view;
+  }
+
+  /** (x, y) pikselindeki derinliği işaretsiz milimetre olarak döndürür. */
+  public int getDepthMillimeters(int x, int y) {
+    return data[y * rowStride + x] & 0xFFFF;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /** Bir satırın {@link #getData()} içindeki eleman (piksel) cinsinden uzunluğu. */
+  public int getRowStride() {
+    return rowStride;
+  }
+
+  public long getTimestamp() {
+    return timestampNs;
+  }
+
+  /** Kare henüz hiç doldurulmadıysa {@code false} döner. */
+  public boolean isValid() {
+    return timestampNs >= 0 && width > 0 && height > 0;
+  }
+}
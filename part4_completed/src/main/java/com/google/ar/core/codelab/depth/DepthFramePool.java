@@ -0,0 +1,52 @@
+package com.google.ar.core.codelab.depth;
+
+import java.util.ArrayDeque;
+
+/**
+ * Sabit sayıda {@link DepthFrame} nesnesini tekrar kullanmak için basit bir havuz. Havuzdaki tüm
+ * kareler baştan oluşturulur; {@link #acquire()} ve {@link #release(DepthFrame)} bellek ayırmaz.
+ * İş parçacığı güvenli değildir, yalnızca tek bir iş parçacığından (genellikle GL) kullanılmalıdır.
+ */
+public final class DepthFramePool {
+  private final ArrayDeque<DepthFrame> free;
+  private final int capacity;
+
+  public DepthFramePool(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Havuz kapasitesi pozitif olmalıdır: " + capacity);
+    }
+    this.capacity = capacity;
+    free = new ArrayDeque<>(capacity);
+    for (int i = 0; i < capacity; ++i) {
+      free.push(new DepthFrame());
+    }
+  }
+
+  /**
+   * Havuzdan bir kare alır.
+   *
+   * @return boş bir kare ya da tüm kareler kullanımdaysa null.
+   */
+  public DepthFrame acquire() {
+    return free.poll();
+  }
+
+  /** Kullanımı biten kareyi havuza geri verir. */
+  public void release(DepthFrame frame) {
+    if (frame == null) {
+      return;
+    }
+    if (free.size() >= capacity) {
+      throw new IllegalStateException("Havuza ait olmayan veya iki kez bırakılan kare.");
+    }
+    free.push(frame);
+  }
+
+  public int getAvailableCount() {
+    return free.size();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+}
@@ -7,50 +7,223 @@ import static android.opengl.GLES20.GL_TEXTURE_MIN_FILTER;
 import static android.opengl.GLES20.GL_TEXTURE_WRAP_S;
 import static android.opengl.GLES20.GL_TEXTURE_WRAP_T;
 import static android.opengl.GLES20.GL_UNSIGNED_BYTE;
-import static android.opengl.GLES20.glBindTexture;
-import static android.opengl.GLES20.glGenTextures;
-import static android.opengl.GLES20.glTexImage2D;
-import static android.opengl.GLES20.glTexParameteri;
 import static android.opengl.GLES30.GL_LINEAR;
+import static android.opengl.GLES30.GL_MAP_INVALIDATE_BUFFER_BIT;
+import static android.opengl.GLES30.GL_MAP_WRITE_BIT;
+import static android.opengl.GLES30.GL_PIXEL_UNPACK_BUFFER;
 import static android.opengl.GLES30.GL_RG;
 import static android.opengl.GLES30.GL_RG8;
+import static android.opengl.GLES30.GL_STREAM_DRAW;
 
 import android.media.Image;
+import android.util.Log;
 import com.google.ar.core.Frame;
+import com.google.ar.core.codelab.common.rendering.Gl;
+import com.google.ar.core.codelab.common.rendering.GlBackend;
+import com.google.ar.core.codelab.common.rendering.GlCapabilities;
 import com.google.ar.core.exceptions.NotYetAvailableException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
 /** DEPTH16 derinlik görüntüsünü içeren RG8 GPU dokusunu işler. */
 public final class DepthTextureHandler {
+  private static final String TAG = DepthTextureHandler.class.getSimpleName();
+
+  /** Derinlik görüntüsünün GPU'ya nasıl yükleneceği. */
+  public enum UploadMode {
+    /** glTexImage2D/glTexSubImage2D ile eşzamanlı yükleme. ES 2.0 ile çalışır. */
+    DIRECT,
+    /**
+     * ES 3.0 piksel tampon nesneleri (PBO) ile asenkron yükleme. Yeni derinlik bir yuvaya akarken
+     * bir önceki yuvanın dokusu örneklenir, bu yüzden derinlik bir render karesi değil, bir
+     * derinlik görüntüsü aralığı gecikmeli görünür; bkz. {@link DepthUploadRing}.
+     */
+    PIXEL_BUFFER
+  }
+
+  /** {@link UploadMode#PIXEL_BUFFER} modunda kullanılan PBO/doku çifti sayısı. */
+  private static final int PIXEL_BUFFER_SLOTS = 2;
+
+  private static final int BYTES_PER_PIXEL = 2;
+
+  private Gl gl;
+  private UploadMode uploadMode = UploadMode.DIRECT;
+
+  // DIRECT modunda tek doku; PIXEL_BUFFER modunda her yuva için bir doku ve bir PBO.
+  private int[] depthTextureIds = new int[] {-1};
+  private int[] pixelBufferIds = new int[0];
+  private DepthUploadRing uploadRing;
+  // Her dokuya en son yüklenen derinlik görüntüsünün zaman damgası, boşsa -1.
+  private long[] textureTimestamps = new long[] {-1};
 
-  private int depthTextureId = -1;
   private int depthTextureWidth = -1;
   private int depthTextureHeight = -1;
 
+  // İsteğe bağlı CPU kopyaları. Yalnızca etkinleştirildiğinde doldurulur. Tüketici bir kareyi
+  // tutarken yeni görüntü diğerine yazılır.
+  private static final int CPU_DEPTH_FRAMES = 2;
+  private final DepthFramePool cpuDepthFrames = new DepthFramePool(CPU_DEPTH_FRAMES);
+  // Henüz alınmamış en son CPU kopyası, yoksa null.
+  private DepthFrame latestCpuDepthFrame;
+  private boolean cpuDepthEnabled = false;
+  private long droppedCpuDepthCount;
+
+  // Değişiklik tespiti ve doku belleği durumu.
+  private long lastDepthTimestamp = -1;
+  private int allocatedWidth = -1;
+  private int allocatedHeight = -1;
+  private long uploadCount;
+  private long skippedUploadCount;
+  private long allocationCount;
+  private long rejectedUploadCount;
+  // Dolgulu satırlar DIRECT modunda bu tampona sıkıştırılarak yüklenir; ilk ihtiyaçta ayrılır.
+  private ByteBuffer stagingBuffer;
+
   /**
    * Derinlik dokusunu oluşturur ve başlatır. Bu yöntem, bir EGL bağlamına sahip bir iş parçacığı üzerinde çağrılmalıdır.
    */
   public void createOnGlThread() {
-    int[] textureId = new int[1];
-    glGenTextures(1, textureId, 0);
-    depthTextureId = textureId[0];
-    glBindTexture(GL_TEXTURE_2D, depthTextureId);
-    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
-    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
-    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    createOnGlThread(UploadMode.DIRECT, GlCapabilities.es2());
+  }
+
+  /**
+   * Derinlik dokusunu istenen yükleme moduyla oluşturur. Bağlam ES 3.0 desteklemiyorsa
+   * {@link UploadMode#DIRECT} moduna geri dönülür. Seçilen mod {@link #getUploadMode()} ile
+   * okunabilir.
+   * Bu yöntem, bir EGL bağlamına sahip bir iş parçacığı üzerinde çağrılmalıdır.
+   */
+  public void createOnGlThread(UploadMode requestedMode, GlCapabilities capabilities) {
+    gl = GlBackend.get();
+    uploadMode = requestedMode;
+    if (uploadMode == UploadMode.PIXEL_BUFFER && !capabilities.isEs3()) {
+      Log.w(TAG, "PBO yüklemesi için ES 3.0 gerekli, doğrudan yüklemeye dönülüyor.");
+      uploadMode = UploadMode.DIRECT;
+    }
+
+    int slots = uploadMode == UploadMode.PIXEL_BUFFER ? PIXEL_BUFFER_SLOTS : 1;
+    depthTextureIds = new int[slots];
+    gl.glGenTextures(slots, depthTextureIds, 0);
+    for (int textureId : depthTextureIds) {
+      gl.glBindTexture(GL_TEXTURE_2D, textureId);
+      gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+      gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+      gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+      gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    }
+    gl.glBindTexture(GL_TEXTURE_2D, 0);
+    textureTimestamps = new long[slots];
+    Arrays.fill(textureTimestamps, -1);
+
+    if (uploadMode == UploadMode.PIXEL_BUFFER) {
+      pixelBufferIds = new int[slots];
+      gl.glGenBuffers(slots, pixelBufferIds, 0);
+      uploadRing = new DepthUploadRing(slots);
+    } else {
+      pixelBufferIds = new int[0];
+      uploadRing = null;
+    }
+
+    // Yeni doku için bellek henüz ayrılmadı; ilk yükleme glTexImage2D ile yapılmalı.
+    allocatedWidth = -1;
+    allocatedHeight = -1;
+    lastDepthTimestamp = -1;
   }
 
   /**
-   * Derinlik dokusunu, acquireDepthImage() içeriği ile günceller.
+   * Derinlik dokusunu, acquireDepthImage() içeriği ile günceller. ARCore bir önceki çağrıdakiyle
+   * aynı zaman damgasına sahip bir görüntü döndürürse yükleme atlanır. Doku belleği yalnızca boyut
+   * değiştiğinde yeniden ayrılır, diğer durumlarda glTexSubImage2D ile üzerine yazılır.
    * Bu yöntem, bir EGL bağlamına sahip bir iş parçacığı üzerinde çağrılmalıdır.
+   *
+   * <p>Bu çağrıdan sonra örneklenmesi gereken doku {@link #getDepthTexture()} ile alınmalıdır;
+   * {@link UploadMode#PIXEL_BUFFER} modunda doku kimliği her yüklemede değişir.
+   *
+   * @return doku bu çağrıda güncellendiyse true.
    */
-  public void update(final Frame frame) {
+  public boolean update(final Frame frame) {
+    Image depthImage;
     try {
-      Image depthImage = frame.acquireDepthImage16Bits();
-      depthTextureWidth = depthImage.getWidth();
-      depthTextureHeight = depthImage.getHeight();
-      glBindTexture(GL_TEXTURE_2D, depthTextureId);
-      glTexImage2D(
+      depthImage = frame.acquireDepthImage16Bits();
+    } catch (NotYetAvailableException e) {
+      // Bu genellikle derinlik verilerinin henüz mevcut olmadığı anlamına gelir.
+      return false;
+    }
+    try {
+      Image.Plane plane = depthImage.getPlanes()[0];
+      return update(
+              plane.getBuffer(),
+              depthImage.getWidth(),
+              depthImage.getHeight(),
+              plane.getRowStride(),
+              plane.getPixelStride(),
+              depthImage.getTimestamp());
+    } finally {
+      depthImage.close();
+    }
+  }
+
+  /**
+   * {@link #update(Frame)} ile aynıdır, ancak derinlik düzlemini bir {@link Image} yerine
+   * doğrudan alır; testler ARCore olmadan kare gönderebilsin diye ayrılmıştır.
+   */
+  boolean update(
+          ByteBuffer pixels, int width, int height, int rowStride, int pixelStride,
+          long timestamp) {
+    if (timestamp == lastDepthTimestamp) {
+      ++skippedUploadCount;
+      return false;
+    }
+    if (!isUploadable(pixels, width, height, rowStride, pixelStride)) {
+      Log.w(TAG, "Derinlik düzlemi beklenen düzende değil, kare atlanıyor: " + width + "x"
+              + height + ", rowStride=" + rowStride + ", pixelStride=" + pixelStride + ", "
+              + pixels.remaining() + " bayt");
+      ++rejectedUploadCount;
+      return false;
+    }
+    lastDepthTimestamp = timestamp;
+    depthTextureWidth = width;
+    depthTextureHeight = height;
+    if (cpuDepthEnabled) {
+      copyToCpu(pixels, rowStride, pixelStride, timestamp);
+    }
+    if (uploadMode == UploadMode.PIXEL_BUFFER) {
+      uploadThroughPixelBuffer(pixels, rowStride);
+      textureTimestamps[uploadRing.getWriteIndex()] = timestamp;
+    } else {
+      uploadDirect(packedPixels(pixels, rowStride));
+      textureTimestamps[0] = timestamp;
+    }
+    ++uploadCount;
+    return true;
+  }
+
+  /**
+   * Görüntüyü havuzdan alınan bir kareye kopyalar ve onu en son kopya yapar. Alınmamış önceki
+   * kopya havuza döner; tüketici tüm kareleri tutuyorsa bu görüntünün kopyası atlanır.
+   */
+  private void copyToCpu(ByteBuffer pixels, int rowStride, int pixelStride, long timestamp) {
+    cpuDepthFrames.release(latestCpuDepthFrame);
+    latestCpuDepthFrame = cpuDepthFrames.acquire();
+    if (latestCpuDepthFrame == null) {
+      ++droppedCpuDepthCount;
+      return;
+    }
+    Depth16Decoder.decode(
+            pixels,
+            depthTextureWidth,
+            depthTextureHeight,
+            rowStride,
+            pixelStride,
+            timestamp,
+            /*stripConfidence=*/ false,
+            latestCpuDepthFrame);
+  }
+
+  private void uploadDirect(ByteBuffer pixels) {
+    gl.glBindTexture(GL_TEXTURE_2D, depthTextureIds[0]);
+    if (depthTextureWidth != allocatedWidth || depthTextureHeight != allocatedHeight) {
+      gl.glTexImage2D(
               GL_TEXTURE_2D,
               0,
               GL_RG8,
@@ -59,15 +232,216 @@ public final class DepthTextureHandler {
               0,
               GL_RG,
               GL_UNSIGNED_BYTE,
-              depthImage.getPlanes()[0].getBuffer());
-      depthImage.close();
-    } catch (NotYetAvailableException e) {
-      // Bu genellikle derinlik verilerinin henüz mevcut olmadığı anlamına gelir.
+              pixels);
+      allocatedWidth = depthTextureWidth;
+      allocatedHeight = depthTextureHeight;
+      ++allocationCount;
+    } else {
+      gl.glTexSubImage2D(
+              GL_TEXTURE_2D,
+              0,
+              0,
+              0,
+              depthTextureWidth,
+              depthTextureHeight,
+              GL_RG,
+              GL_UNSIGNED_BYTE,
+              pixels);
+    }
+  }
+
+  /**
+   * Satırları dolgusuz ise düzlemin kendisini, değilse satırları {@link #stagingBuffer} içine art
+   * arda kopyalayıp onu döndürür. ES 2.0'da {@code GL_UNPACK_ROW_LENGTH} olmadığından dolgulu
+   * satırlar GPU'ya ancak bu şekilde doğru yüklenir.
+   */
+  private ByteBuffer packedPixels(ByteBuffer plane, int rowStride) {
+    int rowBytes = depthTextureWidth * BYTES_PER_PIXEL;
+    if (rowStride == rowBytes) {
+      return plane;
+    }
+    int byteCount = rowBytes * depthTextureHeight;
+    if (stagingBuffer == null || stagingBuffer.capacity() < byteCount) {
+      stagingBuffer = ByteBuffer.allocateDirect(byteCount).order(ByteOrder.nativeOrder());
+    }
+    stagingBuffer.clear();
+    copyRows(plane, rowBytes, rowStride, depthTextureHeight, stagingBuffer);
+    stagingBuffer.flip();
+    return stagingBuffer;
+  }
+
+  /**
+   * Derinlik düzleminin RG8 dokusuna yüklenebilir olup olmadığını döndürür: pikseller bitişik
+   * olmalı ve tampon, son satırın dolgusu hariç, tüm satırları içermelidir.
+   */
+  static boolean isUploadable(
+          ByteBuffer plane, int width, int height, int rowStride, int pixelStride) {
+    if (width <= 0 || height <= 0 || pixelStride != BYTES_PER_PIXEL) {
+      return false;
+    }
+    int rowBytes = width * BYTES_PER_PIXEL;
+    return rowStride >= rowBytes
+            && plane.remaining() >= (long) (height - 1) * rowStride + rowBytes;
+  }
+
+  /**
+   * {@code height} satırın her birinin ilk {@code rowBytes} baytını {@code plane} içinden
+   * {@code dst} içine art arda kopyalar. {@code plane} değişmez, {@code dst} ilerletilir. Düzlemin
+   * {@link #isUploadable} ile doğrulanmış olması gerekir.
+   */
+  static void copyRows(ByteBuffer plane, int rowBytes, int rowStride, int height, ByteBuffer dst) {
+    ByteBuffer source = plane.duplicate();
+    int base = source.position();
+    for (int y = 0; y < height; ++y) {
+      int rowStart = base + y * rowStride;
+      source.limit(rowStart + rowBytes);
+      source.position(rowStart);
+      dst.put(source);
+    }
+  }
+
+  private void uploadThroughPixelBuffer(ByteBuffer pixels, int rowStride) {
+    int byteCount = depthTextureWidth * depthTextureHeight * BYTES_PER_PIXEL;
+    if (depthTextureWidth != allocatedWidth || depthTextureHeight != allocatedHeight) {
+      // Tüm yuvaların dokularını ve PBO'larını yeni boyuta göre ayır.
+      for (int i = 0; i < depthTextureIds.length; ++i) {
+        gl.glBindTexture(GL_TEXTURE_2D, depthTextureIds[i]);
+        gl.glTexImage2D(
+                GL_TEXTURE_2D,
+                0,
+                GL_RG8,
+                depthTextureWidth,
+                depthTextureHeight,
+                0,
+                GL_RG,
+                GL_UNSIGNED_BYTE,
+                null);
+        gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBufferIds[i]);
+        gl.glBufferData(GL_PIXEL_UNPACK_BUFFER, byteCount, null, GL_STREAM_DRAW);
+      }
+      gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+      allocatedWidth = depthTextureWidth;
+      allocatedHeight = depthTextureHeight;
+      uploadRing.reset();
+      Arrays.fill(textureTimestamps, -1);
+      ++allocationCount;
+    }
+
+    int slot = uploadRing.advance();
+    gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBufferIds[slot]);
+    // Önceki içeriği geçersiz kılarak sürücünün meşgul tamponu beklemeden yeni bellek
+    // vermesine izin ver.
+    ByteBuffer mapped =
+            (ByteBuffer)
+                    gl.glMapBufferRange(
+                            GL_PIXEL_UNPACK_BUFFER,
+                            0,
+                            byteCount,
+                            GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+    if (mapped == null) {
+      gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+      Log.w(TAG, "PBO eşlenemedi, bu kare doğrudan yükleniyor.");
+      gl.glBindTexture(GL_TEXTURE_2D, depthTextureIds[slot]);
+      gl.glTexSubImage2D(
+              GL_TEXTURE_2D, 0, 0, 0, depthTextureWidth, depthTextureHeight, GL_RG,
+              GL_UNSIGNED_BYTE, packedPixels(pixels, rowStride));
+      return;
+    }
+    copyRows(pixels, depthTextureWidth * BYTES_PER_PIXEL, rowStride, depthTextureHeight, mapped);
+    gl.glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+
+    // PBO bağlıyken son parametre, tampon içindeki bayt ofsetidir; kopya GPU tarafından yapılır.
+    gl.glBindTexture(GL_TEXTURE_2D, depthTextureIds[slot]);
+    gl.glTexSubImage2D(
+            GL_TEXTURE_2D, 0, 0, 0, depthTextureWidth, depthTextureHeight, GL_RG,
+            GL_UNSIGNED_BYTE, null);
+    gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+  }
+
+  /** Dokuya yapılan yükleme sayısı (yeniden ayırmalar dahil). */
+  public long getUploadCount() {
+    return uploadCount;
+  }
+
+  /** Zaman damgası değişmediği için atlanan yükleme sayısı. */
+  public long getSkippedUploadCount() {
+    return skippedUploadCount;
+  }
+
+  /** Boyut değişikliği nedeniyle doku belleğinin (yeniden) ayrılma sayısı. */
+  public long getAllocationCount() {
+    return allocationCount;
+  }
+
+  /** Düzeni yüklenemeyen (kısa ya da seyrek pikselli) düzlem nedeniyle atlanan kare sayısı. */
+  public long getRejectedUploadCount() {
+    return rejectedUploadCount;
+  }
+
+  /** Son yüklenen derinlik görüntüsünün zaman damgası, henüz yükleme yapılmadıysa -1. */
+  public long getLastDepthTimestamp() {
+    return lastDepthTimestamp;
+  }
+
+  /** {@link #createOnGlThread} sırasında seçilen yükleme modu. */
+  public UploadMode getUploadMode() {
+    return uploadMode;
+  }
+
+  /**
+   * Etkinleştirildiğinde her {@link #update(Frame)} çağrısı yeni derinlik görüntüsünü GPU'ya
+   * yüklemenin yanında bir {@link DepthFrame} içine de kopyalar; kopya
+   * {@link #acquireDepthFrame()} ile alınır. Kapatıldığında alınmamış kopya bırakılır.
+   */
+  public void setCpuDepthEnabled(boolean enabled) {
+    cpuDepthEnabled = enabled;
+    if (!enabled) {
+      cpuDepthFrames.release(latestCpuDepthFrame);
+      latestCpuDepthFrame = null;
     }
   }
 
+  /**
+   * Son derinlik görüntüsünün CPU kopyasını çağırana verir. Kare, {@link #releaseDepthFrame} ile
+   * geri verilene kadar üzerine yazılmaz. Aynı anda en fazla iki kare tutulabilir; ikisi de
+   * tutulurken gelen görüntülerin kopyası atlanır. GL thread'inde çağrılmalıdır.
+   *
+   * @return son çağrıdan beri gelen en yeni görüntünün kopyası ya da yeni görüntü yoksa null.
+   */
+  public DepthFrame acquireDepthFrame() {
+    DepthFrame frame = latestCpuDepthFrame;
+    latestCpuDepthFrame = null;
+    return frame;
+  }
+
+  /** {@link #acquireDepthFrame()} ile alınan kareyi havuza geri verir. */
+  public void releaseDepthFrame(DepthFrame frame) {
+    cpuDepthFrames.release(frame);
+  }
+
+  /** Tüketici tüm kareleri tuttuğu için CPU kopyası atlanan derinlik görüntüsü sayısı. */
+  public long getDroppedCpuDepthCount() {
+    return droppedCpuDepthCount;
+  }
+
+  /** Şu anda örneklenmesi gereken derinlik dokusu. */
   public int getDepthTexture() {
-    return depthTextureId;
+    if (uploadRing != null && uploadRing.getReadIndex() >= 0) {
+      return depthTextureIds[uploadRing.getReadIndex()];
+    }
+    return depthTextureIds[0];
+  }
+
+  /**
+   * {@link #getDepthTexture()} dokusundaki derinlik görüntüsünün zaman damgası, henüz yükleme
+   * yapılmadıysa -1. {@link UploadMode#PIXEL_BUFFER} modunda {@link #getLastDepthTimestamp()}
+   * değerinin bir yükleme gerisinde kalır.
+   */
+  public long getSampledDepthTimestamp() {
+    if (uploadRing != null && uploadRing.getReadIndex() >= 0) {
+      return textureTimestamps[uploadRing.getReadIndex()];
+    }
+    return textureTimestamps[0];
   }
 
   public int getDepthWidth() {
@@ -77,4 +451,4 @@ public final class DepthTextureHandler {
   public int getDepthHeight() {
     return depthTextureHeight;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+package com.google.ar.core.codelab.depth;
+
+/**
+ * Asenkron derinlik yüklemesinde kullanılan yuvaların (PBO + doku çiftleri) sırasını tutar. GL
+ * çağrısı yapmaz; yalnızca hangi yuvaya yazılacağını ve hangi yuvanın örnekleneceğini hesaplar.
+ *
+ * <p>Her {@link #advance()} çağrısı bir sonraki yazma yuvasını seçer. Okuma yuvası her zaman bir
+ * önceki yüklemenin yuvasıdır: N. derinlik görüntüsü GPU'ya akarken N-1. görüntü örneklenir. İlk
+ * yüklemede henüz önceki bir yuva olmadığından okuma, yazılan yuvadan yapılır.
+ *
+ * <p>Okuma yuvası yalnızca bir yüklemede ilerler, render karelerinde ilerlemez. ARCore derinliği
+ * kameradan seyrek ürettiğinden (ör. 60 Hz render karşısında 30 Hz derinlik), en yeni derinlik
+ * bir render karesi değil, bütün bir derinlik aralığı geç örneklenir: bir sonraki derinlik
+ * görüntüsü gelene kadar aradaki tüm karelerde bir önceki görüntü kullanılır.
+ */
+final class DepthUploadRing {
+  private final int slotCount;
+  private int writeIndex = -1;
+  private int readIndex = -1;
+
+  DepthUploadRing(int slotCount) {
+    if (slotCount < 2) {
+      throw new IllegalArgumentException("En az iki yuva gereklidir: " + slotCount);
+    }
+    this.slotCount = slotCount;
+  }
+
+  /**
+   * Yeni bir yükleme için yazma yuvasını ilerletir.
+   *
+   * @return bu yüklemede yazılacak yuvanın indeksi.
+   */
+  int advance() {
+    int previous = writeIndex;
+    writeIndex = (writeIndex + 1) % slotCount;
+    readIndex = previous < 0 ? writeIndex : previous;
+    return writeIndex;
+  }
+
+  /** Örneklenecek yuva, henüz yükleme yapılmadıysa -1. */
+  int getReadIndex() {
+    return readIndex;
+  }
+
+  /** Son yazılan yuva, henüz yükleme yapılmadıysa -1. */
+  int getWriteIndex() {
+    return writeIndex;
+  }
+
+  int getSlotCount() {
+    return slotCount;
+  }
+
+  /** Yuvaları başlangıç durumuna döndürür, örneğin doku boyutu değiştiğinde. */
+  void reset() {
+    writeIndex = -1;
+    readIndex = -1;
+  }
+}
@@ -0,0 +1,449 @@
+package com.google.ar.core.codelab.depth;
+
+import android.util.Log;
+import com.google.ar.core.codelab.common.metrics.Counter;
+import com.google.ar.core.codelab.common.metrics.Gauge;
+import com.google.ar.core.codelab.common.metrics.MetricsRegistry;
+import com.google.ar.core.codelab.common.profiling.FrameProfiler;
+import com.google.ar.core.codelab.common.profiling.TraceRecorder;
+import com.google.ar.core.codelab.common.rendering.AssetLoader;
+import com.google.ar.core.codelab.common.rendering.FrameArena;
+import com.google.ar.core.codelab.common.rendering.FrustumCuller;
+import com.google.ar.core.codelab.common.rendering.GlStateCache;
+import com.google.ar.core.codelab.common.rendering.GlValidator;
+import com.google.ar.core.codelab.common.rendering.GpuResourceCache;
+import com.google.ar.core.codelab.common.rendering.MeshBounds;
+import com.google.ar.core.codelab.common.rendering.ObjectRenderer;
+import com.google.ar.core.codelab.common.rendering.OcclusionObjectRenderer;
+
+/**
+ * {@code onDrawFrame}'in her karede çalışan gövdesi: asset yüklemeleri, derinlik güncellemesi ve
+ * bulanıklığı, dokunmalar, arka plan, kullanıcı mesajı ve anchor'ların çizimi; aşama süreleri,
+ * iz ve ölçümlerle birlikte.
+ *
+ * <p>ARCore oturumu {@link FrameSource}, kullanıcı arayüzü {@link StatusView} arkasındadır.
+ * Uygulamada DepthCodelabActivity bunları ARCore ve görünümlerle sağlar; JVM testleri sahtelerle
+ * sağlar ve böylece aktivitenin her karede çalıştırdığı kodun aynısını çalıştırır. Kararlı durumda
+ * bir kare bellek ayırmaz; ARCore'un kendi ayırmaları için bkz. {@link AnchorInstancePass} ve
+ * {@link PlaneTrackingMonitor}.
+ *
+ * <p>{@link #onSurfaceCreated} ve {@link #drawFrame} GL thread'inde çağrılmalıdır.
+ *
+ * @param <A> anchor türü, uygulamada {@code com.google.ar.core.Anchor}.
+ */
+public final class FrameRenderer<A> {
+  private static final String TAG = FrameRenderer.class.getSimpleName();
+
+  /** Karenin ARCore'dan okunan girdileri; uygulamada oturum ve son {@code Frame}. */
+  public interface FrameSource<A> extends AnchorStore.PoseSource<A> {
+    /** Kamera dokusunu oturuma verir ve oturumdan yeni kareyi alır. */
+    void update();
+
+    /** Görüntü boyutu ya da yönü bu karede değiştiyse true döner. */
+    boolean hasDisplayGeometryChanged();
+
+    /** Ekran koordinatlarını kamera dokusu UV'lerine eşleyen 3x3 matrisi yazar. */
+    void getUvTransform(float[] uvTransform);
+
+    /** Karenin derinlik görüntüsü yeniyse {@code depthTexture}'a yükler; yüklendiyse true. */
+    boolean updateDepth(DepthTextureHandler depthTexture);
+
+    /**
+     * Bekleyen bir dokunmayı alır. Kamera takip ediliyorsa ve dokunma bir düzleme ya da
+     * yönlendirilmiş bir noktaya isabet ediyorsa orada yeni bir anchor oluşturup döndürür, yoksa
+     * null.
+     *
+     * @param planeNormal en az 3 elemanlı geçici bir dizi.
+     */
+    A pollTapAnchor(float[] planeNormal);
+
+    /** Depodan çıkarılan anchor'ı bırakır, böylece ARCore onu takip etmeyi bırakır. */
+    void detach(A anchor);
+
+    /** Arka planın örnekleyeceği derinlik dokusunu ayarlar. */
+    void setBackgroundDepthTexture(int depthTexture);
+
+    /** Kamera görüntüsünü, istenirse üzerine derinlik haritasıyla birlikte çizer. */
+    void drawBackground(boolean showDepthMap);
+
+    /** Kamera takibi duraklatıldıysa true döner; bu karede nesneler çizilmez. */
+    boolean isTrackingPaused();
+
+    void getProjectionMatrix(float[] projectionMatrix, float near, float far);
+
+    void getViewMatrix(float[] viewMatrix);
+
+    /** Işık tahmininin renk düzeltmesini yazar; bkz. {@code LightEstimate.getColorCorrection}. */
+    void getColorCorrection(float[] colorCorrectionRgba);
+  }
+
+  /** Kullanıcıya gösterilen durum; uygulamada ekran bayrağı ve snackbar. */
+  public interface StatusView {
+    /** Kamera takip ederken ekranı açık tutar, takip durunca kilitlenmesine izin verir. */
+    void updateKeepScreenOn();
+
+    /** Takibin neden duraklatıldığını gösterir. */
+    void showTrackingFailure();
+
+    void showMessage(String message);
+  }
+
+  static final String SEARCHING_PLANE_MESSAGE = "Lütfen yavaşça etrafta dolaşın...";
+  static final String PLANES_FOUND_MESSAGE = "Nesneleri yerleştirmek için dokunun.";
+  private static final String DEPTH_NOT_AVAILABLE_MESSAGE =
+      "[Bu cihazda derinlik desteklenmiyor]";
+  // Her karede dize birleştirmemek için mesajların derinlik uyarılı hâlleri önceden hazırlanır.
+  static final String SEARCHING_PLANE_NO_DEPTH_MESSAGE =
+      SEARCHING_PLANE_MESSAGE + "\n" + DEPTH_NOT_AVAILABLE_MESSAGE;
+  static final String PLANES_FOUND_NO_DEPTH_MESSAGE =
+      PLANES_FOUND_MESSAGE + "\n" + DEPTH_NOT_AVAILABLE_MESSAGE;
+
+  // Dokunarak oluşturulan nesnelerin rengi.
+  private static final float[] OBJECT_COLOR = new float[] {139.0f, 195.0f, 74.0f, 255.0f};
+
+  // Bir karede asset yüklemelerine ayrılan en fazla GL thread süresi (ms).
+  private static final long ASSET_UPLOAD_BUDGET_MILLIS = 4;
+
+  private static final float NEAR_CLIP = 0.1f;
+  private static final float FAR_CLIP = 100.0f;
+
+  private final FrameSource<A> source;
+  private final StatusView statusView;
+  private final AnchorStore<A> anchors;
+  private final PlaneTrackingMonitor<?> planeTracking;
+  private final DepthTextureHandler depthTexture;
+  private final ObjectRenderer virtualObject;
+  private final OcclusionObjectRenderer occludedVirtualObject;
+  private final AssetLoader assetLoader;
+  private final FrameProfiler profiler;
+
+  // Ekran dışında kalan anchor'ları herhangi bir GL çağrısından önce eler.
+  private final AnchorInstancePass<A> anchorPass;
+  // Görünür anchor'ları renderer'lara ekler; metot referansları her karede değil bir kez oluşur.
+  private final AnchorInstancePass.InstanceSink objectInstanceSink;
+  private final AnchorInstancePass.InstanceSink occludedInstanceSink;
+
+  // Kare boyunca kullanılan geçici diziler. Kararlı durumda her kare aynı dizileri yeniden alır.
+  private final FrameArena frameArena = new FrameArena();
+  // Gizleme renderer'ı bu diziyi tutar; görüntü geometrisi değiştiğinde yerinde güncellenir.
+  private final float[] uvTransform = new float[9];
+
+  private final GlValidator glValidator = GlValidator.getInstance();
+  // Gereksiz GL durum değişikliklerini atlar. onSurfaceCreated'da yeni bağlam için alınır.
+  private GlStateCache glState;
+  private GpuResourceCache gpuResources;
+
+  private final FrameProfiler.Stage assetUploadStage;
+  private final FrameProfiler.Stage sessionUpdateStage;
+  private final FrameProfiler.Stage depthUpdateStage;
+  private final FrameProfiler.Stage depthBlurStage;
+  private final FrameProfiler.Stage tapStage;
+  private final FrameProfiler.Stage backgroundStage;
+  private final FrameProfiler.Stage objectsStage;
+
+  // Zaman çizelgesi izinde aşamalar span olarak, sayaçlar ve derinlik akışı bu isimlerle
+  // kaydedilir.
+  private final TraceRecorder tracer = TraceRecorder.getInstance();
+  private final int traceAnchorsDrawn = tracer.registerName("anchors_drawn");
+  private final int traceAnchorsCulled = tracer.registerName("anchors_culled");
+  private final int traceDepthUploads = tracer.registerName("depth_uploads");
+  // Bir derinlik görüntüsünün yüklendiği kareden ilk örneklendiği kareye giden akış.
+  private final int traceDepthFlow = tracer.registerName("depth_frame");
+  // GL durum önbelleğinin karede yaptığı ve atladığı çağrılar.
+  private final int traceGlCallsIssued = tracer.registerName("gl_state_calls_issued");
+  private final int traceGlCallsElided = tracer.registerName("gl_state_calls_elided");
+  private long lastSampledDepthTimestamp = -1;
+
+  private final Counter depthUploadsCounter;
+  private final Gauge anchorsStoredGauge;
+  private final Gauge anchorsTrackedGauge;
+  private final Gauge anchorsVisibleGauge;
+  private final Gauge meshBytesGauge;
+  private final Gauge textureBytesGauge;
+  private final Counter glCallsIssuedCounter;
+  private final Counter glCallsElidedCounter;
+
+  private boolean depthSupported;
+  private volatile boolean showDepthMap = true;
+  private boolean calculateUvTransform = true;
+  private long failedFrameCount;
+
+  /**
+   * Aşamaları {@code profiler}'a, ölçümleri {@code metrics}'e ekler. Renderer'lar ve derinlik
+   * dokusu çağıran tarafından oluşturulur ve GL bağlamında hazırlanır.
+   */
+  public FrameRenderer(
+      FrameSource<A> source,
+      StatusView statusView,
+      AnchorStore<A> anchors,
+      PlaneTrackingMonitor<?> planeTracking,
+      DepthTextureHandler depthTexture,
+      ObjectRenderer virtualObject,
+      OcclusionObjectRenderer occludedVirtualObject,
+      AssetLoader assetLoader,
+      FrameProfiler profiler,
+      MetricsRegistry metrics) {
+    this.source = source;
+    this.statusView = statusView;
+    this.anchors = anchors;
+    this.planeTracking = planeTracking;
+    this.depthTexture = depthTexture;
+    this.virtualObject = virtualObject;
+    this.occludedVirtualObject = occludedVirtualObject;
+    this.assetLoader = assetLoader;
+    this.profiler = profiler;
+    anchorPass = new AnchorInstancePass<>(anchors, source, new FrustumCuller());
+    objectInstanceSink = virtualObject::addInstance;
+    occludedInstanceSink = occludedVirtualObject::addInstance;
+
+    assetUploadStage = profiler.addStage("asset_upload", /*gpuTimed=*/ false);
+    sessionUpdateStage = profiler.addStage("session_update", /*gpuTimed=*/ false);
+    depthUpdateStage = profiler.addStage("depth_update", /*gpuTimed=*/ true);
+    depthBlurStage = profiler.addStage("depth_blur", /*gpuTimed=*/ true);
+    tapStage = profiler.addStage("tap", /*gpuTimed=*/ false);
+    backgroundStage = profiler.addStage("background", /*gpuTimed=*/ true);
+    objectsStage = profiler.addStage("objects", /*gpuTimed=*/ true);
+
+    depthUploadsCounter =
+        metrics.counter("depth_uploads_total", "Depth images uploaded to the GPU.");
+    anchorsStoredGauge =
+        metrics.gauge("anchors", "Anchors by state in the last frame.", "state", "stored");
+    anchorsTrackedGauge =
+        metrics.gauge("anchors", "Anchors by state in the last frame.", "state", "tracked");
+    anchorsVisibleGauge =
+        metrics.gauge("anchors", "Anchors by state in the last frame.", "state", "visible");
+    meshBytesGauge =
+        metrics.gauge("gpu_resource_bytes", "GPU memory held by cached assets.", "kind", "mesh");
+    textureBytesGauge =
+        metrics.gauge(
+            "gpu_resource_bytes", "GPU memory held by cached assets.", "kind", "texture");
+    glCallsIssuedCounter =
+        metrics.counter(
+            "gl_state_calls_total",
+            "State-changing GL calls seen by the state cache.",
+            "result", "issued");
+    glCallsElidedCounter =
+        metrics.counter(
+            "gl_state_calls_total",
+            "State-changing GL calls seen by the state cache.",
+            "result", "elided");
+  }
+
+  /**
+   * Yeni GL bağlamının durum önbelleğini alır. Renderer'lar hazırlandıktan sonra, ilk
+   * {@link #drawFrame}'den önce çağrılır.
+   *
+   * @param depthSupported oturum derinliği destekliyorsa true; nesneler o zaman gizlemeyle çizilir.
+   */
+  public void onSurfaceCreated(GpuResourceCache gpuResources, boolean depthSupported) {
+    this.gpuResources = gpuResources;
+    this.depthSupported = depthSupported;
+    glState = GlStateCache.getInstance();
+  }
+
+  /** Derinlik haritasının arka planın üzerine çizilip çizilmeyeceği. Herhangi bir thread'den. */
+  public void setShowDepthMap(boolean showDepthMap) {
+    this.showDepthMap = showDepthMap;
+  }
+
+  /** Bir kareyi işler ve çizer. Ekranın temizlenmesi ve oturumun hazırlanması çağırana aittir. */
+  public void drawFrame() {
+    profiler.beginFrame();
+    glValidator.beginFrame();
+    boolean glStateFrameStarted = false;
+    try {
+      // Geçici diziler her karede aynı sırayla alınır, böylece arena önceki karenin dizilerini
+      // yeniden verir.
+      frameArena.reset();
+      float[] projmtx = frameArena.floats(16);
+      float[] viewmtx = frameArena.floats(16);
+      float[] colorCorrectionRgba = frameArena.floats(4);
+      float[] planeNormal = frameArena.floats(3);
+
+      // Arka planda hazırlanan asset'leri bütçe dolana kadar GPU'ya yükle.
+      assetUploadStage.begin();
+      assetLoader.drainUploads(ASSET_UPLOAD_BUDGET_MILLIS);
+      assetUploadStage.end();
+
+      // Konfigürasyon UpdateMode.BLOCKING olarak ayarlandığında (varsayılan olarak), bu, render'ı
+      // kameranın kare hızına ayarlar.
+      sessionUpdateStage.begin();
+      source.update();
+      sessionUpdateStage.end();
+
+      if (source.hasDisplayGeometryChanged() || calculateUvTransform) {
+        calculateUvTransform = false;
+        source.getUvTransform(uvTransform);
+        occludedVirtualObject.setUvTransformMatrix(uvTransform);
+      }
+
+      // Bu çerçeve için en son derinlik görüntüsünü alır.
+      depthUpdateStage.begin();
+      boolean depthUpdated = depthSupported && source.updateDepth(depthTexture);
+      if (depthUpdated) {
+        depthUploadsCounter.increment();
+        tracer.flowStart(traceDepthFlow, depthTexture.getLastDepthTimestamp());
+        tracer.counter(traceDepthUploads, depthTexture.getUploadCount());
+      }
+      depthUpdateStage.end();
+
+      // ARCore ve derinlik yüklemesi GL bağlamalarını önbelleğin dışında değiştirir; bu yüzden
+      // önbellek bu noktada, karenin ilk çiziminden önce sıfırlanır.
+      glState.beginFrame();
+      glStateFrameStarted = true;
+
+      if (depthSupported) {
+        // Asenkron yüklemede örneklenecek doku her yeni derinlik görüntüsüyle değişir.
+        if (depthTexture.getDepthWidth() > 0) {
+          source.setBackgroundDepthTexture(depthTexture.getDepthTexture());
+          occludedVirtualObject.setDepthTexture(
+              depthTexture.getDepthTexture(),
+              depthTexture.getDepthWidth(),
+              depthTexture.getDepthHeight());
+        }
+        // Ön filtreli modda derinlik bulanıklığı, arka plan çizilmeden önce karede bir kez yapılır.
+        if (depthUpdated) {
+          depthBlurStage.begin();
+          occludedVirtualObject.onDepthUpdated();
+          depthBlurStage.end();
+        }
+      }
+
+      // Her karede bir dokunma işlemini ele alır.
+      tapStage.begin();
+      handleTap(planeNormal);
+      tapStage.end();
+
+      // Eğer çerçeve hazırsa, kamera önizleme görüntüsünü GL yüzeyine çizer.
+      backgroundStage.begin();
+      source.drawBackground(showDepthMap);
+      backgroundStage.end();
+
+      // Ekrana dokunulduğunda ekranın kilidini açık tut, ancak takip durduğunda kilitlemeye izin
+      // ver.
+      statusView.updateKeepScreenOn();
+
+      // Takip yapılmıyorsa, 3D nesneleri çizme; takip hatası durumunu göster.
+      if (source.isTrackingPaused()) {
+        statusView.showTrackingFailure();
+        return;
+      }
+
+      source.getProjectionMatrix(projmtx, NEAR_CLIP, FAR_CLIP);
+      source.getViewMatrix(viewmtx);
+
+      // Görüntünün ortalama yoğunluğundan aydınlatmayı hesapla. İlk üç bileşen renk ölçekleme
+      // faktörleridir. Sonuncusu gamma uzayındaki ortalama piksel yoğunluğudur.
+      source.getColorCorrection(colorCorrectionRgba);
+
+      // Bu noktada takip hatası yok. Düzlemler bulunup bulunmadığına bağlı olarak kullanıcıya ne
+      // yapılacağını bildir.
+      String messageToShow;
+      if (planeTracking.hasTrackingPlane()) {
+        messageToShow = depthSupported ? PLANES_FOUND_MESSAGE : PLANES_FOUND_NO_DEPTH_MESSAGE;
+      } else {
+        messageToShow =
+            depthSupported ? SEARCHING_PLANE_MESSAGE : SEARCHING_PLANE_NO_DEPTH_MESSAGE;
+      }
+      statusView.showMessage(messageToShow);
+
+      // Dokunma ile oluşturulan anchor'ları görselleştir. Tüm anchor'lar örnek (instance) olarak
+      // toplanır ve ES 3.0'da tek bir çizim çağrısıyla çizilir.
+      objectsStage.begin();
+      float scaleFactor = 1.0f;
+      occludedVirtualObject.clearInstances();
+      virtualObject.clearInstances();
+      // Model henüz yükleniyorsa anchor'lar saklanır ama çizilmez. Görüş hacminin tamamen dışında
+      // kalan örnekler çizime hiç eklenmez.
+      boolean objectReady =
+          depthSupported ? occludedVirtualObject.isReady() : virtualObject.isReady();
+      MeshBounds objectBounds = null;
+      if (objectReady) {
+        objectBounds =
+            depthSupported ? occludedVirtualObject.getBounds() : virtualObject.getBounds();
+      }
+      int visibleAnchorCount =
+          anchorPass.run(
+              projmtx,
+              viewmtx,
+              objectBounds,
+              scaleFactor,
+              depthSupported ? occludedInstanceSink : objectInstanceSink);
+      int trackedAnchorCount = anchorPass.getTrackedCount();
+      if (objectReady) {
+        tracer.counter(traceAnchorsDrawn, visibleAnchorCount);
+        tracer.counter(traceAnchorsCulled, trackedAnchorCount - visibleAnchorCount);
+      }
+      anchorsStoredGauge.set(anchors.size());
+      anchorsTrackedGauge.set(trackedAnchorCount);
+      anchorsVisibleGauge.set(visibleAnchorCount);
+      meshBytesGauge.set(gpuResources.getMeshBytes());
+      textureBytesGauge.set(gpuResources.getTextureBytes());
+
+      // Derinlik akışı, görüntünün gizleme için ilk kez örneklendiği çizimde biter.
+      if (depthSupported && visibleAnchorCount > 0) {
+        long sampledDepthTimestamp = depthTexture.getSampledDepthTimestamp();
+        if (sampledDepthTimestamp >= 0 && sampledDepthTimestamp != lastSampledDepthTimestamp) {
+          lastSampledDepthTimestamp = sampledDepthTimestamp;
+          tracer.flowEnd(traceDepthFlow, sampledDepthTimestamp);
+        }
+      }
+
+      // Modelleri çiz.
+      if (depthSupported) {
+        occludedVirtualObject.drawInstances(viewmtx, projmtx, colorCorrectionRgba, OBJECT_COLOR);
+      } else {
+        virtualObject.drawInstances(viewmtx, projmtx, colorCorrectionRgba, OBJECT_COLOR);
+      }
+      objectsStage.end();
+
+    } catch (Throwable t) {
+      // İstisnasız durumlar nedeniyle uygulamanın çökmesini önleyin. Açık kalan aşamalar kapatılır
+      // ve hata, istisnanın atıldığı aşamaya yazılır.
+      ++failedFrameCount;
+      FrameProfiler.Stage failedStage = profiler.abortStages();
+      Log.e(TAG, "OpenGL thread üzerinde istisna, aşama: "
+          + (failedStage != null ? failedStage.getName() : "?"), t);
+    } finally {
+      // Sayaçlar beginFrame'de sıfırlanır; karenin sonunda, takip durduğunda erken dönülse bile
+      // okunur.
+      if (glStateFrameStarted) {
+        publishGlStateCounts();
+      }
+      profiler.endFrame();
+    }
+  }
+
+  /** Bir istisna nedeniyle yarıda kalan kare sayısı. */
+  public long getFailedFrameCount() {
+    return failedFrameCount;
+  }
+
+  FrameArena getFrameArena() {
+    return frameArena;
+  }
+
+  // Yalnızca bir dokunma işlemi işle, çünkü dokunmalar genellikle kare hızına göre düşük
+  // frekanstır. Oluşturulan nesnelerin sayısı sınırlıdır; depo doluysa en eski anchor çıkarılır
+  // ve ARCore'u aşırı yüklememek için bırakılır.
+  private void handleTap(float[] planeNormal) {
+    A anchor = source.pollTapAnchor(planeNormal);
+    if (anchor == null) {
+      return;
+    }
+    A evicted = anchors.add(anchor);
+    if (evicted != null) {
+      source.detach(evicted);
+    }
+  }
+
+  // GL durum önbelleğinin bu karedeki çağrı sayılarını ize ve ölçümlere yazar.
+  private void publishGlStateCounts() {
+    int issued = glState.getIssuedCount();
+    int elided = glState.getElidedCount();
+    tracer.counter(traceGlCallsIssued, issued);
+    tracer.counter(traceGlCallsElided, elided);
+    glCallsIssuedCounter.add(issued);
+    glCallsElidedCounter.add(elided);
+  }
+}
@@ -0,0 +1,58 @@
+package com.google.ar.core.codelab.depth;
+
+/**
+ * En az bir düzlemin takip edilip edilmediğini her karede bellek ayırmadan söyler.
+ *
+ * <p>ARCore'da tüm düzlemleri almak ({@code Session.getAllTrackables}) her çağrıda yeni bir
+ * koleksiyon ayırır. Bu sınıf son bulunan takip edilen düzlemi hatırlar ve o düzlem takip
+ * edilmeye devam ettiği sürece yalnızca onun durumunu okur. Koleksiyon yalnızca henüz düzlem
+ * bulunmamışken ya da hatırlanan düzlem takipten çıktığında (örneğin başka bir düzleme
+ * katıldığında) sorgulanır; bu arama karelerindeki ayırma bilinen bir istisnadır. Sınıf ARCore'a
+ * bağlı değildir, bu yüzden JVM üzerinde sahte düzlem türleriyle çalıştırılabilir.
+ *
+ * @param <P> düzlem türü, uygulamada {@code com.google.ar.core.Plane}.
+ */
+public final class PlaneTrackingMonitor<P> {
+  /** Düzlemleri ve takip durumlarını okur. */
+  public interface PlaneSource<P> {
+    /** Oturumdaki tüm düzlemleri döndürür. Bellek ayırabilir. */
+    Iterable<? extends P> getAllPlanes();
+
+    /** Düzlem şu anda takip ediliyorsa true döner. Bellek ayırmamalıdır. */
+    boolean isTracking(P plane);
+  }
+
+  private final PlaneSource<P> source;
+  private P trackedPlane;
+  private long queryCount;
+
+  public PlaneTrackingMonitor(PlaneSource<P> source) {
+    this.source = source;
+  }
+
+  /** En az bir düzlem takip ediliyorsa true döner. Her karede bir kez çağrılabilir. */
+  public boolean hasTrackingPlane() {
+    if (trackedPlane != null && source.isTracking(trackedPlane)) {
+      return true;
+    }
+    trackedPlane = null;
+    ++queryCount;
+    for (P plane : source.getAllPlanes()) {
+      if (source.isTracking(plane)) {
+        trackedPlane = plane;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Hatırlanan düzlemi unutur; örneğin oturum yeniden oluşturulduğunda çağrılır. */
+  public void clear() {
+    trackedPlane = null;
+  }
+
+  /** Tüm düzlemlerin kaç kez sorgulandığı. Kararlı durumda artmamalıdır. */
+  public long getQueryCount() {
+    return queryCount;
+  }
+}
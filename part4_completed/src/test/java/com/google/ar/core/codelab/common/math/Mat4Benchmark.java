@@ -0,0 +1,75 @@
+package com.google.ar.core.codelab.common.math;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multiplies one view-projection matrix with 2048 model matrices, the per-frame work of the
+ * instanced renderers, with {@link Mat4#multiplyBatch}, with {@link Mat4#multiply} per matrix, and
+ * with the generic triple loop of the Java fallback of {@code android.opengl.Matrix.multiplyMM}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Mat4Benchmark {
+  private static final int COUNT = 2048;
+
+  private final float[] viewProjection = new float[Mat4.SIZE];
+  private final float[] models = new float[COUNT * Mat4.SIZE];
+  private final float[] results = new float[COUNT * Mat4.SIZE];
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    for (int i = 0; i < viewProjection.length; ++i) {
+      viewProjection[i] = random.nextFloat();
+    }
+    for (int i = 0; i < models.length; ++i) {
+      models[i] = random.nextFloat();
+    }
+  }
+
+  @Benchmark
+  public float[] multiplyBatch() {
+    Mat4.multiplyBatch(results, 0, viewProjection, 0, models, 0, COUNT);
+    return results;
+  }
+
+  @Benchmark
+  public float[] multiplyPerMatrix() {
+    for (int i = 0; i < COUNT; ++i) {
+      Mat4.multiply(results, i * Mat4.SIZE, viewProjection, 0, models, i * Mat4.SIZE);
+    }
+    return results;
+  }
+
+  @Benchmark
+  public float[] tripleLoop() {
+    for (int i = 0; i < COUNT; ++i) {
+      int offset = i * Mat4.SIZE;
+      for (int column = 0; column < 4; ++column) {
+        for (int row = 0; row < 4; ++row) {
+          float sum = 0;
+          for (int k = 0; k < 4; ++k) {
+            sum += viewProjection[k * 4 + row] * models[offset + column * 4 + k];
+          }
+          results[offset + column * 4 + row] = sum;
+        }
+      }
+    }
+    return results;
+  }
+}
@@ -0,0 +1,196 @@
+package com.google.ar.core.codelab.common.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class Mat4Test {
+  // Float products of four terms are within a few ulps of the exact result; relative to the sum of
+  // the magnitudes of the terms, which bounds the rounding error, 1e-6 leaves ample margin.
+  private static final double RELATIVE_TOLERANCE = 1e-6;
+  private static final int TRIALS = 1000;
+
+  private final Random random = new Random(42);
+
+  @Test
+  public void multiply_matchesDoubleReference() {
+    float[] lhs = new float[Mat4.SIZE];
+    float[] rhs = new float[Mat4.SIZE];
+    float[] result = new float[Mat4.SIZE];
+    for (int trial = 0; trial < TRIALS; ++trial) {
+      randomize(lhs, 0, 1);
+      randomize(rhs, 0, 1);
+      Mat4.multiply(result, 0, lhs, 0, rhs, 0);
+      assertCloseToReference(result, 0, lhs, 0, rhs, 0);
+    }
+  }
+
+  @Test
+  public void multiply_handlesOffsetsAndAliasing() {
+    float[] matrices = new float[3 * Mat4.SIZE];
+    randomize(matrices, 0, 3);
+    float[] lhs = new float[Mat4.SIZE];
+    float[] rhs = new float[Mat4.SIZE];
+    System.arraycopy(matrices, Mat4.SIZE, lhs, 0, Mat4.SIZE);
+    System.arraycopy(matrices, 2 * Mat4.SIZE, rhs, 0, Mat4.SIZE);
+    float[] expected = new float[Mat4.SIZE];
+    Mat4.multiply(expected, 0, lhs, 0, rhs, 0);
+
+    // The result replaces the right operand.
+    Mat4.multiply(matrices, 2 * Mat4.SIZE, matrices, Mat4.SIZE, matrices, 2 * Mat4.SIZE);
+    assertArrayEquals(expected, slice(matrices, 2), 0.0f);
+
+    // The result replaces the left operand.
+    System.arraycopy(rhs, 0, matrices, 2 * Mat4.SIZE, Mat4.SIZE);
+    Mat4.multiply(matrices, Mat4.SIZE, matrices, Mat4.SIZE, matrices, 2 * Mat4.SIZE);
+    assertArrayEquals(expected, slice(matrices, 1), 0.0f);
+  }
+
+  @Test
+  public void multiplyBatch_equalsMultiplyPerMatrixInPlace() {
+    int count = 37;
+    float[] lhs = new float[Mat4.SIZE];
+    float[] matrices = new float[count * Mat4.SIZE];
+    randomize(lhs, 0, 1);
+    randomize(matrices, 0, count);
+    float[] expected = new float[count * Mat4.SIZE];
+    for (int i = 0; i < count; ++i) {
+      Mat4.multiply(expected, i * Mat4.SIZE, lhs, 0, matrices, i * Mat4.SIZE);
+    }
+
+    Mat4.multiplyBatch(matrices, 0, lhs, 0, matrices, 0, count);
+
+    assertArrayEquals(expected, matrices, 0.0f);
+  }
+
+  @Test
+  public void multiplyVector_matchesDoubleReference() {
+    float[] m = new float[Mat4.SIZE];
+    float[] v = new float[4];
+    float[] result = new float[4];
+    for (int trial = 0; trial < TRIALS; ++trial) {
+      randomize(m, 0, 1);
+      for (int i = 0; i < 4; ++i) {
+        v[i] = randomValue();
+      }
+      Mat4.multiplyVector(result, 0, m, 0, v, 0);
+      for (int row = 0; row < 4; ++row) {
+        double exact = 0;
+        double magnitude = 0;
+        for (int k = 0; k < 4; ++k) {
+          double term = (double) m[k * 4 + row] * v[k];
+          exact += term;
+          magnitude += Math.abs(term);
+        }
+        assertEquals(exact, result[row], magnitude * RELATIVE_TOLERANCE);
+      }
+    }
+  }
+
+  @Test
+  public void multiplyVector_allowsResultOverVector() {
+    float[] m = new float[Mat4.SIZE];
+    randomize(m, 0, 1);
+    float[] v = {1, 2, 3, 1};
+    float[] expected = new float[4];
+    Mat4.multiplyVector(expected, 0, m, 0, v, 0);
+
+    Mat4.multiplyVector(v, 0, m, 0, v, 0);
+
+    assertArrayEquals(expected, v, 0.0f);
+  }
+
+  @Test
+  public void scale_equalsMultiplyByScaleMatrix() {
+    float[] m = new float[Mat4.SIZE];
+    randomize(m, 0, 1);
+    float[] scale = new float[Mat4.SIZE];
+    Mat4.setIdentity(scale, 0);
+    scale[0] = 2;
+    scale[5] = 0.5f;
+    scale[10] = -3;
+    float[] expected = new float[Mat4.SIZE];
+    Mat4.multiply(expected, 0, m, 0, scale, 0);
+    float[] result = new float[Mat4.SIZE];
+
+    Mat4.scale(result, 0, m, 0, 2, 0.5f, -3);
+
+    // Multiplying by powers of two and by zero terms is exact.
+    assertArrayEquals(expected, result, 1e-6f);
+  }
+
+  @Test
+  public void setIdentity_isNeutralForMultiply() {
+    float[] identity = new float[2 * Mat4.SIZE];
+    Mat4.setIdentity(identity, Mat4.SIZE);
+    float[] m = new float[Mat4.SIZE];
+    randomize(m, 0, 1);
+    float[] result = new float[Mat4.SIZE];
+
+    Mat4.multiply(result, 0, identity, Mat4.SIZE, m, 0);
+
+    assertArrayEquals(m, result, 0.0f);
+  }
+
+  @Test
+  public void getMaxAxisScale_returnsLongestColumn() {
+    float[] m = new float[Mat4.SIZE];
+    Mat4.setIdentity(m, 0);
+    Mat4.scale(m, 0, m, 0, 2, -5, 3);
+    m[12] = 100;
+
+    assertEquals(5.0f, Mat4.getMaxAxisScale(m, 0), 0.0f);
+  }
+
+  @Test
+  public void vec3_dotLengthAndNormalize() {
+    float[] v = {0, 3, 0, 4};
+    assertEquals(25.0f, Vec3.dot(v, 1, v, 1), 0.0f);
+    assertEquals(25.0f, Vec3.lengthSquared(v, 1), 0.0f);
+
+    Vec3.normalize(v, 1);
+
+    assertArrayEquals(new float[] {0, 0.6f, 0, 0.8f}, v, 1e-7f);
+  }
+
+  /** Checks every element of a product against a double-precision product of the same floats. */
+  private static void assertCloseToReference(
+      float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+    for (int column = 0; column < 4; ++column) {
+      for (int row = 0; row < 4; ++row) {
+        double exact = 0;
+        double magnitude = 0;
+        for (int k = 0; k < 4; ++k) {
+          double term =
+              (double) lhs[lhsOffset + k * 4 + row] * rhs[rhsOffset + column * 4 + k];
+          exact += term;
+          magnitude += Math.abs(term);
+        }
+        assertEquals(
+            "element " + (column * 4 + row),
+            exact,
+            result[resultOffset + column * 4 + row],
+            magnitude * RELATIVE_TOLERANCE);
+      }
+    }
+  }
+
+  private void randomize(float[] matrices, int offset, int count) {
+    for (int i = 0; i < count * Mat4.SIZE; ++i) {
+      matrices[offset + i] = randomValue();
+    }
+  }
+
+  /** Values over several orders of magnitude and both signs, like poses and projections. */
+  private float randomValue() {
+    return (float) ((random.nextDouble() * 2 - 1) * Math.pow(10, random.nextInt(5) - 2));
+  }
+
+  private static float[] slice(float[] matrices, int index) {
+    float[] matrix = new float[Mat4.SIZE];
+    System.arraycopy(matrices, index * Mat4.SIZE, matrix, 0, Mat4.SIZE);
+    return matrix;
+  }
+}
@@ -0,0 +1,136 @@
+package com.google.ar.core.codelab.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsHttpServerTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private MetricsRegistry registry;
+  private MetricsHttpServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    registry = new MetricsRegistry();
+    registry.counter("depth_uploads_total", "Uploads.").add(3);
+    server = MetricsHttpServer.start(registry, 0);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  public void get_metrics_servesPrometheusText() throws IOException {
+    Response response = request("GET /metrics HTTP/1.1");
+
+    assertEquals("HTTP/1.1 200 OK", response.statusLine);
+    assertTrue(response.headers.contains("Content-Type: text/plain; version=0.0.4"));
+    assertEquals(registry.toPrometheusText(), response.body);
+    assertTrue(response.body.contains("depth_uploads_total 3"));
+    assertEquals(response.body.getBytes(UTF_8).length, response.contentLength());
+  }
+
+  @Test
+  public void get_metricsWithQuery_servesMetrics() throws IOException {
+    Response response = request("GET /metrics?name=x HTTP/1.1");
+
+    assertEquals("HTTP/1.1 200 OK", response.statusLine);
+  }
+
+  @Test
+  public void head_metrics_sendsHeadersWithoutBody() throws IOException {
+    Response response = request("HEAD /metrics HTTP/1.1");
+
+    assertEquals("HTTP/1.1 200 OK", response.statusLine);
+    assertEquals("", response.body);
+    assertEquals(registry.toPrometheusText().getBytes(UTF_8).length, response.contentLength());
+  }
+
+  @Test
+  public void get_otherPath_isNotFound() throws IOException {
+    Response response = request("GET /other HTTP/1.1");
+
+    assertEquals("HTTP/1.1 404 Not Found", response.statusLine);
+    assertEquals("Metrics are served at /metrics\n", response.body);
+  }
+
+  @Test
+  public void head_otherPath_isNotFoundWithoutBody() throws IOException {
+    Response response = request("HEAD /other HTTP/1.1");
+
+    assertEquals("HTTP/1.1 404 Not Found", response.statusLine);
+    assertEquals("", response.body);
+  }
+
+  @Test
+  public void post_isMethodNotAllowed() throws IOException {
+    Response response = request("POST /metrics HTTP/1.1");
+
+    assertEquals("HTTP/1.1 405 Method Not Allowed", response.statusLine);
+    assertTrue(response.headers.contains("Allow: GET, HEAD\r\n"));
+  }
+
+  @Test
+  public void serve_answersConsecutiveRequests() throws IOException {
+    assertEquals("HTTP/1.1 404 Not Found", request("GET / HTTP/1.1").statusLine);
+
+    registry.counter("taps_total", "Taps.").increment();
+
+    assertTrue(request("GET /metrics HTTP/1.1").body.contains("taps_total 1"));
+  }
+
+  /** Sends {@code requestLine} and reads the response until the server closes the connection. */
+  private Response request(String requestLine) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      socket.setSoTimeout(5000);
+      OutputStream out = socket.getOutputStream();
+      out.write((requestLine + "\r\nHost: localhost\r\n\r\n").getBytes(UTF_8));
+      out.flush();
+      InputStream in = socket.getInputStream();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        bytes.write(buffer, 0, read);
+      }
+      String text = new String(bytes.toByteArray(), UTF_8);
+      int headersEnd = text.indexOf("\r\n\r\n");
+      assertTrue("Incomplete response: " + text, headersEnd >= 0);
+      return new Response(text.substring(0, headersEnd + 2), text.substring(headersEnd + 4));
+    }
+  }
+
+  private static final class Response {
+    final String statusLine;
+    final String headers;
+    final String body;
+
+    Response(String head, String body) {
+      int statusEnd = head.indexOf("\r\n");
+      this.statusLine = head.substring(0, statusEnd);
+      this.headers = head.substring(statusEnd + 2);
+      this.body = body;
+    }
+
+    int contentLength() {
+      for (String header : headers.split("\r\n")) {
+        if (header.startsWith("Content-Length: ")) {
+          return Integer.parseInt(header.substring("Content-Length: ".length()));
+        }
+      }
+      throw new AssertionError("No Content-Length in " + headers);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.google.ar.core.codelab.common.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameProfilerTest {
+  private long now;
+  private FrameProfiler profiler;
+  private FrameProfiler.Stage outer;
+  private FrameProfiler.Stage inner;
+  private final List<String> gpuEvents = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    profiler = new FrameProfiler(() -> now);
+    outer = profiler.addStage("outer", /*gpuTimed=*/ false);
+    inner = profiler.addStage("inner", /*gpuTimed=*/ true);
+    profiler.setGpuTimer(
+        new FrameProfiler.GpuTimer() {
+          @Override
+          public void beginFrame() {
+            gpuEvents.add("frame");
+          }
+
+          @Override
+          public void begin(FrameProfiler.Stage stage) {
+            gpuEvents.add("begin " + stage.getName());
+          }
+
+          @Override
+          public void end(FrameProfiler.Stage stage) {
+            gpuEvents.add("end " + stage.getName());
+          }
+        });
+  }
+
+  @Test
+  public void nestedStages_recordTheirOwnDurations() {
+    profiler.beginFrame();
+    now += 2;
+    outer.begin();
+    now += 10;
+    inner.begin();
+    now += 5;
+    inner.end();
+    now += 3;
+    outer.end();
+    now += 1;
+    profiler.endFrame();
+
+    assertEquals(5, maxNanos(inner));
+    assertEquals(18, maxNanos(outer));
+    assertEquals(21, maxNanos(profiler.getFrameStage()));
+    assertEquals(1, inner.getCpuHistogram().getCount());
+    assertEquals(Arrays.asList("frame", "begin inner", "end inner"), gpuEvents);
+  }
+
+  @Test
+  public void end_ofAnOuterStageWhileInnerIsOpen_throws() {
+    profiler.beginFrame();
+    outer.begin();
+    inner.begin();
+
+    try {
+      outer.end();
+      fail("Ended a stage that is not the innermost one");
+    } catch (IllegalStateException expected) {
+      // The stack is left as it was.
+    }
+    inner.end();
+    outer.end();
+    profiler.endFrame();
+
+    assertEquals(1, outer.getCpuHistogram().getCount());
+  }
+
+  @Test
+  public void endFrame_withStagesLeftOpen_dropsThemAndRecordsTheFrame() {
+    profiler.beginFrame();
+    outer.begin();
+    inner.begin();
+    now += 4;
+    profiler.endFrame();
+
+    assertEquals(0, outer.getCpuHistogram().getCount());
+    assertEquals(0, inner.getCpuHistogram().getCount());
+    assertEquals(0, inner.getFailureCount());
+    assertEquals(4, maxNanos(profiler.getFrameStage()));
+    // The GPU query of the dropped stage is still closed.
+    assertEquals(Arrays.asList("frame", "begin inner", "end inner"), gpuEvents);
+
+    // The next frame starts from an empty stack.
+    profiler.beginFrame();
+    outer.begin();
+    now += 7;
+    outer.end();
+    profiler.endFrame();
+
+    assertEquals(7, maxNanos(outer));
+    assertEquals(2, profiler.getFrameStage().getCpuHistogram().getCount());
+  }
+
+  @Test
+  public void abortStages_chargesTheInnermostStage() {
+    profiler.beginFrame();
+    outer.begin();
+    inner.begin();
+
+    assertSame(inner, profiler.abortStages());
+
+    assertEquals(1, inner.getFailureCount());
+    assertEquals(0, outer.getFailureCount());
+    assertEquals(0, profiler.getFrameStage().getFailureCount());
+    assertEquals(0, inner.getCpuHistogram().getCount());
+    assertEquals(0, outer.getCpuHistogram().getCount());
+    assertEquals(Arrays.asList("frame", "begin inner", "end inner"), gpuEvents);
+
+    // Only the frame is left open, and it is still recorded.
+    profiler.endFrame();
+    assertEquals(1, profiler.getFrameStage().getCpuHistogram().getCount());
+    assertTrue(profiler.report().contains(" failures=1\n"));
+  }
+
+  @Test
+  public void abortStages_withOnlyTheFrameOpen_chargesTheFrame() {
+    profiler.beginFrame();
+
+    assertSame(profiler.getFrameStage(), profiler.abortStages());
+    assertEquals(1, profiler.getFrameStage().getFailureCount());
+  }
+
+  @Test
+  public void abortStages_outsideAFrame_returnsNull() {
+    profiler.beginFrame();
+    profiler.endFrame();
+
+    assertNull(profiler.abortStages());
+    assertEquals(0, profiler.getFrameStage().getFailureCount());
+  }
+
+  private static long maxNanos(FrameProfiler.Stage stage) {
+    return stage.getCpuHistogram().snapshot().getMaxNanos();
+  }
+}
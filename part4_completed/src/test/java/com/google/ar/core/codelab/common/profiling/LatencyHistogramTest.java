@@ -0,0 +1,130 @@
+package com.google.ar.core.codelab.common.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+  @Test
+  public void bucketBounds_atPowersOfTwo_roundTrip() {
+    for (int bit = 0; bit < 36; ++bit) {
+      long value = 1L << bit;
+      int index = LatencyHistogram.bucketIndex(value);
+
+      assertEquals("2^" + bit, value, LatencyHistogram.bucketLowerBound(index));
+      assertEquals("2^" + bit + " - 1", index - 1, LatencyHistogram.bucketIndex(value - 1));
+      assertEquals("2^" + bit + " - 1", value - 1, LatencyHistogram.bucketUpperBound(index - 1));
+    }
+  }
+
+  @Test
+  public void bucketBounds_coverEveryValueWithoutGaps() {
+    int lastIndex = LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE);
+    assertEquals(0, LatencyHistogram.bucketLowerBound(0));
+    for (int index = 0; index <= lastIndex; ++index) {
+      long lower = LatencyHistogram.bucketLowerBound(index);
+      long upper = LatencyHistogram.bucketUpperBound(index);
+
+      assertTrue("bucket " + index, lower <= upper);
+      assertEquals("bucket " + index, index, LatencyHistogram.bucketIndex(lower));
+      assertEquals("bucket " + index, index, LatencyHistogram.bucketIndex(upper));
+      if (index < lastIndex) {
+        assertEquals("bucket " + index, upper + 1, LatencyHistogram.bucketLowerBound(index + 1));
+      }
+    }
+    assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.bucketUpperBound(lastIndex));
+  }
+
+  @Test
+  public void bucketBounds_keepRelativePrecision() {
+    for (long value = 64; value <= LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+      int index = LatencyHistogram.bucketIndex(value);
+      long width =
+          LatencyHistogram.bucketUpperBound(index) - LatencyHistogram.bucketLowerBound(index) + 1;
+
+      assertTrue("value " + value, width * 32 <= value);
+    }
+  }
+
+  @Test
+  public void getPercentileNanos_exactBuckets_returnsTheRankedValue() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 60; ++value) {
+      histogram.record(value);
+    }
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertEquals(60, snapshot.getCount());
+    assertEquals(1, snapshot.getPercentileNanos(0));
+    assertEquals(30, snapshot.getPercentileNanos(50));
+    assertEquals(57, snapshot.getPercentileNanos(95));
+    assertEquals(60, snapshot.getPercentileNanos(100));
+    assertEquals(30.5, snapshot.getMeanNanos(), 1e-9);
+  }
+
+  @Test
+  public void getPercentileNanos_roundsUpToTheEndOfTheBucket() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; ++i) {
+      histogram.record(1_000_000);
+    }
+    histogram.record(5_000_000);
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    long p50 = snapshot.getPercentileNanos(50);
+    long p99 = snapshot.getPercentileNanos(99);
+
+    int index = LatencyHistogram.bucketIndex(1_000_000);
+    assertEquals(LatencyHistogram.bucketUpperBound(index), p50);
+    assertEquals(p50, p99);
+    assertTrue(p50 > 1_000_000 && p50 < 1_032_000);
+    assertEquals(5_000_000, snapshot.getPercentileNanos(100));
+  }
+
+  @Test
+  public void getPercentileNanos_neverExceedsTheRecordedMaximum() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1_000_000);
+    assertTrue(
+        LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(1_000_000)) > 1_000_000);
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertEquals(1_000_000, snapshot.getPercentileNanos(50));
+    assertEquals(1_000_000, snapshot.getPercentileNanos(100));
+    // Percentiles outside [0, 100] are clamped.
+    assertEquals(1_000_000, snapshot.getPercentileNanos(250));
+    assertEquals(1_000_000, snapshot.getPercentileNanos(-5));
+  }
+
+  @Test
+  public void record_clampsToTheRange() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-7);
+    histogram.record(Long.MAX_VALUE);
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertEquals(0, snapshot.getPercentileNanos(50));
+    assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMaxNanos());
+    assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getPercentileNanos(100));
+    assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getTotalNanos());
+  }
+
+  @Test
+  public void reset_discardsEverything() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1234);
+
+    histogram.reset();
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getMaxNanos());
+    assertEquals(0, snapshot.getPercentileNanos(99));
+    assertEquals(0, snapshot.getMeanNanos(), 0);
+  }
+}
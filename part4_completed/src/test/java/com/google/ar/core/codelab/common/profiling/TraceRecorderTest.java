@@ -0,0 +1,179 @@
+package com.google.ar.core.codelab.common.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+public class TraceRecorderTest {
+  @Test
+  public void writeJson_beforeWrapping_writesEveryEvent() throws Exception {
+    TraceRecorder tracer = new TraceRecorder(64);
+    int frame = tracer.registerName("frame");
+    int anchors = tracer.registerName("anchors \"drawn\"");
+    int depth = tracer.registerName("depth");
+    tracer.start();
+    tracer.begin(frame);
+    tracer.counter(anchors, 7);
+    tracer.flowStart(depth, 42);
+    tracer.end(frame);
+    tracer.begin(frame);
+    tracer.flowEnd(depth, 42);
+    tracer.instant(frame);
+    tracer.end(frame);
+    tracer.stop();
+
+    JsonArray events = writeAndValidate(tracer);
+
+    assertEquals("BCsEBfiE", phases(events));
+    JsonObject counter = events.get(1).getAsJsonObject();
+    assertEquals("anchors \"drawn\"", counter.get("name").getAsString());
+    assertEquals(7, counter.getAsJsonObject("args").get("value").getAsLong());
+    assertEquals(42, events.get(2).getAsJsonObject().get("id").getAsLong());
+    assertEquals("e", events.get(5).getAsJsonObject().get("bp").getAsString());
+  }
+
+  @Test
+  public void writeJson_afterWrapping_dropsOrphanEndsAndFlowEnds() throws Exception {
+    TraceRecorder tracer = new TraceRecorder(16);
+    int frame = tracer.registerName("frame");
+    int stage = tracer.registerName("stage");
+    int depth = tracer.registerName("depth");
+    int anchors = tracer.registerName("anchors");
+    tracer.start();
+    for (int i = 0; i < 37; ++i) {
+      tracer.begin(frame);
+      tracer.flowEnd(depth, i - 1);
+      tracer.begin(stage);
+      tracer.flowStart(depth, i);
+      tracer.end(stage);
+      tracer.end(frame);
+    }
+    for (int i = 0; i < 5; ++i) {
+      tracer.counter(anchors, i);
+    }
+    tracer.stop();
+
+    JsonArray events = writeAndValidate(tracer);
+
+    // The last 16 events are the last five of one frame, a whole frame and the counters. The
+    // first frame's flow end and span end lost their flow start and span begin.
+    assertEquals("BsEBfBsEECCCCC", phases(events));
+  }
+
+  @Test
+  public void writeJson_afterWrappingOnSeveralThreads_isBalancedPerThread() throws Exception {
+    TraceRecorder tracer = new TraceRecorder(256);
+    int frame = tracer.registerName("frame");
+    int upload = tracer.registerName("upload");
+    tracer.start();
+    Thread worker =
+        new Thread(
+            () -> {
+              for (int i = 0; i < 1000; ++i) {
+                tracer.begin(upload);
+                tracer.flowStart(upload, 1000 + i);
+                tracer.end(upload);
+              }
+            },
+            "worker");
+    worker.start();
+    for (int i = 0; i < 1000; ++i) {
+      tracer.begin(frame);
+      tracer.begin(upload);
+      tracer.flowEnd(upload, 1000 + i);
+      tracer.end(upload);
+      tracer.end(frame);
+    }
+    worker.join();
+    tracer.stop();
+
+    writeAndValidate(tracer);
+  }
+
+  @Test
+  public void writeJson_whileStopped_recordsNothing() throws Exception {
+    TraceRecorder tracer = new TraceRecorder(16);
+    int frame = tracer.registerName("frame");
+    tracer.begin(frame);
+    tracer.end(frame);
+
+    assertFalse(tracer.isEnabled());
+    assertEquals("", phases(writeAndValidate(tracer)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsCapacityThatIsNotAPowerOfTwo() {
+    new TraceRecorder(100);
+  }
+
+  /**
+   * Parses the JSON written by {@code tracer} and checks that every span end closes a span begun
+   * on the same thread and every flow end follows a flow start with the same name and id.
+   * Returns the events other than thread metadata.
+   */
+  private static JsonArray writeAndValidate(TraceRecorder tracer) throws IOException {
+    StringWriter out = new StringWriter();
+    tracer.writeJson(out);
+    JsonObject trace = JsonParser.parseString(out.toString()).getAsJsonObject();
+    assertEquals("ms", trace.get("displayTimeUnit").getAsString());
+
+    JsonArray events = new JsonArray();
+    Map<Integer, Integer> depths = new HashMap<>();
+    Set<String> startedFlows = new HashSet<>();
+    for (JsonElement element : trace.getAsJsonArray("traceEvents")) {
+      JsonObject event = element.getAsJsonObject();
+      String phase = event.get("ph").getAsString();
+      int thread = event.get("tid").getAsInt();
+      if (phase.equals("M")) {
+        continue;
+      }
+      events.add(event);
+      double timestamp = event.get("ts").getAsDouble();
+      int depth = depths.getOrDefault(thread, 0);
+      switch (phase) {
+        case "B":
+          depths.put(thread, depth + 1);
+          break;
+        case "E":
+          if (depth == 0) {
+            fail("E without B on thread " + thread + " at " + timestamp);
+          }
+          depths.put(thread, depth - 1);
+          break;
+        case "s":
+          startedFlows.add(event.get("name").getAsString() + ":" + event.get("id").getAsLong());
+          break;
+        case "f":
+          assertTrue(
+              "f without s at " + timestamp,
+              startedFlows.contains(
+                  event.get("name").getAsString() + ":" + event.get("id").getAsLong()));
+          break;
+        default:
+          break;
+      }
+    }
+    return events;
+  }
+
+  private static String phases(JsonArray events) {
+    StringBuilder phases = new StringBuilder();
+    for (JsonElement event : events) {
+      phases.append(event.getAsJsonObject().get("ph").getAsString());
+    }
+    return phases.toString();
+  }
+}
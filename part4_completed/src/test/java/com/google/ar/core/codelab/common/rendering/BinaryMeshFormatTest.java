@@ -0,0 +1,107 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryMeshFormatTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private MeshData mesh;
+
+  @Before
+  public void setUp() throws IOException {
+    mesh = MeshOptimizer.optimize(TestAssets.readObj("models/andy.obj"));
+  }
+
+  @Test
+  public void read_returnsWrittenMeshWithQuantizedVertices() throws IOException {
+    MeshData read = BinaryMeshFormat.read(write(mesh));
+
+    assertEquals(mesh.getVertexCount(), read.getVertexCount());
+    assertEquals(mesh.getIndexCount(), read.getIndexCount());
+    assertEquals(mesh.getIndexSize(), read.getIndexSize());
+    assertEquals(mesh.getVertexData(), read.getVertexData());
+    assertEquals(mesh.getIndexData(), read.getIndexData());
+
+    QuantizedVertexData expected = QuantizedVertexData.quantize(mesh);
+    QuantizedVertexData quantized = read.getQuantizedVertices();
+    assertEquals(expected.getVertexData(), quantized.getVertexData());
+    assertArrayEquals(expected.getPositionScale(), quantized.getPositionScale());
+    assertArrayEquals(expected.getPositionOffset(), quantized.getPositionOffset());
+    assertArrayEquals(expected.getTexCoordScaleOffset(), quantized.getTexCoordScaleOffset());
+    assertEquals(expected.getBounds().getRadius(), quantized.getBounds().getRadius(), 0.0f);
+    // Served from the file rather than quantized again.
+    assertSame(quantized, read.getQuantizedVertices());
+  }
+
+  @Test
+  public void map_sharesQuantizedVerticesWithFile() throws IOException {
+    File file = new File(temporaryFolder.getRoot(), "andy.mesh");
+    MeshCache.write(mesh, file);
+    MeshData mapped = MeshCache.map(file);
+
+    ByteBuffer quantized = mapped.getQuantizedVertices().getVertexData();
+    assertTrue(quantized.isDirect());
+    assertEquals(ByteOrder.nativeOrder(), quantized.order());
+    assertEquals(mesh.getVertexCount() * QuantizedVertexData.VERTEX_STRIDE, quantized.remaining());
+  }
+
+  @Test
+  public void read_rejectsCorruptData() throws IOException {
+    ByteBuffer data = write(mesh);
+    int quantizedByte =
+        BinaryMeshFormat.HEADER_SIZE + mesh.getVertexCount() * MeshData.VERTEX_STRIDE + 5;
+    data.put(quantizedByte, (byte) (data.get(quantizedByte) ^ 1));
+    assertRejected(data, "checksum");
+  }
+
+  @Test
+  public void read_rejectsTruncatedData() throws IOException {
+    ByteBuffer data = write(mesh);
+    data.limit(data.limit() - 1);
+    assertRejected(data, "truncated");
+    data.limit(BinaryMeshFormat.HEADER_SIZE - 1);
+    assertRejected(data, "too short");
+  }
+
+  @Test
+  public void read_rejectsOtherVersions() throws IOException {
+    ByteBuffer data = write(mesh);
+    data.putInt(4, 2);
+    assertRejected(data, "version");
+  }
+
+  private static ByteBuffer write(MeshData mesh) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryMeshFormat.write(mesh, out);
+    byte[] bytes = out.toByteArray();
+    ByteBuffer data = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+    data.put(bytes).flip();
+    return data;
+  }
+
+  private static void assertRejected(ByteBuffer data, String reason) {
+    try {
+      BinaryMeshFormat.read(data);
+      fail("Expected the mesh to be rejected: " + reason);
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(reason));
+    }
+  }
+
+  private static void assertArrayEquals(float[] expected, float[] actual) {
+    org.junit.Assert.assertArrayEquals(expected, actual, 0.0f);
+  }
+}
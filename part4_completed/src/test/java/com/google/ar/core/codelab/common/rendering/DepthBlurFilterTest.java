@@ -0,0 +1,100 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DepthBlurFilterTest {
+  private static final int DEPTH_TEXTURE = 77;
+
+  private RecordingGl gl;
+  private GlStateCache glState;
+  private GlValidator.Mode previousValidationMode;
+  private final DepthBlurFilter filter = new DepthBlurFilter();
+
+  @Before
+  public void setUp() throws IOException {
+    gl = new RecordingGl();
+    GlBackend.set(gl);
+    glState = GlStateCache.getInstance();
+    previousValidationMode = GlValidator.getInstance().getMode();
+    GlValidator.getInstance().setMode(GlValidator.Mode.OFF);
+    filter.createOnGlThread(TestAssets.shaderLibrary());
+    filter.setViewport(1080, 1920);
+  }
+
+  @After
+  public void tearDown() {
+    GlValidator.getInstance().setMode(previousValidationMode);
+  }
+
+  @Test
+  public void filter_firstCall_allocatesAndChecksTargets() {
+    gl.reset();
+    glState.beginFrame();
+
+    filter.filter(DEPTH_TEXTURE, 160, 90, 0.01f, 0.01f);
+
+    assertEquals(2, gl.getCallCount("glTexImage2D"));
+    assertEquals(2, gl.getCallCount("glCheckFramebufferStatus"));
+    assertEquals(2, gl.getCallCount("glDrawArrays"));
+  }
+
+  @Test
+  public void filter_steadyState_issuesTwoDrawsAndNoQueries() {
+    filter.filter(DEPTH_TEXTURE, 160, 90, 0.01f, 0.01f);
+    for (int frame = 0; frame < 3; ++frame) {
+      gl.reset();
+      glState.beginFrame();
+
+      filter.filter(DEPTH_TEXTURE, 160, 90, 0.01f, 0.01f);
+
+      assertEquals(0, gl.getQueryCount());
+      assertEquals(0, gl.getCallCount("glTexImage2D"));
+      assertEquals(2, gl.getDrawCallCount());
+      // Two passes plus the default framebuffer.
+      assertEquals(3, gl.getCallCount("glBindFramebuffer"));
+      assertEquals(2, gl.getCallCount("glViewport"));
+      // Only the tap offset differs between the passes; the sampler unit is set once per program.
+      assertEquals(2, gl.getUniformUploadCount());
+      assertTrue(gl.getStateChangeCount() <= 30);
+    }
+  }
+
+  @Test
+  public void filter_newDepthSize_reallocatesTargets() {
+    filter.filter(DEPTH_TEXTURE, 160, 90, 0.01f, 0.01f);
+    gl.reset();
+
+    filter.filter(DEPTH_TEXTURE, 320, 180, 0.01f, 0.01f);
+
+    assertEquals(2, gl.getCallCount("glTexImage2D"));
+  }
+
+  @Test
+  public void filter_restoresDepthAndBlendState() {
+    glState.setDepthTest(true);
+    glState.setDepthMask(true);
+    glState.setBlend(false);
+
+    filter.filter(DEPTH_TEXTURE, 160, 90, 0.01f, 0.01f);
+
+    assertTrue(glState.isDepthTestEnabled());
+    assertTrue(glState.isDepthMaskEnabled());
+    assertFalse(glState.isBlendEnabled());
+  }
+
+  @Test
+  public void filter_withoutDepth_doesNothing() {
+    gl.reset();
+
+    filter.filter(DEPTH_TEXTURE, 0, 0, 0.01f, 0.01f);
+
+    assertEquals(0, gl.getCallCount());
+  }
+}
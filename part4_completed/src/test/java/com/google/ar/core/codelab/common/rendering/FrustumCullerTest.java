@@ -0,0 +1,150 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.codelab.common.math.Mat4;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrustumCullerTest {
+  private static final float NEAR = 0.1f;
+  private static final float FAR = 100.0f;
+  // A cube of side 2 around the origin.
+  private static final MeshBounds UNIT_CUBE = bounds(0, 0, 0, 1);
+  // Small enough that only the center decides.
+  private static final MeshBounds POINT = bounds(0, 0, 0, 1e-4f);
+
+  private final float[] projectionMatrix = new float[Mat4.SIZE];
+  private final float[] viewMatrix = new float[Mat4.SIZE];
+  private final FrustumCuller culler = new FrustumCuller();
+
+  @Before
+  public void setUp() {
+    // 90 degree field of view in both directions: the side planes are x = +-z and y = +-z.
+    projectionMatrix[0] = 1;
+    projectionMatrix[5] = 1;
+    projectionMatrix[10] = (FAR + NEAR) / (NEAR - FAR);
+    projectionMatrix[11] = -1;
+    projectionMatrix[14] = 2 * FAR * NEAR / (NEAR - FAR);
+    Mat4.setIdentity(viewMatrix, 0);
+    culler.update(projectionMatrix, viewMatrix);
+  }
+
+  @Test
+  public void update_extractsAllSixPlanes() {
+    assertTrue(isVisible(POINT, translation(0, 0, -5), 1));
+    assertTrue(isVisible(POINT, translation(4.9f, -4.9f, -5), 1));
+    // Left, right, bottom, top, near and far.
+    assertFalse(isVisible(POINT, translation(-5.1f, 0, -5), 1));
+    assertFalse(isVisible(POINT, translation(5.1f, 0, -5), 1));
+    assertFalse(isVisible(POINT, translation(0, -5.1f, -5), 1));
+    assertFalse(isVisible(POINT, translation(0, 5.1f, -5), 1));
+    assertFalse(isVisible(POINT, translation(0, 0, -0.09f), 1));
+    assertFalse(isVisible(POINT, translation(0, 0, -100.1f), 1));
+
+    assertEquals(2, culler.getVisibleCount());
+    assertEquals(6, culler.getCulledCount());
+  }
+
+  @Test
+  public void update_appliesTheViewMatrix() {
+    // The camera moves to x = 10, so the world moves to x = -10 in view space.
+    viewMatrix[12] = -10;
+    culler.update(projectionMatrix, viewMatrix);
+
+    assertTrue(isVisible(POINT, translation(10, 0, -5), 1));
+    assertFalse(isVisible(POINT, translation(0, 0, -5), 1));
+  }
+
+  @Test
+  public void update_resetsTheCounters() {
+    isVisible(UNIT_CUBE, translation(0, 0, -5), 1);
+    isVisible(UNIT_CUBE, translation(0, 0, 5), 1);
+
+    culler.update(projectionMatrix, viewMatrix);
+
+    assertEquals(0, culler.getVisibleCount());
+    assertEquals(0, culler.getCulledCount());
+  }
+
+  @Test
+  public void isVisible_inFront_passes() {
+    assertTrue(isVisible(UNIT_CUBE, translation(0, 0, -5), 1));
+  }
+
+  @Test
+  public void isVisible_behindTheCamera_isCulled() {
+    assertFalse(isVisible(UNIT_CUBE, translation(0, 0, 5), 1));
+  }
+
+  @Test
+  public void isVisible_straddlingASidePlane_passes() {
+    // The right plane is at x = 5 for z = -5; the cube spans x = 4.5 to 6.5.
+    assertTrue(isVisible(UNIT_CUBE, translation(5.5f, 0, -5), 1));
+  }
+
+  @Test
+  public void isVisible_sphereCrossesButBoxIsOutside_isCulled() {
+    // The center is 1.56 outside the right plane: inside the sphere radius of 1.73, but beyond
+    // the 1.41 the cube reaches towards the plane.
+    assertFalse(isVisible(UNIT_CUBE, translation(7.2f, 0, -5), 1));
+  }
+
+  @Test
+  public void isVisible_scaledByTheModelMatrix_usesTheLongestAxis() {
+    float[] modelMatrix = translation(8, 0, -5);
+    assertFalse(isVisible(UNIT_CUBE, modelMatrix, 1));
+
+    // Stretching the x axis alone widens both the sphere and the box enough.
+    Mat4.scale(modelMatrix, 0, modelMatrix, 0, 3, 1, 1);
+    assertEquals(3.0f, Mat4.getMaxAxisScale(modelMatrix, 0), 0);
+    assertTrue(isVisible(UNIT_CUBE, modelMatrix, 1));
+  }
+
+  @Test
+  public void isVisible_scaleFactor_scalesTheBoundsButNotTheTranslation() {
+    assertFalse(isVisible(UNIT_CUBE, translation(8, 0, -5), 1));
+    assertTrue(isVisible(UNIT_CUBE, translation(8, 0, -5), 3));
+
+    // The scale factor also moves a center that is off the mesh origin.
+    MeshBounds offCenter = bounds(10, 0, 0, 0.5f);
+    assertFalse(isVisible(offCenter, translation(0, 0, -5), 1));
+    assertTrue(isVisible(offCenter, translation(0, 0, -5), 0.45f));
+  }
+
+  @Test
+  public void isVisible_scaleFactorAndMatrixScale_multiply() {
+    float[] modelMatrix = translation(9.5f, 0, -5);
+    Mat4.scale(modelMatrix, 0, modelMatrix, 0, 2, 2, 2);
+
+    // The cube, 2 * 1.5 times as large, reaches the plane 3.18 away; either factor alone does not.
+    assertFalse(isVisible(UNIT_CUBE, translation(9.5f, 0, -5), 1.5f));
+    assertFalse(isVisible(UNIT_CUBE, modelMatrix, 1));
+    assertTrue(isVisible(UNIT_CUBE, modelMatrix, 1.5f));
+  }
+
+  private boolean isVisible(MeshBounds bounds, float[] modelMatrix, float scaleFactor) {
+    // Place the matrix at an offset, as in the renderers' instance arrays.
+    float[] instances = new float[2 * Mat4.SIZE];
+    System.arraycopy(modelMatrix, 0, instances, Mat4.SIZE, Mat4.SIZE);
+    return culler.isVisible(instances, Mat4.SIZE, scaleFactor, bounds);
+  }
+
+  private static float[] translation(float x, float y, float z) {
+    float[] m = new float[Mat4.SIZE];
+    Mat4.setIdentity(m, 0);
+    m[12] = x;
+    m[13] = y;
+    m[14] = z;
+    return m;
+  }
+
+  private static MeshBounds bounds(float x, float y, float z, float extent) {
+    float[] center = {x, y, z};
+    float[] min = {x - extent, y - extent, z - extent};
+    float[] max = {x + extent, y + extent, z + extent};
+    return new MeshBounds(min, max, center, extent * (float) Math.sqrt(3));
+  }
+}
@@ -0,0 +1,123 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import android.opengl.GLES20;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GlStateCacheTest {
+  private RecordingGl gl;
+  private GlStateCache glState;
+
+  @Before
+  public void setUp() {
+    gl = new RecordingGl();
+    GlBackend.set(gl);
+    glState = GlStateCache.getInstance();
+    glState.beginFrame();
+  }
+
+  @Test
+  public void useProgram_elidesRepeatsAndCounts() {
+    glState.useProgram(3);
+    glState.useProgram(3);
+    glState.useProgram(4);
+
+    assertEquals(2, gl.getCallCount("glUseProgram"));
+    assertEquals(2, glState.getIssuedCount());
+    assertEquals(1, glState.getElidedCount());
+  }
+
+  @Test
+  public void beginFrame_resetsCountsAndForgetsBindings() {
+    glState.useProgram(3);
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+
+    glState.beginFrame();
+
+    assertEquals(0, glState.getIssuedCount());
+    assertEquals(0, glState.getElidedCount());
+    glState.useProgram(3);
+    glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+    assertEquals(2, gl.getCallCount("glUseProgram"));
+    assertEquals(2, gl.getCallCount("glBindBuffer"));
+  }
+
+  @Test
+  public void uniforms_elideUnchangedValuesPerProgram() {
+    float[] matrix = new float[16];
+    matrix[0] = 1;
+    glState.useProgram(3);
+    glState.uniformMatrix4fv(0, matrix, 0);
+    glState.uniform1f(1, 0.5f);
+    glState.useProgram(4);
+    // Same location in another program is another uniform.
+    glState.uniformMatrix4fv(0, matrix, 0);
+    glState.useProgram(3);
+    glState.uniformMatrix4fv(0, matrix, 0);
+    glState.uniform1f(1, 0.5f);
+    matrix[15] = 2;
+    glState.uniformMatrix4fv(0, matrix, 0);
+
+    assertEquals(3, gl.getCallCount("glUniformMatrix4fv"));
+    assertEquals(1, gl.getCallCount("glUniform1f"));
+  }
+
+  @Test
+  public void uniforms_neighbouringSlotsDoNotOverlap() {
+    glState.useProgram(3);
+    glState.uniform4f(7, 1, 2, 3, 4);
+    glState.uniform1i(2, 9);
+    glState.uniform3fv(5, new float[] {5, 6, 7}, 0);
+
+    glState.uniform4f(7, 1, 2, 3, 4);
+    glState.uniform1i(2, 9);
+    glState.uniform3fv(5, new float[] {5, 6, 7}, 0);
+
+    assertEquals(1, gl.getCallCount("glUniform4f"));
+    assertEquals(1, gl.getCallCount("glUniform1i"));
+    assertEquals(1, gl.getCallCount("glUniform3fv"));
+  }
+
+  @Test
+  public void uniforms_sparseLargeLocationsAreShadowed() {
+    // Some drivers return large, sparse locations; the shadow must not grow with their value.
+    float[] matrix = new float[16];
+    glState.useProgram(3);
+    for (int i = 0; i < 100; ++i) {
+      matrix[0] = i;
+      glState.uniformMatrix4fv(Integer.MAX_VALUE - i * 65536, matrix, 0);
+    }
+    for (int i = 0; i < 100; ++i) {
+      matrix[0] = i;
+      glState.uniformMatrix4fv(Integer.MAX_VALUE - i * 65536, matrix, 0);
+    }
+
+    assertEquals(100, gl.getCallCount("glUniformMatrix4fv"));
+    assertEquals(100, glState.getElidedCount());
+  }
+
+  @Test
+  public void uniforms_locationMinusOneIsNeitherIssuedNorElided() {
+    glState.useProgram(3);
+    glState.beginFrame();
+    glState.uniform1f(-1, 1.0f);
+    glState.uniform1f(-1, 1.0f);
+    glState.uniformMatrix4fv(-1, new float[16], 0);
+
+    assertEquals(0, gl.getCallCount("glUniform1f"));
+    assertEquals(0, gl.getCallCount("glUniformMatrix4fv"));
+    assertEquals(0, glState.getIssuedCount());
+    assertEquals(0, glState.getElidedCount());
+  }
+
+  @Test
+  public void setVertexAttribArrays_changesOnlyDifferingArrays() {
+    glState.setVertexAttribArrays(GlStateCache.attributeBit(0) | GlStateCache.attributeBit(1));
+    glState.setVertexAttribArrays(GlStateCache.attributeBit(1) | GlStateCache.attributeBit(2));
+
+    assertEquals(3, gl.getCallCount("glEnableVertexAttribArray"));
+    assertEquals(1, gl.getCallCount("glDisableVertexAttribArray"));
+  }
+}
@@ -0,0 +1,86 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import com.google.ar.core.codelab.common.math.Mat4;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Draws frames of {@link ObjectRenderer} with 10 anchors over {@link RecordingGl} in each {@link
+ * GlValidator.Mode}. OpenGL ES 2.0 draws every instance between two checkpoints, 20 per frame;
+ * OpenGL ES 3.0 draws them all at once between two.
+ *
+ * <p>This measures what the checkpoints cost on the CPU. On a device a {@code glGetError} that
+ * reads the flag can also wait for the GPU to finish the queued commands, which a recording
+ * context cannot show; compare the modes there with a GPU profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlValidatorBenchmark {
+  private static final String ETC1_EXTENSION = "GL_OES_compressed_ETC1_RGB8_texture";
+  private static final int INSTANCE_COUNT = 10;
+
+  @Param({"OFF", "SAMPLED", "FULL"})
+  public GlValidator.Mode validation;
+
+  @Param({"OpenGL ES 2.0", "OpenGL ES 3.0"})
+  public String version;
+
+  private final float[] viewMatrix = new float[Mat4.SIZE];
+  private final float[] projectionMatrix = new float[Mat4.SIZE];
+  private final float[] modelMatrix = new float[Mat4.SIZE];
+  private final float[] colorCorrection = {1, 1, 1, 0.5f};
+  private final float[] objectColor = {1, 1, 1, 1};
+
+  private GlValidator validator;
+  private GlValidator.Mode previousMode;
+  private GlStateCache glState;
+  private ObjectRenderer renderer;
+
+  @Setup
+  public void setUp() throws IOException {
+    GlBackend.set(new RecordingGl(version, ETC1_EXTENSION));
+    glState = GlStateCache.getInstance();
+    validator = GlValidator.getInstance();
+    previousMode = validator.getMode();
+    validator.setMode(validation);
+    renderer = TestAssets.createObjectRenderer(new GlCapabilities(version, ETC1_EXTENSION, ""));
+    Mat4.setIdentity(viewMatrix, 0);
+    Mat4.setIdentity(projectionMatrix, 0);
+  }
+
+  @TearDown
+  public void tearDown() {
+    validator.setMode(previousMode);
+  }
+
+  /** Runs the object part of onDrawFrame with a row of anchors in front of the camera. */
+  @Benchmark
+  public void drawFrame() {
+    glState.beginFrame();
+    validator.beginFrame();
+    renderer.clearInstances();
+    for (int i = 0; i < INSTANCE_COUNT; ++i) {
+      Mat4.setIdentity(modelMatrix, 0);
+      modelMatrix[12] = i - INSTANCE_COUNT / 2;
+      modelMatrix[14] = -5;
+      renderer.addInstance(modelMatrix, 1.0f);
+    }
+    renderer.drawInstances(viewMatrix, projectionMatrix, colorCorrection, objectColor);
+  }
+}
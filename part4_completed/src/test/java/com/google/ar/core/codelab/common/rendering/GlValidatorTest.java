@@ -0,0 +1,133 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.opengl.GLES20;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GlValidatorTest {
+  private RecordingGl gl;
+  private GlValidator validator;
+
+  @Before
+  public void setUp() {
+    gl = new RecordingGl();
+    GlBackend.set(gl);
+    validator = new GlValidator();
+  }
+
+  @Test
+  public void sampled_checksEveryCheckpointOfOneFrameInN() {
+    validator.setMode(GlValidator.Mode.SAMPLED);
+    validator.setSampleInterval(3);
+
+    int[] checksPerFrame = new int[7];
+    for (int frame = 0; frame < checksPerFrame.length; ++frame) {
+      long before = validator.getCheckCount();
+      validator.beginFrame();
+      validator.check("A", "first");
+      validator.check("B", "second");
+      checksPerFrame[frame] = (int) (validator.getCheckCount() - before);
+    }
+
+    assertArrayEquals(new int[] {2, 0, 0, 2, 0, 0, 2}, checksPerFrame);
+    assertEquals(6, gl.getCallCount("glGetError"));
+  }
+
+  @Test
+  public void sampled_errorInAnUncheckedFrame_isReportedByTheNextCheckedFrame() {
+    validator.setMode(GlValidator.Mode.SAMPLED);
+    validator.setSampleInterval(2);
+    validator.beginFrame();
+    validator.check("A", "first");
+
+    validator.beginFrame();
+    gl.setPendingError(GLES20.GL_INVALID_VALUE);
+    validator.check("A", "first");
+    assertEquals(0, validator.getErrorCount());
+
+    validator.beginFrame();
+    try {
+      validator.check("A", "first");
+      fail("Missed the error of the unchecked frame");
+    } catch (RuntimeException expected) {
+      assertEquals(
+          "A: first: glError " + GLES20.GL_INVALID_VALUE
+              + " before any checkpoint of the frame passed",
+          expected.getMessage());
+    }
+    assertEquals(1, validator.getErrorCount());
+  }
+
+  @Test
+  public void setSampleInterval_appliesFromTheNextFrame() {
+    validator.setMode(GlValidator.Mode.SAMPLED);
+    validator.setSampleInterval(1);
+    for (int frame = 0; frame < 4; ++frame) {
+      validator.beginFrame();
+      validator.check("A", "first");
+    }
+    assertEquals(4, validator.getCheckCount());
+
+    validator.setSampleInterval(GlValidator.DEFAULT_SAMPLE_INTERVAL);
+    for (int frame = 0; frame < GlValidator.DEFAULT_SAMPLE_INTERVAL; ++frame) {
+      validator.beginFrame();
+      validator.check("A", "first");
+    }
+    assertEquals(5, validator.getCheckCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setSampleInterval_rejectsZero() {
+    validator.setSampleInterval(0);
+  }
+
+  @Test
+  public void full_errorMessageNamesTheLastPassingCheckpoint() {
+    validator.setMode(GlValidator.Mode.FULL);
+    validator.beginFrame();
+    validator.check("Background", "After draw");
+    validator.check("Objects", "After bind");
+    gl.setPendingError(GLES20.GL_INVALID_OPERATION);
+
+    try {
+      validator.check("Objects", "After draw");
+      fail("Missed the pending error");
+    } catch (RuntimeException expected) {
+      assertEquals(
+          "Objects: After draw: glError " + GLES20.GL_INVALID_OPERATION
+              + " after Objects: After bind passed",
+          expected.getMessage());
+    }
+
+    // The next frame forgets the checkpoints of the previous one.
+    validator.beginFrame();
+    gl.setPendingError(GLES20.GL_INVALID_ENUM);
+    try {
+      validator.check("Background", "After draw");
+      fail("Missed the pending error");
+    } catch (RuntimeException expected) {
+      assertEquals(
+          "Background: After draw: glError " + GLES20.GL_INVALID_ENUM
+              + " before any checkpoint of the frame passed",
+          expected.getMessage());
+    }
+    assertEquals(2, validator.getErrorCount());
+  }
+
+  @Test
+  public void off_neverReadsTheErrorFlag() {
+    validator.setMode(GlValidator.Mode.OFF);
+    gl.setPendingError(GLES20.GL_INVALID_VALUE);
+    for (int frame = 0; frame < 3; ++frame) {
+      validator.beginFrame();
+      validator.check("A", "first");
+    }
+
+    assertEquals(0, validator.getCheckCount());
+    assertEquals(0, gl.getCallCount("glGetError"));
+  }
+}
@@ -0,0 +1,113 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import android.opengl.GLES20;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GpuMeshTest {
+  private static final GlCapabilities ES3 = new GlCapabilities("OpenGL ES 3.0", "", "");
+  private static final GlCapabilities ES2 = new GlCapabilities("OpenGL ES 2.0", "", "");
+  private static final GlCapabilities ES2_UINT =
+      new GlCapabilities("OpenGL ES 2.0", "GL_OES_element_index_uint", "");
+
+  private RecordingGl gl;
+
+  @Before
+  public void setUp() {
+    gl = new RecordingGl();
+    gl.setBufferDataKept(true);
+    GlBackend.set(gl);
+  }
+
+  @Test
+  public void upload_es3_drawsThirtyTwoBitIndicesWhole() {
+    MeshData mesh = MeshSplitterTest.grid(300, 300);
+
+    GpuMesh gpuMesh = GpuMesh.upload("grid", mesh, ES3);
+
+    assertWhole(mesh, gpuMesh, GLES20.GL_UNSIGNED_INT);
+  }
+
+  @Test
+  public void upload_es2WithUintExtension_drawsThirtyTwoBitIndicesWhole() {
+    MeshData mesh = MeshSplitterTest.grid(300, 300);
+
+    GpuMesh gpuMesh = GpuMesh.upload("grid", mesh, ES2_UINT);
+
+    assertWhole(mesh, gpuMesh, GLES20.GL_UNSIGNED_INT);
+  }
+
+  @Test
+  public void upload_es2_keepsMeshOf65536VerticesWhole() {
+    MeshData mesh = MeshSplitterTest.grid(256, 256);
+
+    GpuMesh gpuMesh = GpuMesh.upload("grid", mesh, ES2);
+
+    assertWhole(mesh, gpuMesh, GLES20.GL_UNSIGNED_SHORT);
+  }
+
+  @Test
+  public void upload_es2_splitsIntoSixteenBitSubmeshesThatRoundTrip() {
+    MeshData mesh = MeshSplitterTest.grid(300, 300);
+
+    GpuMesh gpuMesh = GpuMesh.upload("grid", mesh, ES2);
+
+    assertEquals(GLES20.GL_UNSIGNED_SHORT, gpuMesh.getIndexType());
+    assertEquals(2, gpuMesh.getSubmeshCount());
+    int[] vertexOffsets = new int[gpuMesh.getSubmeshCount()];
+    int[] indexOffsets = new int[gpuMesh.getSubmeshCount()];
+    int[] indexCounts = new int[gpuMesh.getSubmeshCount()];
+    int vertexOffset = 0;
+    int indexCount = 0;
+    for (int i = 0; i < gpuMesh.getSubmeshCount(); ++i) {
+      vertexOffsets[i] = gpuMesh.getSubmeshVertexOffset(i);
+      indexOffsets[i] = gpuMesh.getSubmeshIndexOffset(i);
+      indexCounts[i] = gpuMesh.getSubmeshIndexCount(i);
+      assertEquals(vertexOffset, vertexOffsets[i]);
+      vertexOffset +=
+          (maxIndex(gl.getBufferData(gpuMesh.getIndexBufferId()), indexOffsets[i], indexCounts[i])
+                  + 1)
+              * QuantizedVertexData.VERTEX_STRIDE;
+      indexCount += indexCounts[i];
+    }
+    assertEquals(mesh.getIndexCount(), indexCount);
+
+    ByteBuffer vertexData = gl.getBufferData(gpuMesh.getVertexBufferId());
+    ByteBuffer indexData = gl.getBufferData(gpuMesh.getIndexBufferId());
+    assertEquals(vertexOffset, vertexData.remaining());
+    assertEquals(indexCount * MeshData.INDEX_SIZE_16, indexData.remaining());
+    assertEquals(vertexData.remaining() + indexData.remaining(), gpuMesh.getByteSize());
+    MeshSplitterTest.assertPackedMatches(
+        mesh,
+        mesh.getQuantizedVertices().getVertexData(),
+        vertexData,
+        indexData,
+        vertexOffsets,
+        indexOffsets,
+        indexCounts);
+  }
+
+  /** Checks that {@code gpuMesh} is one submesh holding the buffers of {@code mesh} unchanged. */
+  private void assertWhole(MeshData mesh, GpuMesh gpuMesh, int indexType) {
+    assertEquals(indexType, gpuMesh.getIndexType());
+    assertEquals(1, gpuMesh.getSubmeshCount());
+    assertEquals(0, gpuMesh.getSubmeshVertexOffset(0));
+    assertEquals(0, gpuMesh.getSubmeshIndexOffset(0));
+    assertEquals(mesh.getIndexCount(), gpuMesh.getSubmeshIndexCount(0));
+    assertEquals(
+        mesh.getQuantizedVertices().getVertexData(),
+        gl.getBufferData(gpuMesh.getVertexBufferId()));
+    assertEquals(mesh.getIndexData(), gl.getBufferData(gpuMesh.getIndexBufferId()));
+  }
+
+  private static int maxIndex(ByteBuffer indexData, int byteOffset, int count) {
+    int max = 0;
+    for (int i = 0; i < count; ++i) {
+      max = Math.max(max, indexData.getShort(byteOffset + i * MeshData.INDEX_SIZE_16) & 0xFFFF);
+    }
+    return max;
+  }
+}
@@ -0,0 +1,225 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GpuResourceCacheTest {
+  private static final String MESH = "models/andy.obj";
+  private static final String IMAGE = "models/andy.png";
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  private final AtomicInteger meshLoads = new AtomicInteger();
+  private final AtomicInteger textureReads = new AtomicInteger();
+  private final AssetLoader loader = new AssetLoader();
+  private RecordingGl gl;
+  private GpuResourceCache cache;
+
+  @Before
+  public void setUp() {
+    gl = new RecordingGl("OpenGL ES 3.0", "GL_OES_compressed_ETC1_RGB8_texture");
+    GlBackend.set(gl);
+    cache =
+        new GpuResourceCache(
+            new GpuResourceCache.AssetSource() {
+              @Override
+              public InputStream open(String assetName) throws IOException {
+                if (!assetName.equals("models/andy.ktx")) {
+                  throw new FileNotFoundException(assetName);
+                }
+                textureReads.incrementAndGet();
+                return new ByteArrayInputStream(
+                    KtxTextureTest.ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ETC1_RGB8, 8, 8, 1));
+              }
+
+              @Override
+              public MeshData loadMesh(String objAssetName, int lodLevel) throws IOException {
+                meshLoads.incrementAndGet();
+                return TestAssets.readObj(objAssetName);
+              }
+            });
+  }
+
+  @After
+  public void tearDown() {
+    loader.shutdown();
+  }
+
+  @Test
+  public void acquireMesh_sharesOneMeshUntilTheLastRelease() throws IOException {
+    GpuMesh first = cache.acquireMesh(MESH);
+    GpuMesh second = cache.acquireMesh(MESH);
+
+    assertSame(first, second);
+    assertEquals(1, meshLoads.get());
+    assertEquals(1, cache.getMeshCount());
+    assertEquals(first.getByteSize(), cache.getMeshBytes());
+    assertTrue(cache.getMeshBytes() > 0);
+
+    cache.release(first);
+    assertEquals(1, cache.getMeshCount());
+    assertEquals(0, gl.getCallCount("glDeleteBuffers"));
+
+    cache.release(second);
+    assertEquals(0, cache.getMeshCount());
+    assertEquals(0, cache.getMeshBytes());
+    assertEquals(1, gl.getCallCount("glDeleteBuffers"));
+
+    // Extra releases are ignored.
+    cache.release(second);
+    assertEquals(1, gl.getCallCount("glDeleteBuffers"));
+  }
+
+  @Test
+  public void acquireTexture_readsKtxAndCountsItsBytes() throws IOException {
+    GpuTexture texture = cache.acquireTexture(IMAGE);
+
+    assertTrue(texture.isCompressed());
+    assertSame(texture, cache.acquireTexture(IMAGE));
+    assertEquals(1, textureReads.get());
+    assertEquals(texture.getByteSize(), cache.getTextureBytes());
+    assertEquals(cache.getMeshBytes() + cache.getTextureBytes(), cache.getTotalBytes());
+
+    cache.release(texture);
+    cache.release(texture);
+    assertEquals(0, cache.getTextureCount());
+    assertEquals(0, cache.getTextureBytes());
+    assertEquals(1, gl.getCallCount("glDeleteTextures"));
+  }
+
+  @Test
+  public void acquireMeshAsync_sharesOneLoadBetweenWaiters() {
+    List<GpuMesh> loaded = new ArrayList<>();
+    cache.acquireMeshAsync(loader, MESH, 0, collect(loaded));
+    cache.acquireMeshAsync(loader, MESH, 0, collect(loaded));
+
+    drainUntil(() -> loaded.size() == 2);
+
+    assertSame(loaded.get(0), loaded.get(1));
+    assertEquals(1, meshLoads.get());
+    assertEquals(loaded.get(0).getByteSize(), cache.getMeshBytes());
+    assertNotNull(loader.getTiming(MESH));
+
+    // A later request is answered from the cache, without loading.
+    cache.acquireMeshAsync(loader, MESH, 0, collect(loaded));
+    assertEquals(3, loaded.size());
+    assertEquals(1, meshLoads.get());
+    releaseAll(loaded);
+    assertEquals(0, cache.getMeshBytes());
+  }
+
+  @Test
+  public void acquireMeshAsync_blockingAcquireMeanwhile_keepsTheCachedMesh() throws IOException {
+    List<GpuMesh> loaded = new ArrayList<>();
+    cache.acquireMeshAsync(loader, MESH, 0, collect(loaded));
+    GpuMesh blocking = cache.acquireMesh(MESH);
+
+    drainUntil(() -> loaded.size() == 1);
+
+    // The late upload is deleted; both holders share the cached mesh, counted once.
+    assertSame(blocking, loaded.get(0));
+    assertEquals(1, cache.getMeshCount());
+    assertEquals(blocking.getByteSize(), cache.getMeshBytes());
+    assertEquals(1, gl.getCallCount("glDeleteBuffers"));
+
+    cache.release(blocking);
+    assertEquals(blocking.getByteSize(), cache.getMeshBytes());
+    releaseAll(loaded);
+    assertEquals(0, cache.getMeshCount());
+    assertEquals(0, cache.getMeshBytes());
+    assertEquals(2, gl.getCallCount("glDeleteBuffers"));
+  }
+
+  @Test
+  public void acquireTextureAsync_blockingAcquireMeanwhile_keepsTheCachedTexture()
+      throws IOException {
+    List<GpuTexture> loaded = new ArrayList<>();
+    cache.acquireTextureAsync(loader, IMAGE, collect(loaded));
+    GpuTexture blocking = cache.acquireTexture(IMAGE);
+
+    drainUntil(() -> loaded.size() == 1);
+
+    assertSame(blocking, loaded.get(0));
+    assertEquals(1, cache.getTextureCount());
+    assertEquals(blocking.getByteSize(), cache.getTextureBytes());
+    assertEquals(1, gl.getCallCount("glDeleteTextures"));
+
+    cache.release(blocking);
+    releaseAll(loaded);
+    assertEquals(0, cache.getTextureBytes());
+    assertEquals(2, gl.getCallCount("glDeleteTextures"));
+  }
+
+  @Test
+  public void acquireMeshAsync_failedLoad_notifiesEveryWaiter() {
+    List<IOException> failures = new ArrayList<>();
+    AssetLoader.Callback<GpuMesh> callback =
+        new AssetLoader.Callback<GpuMesh>() {
+          @Override
+          public void onLoaded(GpuMesh mesh) {
+            throw new AssertionError("Loaded a missing mesh");
+          }
+
+          @Override
+          public void onFailed(IOException e) {
+            failures.add(e);
+          }
+        };
+    cache.acquireMeshAsync(loader, "models/missing.obj", 0, callback);
+    cache.acquireMeshAsync(loader, "models/missing.obj", 0, callback);
+
+    drainUntil(() -> failures.size() == 2);
+
+    assertEquals(0, cache.getMeshCount());
+    assertEquals(0, cache.getMeshBytes());
+  }
+
+  private static <R> AssetLoader.Callback<R> collect(List<R> loaded) {
+    return new AssetLoader.Callback<R>() {
+      @Override
+      public void onLoaded(R resource) {
+        loaded.add(resource);
+      }
+
+      @Override
+      public void onFailed(IOException e) {
+        throw new AssertionError(e);
+      }
+    };
+  }
+
+  private void releaseAll(List<?> resources) {
+    for (Object resource : resources) {
+      if (resource instanceof GpuMesh) {
+        cache.release((GpuMesh) resource);
+      } else {
+        cache.release((GpuTexture) resource);
+      }
+    }
+  }
+
+  /** Runs the GL thread's part of the loader until {@code done} holds. */
+  private void drainUntil(BooleanSupplier done) {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!done.getAsBoolean()) {
+      assertTrue("Timed out waiting for the loader", System.currentTimeMillis() < deadline);
+      if (loader.drainUploads(/*budgetMillis=*/ 100) == 0) {
+        Thread.yield();
+      }
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GpuTextureTest {
+  private static final GlCapabilities ES3 = new GlCapabilities("OpenGL ES 3.0", "", "");
+  private static final GlCapabilities ES3_ASTC =
+      new GlCapabilities("OpenGL ES 3.2", "GL_KHR_texture_compression_astc_ldr", "");
+  private static final GlCapabilities ES2_ETC1 =
+      new GlCapabilities("OpenGL ES 2.0", "GL_OES_compressed_ETC1_RGB8_texture", "");
+
+  private RecordingGl gl;
+
+  @Before
+  public void setUp() {
+    gl = new RecordingGl();
+    gl.setCommandLogEnabled(true);
+    GlBackend.set(gl);
+  }
+
+  @Test
+  public void upload_ktx_uploadsEveryStoredLevel() throws IOException {
+    KtxTexture ktx = KtxTextureTest.readFixture(KtxTextureTest.ASTC_FIXTURE);
+
+    GpuTexture texture = GpuTexture.upload("astc", ktx, ES3_ASTC);
+
+    assertTrue(texture.isCompressed());
+    assertEquals(KtxTexture.ASTC_4X4_RGBA, texture.getInternalFormat());
+    assertEquals(ktx.getByteSize(), texture.getByteSize());
+    assertEquals(ktx.getByteSize(), gl.getBytesUploaded());
+    assertEquals(4, commands("glCompressedTexImage2D").size());
+    int format = KtxTexture.ASTC_4X4_RGBA;
+    assertEquals(1, commands(compressedUpload(0, format, 8, 4, 32)).size());
+    assertEquals(1, commands(compressedUpload(1, format, 4, 2, 16)).size());
+    assertEquals(1, commands(compressedUpload(2, format, 2, 1, 16)).size());
+    assertEquals(1, commands(compressedUpload(3, format, 1, 1, 16)).size());
+    assertTrue(
+        gl.getCommands()
+            .contains(texParameter(GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR)));
+    assertEquals(0, commands("glGenerateMipmap").size());
+  }
+
+  @Test
+  public void upload_partialChainOnEs3_limitsMaxLevel() throws IOException {
+    KtxTexture ktx = partialEtc1Chain();
+
+    GpuTexture.upload("partial", ktx, ES3);
+
+    assertEquals(2, commands("glCompressedTexImage2D").size());
+    assertTrue(gl.getCommands().contains(texParameter(GLES30.GL_TEXTURE_MAX_LEVEL, 1)));
+    assertTrue(
+        gl.getCommands()
+            .contains(texParameter(GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR)));
+  }
+
+  @Test
+  public void upload_partialChainOnEs2_samplesBaseLevelOnly() throws IOException {
+    KtxTexture ktx = partialEtc1Chain();
+
+    GpuTexture texture = GpuTexture.upload("partial", ktx, ES2_ETC1);
+
+    assertEquals(KtxTexture.ETC1_RGB8, texture.getInternalFormat());
+    String maxLevel =
+        "glTexParameteri(" + GLES20.GL_TEXTURE_2D + ", " + GLES30.GL_TEXTURE_MAX_LEVEL + ", ";
+    assertEquals(0, commands(maxLevel).size());
+    assertTrue(
+        gl.getCommands().contains(texParameter(GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR)));
+  }
+
+  @Test
+  public void upload_etc1OnEs3WithoutExtension_usesEtc2Format() throws IOException {
+    KtxTexture ktx = partialEtc1Chain();
+
+    GpuTexture texture = GpuTexture.upload("etc1", ktx, ES3);
+
+    assertEquals(KtxTexture.ETC2_RGB8, texture.getInternalFormat());
+    assertEquals(1, commands(compressedUpload(0, KtxTexture.ETC2_RGB8, 16, 8, 64)).size());
+  }
+
+  @Test
+  public void supportsCompressedFormat_matchesFixtureFormats() {
+    assertTrue(ES3.supportsCompressedFormat(KtxTexture.ETC2_RGB8));
+    assertTrue(ES3.supportsCompressedFormat(KtxTexture.ETC1_RGB8));
+    assertFalse(ES3.supportsCompressedFormat(KtxTexture.ASTC_4X4_RGBA));
+    assertTrue(ES3_ASTC.supportsCompressedFormat(KtxTexture.ASTC_4X4_RGBA));
+    assertFalse(ES2_ETC1.supportsCompressedFormat(KtxTexture.ETC2_RGB8));
+  }
+
+  /** A 16x8 ETC1 texture with two of its five levels. */
+  private static KtxTexture partialEtc1Chain() throws IOException {
+    return KtxTexture.parse(
+        ByteBuffer.wrap(
+            KtxTextureTest.ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ETC1_RGB8, 16, 8, 2)));
+  }
+
+  private List<String> commands(String prefix) {
+    List<String> matching = new ArrayList<>();
+    for (String command : gl.getCommands()) {
+      if (command.startsWith(prefix)) {
+        matching.add(command);
+      }
+    }
+    return matching;
+  }
+
+  /** The recorded upload of a level, without its buffer argument. */
+  private static String compressedUpload(
+      int level, int internalFormat, int width, int height, int imageSize) {
+    return "glCompressedTexImage2D("
+        + GLES20.GL_TEXTURE_2D
+        + ", "
+        + level
+        + ", "
+        + internalFormat
+        + ", "
+        + width
+        + ", "
+        + height
+        + ", 0, "
+        + imageSize
+        + ", ";
+  }
+
+  private static String texParameter(int pname, int param) {
+    return "glTexParameteri(" + GLES20.GL_TEXTURE_2D + ", " + pname + ", " + param + ")";
+  }
+}
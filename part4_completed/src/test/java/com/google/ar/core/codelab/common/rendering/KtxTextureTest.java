@@ -0,0 +1,265 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+public class KtxTextureTest {
+  // 8x8 ETC2 RGB8 with a KTXorientation key and all four levels: 32, 8, 8 and 8 bytes.
+  static final String ETC2_FIXTURE = "/textures/etc2_rgb8_8x8.ktx";
+  // 8x4 ASTC 4x4 with all four levels: 32, 16, 16 and 16 bytes.
+  static final String ASTC_FIXTURE = "/textures/astc_4x4_8x4.ktx";
+
+  // Byte offsets of header fields.
+  private static final int ENDIANNESS_OFFSET = 12;
+  private static final int GL_TYPE_OFFSET = 16;
+  private static final int FACES_OFFSET = 52;
+  private static final int LEVEL_COUNT_OFFSET = 56;
+  private static final int KEY_VALUE_BYTES_OFFSET = 60;
+
+  @Test
+  public void read_etc2Fixture() throws IOException {
+    KtxTexture ktx = readFixture(ETC2_FIXTURE);
+
+    assertEquals(KtxTexture.ETC2_RGB8, ktx.getInternalFormat());
+    assertEquals(8, ktx.getWidth());
+    assertEquals(8, ktx.getHeight());
+    assertEquals(4, ktx.getLevelCount());
+    assertTrue(ktx.hasFullMipChain());
+    assertLevels(ktx, 32, 8, 8, 8);
+    assertEquals(56, ktx.getByteSize());
+  }
+
+  @Test
+  public void read_astcFixture() throws IOException {
+    KtxTexture ktx = readFixture(ASTC_FIXTURE);
+
+    assertEquals(KtxTexture.ASTC_4X4_RGBA, ktx.getInternalFormat());
+    assertEquals(8, ktx.getWidth());
+    assertEquals(4, ktx.getHeight());
+    assertTrue(ktx.hasFullMipChain());
+    assertLevels(ktx, 32, 16, 16, 16);
+    assertEquals(80, ktx.getByteSize());
+  }
+
+  @Test
+  public void read_growsPastInitialCapacity() throws IOException {
+    // 256x256 RGBA8 ETC2 is 64 KiB in level 0 alone.
+    byte[] data = ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ETC2_RGBA8_EAC, 256, 256, 9);
+
+    KtxTexture ktx = KtxTexture.read(new ByteArrayInputStream(data));
+
+    assertTrue(ktx.hasFullMipChain());
+    assertEquals(65536, ktx.getLevel(0).remaining());
+    assertEquals(data[data.length - 1], ktx.getLevel(8).get(15));
+  }
+
+  @Test
+  public void parse_bigEndianMatchesLittleEndian() throws IOException {
+    KtxTexture little =
+        parse(ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ASTC_4X4_RGBA, 8, 4, 4));
+    KtxTexture big = parse(ktx(ByteOrder.BIG_ENDIAN, KtxTexture.ASTC_4X4_RGBA, 8, 4, 4));
+
+    assertEquals(little.getInternalFormat(), big.getInternalFormat());
+    assertEquals(little.getWidth(), big.getWidth());
+    assertEquals(little.getHeight(), big.getHeight());
+    assertEquals(little.getLevelCount(), big.getLevelCount());
+    for (int level = 0; level < little.getLevelCount(); ++level) {
+      assertEquals(little.getLevel(level), big.getLevel(level));
+    }
+  }
+
+  @Test
+  public void parse_rejectsUnknownEndianness() throws IOException {
+    byte[] data = fixtureBytes(ETC2_FIXTURE);
+    ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(ENDIANNESS_OFFSET, 0x01020403);
+
+    assertRejected(data);
+  }
+
+  @Test
+  public void parse_rejectsEveryTruncation() throws IOException {
+    for (String fixture : new String[] {ETC2_FIXTURE, ASTC_FIXTURE}) {
+      byte[] data = fixtureBytes(fixture);
+      for (int length = 0; length < data.length; ++length) {
+        byte[] truncated = new byte[length];
+        System.arraycopy(data, 0, truncated, 0, length);
+        assertRejected(fixture + " cut to " + length + " bytes", truncated);
+      }
+    }
+  }
+
+  @Test
+  public void parse_rejectsKeyValueDataPastTheEnd() throws IOException {
+    byte[] data = fixtureBytes(ETC2_FIXTURE);
+    ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(KEY_VALUE_BYTES_OFFSET, 4096);
+
+    assertRejected(data);
+  }
+
+  @Test
+  public void parse_rejectsWrongLevelSize() throws IOException {
+    byte[] data = ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ETC2_RGB8, 8, 8, 4);
+    // Level 1 is 4x4, one 8-byte block; claim two.
+    int level1SizeOffset = KtxTexture.HEADER_SIZE + 4 + 32;
+    ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(level1SizeOffset, 16);
+
+    assertRejected(data);
+  }
+
+  @Test
+  public void parse_acceptsPartialMipChain() throws IOException {
+    KtxTexture ktx = parse(ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ETC2_RGB8, 16, 8, 2));
+
+    assertEquals(2, ktx.getLevelCount());
+    assertFalse(ktx.hasFullMipChain());
+    assertLevels(ktx, 64, 16);
+  }
+
+  @Test
+  public void parse_readsBaseLevelWhenLevelCountIsZero() throws IOException {
+    byte[] data = ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ETC2_RGB8, 8, 8, 1);
+    ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(LEVEL_COUNT_OFFSET, 0);
+
+    KtxTexture ktx = parse(data);
+
+    assertEquals(1, ktx.getLevelCount());
+    assertLevels(ktx, 32);
+  }
+
+  @Test
+  public void parse_rejectsMoreLevelsThanFullChain() throws IOException {
+    byte[] data = fixtureBytes(ETC2_FIXTURE);
+    ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(LEVEL_COUNT_OFFSET, 5);
+
+    assertRejected(data);
+  }
+
+  @Test
+  public void parse_rejectsUncompressedAndNon2dTextures() throws IOException {
+    byte[] uncompressed = fixtureBytes(ETC2_FIXTURE);
+    // GL_UNSIGNED_BYTE.
+    ByteBuffer.wrap(uncompressed).order(ByteOrder.LITTLE_ENDIAN).putInt(GL_TYPE_OFFSET, 0x1401);
+    assertRejected(uncompressed);
+
+    byte[] cubeMap = fixtureBytes(ETC2_FIXTURE);
+    ByteBuffer.wrap(cubeMap).order(ByteOrder.LITTLE_ENDIAN).putInt(FACES_OFFSET, 6);
+    assertRejected(cubeMap);
+
+    // GL_COMPRESSED_RGBA_S3TC_DXT5_EXT.
+    assertRejected(ktx(ByteOrder.LITTLE_ENDIAN, 0x83F3, 8, 8, 1));
+  }
+
+  @Test
+  public void parse_rejectsOtherIdentifier() throws IOException {
+    byte[] data = fixtureBytes(ETC2_FIXTURE);
+    // "KTX 20".
+    data[5] = '2';
+    data[6] = '0';
+
+    assertRejected(data);
+  }
+
+  @Test
+  public void getImageSize_roundsUpToWholeBlocks() {
+    assertEquals(8, KtxTexture.getImageSize(KtxTexture.ETC1_RGB8, 1, 1));
+    assertEquals(32, KtxTexture.getImageSize(KtxTexture.ETC2_RGB8, 5, 7));
+    assertEquals(16, KtxTexture.getImageSize(KtxTexture.ETC2_RGBA8_EAC, 4, 4));
+    assertEquals(0, KtxTexture.getImageSize(0x83F3, 4, 4));
+    assertEquals(9, KtxTexture.getFullMipCount(256, 1));
+  }
+
+  static KtxTexture readFixture(String fixture) throws IOException {
+    try (InputStream in = KtxTextureTest.class.getResourceAsStream(fixture)) {
+      return KtxTexture.read(in);
+    }
+  }
+
+  private static byte[] fixtureBytes(String fixture) throws IOException {
+    try (InputStream in = KtxTextureTest.class.getResourceAsStream(fixture)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] chunk = new byte[4096];
+      int read;
+      while ((read = in.read(chunk)) >= 0) {
+        out.write(chunk, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  /**
+   * A KTX texture in {@code order} with {@code levelCount} levels. Byte {@code i} of level {@code
+   * n} is {@code n * 16 + i}, as in the fixtures.
+   */
+  static byte[] ktx(ByteOrder order, int internalFormat, int width, int height, int levelCount) {
+    int size = KtxTexture.HEADER_SIZE;
+    for (int level = 0; level < levelCount; ++level) {
+      size += 4 + levelSize(internalFormat, width, height, level);
+    }
+    ByteBuffer data = ByteBuffer.allocate(size).order(order);
+    data.put(
+        new byte[] {
+          (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+        });
+    data.putInt(0x04030201);
+    data.putInt(0).putInt(1).putInt(0).putInt(internalFormat).putInt(0);
+    data.putInt(width).putInt(height).putInt(0);
+    data.putInt(0).putInt(1).putInt(levelCount).putInt(0);
+    for (int level = 0; level < levelCount; ++level) {
+      int levelSize = levelSize(internalFormat, width, height, level);
+      data.putInt(levelSize);
+      for (int i = 0; i < levelSize; ++i) {
+        data.put((byte) (level * 16 + i));
+      }
+    }
+    return data.array();
+  }
+
+  private static int levelSize(int internalFormat, int width, int height, int level) {
+    int blockBytes = KtxTexture.getBlockBytes(internalFormat);
+    int size =
+        (int)
+            KtxTexture.getImageSize(
+                internalFormat, Math.max(width >> level, 1), Math.max(height >> level, 1));
+    // Unsupported formats get one 16-byte block, so only the format check can fail.
+    return blockBytes == 0 ? 16 : size;
+  }
+
+  private static KtxTexture parse(byte[] data) throws IOException {
+    return KtxTexture.parse(ByteBuffer.wrap(data));
+  }
+
+  private static void assertLevels(KtxTexture ktx, int... sizes) {
+    assertEquals(sizes.length, ktx.getLevelCount());
+    for (int level = 0; level < sizes.length; ++level) {
+      ByteBuffer data = ktx.getLevel(level);
+      assertEquals(0, data.position());
+      assertEquals(sizes[level], data.remaining());
+      for (int i = 0; i < sizes[level]; ++i) {
+        assertEquals("level " + level + " byte " + i, (byte) (level * 16 + i), data.get(i));
+      }
+    }
+  }
+
+  private static void assertRejected(byte[] data) {
+    assertRejected("", data);
+  }
+
+  private static void assertRejected(String message, byte[] data) {
+    try {
+      parse(data);
+      fail("Parsed malformed KTX data " + message);
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+}
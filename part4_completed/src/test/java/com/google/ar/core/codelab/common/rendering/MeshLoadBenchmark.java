@@ -0,0 +1,55 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares what {@link MeshCache} does for {@code models/andy.obj} on a cache miss, parsing,
+ * reordering and quantizing the OBJ, with a hit, mapping the binary file. Both produce the buffers
+ * that {@link GpuMesh#upload} passes to {@code glBufferData}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshLoadBenchmark {
+  private static final String OBJ_ASSET = "models/andy.obj";
+
+  private File binaryFile;
+
+  @Setup
+  public void setUp() throws IOException {
+    binaryFile = File.createTempFile("andy", ".mesh");
+    MeshCache.write(MeshOptimizer.optimize(TestAssets.readObj(OBJ_ASSET)), binaryFile);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(binaryFile.toPath());
+  }
+
+  @Benchmark
+  public QuantizedVertexData parseObj() throws IOException {
+    return MeshOptimizer.optimize(TestAssets.readObj(OBJ_ASSET)).getQuantizedVertices();
+  }
+
+  @Benchmark
+  public QuantizedVertexData mapBinary() throws IOException {
+    return MeshCache.map(binaryFile).getQuantizedVertices();
+  }
+}
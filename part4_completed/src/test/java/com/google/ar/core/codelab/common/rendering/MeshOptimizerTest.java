@@ -0,0 +1,145 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class MeshOptimizerTest {
+  private static final String MESH = "models/andy.obj";
+
+  @Test
+  public void optimize_keepsTheTrianglesAndTheirWinding() throws IOException {
+    MeshData mesh = TestAssets.readObj(MESH);
+
+    MeshData optimized = MeshOptimizer.optimize(mesh);
+
+    assertEquals(mesh.getIndexCount(), optimized.getIndexCount());
+    assertEquals(triangles(mesh), triangles(optimized));
+  }
+
+  @Test
+  public void optimize_lowersTheCacheMissRatio() throws IOException {
+    MeshData mesh = TestAssets.readObj(MESH);
+
+    float before = MeshOptimizer.computeAcmr(mesh);
+    float after = MeshOptimizer.computeAcmr(MeshOptimizer.optimize(mesh));
+
+    assertTrue(before + " -> " + after, after < before);
+    assertTrue(before + " -> " + after, after < 1.0f);
+  }
+
+  @Test
+  public void optimizeVertexFetch_ordersVerticesByFirstUseAndDropsUnusedOnes() {
+    // Vertices 0 and 4 are not used.
+    MeshData mesh = MeshData.create(vertices(6), new int[] {3, 1, 2, 2, 1, 5});
+
+    MeshData fetched = MeshOptimizer.optimizeVertexFetch(mesh);
+
+    assertEquals(4, fetched.getVertexCount());
+    int[] expectedIndices = {0, 1, 2, 2, 1, 3};
+    for (int i = 0; i < expectedIndices.length; ++i) {
+      assertEquals(expectedIndices[i], fetched.getIndex(i));
+    }
+    float[] expectedIds = {3, 1, 2, 5};
+    for (int v = 0; v < expectedIds.length; ++v) {
+      assertEquals(expectedIds[v], vertexId(fetched, v), 0);
+    }
+    assertEquals(triangles(mesh), triangles(fetched));
+  }
+
+  @Test
+  public void optimizeVertexCache_keepsTheTrianglesOfAGrid() {
+    MeshData mesh = MeshSplitterTest.grid(40, 30);
+
+    MeshData optimized = MeshOptimizer.optimizeVertexCache(mesh);
+
+    assertEquals(triangles(mesh), triangles(optimized));
+    assertTrue(MeshOptimizer.computeAcmr(optimized) < MeshOptimizer.computeAcmr(mesh));
+  }
+
+  @Test
+  public void optimize_emptyMesh_returnsAnEmptyMesh() {
+    MeshData mesh = MeshData.create(vertices(3), new int[0]);
+
+    MeshData optimized = MeshOptimizer.optimize(mesh);
+
+    assertEquals(0, optimized.getIndexCount());
+    assertEquals(0, optimized.getVertexCount());
+    assertEquals(0.0f, MeshOptimizer.computeAcmr(optimized), 0);
+  }
+
+  @Test
+  public void optimize_degenerateAndDisjointTriangles_emitsEachOnce() {
+    // A triangle with a repeated corner, one with a single vertex, a duplicate triangle and two
+    // triangles sharing no vertex with the rest, so the scan for a new start has to run again.
+    int[] indices = {0, 0, 1, 2, 2, 2, 3, 4, 5, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    MeshData mesh = MeshData.create(vertices(12), indices);
+
+    MeshData optimized = MeshOptimizer.optimize(mesh);
+
+    assertEquals(indices.length, optimized.getIndexCount());
+    assertEquals(triangles(mesh), triangles(optimized));
+  }
+
+  /**
+   * Returns the triangles of {@code mesh} as sorted strings of vertex contents, each rotated to
+   * start at its smallest corner, so reordered and remapped meshes compare equal but a flipped
+   * winding does not.
+   */
+  private static List<String> triangles(MeshData mesh) {
+    List<String> triangles = new ArrayList<>();
+    for (int i = 0; i < mesh.getIndexCount(); i += 3) {
+      String[] corners = new String[3];
+      int smallest = 0;
+      for (int corner = 0; corner < 3; ++corner) {
+        corners[corner] = vertex(mesh, mesh.getIndex(i + corner));
+        if (corners[corner].compareTo(corners[smallest]) < 0) {
+          smallest = corner;
+        }
+      }
+      triangles.add(
+          corners[smallest]
+              + " | "
+              + corners[(smallest + 1) % 3]
+              + " | "
+              + corners[(smallest + 2) % 3]);
+    }
+    Collections.sort(triangles);
+    return triangles;
+  }
+
+  private static String vertex(MeshData mesh, int index) {
+    ByteBuffer vertexData = mesh.getVertexData();
+    int offset = vertexData.position() + index * MeshData.VERTEX_STRIDE;
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < MeshData.VERTEX_STRIDE; i += 4) {
+      builder.append(vertexData.getFloat(offset + i)).append(' ');
+    }
+    return builder.toString();
+  }
+
+  private static float vertexId(MeshData mesh, int index) {
+    ByteBuffer vertexData = mesh.getVertexData();
+    return vertexData.getFloat(vertexData.position() + index * MeshData.VERTEX_STRIDE);
+  }
+
+  /** Vertices whose x coordinate is their index. */
+  private static ByteBuffer vertices(int count) {
+    ByteBuffer vertexData =
+        ByteBuffer.allocateDirect(count * MeshData.VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < count; ++i) {
+      vertexData.putFloat(i).putFloat(0).putFloat(0);
+      vertexData.putFloat(0).putFloat(1).putFloat(0);
+      vertexData.putFloat(0).putFloat(0);
+    }
+    vertexData.flip();
+    return vertexData;
+  }
+}
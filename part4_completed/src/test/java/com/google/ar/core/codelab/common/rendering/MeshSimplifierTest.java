@@ -0,0 +1,219 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MeshSimplifierTest {
+  // About 28,000 triangles, like the reviewed run.
+  private static final int STACKS = 100;
+  private static final int SLICES = 142;
+  // Same schedule as MeshCache.loadLod: half the triangles and 2% of the radius per level.
+  private static final float ERROR_PER_LEVEL = 0.02f;
+
+  private static MeshData sphere;
+
+  @BeforeClass
+  public static void createSphere() {
+    sphere = unitSphere(STACKS, SLICES);
+  }
+
+  @Test
+  public void simplify_halvesTrianglesPerLevelWithinErrorBudget() {
+    for (int level = 1; level <= 4; ++level) {
+      int targetIndexCount = (sphere.getIndexCount() >> level) / 3 * 3;
+      float maxError = ERROR_PER_LEVEL * level;
+      MeshSimplifier.Result result = MeshSimplifier.simplify(sphere, targetIndexCount, maxError);
+      MeshData lod = result.getMesh();
+      float deviation = maxSurfaceDeviation(lod);
+      String message =
+          "level "
+              + level
+              + ": "
+              + lod.getIndexCount() / 3
+              + " triangles, error "
+              + result.getError()
+              + ", deviation "
+              + deviation;
+
+      // A smooth closed mesh reaches every target well within the error budget.
+      assertTrue(message, lod.getIndexCount() <= targetIndexCount);
+      assertTrue(message, lod.getIndexCount() > targetIndexCount * 9 / 10);
+      assertTrue(message, result.getError() <= maxError);
+      // The reported error bounds how far the simplified surface strays from the sphere.
+      assertTrue(message, deviation <= result.getError());
+      assertClosedManifold(lod);
+    }
+  }
+
+  @Test
+  public void simplify_errorGrowsWithReduction() {
+    float previousError = 0.0f;
+    for (int level = 1; level <= 3; ++level) {
+      int targetIndexCount = (sphere.getIndexCount() >> level) / 3 * 3;
+      float error = MeshSimplifier.simplify(sphere, targetIndexCount, 1.0f).getError();
+      assertTrue(level + ": " + error, error > previousError);
+      previousError = error;
+    }
+  }
+
+  @Test
+  public void simplify_zeroErrorBudgetKeepsCurvedMesh() {
+    MeshSimplifier.Result result = MeshSimplifier.simplify(sphere, 3, 0.0f);
+    assertEquals(sphere.getIndexCount(), result.getMesh().getIndexCount());
+    assertEquals(0.0f, result.getError(), 0.0f);
+  }
+
+  @Test
+  public void simplify_collapsesFlatGridWithoutError() {
+    MeshData grid = flatGrid(20);
+    MeshSimplifier.Result result = MeshSimplifier.simplify(grid, 6, 1e-4f);
+    // Open borders are never moved, so only the interior collapses.
+    assertTrue(result.getMesh().getIndexCount() < grid.getIndexCount() / 4);
+    assertTrue(result.getError() < 1e-4f);
+  }
+
+  /**
+   * The largest distance between the unit sphere and a simplified triangle, sampled at the
+   * vertices, edge midpoints and centroid.
+   */
+  private static float maxSurfaceDeviation(MeshData mesh) {
+    float max = 0.0f;
+    float[] a = new float[3];
+    float[] b = new float[3];
+    float[] c = new float[3];
+    for (int i = 0; i < mesh.getIndexCount(); i += 3) {
+      position(mesh, mesh.getIndex(i), a);
+      position(mesh, mesh.getIndex(i + 1), b);
+      position(mesh, mesh.getIndex(i + 2), c);
+      max = Math.max(max, deviation(a, b, c, 1, 0, 0));
+      max = Math.max(max, deviation(a, b, c, 0.5f, 0.5f, 0));
+      max = Math.max(max, deviation(a, b, c, 0, 0.5f, 0.5f));
+      max = Math.max(max, deviation(a, b, c, 0.5f, 0, 0.5f));
+      max = Math.max(max, deviation(a, b, c, 1 / 3f, 1 / 3f, 1 / 3f));
+    }
+    return max;
+  }
+
+  private static float deviation(float[] a, float[] b, float[] c, float u, float v, float w) {
+    float x = a[0] * u + b[0] * v + c[0] * w;
+    float y = a[1] * u + b[1] * v + c[1] * w;
+    float z = a[2] * u + b[2] * v + c[2] * w;
+    return Math.abs(1.0f - (float) Math.sqrt(x * x + y * y + z * z));
+  }
+
+  /** Checks that every edge is shared by exactly two triangles and no triangle is degenerate. */
+  private static void assertClosedManifold(MeshData mesh) {
+    Map<Long, Integer> edgeUses = new HashMap<>();
+    for (int i = 0; i < mesh.getIndexCount(); i += 3) {
+      for (int corner = 0; corner < 3; ++corner) {
+        int from = mesh.getIndex(i + corner);
+        int to = mesh.getIndex(i + (corner + 1) % 3);
+        assertTrue("Degenerate triangle " + i / 3, from != to);
+        long key = ((long) Math.min(from, to) << 32) | Math.max(from, to);
+        Integer uses = edgeUses.get(key);
+        edgeUses.put(key, uses == null ? 1 : uses + 1);
+      }
+    }
+    for (int uses : edgeUses.values()) {
+      assertEquals(2, uses);
+    }
+  }
+
+  private static void position(MeshData mesh, int vertex, float[] out) {
+    ByteBuffer data = mesh.getVertexData();
+    int offset = data.position() + vertex * MeshData.VERTEX_STRIDE + MeshData.POSITION_OFFSET;
+    for (int axis = 0; axis < 3; ++axis) {
+      out[axis] = data.getFloat(offset + axis * 4);
+    }
+  }
+
+  /** A closed unit sphere with one vertex per position, so there are no seams or borders. */
+  static MeshData unitSphere(int stacks, int slices) {
+    int vertexCount = (stacks - 1) * slices + 2;
+    ByteBuffer vertexData =
+        ByteBuffer.allocateDirect(vertexCount * MeshData.VERTEX_STRIDE)
+            .order(ByteOrder.nativeOrder());
+    putVertex(vertexData, 0, 1, 0);
+    for (int stack = 1; stack < stacks; ++stack) {
+      double polar = Math.PI * stack / stacks;
+      for (int slice = 0; slice < slices; ++slice) {
+        double azimuth = 2 * Math.PI * slice / slices;
+        putVertex(
+            vertexData,
+            (float) (Math.sin(polar) * Math.cos(azimuth)),
+            (float) Math.cos(polar),
+            (float) (Math.sin(polar) * Math.sin(azimuth)));
+      }
+    }
+    putVertex(vertexData, 0, -1, 0);
+    vertexData.flip();
+
+    int south = vertexCount - 1;
+    int[] indices = new int[2 * slices * (stacks - 1) * 3];
+    int n = 0;
+    for (int slice = 0; slice < slices; ++slice) {
+      int next = (slice + 1) % slices;
+      indices[n++] = 0;
+      indices[n++] = 1 + next;
+      indices[n++] = 1 + slice;
+      for (int stack = 1; stack < stacks - 1; ++stack) {
+        int row = 1 + (stack - 1) * slices;
+        int nextRow = row + slices;
+        indices[n++] = row + slice;
+        indices[n++] = row + next;
+        indices[n++] = nextRow + slice;
+        indices[n++] = row + next;
+        indices[n++] = nextRow + next;
+        indices[n++] = nextRow + slice;
+      }
+      int lastRow = 1 + (stacks - 2) * slices;
+      indices[n++] = lastRow + slice;
+      indices[n++] = lastRow + next;
+      indices[n++] = south;
+    }
+    return MeshData.create(vertexData, indices);
+  }
+
+  /** A flat square grid of {@code size} by {@code size} cells in the xz plane. */
+  private static MeshData flatGrid(int size) {
+    int side = size + 1;
+    ByteBuffer vertexData =
+        ByteBuffer.allocateDirect(side * side * MeshData.VERTEX_STRIDE)
+            .order(ByteOrder.nativeOrder());
+    for (int z = 0; z < side; ++z) {
+      for (int x = 0; x < side; ++x) {
+        vertexData.putFloat(x).putFloat(0).putFloat(z);
+        vertexData.putFloat(0).putFloat(1).putFloat(0);
+        vertexData.putFloat(0).putFloat(0);
+      }
+    }
+    vertexData.flip();
+    int[] indices = new int[size * size * 6];
+    int n = 0;
+    for (int z = 0; z < size; ++z) {
+      for (int x = 0; x < size; ++x) {
+        int corner = z * side + x;
+        indices[n++] = corner;
+        indices[n++] = corner + side;
+        indices[n++] = corner + 1;
+        indices[n++] = corner + 1;
+        indices[n++] = corner + side;
+        indices[n++] = corner + side + 1;
+      }
+    }
+    return MeshData.create(vertexData, indices);
+  }
+
+  private static void putVertex(ByteBuffer vertexData, float x, float y, float z) {
+    vertexData.putFloat(x).putFloat(y).putFloat(z);
+    vertexData.putFloat(x).putFloat(y).putFloat(z);
+    vertexData.putFloat(0).putFloat(0);
+  }
+}
@@ -0,0 +1,199 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.junit.Test;
+
+public class MeshSplitterTest {
+  // 90,000 vertices, enough for two submeshes of 16-bit indices.
+  private static final int LARGE_GRID_SIDE = 300;
+  // Exactly MeshData.MAX_16_BIT_VERTEX_COUNT vertices.
+  private static final int LIMIT_GRID_SIDE = 256;
+
+  @Test
+  public void create_usesSixteenBitIndicesUpTo65536Vertices() {
+    MeshData atLimit = grid(LIMIT_GRID_SIDE, LIMIT_GRID_SIDE);
+    assertEquals(MeshData.MAX_16_BIT_VERTEX_COUNT, atLimit.getVertexCount());
+    assertEquals(MeshData.INDEX_SIZE_16, atLimit.getIndexSize());
+    assertEquals(MeshData.MAX_16_BIT_VERTEX_COUNT - 1, maxIndex(atLimit));
+
+    MeshData overLimit =
+        MeshData.create(
+            vertices(MeshData.MAX_16_BIT_VERTEX_COUNT + 1),
+            new int[] {0, 1, MeshData.MAX_16_BIT_VERTEX_COUNT});
+    assertEquals(MeshData.INDEX_SIZE_32, overLimit.getIndexSize());
+    assertEquals(MeshData.MAX_16_BIT_VERTEX_COUNT, overLimit.getIndex(2));
+  }
+
+  @Test
+  public void split_leavesMeshOf65536VerticesWhole() {
+    MeshData mesh = grid(LIMIT_GRID_SIDE, LIMIT_GRID_SIDE);
+
+    List<MeshSplitter.Submesh> submeshes =
+        MeshSplitter.split(mesh, MeshData.MAX_16_BIT_VERTEX_COUNT);
+
+    assertEquals(1, submeshes.size());
+    assertEquals(mesh.getVertexCount(), submeshes.get(0).getVertices().length);
+    assertSameTriangles(mesh, submeshes);
+  }
+
+  @Test
+  public void split_keepsSubmeshesWithin65536VerticesAndTrianglesInOrder() {
+    MeshData mesh = grid(LARGE_GRID_SIDE, LARGE_GRID_SIDE);
+    assertEquals(MeshData.INDEX_SIZE_32, mesh.getIndexSize());
+
+    List<MeshSplitter.Submesh> submeshes =
+        MeshSplitter.split(mesh, MeshData.MAX_16_BIT_VERTEX_COUNT);
+
+    assertEquals(2, submeshes.size());
+    for (MeshSplitter.Submesh submesh : submeshes) {
+      int vertexCount = submesh.getVertices().length;
+      assertTrue(vertexCount <= MeshData.MAX_16_BIT_VERTEX_COUNT);
+      for (int index : submesh.getIndices()) {
+        assertTrue(index >= 0 && index < vertexCount);
+      }
+    }
+    // The first submesh is filled up to the limit before a new one starts.
+    assertTrue(submeshes.get(0).getVertices().length > MeshData.MAX_16_BIT_VERTEX_COUNT - 3);
+    assertSameTriangles(mesh, submeshes);
+  }
+
+  @Test
+  public void split_rejectsLimitBelowOneTriangle() {
+    try {
+      MeshSplitter.split(grid(2, 2), 2);
+      throw new AssertionError("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void pack_copiesVerticesAndIndicesOfEverySubmesh() {
+    MeshData mesh = grid(LARGE_GRID_SIDE, LARGE_GRID_SIDE);
+    ByteBuffer vertexData = mesh.getQuantizedVertices().getVertexData();
+    int position = vertexData.position();
+    List<MeshSplitter.Submesh> submeshes =
+        MeshSplitter.split(mesh, MeshData.MAX_16_BIT_VERTEX_COUNT);
+
+    MeshSplitter.Packed packed =
+        MeshSplitter.pack(submeshes, vertexData, QuantizedVertexData.VERTEX_STRIDE);
+
+    assertEquals(position, vertexData.position());
+    assertEquals(0, packed.getVertexData().position());
+    assertEquals(0, packed.getIndexData().position());
+    assertEquals(mesh.getIndexCount() * MeshData.INDEX_SIZE_16, packed.getIndexData().remaining());
+    assertPackedMatches(
+        mesh,
+        vertexData,
+        packed.getVertexData(),
+        packed.getIndexData(),
+        packed.getVertexOffsets(),
+        packed.getIndexOffsets(),
+        packed.getIndexCounts());
+  }
+
+  /**
+   * Checks that every index of the packed submeshes, read in order, refers to a vertex whose bytes
+   * equal those of the vertex at the same index of {@code mesh}.
+   */
+  static void assertPackedMatches(
+      MeshData mesh,
+      ByteBuffer vertexData,
+      ByteBuffer packedVertexData,
+      ByteBuffer packedIndexData,
+      int[] vertexOffsets,
+      int[] indexOffsets,
+      int[] indexCounts) {
+    int stride = QuantizedVertexData.VERTEX_STRIDE;
+    int meshIndex = 0;
+    int expectedIndexOffset = 0;
+    for (int submesh = 0; submesh < indexCounts.length; ++submesh) {
+      assertEquals(expectedIndexOffset, indexOffsets[submesh]);
+      expectedIndexOffset += indexCounts[submesh] * MeshData.INDEX_SIZE_16;
+      for (int i = 0; i < indexCounts[submesh]; ++i) {
+        int local =
+            packedIndexData.getShort(indexOffsets[submesh] + i * MeshData.INDEX_SIZE_16) & 0xFFFF;
+        int packedOffset = vertexOffsets[submesh] + local * stride;
+        int originalOffset = vertexData.position() + mesh.getIndex(meshIndex) * stride;
+        for (int b = 0; b < stride; ++b) {
+          assertEquals(
+              "index " + meshIndex + " byte " + b,
+              vertexData.get(originalOffset + b),
+              packedVertexData.get(packedOffset + b));
+        }
+        ++meshIndex;
+      }
+    }
+    assertEquals(mesh.getIndexCount(), meshIndex);
+  }
+
+  /** Checks that the submeshes hold the triangles of {@code mesh}, in the same order. */
+  private static void assertSameTriangles(MeshData mesh, List<MeshSplitter.Submesh> submeshes) {
+    int meshIndex = 0;
+    for (MeshSplitter.Submesh submesh : submeshes) {
+      for (int index : submesh.getIndices()) {
+        assertEquals(mesh.getIndex(meshIndex), submesh.getVertices()[index]);
+        ++meshIndex;
+      }
+    }
+    assertEquals(mesh.getIndexCount(), meshIndex);
+  }
+
+  private static int maxIndex(MeshData mesh) {
+    int max = 0;
+    for (int i = 0; i < mesh.getIndexCount(); ++i) {
+      max = Math.max(max, mesh.getIndex(i));
+    }
+    return max;
+  }
+
+  /**
+   * A flat grid of {@code columns} by {@code rows} vertices in the xz plane, with texture
+   * coordinates spanning the unit square, triangulated row by row.
+   */
+  static MeshData grid(int columns, int rows) {
+    ByteBuffer vertexData =
+        ByteBuffer.allocateDirect(columns * rows * MeshData.VERTEX_STRIDE)
+            .order(ByteOrder.nativeOrder());
+    for (int z = 0; z < rows; ++z) {
+      for (int x = 0; x < columns; ++x) {
+        vertexData.putFloat(x).putFloat(0).putFloat(z);
+        vertexData.putFloat(0).putFloat(1).putFloat(0);
+        vertexData.putFloat(x / (columns - 1f)).putFloat(z / (rows - 1f));
+      }
+    }
+    vertexData.flip();
+    int[] indices = new int[(columns - 1) * (rows - 1) * 6];
+    int n = 0;
+    for (int z = 0; z + 1 < rows; ++z) {
+      for (int x = 0; x + 1 < columns; ++x) {
+        int corner = z * columns + x;
+        indices[n++] = corner;
+        indices[n++] = corner + columns;
+        indices[n++] = corner + 1;
+        indices[n++] = corner + 1;
+        indices[n++] = corner + columns;
+        indices[n++] = corner + columns + 1;
+      }
+    }
+    return MeshData.create(vertexData, indices);
+  }
+
+  /** {@code count} vertices along the x axis. */
+  private static ByteBuffer vertices(int count) {
+    ByteBuffer vertexData =
+        ByteBuffer.allocateDirect(count * MeshData.VERTEX_STRIDE).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < count; ++i) {
+      vertexData.putFloat(i).putFloat(0).putFloat(0);
+      vertexData.putFloat(0).putFloat(1).putFloat(0);
+      vertexData.putFloat(0).putFloat(0);
+    }
+    vertexData.flip();
+    return vertexData;
+  }
+}
@@ -0,0 +1,137 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.codelab.common.math.Mat4;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Checks the GL call budget of a steady-state frame of {@link ObjectRenderer}. */
+public class ObjectRendererTest {
+  private static final String ETC1_EXTENSION = "GL_OES_compressed_ETC1_RGB8_texture";
+  private static final int INSTANCE_COUNT = 10;
+
+  private final float[] viewMatrix = new float[Mat4.SIZE];
+  private final float[] projectionMatrix = new float[Mat4.SIZE];
+  private final float[] modelMatrix = new float[Mat4.SIZE];
+  private final float[] colorCorrection = {1, 1, 1, 0.5f};
+  private final float[] objectColor = {1, 1, 1, 1};
+
+  private RecordingGl gl;
+  private GlStateCache glState;
+  private GlValidator.Mode previousValidationMode;
+  private ObjectRenderer renderer;
+
+  @Before
+  public void setUp() {
+    previousValidationMode = GlValidator.getInstance().getMode();
+    GlValidator.getInstance().setMode(GlValidator.Mode.OFF);
+    Mat4.setIdentity(viewMatrix, 0);
+    Mat4.setIdentity(projectionMatrix, 0);
+  }
+
+  @After
+  public void tearDown() {
+    GlValidator.getInstance().setMode(previousValidationMode);
+  }
+
+  @Test
+  public void drawInstances_es3_drawsOnceWithoutQueriesOrUniforms() throws IOException {
+    create("OpenGL ES 3.0");
+    drawFrame();
+
+    for (int frame = 0; frame < 3; ++frame) {
+      drawFrame();
+
+      assertEquals(1, gl.getDrawCallCount());
+      assertEquals(1, gl.getCallCount("glDrawElementsInstanced"));
+      assertEquals(INSTANCE_COUNT, gl.getInstanceCount());
+      assertEquals(0, gl.getQueryCount());
+      // Camera data goes through the uniform buffer; the per-draw uniforms are unchanged.
+      assertEquals(0, gl.getUniformUploadCount());
+      assertEquals(1, gl.getCallCount("glUseProgram"));
+      assertTrue(gl.getStateChangeCount() <= 12);
+    }
+  }
+
+  @Test
+  public void drawInstances_es3_sendsColorCorrectionOnlyThroughTheUniformBuffer()
+      throws IOException {
+    create("OpenGL ES 3.0");
+    drawFrame();
+
+    colorCorrection[3] = 0.75f;
+    drawFrame();
+
+    assertEquals(0, gl.getUniformUploadCount());
+  }
+
+  @Test
+  public void drawInstances_es2_drawsEachInstanceWithItsMatrices() throws IOException {
+    create("OpenGL ES 2.0");
+    drawFrame();
+
+    for (int frame = 0; frame < 3; ++frame) {
+      drawFrame();
+
+      assertEquals(INSTANCE_COUNT, gl.getDrawCallCount());
+      assertEquals(0, gl.getQueryCount());
+      // Model-view and model-view-projection per instance; the rest is unchanged.
+      assertEquals(2 * INSTANCE_COUNT, gl.getUniformUploadCount());
+      assertEquals(1, gl.getCallCount("glUseProgram"));
+      assertEquals(1, gl.getCallCount("glBindTexture"));
+    }
+  }
+
+  @Test
+  public void drawInstances_withValidationOff_neverReadsTheErrorFlag() throws IOException {
+    create("OpenGL ES 3.0");
+
+    drawFrame();
+    drawFrame();
+
+    assertEquals(0, gl.getCallCount("glGetError"));
+  }
+
+  @Test
+  public void drawInstances_withFullValidation_checksBeforeAndAfter() throws IOException {
+    create("OpenGL ES 3.0");
+    drawFrame();
+    GlValidator.getInstance().setMode(GlValidator.Mode.FULL);
+
+    drawFrame();
+
+    assertEquals(2, gl.getCallCount("glGetError"));
+  }
+
+  private void create(String version) throws IOException {
+    gl = new RecordingGl(version, ETC1_EXTENSION);
+    GlBackend.set(gl);
+    glState = GlStateCache.getInstance();
+    GlCapabilities capabilities = new GlCapabilities(version, ETC1_EXTENSION, "");
+    GpuMesh mesh = GpuMesh.upload("andy", TestAssets.readObj("models/andy.obj"), capabilities);
+    renderer = new ObjectRenderer();
+    renderer.createOnGlThread(
+        TestAssets.shaderLibrary(),
+        new GpuMesh[] {mesh},
+        TestAssets.uploadTexture(capabilities),
+        capabilities);
+  }
+
+  /** Draws a row of instances in front of the camera, like the anchors of a frame. */
+  private void drawFrame() {
+    gl.reset();
+    glState.beginFrame();
+    renderer.clearInstances();
+    for (int i = 0; i < INSTANCE_COUNT; ++i) {
+      Mat4.setIdentity(modelMatrix, 0);
+      modelMatrix[12] = i - INSTANCE_COUNT / 2;
+      modelMatrix[14] = -5;
+      renderer.addInstance(modelMatrix, 1.0f);
+    }
+    renderer.drawInstances(viewMatrix, projectionMatrix, colorCorrection, objectColor);
+  }
+}
@@ -0,0 +1,151 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.ar.core.codelab.common.math.Mat4;
+import com.google.ar.core.codelab.common.rendering.OcclusionObjectRenderer.OcclusionMode;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the GL call budget of a steady-state frame of {@link OcclusionObjectRenderer}, including
+ * the depth prefilter run when a new depth image arrives.
+ */
+public class OcclusionObjectRendererTest {
+  private static final String ETC1_EXTENSION = "GL_OES_compressed_ETC1_RGB8_texture";
+  private static final int INSTANCE_COUNT = 10;
+  private static final int DEPTH_TEXTURE = 77;
+
+  private final float[] viewMatrix = new float[Mat4.SIZE];
+  private final float[] projectionMatrix = new float[Mat4.SIZE];
+  private final float[] modelMatrix = new float[Mat4.SIZE];
+  private final float[] uvTransform = new float[9];
+  private final float[] colorCorrection = {1, 1, 1, 0.5f};
+  private final float[] objectColor = {1, 1, 1, 1};
+
+  private RecordingGl gl;
+  private GlStateCache glState;
+  private GlValidator.Mode previousValidationMode;
+  private OcclusionObjectRenderer renderer;
+
+  @Before
+  public void setUp() {
+    previousValidationMode = GlValidator.getInstance().getMode();
+    GlValidator.getInstance().setMode(GlValidator.Mode.OFF);
+    Mat4.setIdentity(viewMatrix, 0);
+    Mat4.setIdentity(projectionMatrix, 0);
+  }
+
+  @After
+  public void tearDown() {
+    GlValidator.getInstance().setMode(previousValidationMode);
+  }
+
+  @Test
+  public void prefiltered_es3_blursAndDrawsOnceWithoutQueries() throws IOException {
+    create("OpenGL ES 3.0", OcclusionMode.PREFILTERED);
+    drawFrame(/*depthUpdated=*/ true);
+
+    for (int frame = 0; frame < 3; ++frame) {
+      drawFrame(/*depthUpdated=*/ true);
+
+      // Two blur passes and one instanced draw.
+      assertEquals(3, gl.getDrawCallCount());
+      assertEquals(1, gl.getCallCount("glDrawElementsInstanced"));
+      assertEquals(0, gl.getQueryCount());
+      // The blur's two tap offsets; the object's uniforms are unchanged.
+      assertEquals(2, gl.getUniformUploadCount());
+      assertEquals(2, gl.getCallCount("glUseProgram"));
+    }
+  }
+
+  @Test
+  public void prefiltered_es3_sendsCameraDataOnlyThroughTheUniformBuffer() throws IOException {
+    create("OpenGL ES 3.0", OcclusionMode.PREFILTERED);
+    drawFrame(/*depthUpdated=*/ false);
+
+    colorCorrection[3] = 0.75f;
+    uvTransform[0] = -1;
+    drawFrame(/*depthUpdated=*/ false);
+
+    assertEquals(0, gl.getUniformUploadCount());
+  }
+
+  @Test
+  public void prefiltered_es3_withoutNewDepth_skipsTheBlur() throws IOException {
+    create("OpenGL ES 3.0", OcclusionMode.PREFILTERED);
+    drawFrame(/*depthUpdated=*/ true);
+
+    drawFrame(/*depthUpdated=*/ false);
+
+    assertEquals(1, gl.getDrawCallCount());
+    assertEquals(0, gl.getCallCount("glBindFramebuffer"));
+    assertEquals(0, gl.getUniformUploadCount());
+  }
+
+  @Test
+  public void legacy_es3_drawsOnceWithoutBlur() throws IOException {
+    create("OpenGL ES 3.0", OcclusionMode.LEGACY_25_TAP);
+    drawFrame(/*depthUpdated=*/ true);
+
+    drawFrame(/*depthUpdated=*/ true);
+
+    assertEquals(1, gl.getDrawCallCount());
+    assertEquals(0, gl.getCallCount("glBindFramebuffer"));
+    assertEquals(0, gl.getQueryCount());
+  }
+
+  @Test
+  public void prefiltered_es2_drawsEachInstanceWithItsMatrices() throws IOException {
+    create("OpenGL ES 2.0", OcclusionMode.PREFILTERED);
+    drawFrame(/*depthUpdated=*/ true);
+
+    for (int frame = 0; frame < 3; ++frame) {
+      drawFrame(/*depthUpdated=*/ true);
+
+      assertEquals(2 + INSTANCE_COUNT, gl.getDrawCallCount());
+      assertEquals(0, gl.getQueryCount());
+      assertEquals(2 + 2 * INSTANCE_COUNT, gl.getUniformUploadCount());
+    }
+  }
+
+  private void create(String version, OcclusionMode mode) throws IOException {
+    gl = new RecordingGl(version, ETC1_EXTENSION);
+    GlBackend.set(gl);
+    glState = GlStateCache.getInstance();
+    GlCapabilities capabilities = new GlCapabilities(version, ETC1_EXTENSION, "");
+    GpuMesh mesh = GpuMesh.upload("andy", TestAssets.readObj("models/andy.obj"), capabilities);
+    renderer = new OcclusionObjectRenderer();
+    renderer.createOnGlThread(
+        TestAssets.shaderLibrary(),
+        new GpuMesh[] {mesh},
+        TestAssets.uploadTexture(capabilities),
+        capabilities);
+    renderer.setOcclusionMode(mode);
+    renderer.setViewport(1080, 1920);
+    renderer.setDepthTexture(DEPTH_TEXTURE, 160, 90);
+    uvTransform[0] = 1;
+    uvTransform[4] = 1;
+    uvTransform[8] = 1;
+    renderer.setUvTransformMatrix(uvTransform);
+  }
+
+  /** Runs the renderer's part of onDrawFrame with a row of instances in front of the camera. */
+  private void drawFrame(boolean depthUpdated) {
+    gl.reset();
+    glState.beginFrame();
+    if (depthUpdated) {
+      renderer.onDepthUpdated();
+    }
+    renderer.clearInstances();
+    for (int i = 0; i < INSTANCE_COUNT; ++i) {
+      Mat4.setIdentity(modelMatrix, 0);
+      modelMatrix[12] = i - INSTANCE_COUNT / 2;
+      modelMatrix[14] = -5;
+      renderer.addInstance(modelMatrix, 1.0f);
+    }
+    renderer.drawInstances(viewMatrix, projectionMatrix, colorCorrection, objectColor);
+  }
+}
@@ -0,0 +1,207 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProgramBinaryCacheTest {
+  private static final String PROGRAM_NAME = "shaders/object.vert|shaders/object.frag|A=1;";
+  private static final String DRIVER = "Renderer\nOpenGL ES 3.2 V@1";
+  private static final int BINARY_FORMAT = 0x8E21;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final MemoryStore store = new MemoryStore();
+  private RecordingGl gl;
+
+  @Before
+  public void setUp() {
+    gl = new RecordingGl();
+    gl.setProgramBinaryFormat(BINARY_FORMAT);
+    GlBackend.set(gl);
+  }
+
+  @Test
+  public void load_restoresSavedBinary() {
+    ProgramBinaryCache cache = new ProgramBinaryCache(store, DRIVER);
+    String hash = cache.computeSourceHash("vertex", "fragment");
+    cache.save(PROGRAM_NAME, hash, linkedProgram());
+    assertEquals(1, cache.getStoreCount());
+
+    assertTrue(cache.load(PROGRAM_NAME, hash, gl.glCreateProgram()));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, gl.getCallCount("glProgramBinary"));
+  }
+
+  @Test
+  public void load_missesAndRemovesEntryAfterSourceChange() {
+    ProgramBinaryCache cache = new ProgramBinaryCache(store, DRIVER);
+    cache.save(PROGRAM_NAME, cache.computeSourceHash("vertex", "fragment"), linkedProgram());
+
+    String editedHash = cache.computeSourceHash("vertex", "edited fragment");
+    assertFalse(cache.load(PROGRAM_NAME, editedHash, gl.glCreateProgram()));
+    assertEquals(1, cache.getMissCount());
+    assertTrue(store.entries.isEmpty());
+    assertEquals(0, gl.getCallCount("glProgramBinary"));
+  }
+
+  @Test
+  public void load_missesAndRemovesEntryAfterDriverChange() {
+    ProgramBinaryCache oldDriver = new ProgramBinaryCache(store, DRIVER);
+    String oldHash = oldDriver.computeSourceHash("vertex", "fragment");
+    oldDriver.save(PROGRAM_NAME, oldHash, linkedProgram());
+
+    ProgramBinaryCache newDriver = new ProgramBinaryCache(store, "Renderer\nOpenGL ES 3.2 V@2");
+    String hash = newDriver.computeSourceHash("vertex", "fragment");
+    assertNotEquals(oldHash, hash);
+    assertFalse(newDriver.load(PROGRAM_NAME, hash, gl.glCreateProgram()));
+    assertTrue(store.entries.isEmpty());
+  }
+
+  @Test
+  public void computeSourceHash_includesRendererAndDriverVersion() {
+    GlCapabilities first = new GlCapabilities("OpenGL ES 3.2 V@1", "", "Renderer");
+    GlCapabilities second = new GlCapabilities("OpenGL ES 3.2 V@2", "", "Renderer");
+    assertNotEquals(
+        new ProgramBinaryCache(store, first).computeSourceHash("v", "f"),
+        new ProgramBinaryCache(store, second).computeSourceHash("v", "f"));
+    assertEquals(
+        new ProgramBinaryCache(store, first).computeSourceHash("v", "f"),
+        new ProgramBinaryCache(store, DRIVER).computeSourceHash("v", "f"));
+  }
+
+  @Test
+  public void load_missesAndRemovesEntryWithBadChecksum() {
+    ProgramBinaryCache cache = new ProgramBinaryCache(store, DRIVER);
+    String hash = cache.computeSourceHash("vertex", "fragment");
+    cache.save(PROGRAM_NAME, hash, linkedProgram());
+    byte[] data = store.entries.values().iterator().next();
+    // The checksum is the last 8 bytes; flip a bit of the binary in front of it.
+    data[data.length - 9] ^= 1;
+
+    assertFalse(cache.load(PROGRAM_NAME, hash, gl.glCreateProgram()));
+    assertTrue(store.entries.isEmpty());
+    assertEquals(0, gl.getCallCount("glProgramBinary"));
+  }
+
+  @Test
+  public void load_removesBinaryTheDriverRejects() {
+    ProgramBinaryCache cache = new ProgramBinaryCache(store, DRIVER);
+    String hash = cache.computeSourceHash("vertex", "fragment");
+    cache.save(PROGRAM_NAME, hash, linkedProgram());
+    gl.setProgramBinariesAccepted(false);
+
+    assertFalse(cache.load(PROGRAM_NAME, hash, gl.glCreateProgram()));
+    assertEquals(1, gl.getCallCount("glProgramBinary"));
+    assertEquals(1, cache.getMissCount());
+    assertTrue(store.entries.isEmpty());
+  }
+
+  @Test
+  public void save_skipsProgramWithoutBinary() {
+    RecordingGl withoutBinaries = new RecordingGl();
+    GlBackend.set(withoutBinaries);
+    ProgramBinaryCache cache = new ProgramBinaryCache(store, DRIVER);
+    cache.save(PROGRAM_NAME, "hash", withoutBinaries.glCreateProgram());
+    assertEquals(0, cache.getStoreCount());
+    assertTrue(store.entries.isEmpty());
+  }
+
+  @Test
+  public void decode_rejectsTruncatedAndForeignData() {
+    byte[] binary = {1, 2, 3, 4};
+    byte[] data = ProgramBinaryCache.encode("hash", BINARY_FORMAT, binary);
+    int[] format = new int[1];
+    assertArrayEquals(binary, ProgramBinaryCache.decode(data, "hash", format));
+    assertEquals(BINARY_FORMAT, format[0]);
+
+    byte[] truncated = new byte[data.length - 1];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+    assertNull(ProgramBinaryCache.decode(truncated, "hash", format));
+    assertNull(ProgramBinaryCache.decode(new byte[] {'P', 'N', 'G', 0}, "hash", format));
+    assertNull(ProgramBinaryCache.decode(data, "other hash", format));
+  }
+
+  @Test
+  public void isSupported_requiresEs3AndBinaryFormats() {
+    assertTrue(ProgramBinaryCache.isSupported(GlCapabilities.query()));
+    assertFalse(ProgramBinaryCache.isSupported(GlCapabilities.es2()));
+    GlBackend.set(new RecordingGl());
+    assertFalse(ProgramBinaryCache.isSupported(GlCapabilities.query()));
+  }
+
+  @Test
+  public void fileStore_roundTripsAndRemovesRejectedBinary() throws IOException {
+    File directory = new File(temporaryFolder.getRoot(), "programs");
+    FileProgramBinaryStore fileStore = new FileProgramBinaryStore(directory);
+    ProgramBinaryCache cache = new ProgramBinaryCache(fileStore, DRIVER);
+    String hash = cache.computeSourceHash("vertex", "fragment");
+    cache.save(PROGRAM_NAME, hash, linkedProgram());
+    String key = ProgramBinaryCache.entryName(PROGRAM_NAME);
+    assertNotNull(fileStore.load(key));
+    assertTrue(cache.load(PROGRAM_NAME, hash, gl.glCreateProgram()));
+
+    gl.setProgramBinariesAccepted(false);
+    assertFalse(cache.load(PROGRAM_NAME, hash, gl.glCreateProgram()));
+    assertNull(fileStore.load(key));
+    assertEquals(0, directory.listFiles().length);
+  }
+
+  @Test
+  public void fileStore_replacesValuesAndClearsTemporaryFiles() throws IOException {
+    File directory = temporaryFolder.newFolder("programs");
+    FileProgramBinaryStore fileStore = new FileProgramBinaryStore(directory);
+    assertNull(fileStore.load("0123456789abcdef"));
+
+    fileStore.store("0123456789abcdef", new byte[] {1});
+    fileStore.store("0123456789abcdef", new byte[] {2, 3});
+    assertArrayEquals(new byte[] {2, 3}, fileStore.load("0123456789abcdef"));
+    assertEquals(1, directory.listFiles().length);
+
+    // Left behind by a write that was interrupted before its rename.
+    assertTrue(new File(directory, "0123456789abcdef123.tmp").createNewFile());
+    fileStore.clear();
+    assertEquals(0, directory.listFiles().length);
+
+    fileStore.remove("0123456789abcdef");
+  }
+
+  private int linkedProgram() {
+    int program = gl.glCreateProgram();
+    gl.glLinkProgram(program);
+    return program;
+  }
+
+  /** In-memory {@link ProgramBinaryStore}. */
+  private static final class MemoryStore implements ProgramBinaryStore {
+    final Map<String, byte[]> entries = new HashMap<>();
+
+    @Override
+    public byte[] load(String key) {
+      return entries.get(key);
+    }
+
+    @Override
+    public void store(String key, byte[] data) {
+      entries.put(key, data);
+    }
+
+    @Override
+    public void remove(String key) {
+      entries.remove(key);
+    }
+  }
+}
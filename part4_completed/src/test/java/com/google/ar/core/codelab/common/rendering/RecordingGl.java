@@ -0,0 +1,1104 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A {@link Gl} that draws nothing and records the commands issued to it instead, so renderers can
+ * run in JVM tests and benchmarks without a device. It keeps the number of calls per command, the
+ * draw calls and instances drawn, state changes (binds, enables, program and vertex attribute
+ * setup), uniform uploads, and the bytes uploaded from client memory to buffers and textures. With
+ * the command log enabled, see {@link #setCommandLogEnabled}, it also keeps every call with its
+ * arguments, in order.
+ *
+ * <p>Queries answer as a context where everything succeeds: shaders compile and programs link,
+ * framebuffers are complete, {@code glGetError} reports no error unless one is set with {@link
+ * #setPendingError}, and object names and uniform locations are unique and stable. Values for
+ * {@code glGetIntegerv} are 0 unless set with {@link #setInteger}. Program binaries are only
+ * supported after {@link #setProgramBinaryFormat}, so {@link ProgramBinaryCache} stays disabled by
+ * default.
+ *
+ * <p>A typical test installs it with {@link GlBackend#set}, creates the renderers, calls {@link
+ * #reset} and renders one frame, then asserts on the counters. Not thread-safe; use it from one
+ * thread like a real context.
+ */
+public final class RecordingGl implements Gl {
+  private final String version;
+  private final String extensions;
+  // Keyed by command name; sorted so that reports are stable.
+  private final Map<String, long[]> callCounts = new TreeMap<>();
+  private final List<String> commands = new ArrayList<>();
+  private final Map<Integer, Integer> integers = new HashMap<>();
+  // Uniform, attribute and uniform block locations, keyed by program and kind plus name.
+  private final Map<Integer, Map<String, Integer>> locations = new HashMap<>();
+  private boolean commandLogEnabled;
+  private int nextName = 1;
+  private long mappedBytes;
+  private int pendingError = GLES20.GL_NO_ERROR;
+  private boolean bufferDataKept;
+  private boolean bufferMappingFails;
+  // Contents of buffer objects, kept only when enabled, and the buffers bound per target.
+  private final Map<Integer, ByteBuffer> bufferData = new HashMap<>();
+  private final Map<Integer, Integer> boundBuffers = new HashMap<>();
+  private int programBinaryFormat;
+  private boolean programBinariesAccepted = true;
+  // Programs whose last glProgramBinary was rejected; every other program reports it is linked.
+  private final Set<Integer> unlinkedPrograms = new HashSet<>();
+
+  private long callCount;
+  private long drawCallCount;
+  private long instanceCount;
+  private long stateChangeCount;
+  private long uniformUploadCount;
+  private long bytesUploaded;
+
+  /** Creates a recorder that reports an OpenGL ES 3.0 context without extensions. */
+  public RecordingGl() {
+    this("OpenGL ES 3.0 RecordingGl", "");
+  }
+
+  /**
+   * Creates a recorder whose {@code glGetString} reports {@code version} and {@code extensions},
+   * for example {@code "OpenGL ES 2.0"} to exercise the ES 2.0 paths.
+   */
+  public RecordingGl(String version, String extensions) {
+    this.version = version;
+    this.extensions = extensions;
+  }
+
+  /** Sets the value that {@code glGetIntegerv(pname, ...)} returns. */
+  public void setInteger(int pname, int value) {
+    integers.put(pname, value);
+  }
+
+  /** Makes the next {@code glGetError} report {@code error}, to exercise error handling. */
+  public void setPendingError(int error) {
+    pendingError = error;
+  }
+
+  /**
+   * Supports program binaries in {@code format}: linked programs report a binary of that format,
+   * and {@code GL_NUM_PROGRAM_BINARY_FORMATS} reads 1.
+   */
+  public void setProgramBinaryFormat(int format) {
+    programBinaryFormat = format;
+    setInteger(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, 1);
+  }
+
+  /**
+   * Makes {@code glProgramBinary} accept binaries of the supported format, or reject them all as a
+   * driver does after an update. A program whose binary was rejected reports it is not linked.
+   */
+  public void setProgramBinariesAccepted(boolean accepted) {
+    programBinariesAccepted = accepted;
+  }
+
+  /**
+   * Keeps a copy of the data given to {@code glBufferData}, for {@link #getBufferData}. Off by
+   * default, since meshes can be large.
+   */
+  public void setBufferDataKept(boolean kept) {
+    bufferDataKept = kept;
+  }
+
+  /** Makes {@code glMapBufferRange} fail and return null, as a driver out of mappable memory. */
+  public void setBufferMappingFails(boolean fails) {
+    bufferMappingFails = fails;
+  }
+
+  /** Returns the last data given to {@code glBufferData} for {@code buffer}, or null. */
+  public ByteBuffer getBufferData(int buffer) {
+    ByteBuffer data = bufferData.get(buffer);
+    return data == null ? null : data.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Keeps, or stops keeping, every call in {@link #getCommands}. Disabled by default, since the log
+   * grows with every call; enable it only in tests that inspect the commands. With the log
+   * disabled, recording a call allocates nothing.
+   */
+  public void setCommandLogEnabled(boolean enabled) {
+    commandLogEnabled = enabled;
+  }
+
+  /**
+   * Clears the counters and the command log. Object names and locations are kept, since the
+   * objects they refer to still exist.
+   */
+  public void reset() {
+    callCounts.clear();
+    commands.clear();
+    callCount = 0;
+    drawCallCount = 0;
+    instanceCount = 0;
+    stateChangeCount = 0;
+    uniformUploadCount = 0;
+    bytesUploaded = 0;
+  }
+
+  /** Number of calls of any command since the last {@link #reset}. */
+  public long getCallCount() {
+    return callCount;
+  }
+
+  /** Number of calls of {@code command}, such as {@code "glBindTexture"}. */
+  public long getCallCount(String command) {
+    long[] count = callCounts.get(command);
+    return count == null ? 0 : count[0];
+  }
+
+  /** Number of calls of each command that was called, by command name. */
+  public Map<String, Long> getCallCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (Map.Entry<String, long[]> entry : callCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue()[0]);
+    }
+    return counts;
+  }
+
+  /** Number of {@code glDrawArrays}, {@code glDrawElements} and instanced draw calls. */
+  public long getDrawCallCount() {
+    return drawCallCount;
+  }
+
+  /** Number of instances drawn, counting one per non-instanced draw call. */
+  public long getInstanceCount() {
+    return instanceCount;
+  }
+
+  /**
+   * Number of calls that change context, program or object state without drawing or uploading:
+   * binds, enables and disables, blend and depth state, vertex attribute setup, viewport and
+   * texture parameters.
+   */
+  public long getStateChangeCount() {
+    return stateChangeCount;
+  }
+
+  /**
+   * Number of calls that read state back from the context: {@code glGet*} and {@code
+   * glCheckFramebufferStatus}. On a device each one can stall until the GPU catches up, so the
+   * steady-state frame should issue none.
+   */
+  public long getQueryCount() {
+    long queries = 0;
+    for (Map.Entry<String, long[]> entry : callCounts.entrySet()) {
+      if (entry.getKey().startsWith("glGet")
+          || entry.getKey().equals("glCheckFramebufferStatus")) {
+        queries += entry.getValue()[0];
+      }
+    }
+    return queries;
+  }
+
+  /** Number of {@code glUniform*} calls. */
+  public long getUniformUploadCount() {
+    return uniformUploadCount;
+  }
+
+  /**
+   * Bytes copied from client memory to buffers and textures: buffer data, texture images and
+   * writes through mapped buffer ranges.
+   */
+  public long getBytesUploaded() {
+    return bytesUploaded;
+  }
+
+  /** Every call since the last {@link #reset}, formatted as {@code "glUseProgram(3)"}. */
+  public List<String> getCommands() {
+    return Collections.unmodifiableList(commands);
+  }
+
+  @Override
+  public Object getCurrentContext() {
+    // The recorder is a context of its own, so installing a new one resets the caches.
+    return this;
+  }
+
+  @Override
+  public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+    record("texImage2D");
+    if (commandLogEnabled) {
+      log("texImage2D", target, level, bitmap, border);
+    }
+    bytesUploaded += bitmap.getByteCount();
+  }
+
+  @Override
+  public void glActiveTexture(int texture) {
+    recordStateChange("glActiveTexture");
+    if (commandLogEnabled) {
+      log("glActiveTexture", texture);
+    }
+  }
+
+  @Override
+  public void glAttachShader(int program, int shader) {
+    record("glAttachShader");
+    if (commandLogEnabled) {
+      log("glAttachShader", program, shader);
+    }
+  }
+
+  @Override
+  public void glBeginQuery(int target, int id) {
+    record("glBeginQuery");
+    if (commandLogEnabled) {
+      log("glBeginQuery", target, id);
+    }
+  }
+
+  @Override
+  public void glBindBuffer(int target, int buffer) {
+    recordStateChange("glBindBuffer");
+    if (commandLogEnabled) {
+      log("glBindBuffer", target, buffer);
+    }
+    // Only needed to attribute kept buffer data; boxing the target would allocate per bind.
+    if (bufferDataKept) {
+      boundBuffers.put(target, buffer);
+    }
+  }
+
+  @Override
+  public void glBindBufferBase(int target, int index, int buffer) {
+    recordStateChange("glBindBufferBase");
+    if (commandLogEnabled) {
+      log("glBindBufferBase", target, index, buffer);
+    }
+  }
+
+  @Override
+  public void glBindFramebuffer(int target, int framebuffer) {
+    recordStateChange("glBindFramebuffer");
+    if (commandLogEnabled) {
+      log("glBindFramebuffer", target, framebuffer);
+    }
+  }
+
+  @Override
+  public void glBindTexture(int target, int texture) {
+    recordStateChange("glBindTexture");
+    if (commandLogEnabled) {
+      log("glBindTexture", target, texture);
+    }
+  }
+
+  @Override
+  public void glBindVertexArray(int array) {
+    recordStateChange("glBindVertexArray");
+    if (commandLogEnabled) {
+      log("glBindVertexArray", array);
+    }
+  }
+
+  @Override
+  public void glBlendFunc(int sfactor, int dfactor) {
+    recordStateChange("glBlendFunc");
+    if (commandLogEnabled) {
+      log("glBlendFunc", sfactor, dfactor);
+    }
+  }
+
+  @Override
+  public void glBufferData(int target, int size, Buffer data, int usage) {
+    record("glBufferData");
+    if (commandLogEnabled) {
+      log("glBufferData", target, size, data, usage);
+    }
+    if (data != null) {
+      bytesUploaded += size;
+    }
+    Integer buffer = boundBuffers.get(target);
+    if (bufferDataKept && buffer != null && buffer != 0) {
+      ByteBuffer copy = ByteBuffer.allocate(size);
+      if (data != null) {
+        ByteBuffer source = ((ByteBuffer) data).duplicate();
+        source.limit(source.position() + size);
+        copy.put(source).flip();
+      }
+      bufferData.put(buffer, copy);
+    }
+  }
+
+  @Override
+  public void glBufferSubData(int target, int offset, int size, Buffer data) {
+    record("glBufferSubData");
+    if (commandLogEnabled) {
+      log("glBufferSubData", target, offset, size, data);
+    }
+    bytesUploaded += size;
+  }
+
+  @Override
+  public int glCheckFramebufferStatus(int target) {
+    record("glCheckFramebufferStatus");
+    if (commandLogEnabled) {
+      log("glCheckFramebufferStatus", target);
+    }
+    return GLES20.GL_FRAMEBUFFER_COMPLETE;
+  }
+
+  @Override
+  public void glClear(int mask) {
+    record("glClear");
+    if (commandLogEnabled) {
+      log("glClear", mask);
+    }
+  }
+
+  @Override
+  public void glClearColor(float red, float green, float blue, float alpha) {
+    recordStateChange("glClearColor");
+    if (commandLogEnabled) {
+      log("glClearColor", red, green, blue, alpha);
+    }
+  }
+
+  @Override
+  public void glCompileShader(int shader) {
+    record("glCompileShader");
+    if (commandLogEnabled) {
+      log("glCompileShader", shader);
+    }
+  }
+
+  @Override
+  public void glCompressedTexImage2D(
+      int target,
+      int level,
+      int internalformat,
+      int width,
+      int height,
+      int border,
+      int imageSize,
+      Buffer data) {
+    record("glCompressedTexImage2D");
+    if (commandLogEnabled) {
+      log(
+          "glCompressedTexImage2D",
+          target,
+          level,
+          internalformat,
+          width,
+          height,
+          border,
+          imageSize,
+          data);
+    }
+    bytesUploaded += imageSize;
+  }
+
+  @Override
+  public int glCreateProgram() {
+    record("glCreateProgram");
+    if (commandLogEnabled) {
+      log("glCreateProgram");
+    }
+    return nextName++;
+  }
+
+  @Override
+  public int glCreateShader(int type) {
+    record("glCreateShader");
+    if (commandLogEnabled) {
+      log("glCreateShader", type);
+    }
+    return nextName++;
+  }
+
+  @Override
+  public void glDeleteBuffers(int n, int[] buffers, int offset) {
+    record("glDeleteBuffers");
+    if (commandLogEnabled) {
+      log("glDeleteBuffers", n, buffers, offset);
+    }
+  }
+
+  @Override
+  public void glDeleteProgram(int program) {
+    record("glDeleteProgram");
+    if (commandLogEnabled) {
+      log("glDeleteProgram", program);
+    }
+  }
+
+  @Override
+  public void glDeleteShader(int shader) {
+    record("glDeleteShader");
+    if (commandLogEnabled) {
+      log("glDeleteShader", shader);
+    }
+  }
+
+  @Override
+  public void glDeleteTextures(int n, int[] textures, int offset) {
+    record("glDeleteTextures");
+    if (commandLogEnabled) {
+      log("glDeleteTextures", n, textures, offset);
+    }
+  }
+
+  @Override
+  public void glDeleteVertexArrays(int n, int[] arrays, int offset) {
+    record("glDeleteVertexArrays");
+    if (commandLogEnabled) {
+      log("glDeleteVertexArrays", n, arrays, offset);
+    }
+  }
+
+  @Override
+  public void glDepthMask(boolean flag) {
+    recordStateChange("glDepthMask");
+    if (commandLogEnabled) {
+      log("glDepthMask", flag);
+    }
+  }
+
+  @Override
+  public void glDisable(int cap) {
+    recordStateChange("glDisable");
+    if (commandLogEnabled) {
+      log("glDisable", cap);
+    }
+  }
+
+  @Override
+  public void glDisableVertexAttribArray(int index) {
+    recordStateChange("glDisableVertexAttribArray");
+    if (commandLogEnabled) {
+      log("glDisableVertexAttribArray", index);
+    }
+  }
+
+  @Override
+  public void glDrawArrays(int mode, int first, int count) {
+    record("glDrawArrays");
+    if (commandLogEnabled) {
+      log("glDrawArrays", mode, first, count);
+    }
+    recordDraw(1);
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, int offset) {
+    record("glDrawElements");
+    if (commandLogEnabled) {
+      log("glDrawElements", mode, count, type, offset);
+    }
+    recordDraw(1);
+  }
+
+  @Override
+  public void glDrawElementsInstanced(
+      int mode, int count, int type, int indicesOffset, int instanceCount) {
+    record("glDrawElementsInstanced");
+    if (commandLogEnabled) {
+      log("glDrawElementsInstanced", mode, count, type, indicesOffset, instanceCount);
+    }
+    recordDraw(instanceCount);
+  }
+
+  @Override
+  public void glEnable(int cap) {
+    recordStateChange("glEnable");
+    if (commandLogEnabled) {
+      log("glEnable", cap);
+    }
+  }
+
+  @Override
+  public void glEnableVertexAttribArray(int index) {
+    recordStateChange("glEnableVertexAttribArray");
+    if (commandLogEnabled) {
+      log("glEnableVertexAttribArray", index);
+    }
+  }
+
+  @Override
+  public void glEndQuery(int target) {
+    record("glEndQuery");
+    if (commandLogEnabled) {
+      log("glEndQuery", target);
+    }
+  }
+
+  @Override
+  public void glFramebufferTexture2D(
+      int target, int attachment, int textarget, int texture, int level) {
+    record("glFramebufferTexture2D");
+    if (commandLogEnabled) {
+      log("glFramebufferTexture2D", target, attachment, textarget, texture, level);
+    }
+  }
+
+  @Override
+  public void glGenBuffers(int n, int[] buffers, int offset) {
+    record("glGenBuffers");
+    if (commandLogEnabled) {
+      log("glGenBuffers", n, buffers, offset);
+    }
+    generateNames(n, buffers, offset);
+  }
+
+  @Override
+  public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+    record("glGenFramebuffers");
+    if (commandLogEnabled) {
+      log("glGenFramebuffers", n, framebuffers, offset);
+    }
+    generateNames(n, framebuffers, offset);
+  }
+
+  @Override
+  public void glGenQueries(int n, int[] ids, int offset) {
+    record("glGenQueries");
+    if (commandLogEnabled) {
+      log("glGenQueries", n, ids, offset);
+    }
+    generateNames(n, ids, offset);
+  }
+
+  @Override
+  public void glGenTextures(int n, int[] textures, int offset) {
+    record("glGenTextures");
+    if (commandLogEnabled) {
+      log("glGenTextures", n, textures, offset);
+    }
+    generateNames(n, textures, offset);
+  }
+
+  @Override
+  public void glGenVertexArrays(int n, int[] arrays, int offset) {
+    record("glGenVertexArrays");
+    if (commandLogEnabled) {
+      log("glGenVertexArrays", n, arrays, offset);
+    }
+    generateNames(n, arrays, offset);
+  }
+
+  @Override
+  public void glGenerateMipmap(int target) {
+    record("glGenerateMipmap");
+    if (commandLogEnabled) {
+      log("glGenerateMipmap", target);
+    }
+  }
+
+  @Override
+  public int glGetAttribLocation(int program, String name) {
+    record("glGetAttribLocation");
+    if (commandLogEnabled) {
+      log("glGetAttribLocation", program, name);
+    }
+    return location(program, "attribute " + name);
+  }
+
+  @Override
+  public int glGetError() {
+    record("glGetError");
+    if (commandLogEnabled) {
+      log("glGetError");
+    }
+    int error = pendingError;
+    pendingError = GLES20.GL_NO_ERROR;
+    return error;
+  }
+
+  @Override
+  public void glGetIntegerv(int pname, int[] params, int offset) {
+    record("glGetIntegerv");
+    if (commandLogEnabled) {
+      log("glGetIntegerv", pname, params, offset);
+    }
+    Integer value = integers.get(pname);
+    params[offset] = value == null ? 0 : value;
+  }
+
+  @Override
+  public void glGetProgramBinary(
+      int program,
+      int bufSize,
+      int[] length,
+      int lengthOffset,
+      int[] binaryFormat,
+      int binaryFormatOffset,
+      Buffer binary) {
+    record("glGetProgramBinary");
+    if (commandLogEnabled) {
+      log(
+          "glGetProgramBinary",
+          program,
+          bufSize,
+          length,
+          lengthOffset,
+          binaryFormat,
+          binaryFormatOffset,
+          binary);
+    }
+    byte[] bytes = programBinary(program);
+    ((ByteBuffer) binary).put(bytes, 0, Math.min(bytes.length, bufSize));
+    length[lengthOffset] = Math.min(bytes.length, bufSize);
+    binaryFormat[binaryFormatOffset] = programBinaryFormat;
+  }
+
+  @Override
+  public String glGetProgramInfoLog(int program) {
+    record("glGetProgramInfoLog");
+    if (commandLogEnabled) {
+      log("glGetProgramInfoLog", program);
+    }
+    return "";
+  }
+
+  @Override
+  public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+    record("glGetProgramiv");
+    if (commandLogEnabled) {
+      log("glGetProgramiv", program, pname, params, offset);
+    }
+    if (pname == GLES20.GL_LINK_STATUS) {
+      params[offset] = unlinkedPrograms.contains(program) ? GLES20.GL_FALSE : GLES20.GL_TRUE;
+    } else if (pname == GLES30.GL_PROGRAM_BINARY_LENGTH) {
+      params[offset] = programBinary(program).length;
+    } else {
+      params[offset] = 0;
+    }
+  }
+
+  @Override
+  public void glGetQueryObjectuiv(int id, int pname, int[] params, int offset) {
+    record("glGetQueryObjectuiv");
+    if (commandLogEnabled) {
+      log("glGetQueryObjectuiv", id, pname, params, offset);
+    }
+    // Results are always available and measure no time.
+    params[offset] = pname == GLES30.GL_QUERY_RESULT_AVAILABLE ? GLES20.GL_TRUE : 0;
+  }
+
+  @Override
+  public String glGetShaderInfoLog(int shader) {
+    record("glGetShaderInfoLog");
+    if (commandLogEnabled) {
+      log("glGetShaderInfoLog", shader);
+    }
+    return "";
+  }
+
+  @Override
+  public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+    record("glGetShaderiv");
+    if (commandLogEnabled) {
+      log("glGetShaderiv", shader, pname, params, offset);
+    }
+    params[offset] = pname == GLES20.GL_COMPILE_STATUS ? GLES20.GL_TRUE : 0;
+  }
+
+  @Override
+  public String glGetString(int name) {
+    record("glGetString");
+    if (commandLogEnabled) {
+      log("glGetString", name);
+    }
+    switch (name) {
+      case GLES20.GL_VERSION:
+        return version;
+      case GLES20.GL_EXTENSIONS:
+        return extensions;
+      default:
+        return "RecordingGl";
+    }
+  }
+
+  @Override
+  public int glGetUniformBlockIndex(int program, String uniformBlockName) {
+    record("glGetUniformBlockIndex");
+    if (commandLogEnabled) {
+      log("glGetUniformBlockIndex", program, uniformBlockName);
+    }
+    return location(program, "block " + uniformBlockName);
+  }
+
+  @Override
+  public int glGetUniformLocation(int program, String name) {
+    record("glGetUniformLocation");
+    if (commandLogEnabled) {
+      log("glGetUniformLocation", program, name);
+    }
+    return location(program, "uniform " + name);
+  }
+
+  @Override
+  public void glLinkProgram(int program) {
+    record("glLinkProgram");
+    if (commandLogEnabled) {
+      log("glLinkProgram", program);
+    }
+    unlinkedPrograms.remove(program);
+  }
+
+  @Override
+  public Buffer glMapBufferRange(int target, int offset, int length, int access) {
+    record("glMapBufferRange");
+    if (commandLogEnabled) {
+      log("glMapBufferRange", target, offset, length, access);
+    }
+    if (bufferMappingFails) {
+      return null;
+    }
+    if ((access & GLES30.GL_MAP_WRITE_BIT) != 0) {
+      mappedBytes = length;
+    }
+    return ByteBuffer.allocate(length).order(ByteOrder.nativeOrder());
+  }
+
+  @Override
+  public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+    record("glProgramBinary");
+    if (commandLogEnabled) {
+      log("glProgramBinary", program, binaryFormat, binary, length);
+    }
+    if (programBinariesAccepted && binaryFormat != 0 && binaryFormat == programBinaryFormat) {
+      unlinkedPrograms.remove(program);
+    } else {
+      unlinkedPrograms.add(program);
+    }
+  }
+
+  @Override
+  public void glProgramParameteri(int program, int pname, int value) {
+    record("glProgramParameteri");
+    if (commandLogEnabled) {
+      log("glProgramParameteri", program, pname, value);
+    }
+  }
+
+  @Override
+  public void glShaderSource(int shader, String string) {
+    record("glShaderSource");
+    if (commandLogEnabled) {
+      log("glShaderSource", shader, string.length() + " chars");
+    }
+  }
+
+  @Override
+  public void glTexImage2D(
+      int target,
+      int level,
+      int internalformat,
+      int width,
+      int height,
+      int border,
+      int format,
+      int type,
+      Buffer pixels) {
+    record("glTexImage2D");
+    if (commandLogEnabled) {
+      log(
+          "glTexImage2D",
+          target,
+          level,
+          internalformat,
+          width,
+          height,
+          border,
+          format,
+          type,
+          pixels);
+    }
+    if (pixels != null) {
+      bytesUploaded += (long) width * height * pixelSize(format, type);
+    }
+  }
+
+  @Override
+  public void glTexParameteri(int target, int pname, int param) {
+    recordStateChange("glTexParameteri");
+    if (commandLogEnabled) {
+      log("glTexParameteri", target, pname, param);
+    }
+  }
+
+  @Override
+  public void glTexSubImage2D(
+      int target,
+      int level,
+      int xoffset,
+      int yoffset,
+      int width,
+      int height,
+      int format,
+      int type,
+      Buffer pixels) {
+    record("glTexSubImage2D");
+    if (commandLogEnabled) {
+      log(
+          "glTexSubImage2D",
+          target,
+          level,
+          xoffset,
+          yoffset,
+          width,
+          height,
+          format,
+          type,
+          pixels);
+    }
+    // Without pixels, the data comes from a bound pixel unpack buffer and is already counted.
+    if (pixels != null) {
+      bytesUploaded += (long) width * height * pixelSize(format, type);
+    }
+  }
+
+  @Override
+  public void glUniform1f(int location, float x) {
+    recordUniform("glUniform1f");
+    if (commandLogEnabled) {
+      log("glUniform1f", location, x);
+    }
+  }
+
+  @Override
+  public void glUniform1i(int location, int x) {
+    recordUniform("glUniform1i");
+    if (commandLogEnabled) {
+      log("glUniform1i", location, x);
+    }
+  }
+
+  @Override
+  public void glUniform2f(int location, float x, float y) {
+    recordUniform("glUniform2f");
+    if (commandLogEnabled) {
+      log("glUniform2f", location, x, y);
+    }
+  }
+
+  @Override
+  public void glUniform3fv(int location, int count, float[] v, int offset) {
+    recordUniform("glUniform3fv");
+    if (commandLogEnabled) {
+      log("glUniform3fv", location, count, v, offset);
+    }
+  }
+
+  @Override
+  public void glUniform4f(int location, float x, float y, float z, float w) {
+    recordUniform("glUniform4f");
+    if (commandLogEnabled) {
+      log("glUniform4f", location, x, y, z, w);
+    }
+  }
+
+  @Override
+  public void glUniform4fv(int location, int count, float[] v, int offset) {
+    recordUniform("glUniform4fv");
+    if (commandLogEnabled) {
+      log("glUniform4fv", location, count, v, offset);
+    }
+  }
+
+  @Override
+  public void glUniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding) {
+    recordStateChange("glUniformBlockBinding");
+    if (commandLogEnabled) {
+      log("glUniformBlockBinding", program, uniformBlockIndex, uniformBlockBinding);
+    }
+  }
+
+  @Override
+  public void glUniformMatrix3fv(
+      int location, int count, boolean transpose, float[] value, int offset) {
+    recordUniform("glUniformMatrix3fv");
+    if (commandLogEnabled) {
+      log("glUniformMatrix3fv", location, count, transpose, value, offset);
+    }
+  }
+
+  @Override
+  public void glUniformMatrix4fv(
+      int location, int count, boolean transpose, float[] value, int offset) {
+    recordUniform("glUniformMatrix4fv");
+    if (commandLogEnabled) {
+      log("glUniformMatrix4fv", location, count, transpose, value, offset);
+    }
+  }
+
+  @Override
+  public boolean glUnmapBuffer(int target) {
+    record("glUnmapBuffer");
+    if (commandLogEnabled) {
+      log("glUnmapBuffer", target);
+    }
+    // Whatever was written through the mapping is transferred now.
+    bytesUploaded += mappedBytes;
+    mappedBytes = 0;
+    return true;
+  }
+
+  @Override
+  public void glUseProgram(int program) {
+    recordStateChange("glUseProgram");
+    if (commandLogEnabled) {
+      log("glUseProgram", program);
+    }
+  }
+
+  @Override
+  public void glVertexAttribDivisor(int index, int divisor) {
+    recordStateChange("glVertexAttribDivisor");
+    if (commandLogEnabled) {
+      log("glVertexAttribDivisor", index, divisor);
+    }
+  }
+
+  @Override
+  public void glVertexAttribPointer(
+      int indx, int size, int type, boolean normalized, int stride, int offset) {
+    recordStateChange("glVertexAttribPointer");
+    if (commandLogEnabled) {
+      log("glVertexAttribPointer", indx, size, type, normalized, stride, offset);
+    }
+  }
+
+  @Override
+  public void glVertexAttribPointer(
+      int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+    recordStateChange("glVertexAttribPointer");
+    if (commandLogEnabled) {
+      log("glVertexAttribPointer", indx, size, type, normalized, stride, ptr);
+    }
+  }
+
+  @Override
+  public void glViewport(int x, int y, int width, int height) {
+    recordStateChange("glViewport");
+    if (commandLogEnabled) {
+      log("glViewport", x, y, width, height);
+    }
+  }
+
+  private void record(String command) {
+    ++callCount;
+    long[] count = callCounts.get(command);
+    if (count == null) {
+      count = new long[1];
+      callCounts.put(command, count);
+    }
+    ++count[0];
+  }
+
+  private void recordStateChange(String command) {
+    record(command);
+    ++stateChangeCount;
+  }
+
+  private void recordUniform(String command) {
+    record(command);
+    ++uniformUploadCount;
+  }
+
+  /** Adds a call to the command log. Callers check {@link #commandLogEnabled} first. */
+  private void log(String command, Object... arguments) {
+    commands.add(format(command, arguments));
+  }
+
+  private void recordDraw(int instances) {
+    ++drawCallCount;
+    instanceCount += instances;
+  }
+
+  private void generateNames(int n, int[] names, int offset) {
+    for (int i = 0; i < n; ++i) {
+      names[offset + i] = nextName++;
+    }
+  }
+
+  /** The binary a linked program reports, empty without binary support. */
+  private byte[] programBinary(int program) {
+    if (programBinaryFormat == 0 || unlinkedPrograms.contains(program)) {
+      return new byte[0];
+    }
+    return ("RecordingGl program " + program).getBytes(Charset.forName("UTF-8"));
+  }
+
+  private int location(int program, String key) {
+    Map<String, Integer> programLocations = locations.get(program);
+    if (programLocations == null) {
+      programLocations = new HashMap<>();
+      locations.put(program, programLocations);
+    }
+    Integer location = programLocations.get(key);
+    if (location == null) {
+      location = programLocations.size();
+      programLocations.put(key, location);
+    }
+    return location;
+  }
+
+  /** Bytes per pixel of client pixel data in {@code format} and {@code type}. */
+  private static int pixelSize(int format, int type) {
+    switch (type) {
+      case GLES20.GL_UNSIGNED_SHORT_5_6_5:
+      case GLES20.GL_UNSIGNED_SHORT_4_4_4_4:
+      case GLES20.GL_UNSIGNED_SHORT_5_5_5_1:
+        return 2;
+      case GLES20.GL_UNSIGNED_SHORT:
+      case GLES30.GL_HALF_FLOAT:
+        return 2 * componentCount(format);
+      case GLES20.GL_UNSIGNED_INT:
+      case GLES20.GL_FLOAT:
+        return 4 * componentCount(format);
+      default:
+        return componentCount(format);
+    }
+  }
+
+  private static int componentCount(int format) {
+    switch (format) {
+      case GLES20.GL_RGBA:
+        return 4;
+      case GLES20.GL_RGB:
+        return 3;
+      case GLES30.GL_RG:
+      case GLES20.GL_LUMINANCE_ALPHA:
+        return 2;
+      default:
+        return 1;
+    }
+  }
+
+  private static String format(String command, Object[] arguments) {
+    StringBuilder builder = new StringBuilder(command).append('(');
+    for (int i = 0; i < arguments.length; ++i) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      Object argument = arguments[i];
+      if (argument instanceof int[]) {
+        builder.append(Arrays.toString((int[]) argument));
+      } else if (argument instanceof float[]) {
+        builder.append(Arrays.toString((float[]) argument));
+      } else if (argument instanceof Buffer) {
+        builder.append(argument.getClass().getSimpleName());
+      } else {
+        builder.append(argument);
+      }
+    }
+    return builder.append(')').toString();
+  }
+}
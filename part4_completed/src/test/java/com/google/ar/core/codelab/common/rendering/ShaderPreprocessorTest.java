@@ -0,0 +1,159 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class ShaderPreprocessorTest {
+  private final Map<String, String> files = new HashMap<>();
+  private final ShaderPreprocessor preprocessor =
+      new ShaderPreprocessor(
+          filename -> {
+            String source = files.get(filename);
+            if (source == null) {
+              throw new FileNotFoundException(filename);
+            }
+            return source;
+          });
+
+  @Test
+  public void getExpandedSource_expandsNestedIncludes() throws IOException {
+    files.put("main.frag", "#include \"a.glsl\"\nvoid main() {}\n");
+    files.put("a.glsl", "  #include \"b.glsl\"  // trailing comment\r\nfloat a;\n");
+    files.put("b.glsl", "float b;");
+
+    assertEquals(
+        "float b;\nfloat a;\nvoid main() {}\n", preprocessor.getExpandedSource("main.frag"));
+  }
+
+  @Test
+  public void getExpandedSource_readsSharedIncludeOnce() throws IOException {
+    files.put("main.frag", "#include \"a.glsl\"\n#include \"b.glsl\"\n");
+    files.put("a.glsl", "#include \"common.glsl\"\n");
+    files.put("b.glsl", "#include \"common.glsl\"\n");
+    files.put("common.glsl", "float c;\n");
+
+    preprocessor.getExpandedSource("main.frag");
+    preprocessor.getExpandedSource("main.frag");
+
+    assertEquals(4, preprocessor.getLoadCount());
+  }
+
+  @Test
+  public void getExpandedSource_rejectsSelfInclude() {
+    files.put("a.glsl", "#include \"a.glsl\"\n");
+    assertCycle("a.glsl");
+  }
+
+  @Test
+  public void getExpandedSource_rejectsIndirectCycle() throws IOException {
+    files.put("main.frag", "#include \"a.glsl\"\n");
+    files.put("a.glsl", "#include \"b.glsl\"\n");
+    files.put("b.glsl", "#include \"a.glsl\"\n");
+    assertCycle("main.frag");
+
+    // The failed expansion leaves nothing behind: fixing the cycle makes the file load.
+    files.put("b.glsl", "float b;\n");
+    assertEquals("float b;\n", preprocessor.getExpandedSource("main.frag"));
+  }
+
+  @Test
+  public void parseInclude_ignoresOtherLines() {
+    assertEquals("x.glsl", ShaderPreprocessor.parseInclude("#include \"x.glsl\""));
+    assertNull(ShaderPreprocessor.parseInclude("#include <x.glsl>"));
+    assertNull(ShaderPreprocessor.parseInclude("#include \"x.glsl"));
+    assertNull(ShaderPreprocessor.parseInclude("// #include \"x.glsl\""));
+  }
+
+  @Test
+  public void insertDefines_sortsByName() {
+    Map<String, Integer> defines = new LinkedHashMap<>();
+    defines.put("ZED", 2);
+    defines.put("ALPHA", 1);
+    defines.put("MIDDLE", 0);
+
+    assertEquals(
+        "#define ALPHA 1\n#define MIDDLE 0\n#define ZED 2\nvoid main() {}\n",
+        ShaderPreprocessor.insertDefines("void main() {}\n", defines));
+  }
+
+  @Test
+  public void insertDefines_keepsVersionFirst() {
+    Map<String, Integer> defines = new HashMap<>();
+    defines.put("A", 1);
+
+    assertEquals(
+        "#version 300 es\n#define A 1\nvoid main() {}\n",
+        ShaderPreprocessor.insertDefines("#version 300 es\nvoid main() {}\n", defines));
+    assertEquals(
+        "#version 100\n#define A 1\n", ShaderPreprocessor.insertDefines("#version 100", defines));
+  }
+
+  @Test
+  public void insertDefines_addsVersionForGlsl300Es() {
+    Map<String, Integer> defines = new HashMap<>();
+    defines.put(ShaderPreprocessor.GLSL_300_ES, 1);
+    assertEquals(
+        "#version 300 es\n#define GLSL_300_ES 1\nvoid main() {}\n",
+        ShaderPreprocessor.insertDefines("void main() {}\n", defines));
+
+    // An existing directive is kept rather than doubled.
+    assertEquals(
+        "#version 310 es\n#define GLSL_300_ES 1\n",
+        ShaderPreprocessor.insertDefines("#version 310 es\n", defines));
+
+    defines.put(ShaderPreprocessor.GLSL_300_ES, 0);
+    assertEquals(
+        "#define GLSL_300_ES 0\nvoid main() {}\n",
+        ShaderPreprocessor.insertDefines("void main() {}\n", defines));
+  }
+
+  @Test
+  public void insertDefines_withoutDefinesReturnsSource() {
+    assertEquals("x\n", ShaderPreprocessor.insertDefines("x\n", null));
+    assertEquals("x\n", ShaderPreprocessor.insertDefines("x\n", new HashMap<>()));
+  }
+
+  @Test
+  public void definesKey_ignoresMapOrder() {
+    Map<String, Integer> first = new LinkedHashMap<>();
+    first.put("B", 2);
+    first.put("A", 1);
+    Map<String, Integer> second = new LinkedHashMap<>();
+    second.put("A", 1);
+    second.put("B", 2);
+
+    assertEquals("A=1;B=2;", ShaderPreprocessor.definesKey(first));
+    assertEquals(ShaderPreprocessor.definesKey(first), ShaderPreprocessor.definesKey(second));
+    assertEquals("", ShaderPreprocessor.definesKey(null));
+  }
+
+  @Test
+  public void getSource_appliesDefinesToExpandedSource() throws IOException {
+    files.put("main.vert", "#include \"common.glsl\"\nvoid main() {}\n");
+    files.put("common.glsl", "float c;\n");
+    Map<String, Integer> defines = new HashMap<>();
+    defines.put(ShaderPreprocessor.GLSL_300_ES, 1);
+
+    assertEquals(
+        "#version 300 es\n#define GLSL_300_ES 1\nfloat c;\nvoid main() {}\n",
+        preprocessor.getSource("main.vert", defines));
+  }
+
+  private void assertCycle(String filename) {
+    try {
+      preprocessor.getExpandedSource(filename);
+      fail("Expected a recursive include error");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Recursive shader include"));
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.google.ar.core.codelab.common.rendering;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/** Opens the app's assets from {@code src/main/assets}; unit tests run in the module directory. */
+public final class TestAssets {
+  private static final File ASSET_DIRECTORY = new File("src/main/assets");
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private TestAssets() {}
+
+  static File file(String assetName) throws FileNotFoundException {
+    File file = new File(ASSET_DIRECTORY, assetName);
+    if (!file.isFile()) {
+      throw new FileNotFoundException(file.getAbsolutePath());
+    }
+    return file;
+  }
+
+  static InputStream open(String assetName) throws IOException {
+    return new FileInputStream(file(assetName));
+  }
+
+  static MeshData readObj(String assetName) throws IOException {
+    try (InputStream in = open(assetName)) {
+      return MeshData.readObj(in);
+    }
+  }
+
+  /** Returns a shader library of its own that reads the shaders from the assets. */
+  static ShaderLibrary shaderLibrary() {
+    return new ShaderLibrary(
+        new ShaderPreprocessor(
+            filename -> new String(Files.readAllBytes(file(filename).toPath()), UTF_8)));
+  }
+
+  /**
+   * Uploads a one-level 8x8 ETC1 texture, which needs {@code GL_OES_compressed_ETC1_RGB8_texture}
+   * on OpenGL ES 2.0, for renderers that only need a texture name to bind.
+   */
+  static GpuTexture uploadTexture(GlCapabilities capabilities) throws IOException {
+    KtxTexture ktx =
+        KtxTexture.parse(
+            ByteBuffer.wrap(
+                KtxTextureTest.ktx(ByteOrder.LITTLE_ENDIAN, KtxTexture.ETC1_RGB8, 8, 8, 1)));
+    return GpuTexture.upload("diffuse", ktx, capabilities);
+  }
+
+  /**
+   * Returns an {@link ObjectRenderer} drawing {@code models/andy.obj} with the current {@link
+   * GlBackend}, for tests of other packages that draw real frames.
+   */
+  public static ObjectRenderer createObjectRenderer(GlCapabilities capabilities)
+      throws IOException {
+    GpuMesh mesh = GpuMesh.upload("andy", readObj("models/andy.obj"), capabilities);
+    ObjectRenderer renderer = new ObjectRenderer();
+    renderer.createOnGlThread(
+        shaderLibrary(), new GpuMesh[] {mesh}, uploadTexture(capabilities), capabilities);
+    return renderer;
+  }
+
+  /**
+   * Returns an {@link OcclusionObjectRenderer} drawing {@code models/andy.obj} with the current
+   * {@link GlBackend}; the caller sets the depth texture, viewport and UV transform.
+   */
+  public static OcclusionObjectRenderer createOcclusionObjectRenderer(
+      GlCapabilities capabilities) throws IOException {
+    GpuMesh mesh = GpuMesh.upload("andy", readObj("models/andy.obj"), capabilities);
+    OcclusionObjectRenderer renderer = new OcclusionObjectRenderer();
+    renderer.createOnGlThread(
+        shaderLibrary(), new GpuMesh[] {mesh}, uploadTexture(capabilities), capabilities);
+    return renderer;
+  }
+
+  /** Returns a resource cache of its own, bound to the current {@link GlBackend}. */
+  public static GpuResourceCache createResourceCache() {
+    return new GpuResourceCache(
+        new GpuResourceCache.AssetSource() {
+          @Override
+          public InputStream open(String assetName) throws IOException {
+            return TestAssets.open(assetName);
+          }
+
+          @Override
+          public MeshData loadMesh(String objAssetName, int lodLevel) throws IOException {
+            return readObj(objAssetName);
+          }
+        });
+  }
+}
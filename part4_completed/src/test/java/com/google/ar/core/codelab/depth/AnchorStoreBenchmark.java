@@ -0,0 +1,103 @@
+package com.google.ar.core.codelab.depth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 10.000 anchor ile bir karenin poz güncellemesini ve dolu depoya anchor eklemeyi, {@link
+ * AnchorStore}'un yerini aldığı {@code ArrayList} ve anchor başına {@code float[16]} düzeniyle
+ * karşılaştırır.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnchorStoreBenchmark {
+  private static final int ANCHOR_COUNT = 10_000;
+
+  /** Takip edilen anchor oranı, yüzde. */
+  @Param({"100", "50"})
+  public int trackedPercent;
+
+  /** Pozu sabit olan sahte anchor. */
+  private static final class FakeAnchor {
+    final float[] pose = new float[AnchorStore.MATRIX_SIZE];
+    boolean tracking;
+  }
+
+  private static final AnchorStore.PoseSource<FakeAnchor> POSE_SOURCE =
+      (anchor, matrices, offset) -> {
+        if (!anchor.tracking) {
+          return false;
+        }
+        System.arraycopy(anchor.pose, 0, matrices, offset, AnchorStore.MATRIX_SIZE);
+        return true;
+      };
+
+  private final AnchorStore<FakeAnchor> store = new AnchorStore<>(ANCHOR_COUNT);
+  private final List<FakeAnchor> list = new ArrayList<>();
+  private final float[] anchorMatrix = new float[AnchorStore.MATRIX_SIZE];
+  private FakeAnchor extra;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < ANCHOR_COUNT; ++i) {
+      FakeAnchor anchor = new FakeAnchor();
+      anchor.pose[0] = i;
+      anchor.tracking = i % 100 < trackedPercent;
+      store.add(anchor);
+      list.add(anchor);
+    }
+    extra = new FakeAnchor();
+  }
+
+  @Benchmark
+  public int storeUpdatePoses() {
+    return store.updatePoses(POSE_SOURCE);
+  }
+
+  /**
+   * Eski döngü: her anchor'ın pozu tek bir ortak matrise okunur ve hemen tüketilir. Matrisler
+   * kareler arasında tutulmadığı için örnekli tek bir çizim çağrısına verilemez.
+   */
+  @Benchmark
+  public float listUpdatePoses() {
+    float sum = 0;
+    for (FakeAnchor anchor : list) {
+      if (anchor.tracking) {
+        System.arraycopy(anchor.pose, 0, anchorMatrix, 0, AnchorStore.MATRIX_SIZE);
+        sum += anchorMatrix[0];
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public FakeAnchor storeAddWhenFull() {
+    FakeAnchor evicted = store.add(extra);
+    extra = evicted;
+    return evicted;
+  }
+
+  @Benchmark
+  public FakeAnchor listAddWhenFull() {
+    FakeAnchor evicted = list.remove(0);
+    list.add(extra);
+    extra = evicted;
+    return evicted;
+  }
+}
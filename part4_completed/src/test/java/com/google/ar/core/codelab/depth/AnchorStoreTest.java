@@ -0,0 +1,171 @@
+package com.google.ar.core.codelab.depth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class AnchorStoreTest {
+  /** Takip durumu ve pozu testte belirlenen sahte anchor. */
+  private static final class FakeAnchor {
+    final int id;
+    boolean tracking = true;
+
+    FakeAnchor(int id) {
+      this.id = id;
+    }
+  }
+
+  /** Anchor kimliğini matrisin ilk ve son elemanına yazar. */
+  private static final AnchorStore.PoseSource<FakeAnchor> POSE_SOURCE =
+      (anchor, matrices, offset) -> {
+        if (!anchor.tracking) {
+          return false;
+        }
+        matrices[offset] = anchor.id;
+        matrices[offset + AnchorStore.MATRIX_SIZE - 1] = anchor.id;
+        return true;
+      };
+
+  @Test
+  public void add_evictsOldestOnceFull() {
+    AnchorStore<FakeAnchor> store = new AnchorStore<>(3);
+    List<FakeAnchor> anchors = anchors(8);
+    List<Integer> evicted = new ArrayList<>();
+    for (FakeAnchor anchor : anchors) {
+      FakeAnchor removed = store.add(anchor);
+      if (removed != null) {
+        evicted.add(removed.id);
+      }
+    }
+
+    assertEquals(3, store.size());
+    assertEquals(list(0, 1, 2, 3, 4), evicted);
+    // Halka birkaç kez döndükten sonra da sıra eskiden yeniye korunur.
+    assertEquals(5, store.get(0).id);
+    assertEquals(6, store.get(1).id);
+    assertEquals(7, store.get(2).id);
+  }
+
+  @Test
+  public void add_returnsNullWhileRoomLeft() {
+    AnchorStore<FakeAnchor> store = new AnchorStore<>(2);
+    assertNull(store.add(new FakeAnchor(0)));
+    assertNull(store.add(new FakeAnchor(1)));
+    assertEquals(0, store.add(new FakeAnchor(2)).id);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void get_rejectsIndexPastSize() {
+    AnchorStore<FakeAnchor> store = new AnchorStore<>(4);
+    store.add(new FakeAnchor(0));
+    store.get(1);
+  }
+
+  @Test
+  public void updatePoses_listsOnlyTrackedSlotsOldestFirst() {
+    AnchorStore<FakeAnchor> store = new AnchorStore<>(4);
+    List<FakeAnchor> anchors = anchors(6);
+    for (FakeAnchor anchor : anchors) {
+      store.add(anchor);
+    }
+    // Depoda 2, 3, 4, 5 kalır; 3 ve 5 takip edilmiyor.
+    anchors.get(3).tracking = false;
+    anchors.get(5).tracking = false;
+
+    assertEquals(2, store.updatePoses(POSE_SOURCE));
+    assertEquals(2, store.getTrackedCount());
+    assertEquals(list(2, 4), trackedIds(store));
+    for (int i = 0; i < store.getTrackedCount(); ++i) {
+      int slot = store.getTrackedSlot(i);
+      assertTrue(store.isTracking(slot));
+      assertEquals(
+          store.getPoseMatrices()[slot * AnchorStore.MATRIX_SIZE],
+          store.getPoseMatrices()[slot * AnchorStore.MATRIX_SIZE + AnchorStore.MATRIX_SIZE - 1],
+          0.0f);
+    }
+
+    // Takip geri gelince liste yeniden sıkıştırılır.
+    anchors.get(3).tracking = true;
+    anchors.get(2).tracking = false;
+    assertEquals(2, store.updatePoses(POSE_SOURCE));
+    assertEquals(list(3, 4), trackedIds(store));
+  }
+
+  @Test
+  public void updatePoses_newAnchorIsUntrackedUntilUpdated() {
+    AnchorStore<FakeAnchor> store = new AnchorStore<>(1);
+    store.add(new FakeAnchor(0));
+    store.updatePoses(POSE_SOURCE);
+    int slot = store.getTrackedSlot(0);
+    store.add(new FakeAnchor(1));
+    assertFalse(store.isTracking(slot));
+  }
+
+  @Test
+  public void clear_forgetsAnchorsAndTracking() {
+    AnchorStore<FakeAnchor> store = new AnchorStore<>(3);
+    for (FakeAnchor anchor : anchors(5)) {
+      store.add(anchor);
+    }
+    store.updatePoses(POSE_SOURCE);
+    store.clear();
+
+    assertEquals(0, store.size());
+    assertEquals(0, store.getTrackedCount());
+    for (int slot = 0; slot < store.getCapacity(); ++slot) {
+      assertFalse(store.isTracking(slot));
+    }
+    assertEquals(0, store.updatePoses(POSE_SOURCE));
+
+    // Temizlenen depo yeniden baştan dolar.
+    assertNull(store.add(new FakeAnchor(10)));
+    assertEquals(1, store.updatePoses(POSE_SOURCE));
+    assertEquals(10, store.get(0).id);
+  }
+
+  @Test
+  public void updatePoses_tracksEveryAnchorOfFullStore() {
+    AnchorStore<FakeAnchor> store = new AnchorStore<>(1000);
+    for (FakeAnchor anchor : anchors(2500)) {
+      store.add(anchor);
+    }
+    assertEquals(1000, store.updatePoses(POSE_SOURCE));
+    Set<Integer> slots = new HashSet<>();
+    for (int i = 0; i < store.getTrackedCount(); ++i) {
+      slots.add(store.getTrackedSlot(i));
+    }
+    assertEquals(1000, slots.size());
+    assertEquals(1500, store.get(0).id);
+  }
+
+  private static List<Integer> trackedIds(AnchorStore<FakeAnchor> store) {
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < store.getTrackedCount(); ++i) {
+      ids.add((int) store.getPoseMatrices()[store.getTrackedSlot(i) * AnchorStore.MATRIX_SIZE]);
+    }
+    return ids;
+  }
+
+  private static List<FakeAnchor> anchors(int count) {
+    List<FakeAnchor> anchors = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      anchors.add(new FakeAnchor(i));
+    }
+    return anchors;
+  }
+
+  private static List<Integer> list(Integer... values) {
+    List<Integer> list = new ArrayList<>();
+    for (Integer value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+}
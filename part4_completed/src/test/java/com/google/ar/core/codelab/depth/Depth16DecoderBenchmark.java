@@ -0,0 +1,73 @@
+package com.google.ar.core.codelab.depth;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bir 160x90 DEPTH16 düzleminin (ARCore'un tipik derinlik çözünürlüğü) {@link Depth16Decoder} ile
+ * kopyalanmasını, piksel başına {@code getShort} okuyan eski yolla karşılaştırır.
+ *
+ * <p>Bir işlem bir pikseldir; sonuçlar saniyede çözülen piksel sayısıdır (ops/s).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(Depth16DecoderBenchmark.WIDTH * Depth16DecoderBenchmark.HEIGHT)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Depth16DecoderBenchmark {
+  static final int WIDTH = 160;
+  static final int HEIGHT = 90;
+
+  /** Satır sonundaki dolgu baytları. 0 ise düzlem sıkıca paketlenmiştir. */
+  @Param({"0", "64"})
+  public int rowPadding;
+
+  private ByteBuffer plane;
+  private int rowStride;
+  private final DepthFrame frame = new DepthFrame();
+
+  @Setup
+  public void setUp() {
+    rowStride = WIDTH * 2 + rowPadding;
+    plane = ByteBuffer.allocateDirect(HEIGHT * rowStride).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i + 1 < plane.capacity(); i += 2) {
+      plane.putShort(i, (short) (i * 31));
+    }
+  }
+
+  @Benchmark
+  public DepthFrame bulk() {
+    Depth16Decoder.decode(plane, WIDTH, HEIGHT, rowStride, 2, 1L, true, frame);
+    return frame;
+  }
+
+  @Benchmark
+  public DepthFrame perPixel() {
+    frame.reset(WIDTH, HEIGHT, 1L);
+    short[] dst = frame.getData();
+    ByteBuffer src = plane.order(ByteOrder.LITTLE_ENDIAN);
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        int byteIndex = x * 2 + y * rowStride;
+        short depth = src.getShort(byteIndex);
+        dst[y * WIDTH + x] = (short) (depth & Depth16Decoder.DEPTH16_RANGE_MASK);
+      }
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,128 @@
+package com.google.ar.core.codelab.depth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+public class Depth16DecoderTest {
+  private static final int WIDTH = 7;
+  private static final int HEIGHT = 5;
+
+  @Test
+  public void decode_packedRows() {
+    assertDecodes(WIDTH * 2, 2);
+  }
+
+  @Test
+  public void decode_paddedRowStride() {
+    assertDecodes(WIDTH * 2 + 6, 2);
+  }
+
+  @Test
+  public void decode_sparsePixelStride() {
+    assertDecodes(WIDTH * 4, 4);
+  }
+
+  @Test
+  public void decode_sparsePixelStrideWithPaddedRows() {
+    assertDecodes(WIDTH * 6 + 2, 6);
+  }
+
+  @Test
+  public void decode_lastRowWithoutPadding() {
+    // Bazı sürücüler son satırın dolgusunu tampona koymaz.
+    int rowStride = WIDTH * 2 + 8;
+    ByteBuffer plane = plane(rowStride, 2);
+    plane.limit((HEIGHT - 1) * rowStride + WIDTH * 2);
+    DepthFrame frame = new DepthFrame();
+    Depth16Decoder.decode(plane, WIDTH, HEIGHT, rowStride, 2, 1L, false, frame);
+    assertPixels(frame, false);
+  }
+
+  @Test
+  public void decode_stripsConfidenceBits() {
+    DepthFrame frame = new DepthFrame();
+    int rowStride = WIDTH * 2 + 4;
+    Depth16Decoder.decode(plane(rowStride, 2), WIDTH, HEIGHT, rowStride, 2, 1L, true, frame);
+    assertPixels(frame, true);
+  }
+
+  @Test
+  public void decode_leavesPlanePositionAndLimit() {
+    ByteBuffer plane = plane(WIDTH * 2, 2);
+    plane.position(0);
+    int limit = plane.limit();
+    Depth16Decoder.decode(plane, WIDTH, HEIGHT, WIDTH * 2, 2, 1L, false, new DepthFrame());
+    assertEquals(0, plane.position());
+    assertEquals(limit, plane.limit());
+  }
+
+  @Test
+  public void decode_reusesFrameArray() {
+    DepthFrame frame = new DepthFrame();
+    Depth16Decoder.decode(plane(WIDTH * 2, 2), WIDTH, HEIGHT, WIDTH * 2, 2, 1L, false, frame);
+    short[] data = frame.getData();
+    Depth16Decoder.decode(plane(WIDTH * 4, 4), WIDTH, HEIGHT, WIDTH * 4, 4, 2L, false, frame);
+    assertSame(data, frame.getData());
+    assertEquals(2L, frame.getTimestamp());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_rejectsShortPlane() {
+    ByteBuffer plane = plane(WIDTH * 2, 2);
+    plane.limit(plane.limit() - 1);
+    Depth16Decoder.decode(plane, WIDTH, HEIGHT, WIDTH * 2, 2, 1L, false, new DepthFrame());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_rejectsRowStrideBelowWidth() {
+    Depth16Decoder.decode(
+        plane(WIDTH * 2, 2), WIDTH, HEIGHT, WIDTH * 2 - 2, 2, 1L, false, new DepthFrame());
+  }
+
+  private static void assertDecodes(int rowStride, int pixelStride) {
+    DepthFrame frame = new DepthFrame();
+    Depth16Decoder.decode(
+        plane(rowStride, pixelStride), WIDTH, HEIGHT, rowStride, pixelStride, 1L, false, frame);
+    assertEquals(WIDTH, frame.getWidth());
+    assertEquals(HEIGHT, frame.getHeight());
+    assertPixels(frame, false);
+  }
+
+  private static void assertPixels(DepthFrame frame, boolean stripped) {
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        int expected = pixel(x, y) & 0xFFFF;
+        if (stripped) {
+          expected &= Depth16Decoder.DEPTH16_RANGE_MASK;
+        }
+        assertEquals("(" + x + ", " + y + ")", expected, frame.getDepthMillimeters(x, y));
+      }
+    }
+  }
+
+  /**
+   * Her pikseli kendi koordinatlarını ve üst bitlerde bir güven değerini taşıyan bir düzlem kurar.
+   * Dolgu baytları 0xEE ile doldurulur ki yanlışlıkla okunduklarında fark edilsin.
+   */
+  private static ByteBuffer plane(int rowStride, int pixelStride) {
+    ByteBuffer plane =
+        ByteBuffer.allocateDirect(HEIGHT * rowStride).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < plane.capacity(); ++i) {
+      plane.put(i, (byte) 0xEE);
+    }
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        plane.putShort(y * rowStride + x * pixelStride, pixel(x, y));
+      }
+    }
+    return plane;
+  }
+
+  private static short pixel(int x, int y) {
+    return (short) ((((x + y) & 7) << 13) | (y * 100 + x));
+  }
+}
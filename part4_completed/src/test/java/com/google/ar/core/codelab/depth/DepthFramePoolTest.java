@@ -0,0 +1,47 @@
+package com.google.ar.core.codelab.depth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class DepthFramePoolTest {
+  @Test
+  public void acquire_returnsEachFrameOnceUntilReleased() {
+    DepthFramePool pool = new DepthFramePool(2);
+    DepthFrame first = pool.acquire();
+    DepthFrame second = pool.acquire();
+
+    assertNotNull(first);
+    assertNotNull(second);
+    assertNotSame(first, second);
+    assertNull(pool.acquire());
+    assertEquals(0, pool.getAvailableCount());
+
+    pool.release(second);
+    assertSame(second, pool.acquire());
+  }
+
+  @Test
+  public void release_null_isIgnored() {
+    DepthFramePool pool = new DepthFramePool(1);
+    pool.release(null);
+    assertEquals(1, pool.getAvailableCount());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void release_twice_throws() {
+    DepthFramePool pool = new DepthFramePool(1);
+    DepthFrame frame = pool.acquire();
+    pool.release(frame);
+    pool.release(frame);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsEmptyPool() {
+    new DepthFramePool(0);
+  }
+}
@@ -0,0 +1,323 @@
+package com.google.ar.core.codelab.depth;
+
+import static android.opengl.GLES20.GL_TEXTURE_2D;
+import static android.opengl.GLES30.GL_PIXEL_UNPACK_BUFFER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.codelab.common.rendering.GlBackend;
+import com.google.ar.core.codelab.common.rendering.GlCapabilities;
+import com.google.ar.core.codelab.common.rendering.RecordingGl;
+import com.google.ar.core.codelab.depth.DepthTextureHandler.UploadMode;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class DepthTextureHandlerTest {
+  private static final int WIDTH = 5;
+  private static final int HEIGHT = 3;
+  private static final int ROW_BYTES = WIDTH * 2;
+  private static final int DEPTH_WIDTH = 160;
+  private static final int DEPTH_HEIGHT = 90;
+
+  private RecordingGl gl;
+
+  @Test
+  public void copyRows_dropsRowPadding() {
+    int rowStride = ROW_BYTES + 6;
+    ByteBuffer plane = plane(rowStride, HEIGHT * rowStride);
+    ByteBuffer dst = ByteBuffer.allocate(ROW_BYTES * HEIGHT);
+    DepthTextureHandler.copyRows(plane, ROW_BYTES, rowStride, HEIGHT, dst);
+    assertEquals(dst.capacity(), dst.position());
+    assertPacked(dst);
+    assertEquals(0, plane.position());
+    assertEquals(HEIGHT * rowStride, plane.limit());
+  }
+
+  @Test
+  public void copyRows_lastRowWithoutPadding() {
+    int rowStride = ROW_BYTES + 6;
+    ByteBuffer plane = plane(rowStride, (HEIGHT - 1) * rowStride + ROW_BYTES);
+    assertTrue(DepthTextureHandler.isUploadable(plane, WIDTH, HEIGHT, rowStride, 2));
+    ByteBuffer dst = ByteBuffer.allocate(ROW_BYTES * HEIGHT);
+    DepthTextureHandler.copyRows(plane, ROW_BYTES, rowStride, HEIGHT, dst);
+    assertPacked(dst);
+  }
+
+  @Test
+  public void copyRows_honorsPlanePosition() {
+    ByteBuffer backing = ByteBuffer.allocate(4 + HEIGHT * ROW_BYTES);
+    backing.position(4);
+    ByteBuffer plane = backing.slice();
+    fill(plane, ROW_BYTES);
+    backing.position(4);
+    ByteBuffer dst = ByteBuffer.allocate(ROW_BYTES * HEIGHT);
+    DepthTextureHandler.copyRows(backing, ROW_BYTES, ROW_BYTES, HEIGHT, dst);
+    assertPacked(dst);
+  }
+
+  @Test
+  public void isUploadable_rejectsShortPlaneInsteadOfThrowing() {
+    int rowStride = ROW_BYTES + 6;
+    ByteBuffer plane = ByteBuffer.allocate((HEIGHT - 1) * rowStride + ROW_BYTES - 1);
+    assertFalse(DepthTextureHandler.isUploadable(plane, WIDTH, HEIGHT, rowStride, 2));
+  }
+
+  @Test
+  public void isUploadable_rejectsSparsePixelsAndBadStrides() {
+    ByteBuffer plane = ByteBuffer.allocate(1024);
+    assertFalse(DepthTextureHandler.isUploadable(plane, WIDTH, HEIGHT, ROW_BYTES * 2, 4));
+    assertFalse(DepthTextureHandler.isUploadable(plane, WIDTH, HEIGHT, ROW_BYTES - 2, 2));
+    assertFalse(DepthTextureHandler.isUploadable(plane, 0, HEIGHT, ROW_BYTES, 2));
+    assertTrue(DepthTextureHandler.isUploadable(plane, WIDTH, HEIGHT, ROW_BYTES, 2));
+  }
+
+  @Test
+  public void pixelBuffer_alternatesSlotsAndSamplesThePreviousUpload() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 3.0", UploadMode.PIXEL_BUFFER);
+    assertEquals(UploadMode.PIXEL_BUFFER, handler.getUploadMode());
+
+    Upload first = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 100);
+    // İlk yüklemede önceki yuva yok; yeni yazılan doku örneklenir.
+    assertEquals(first.texture, handler.getDepthTexture());
+    assertEquals(100, handler.getSampledDepthTimestamp());
+
+    Upload second = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 200);
+    assertNotEquals(first.pixelBuffer, second.pixelBuffer);
+    assertNotEquals(first.texture, second.texture);
+    assertEquals(first.texture, handler.getDepthTexture());
+    assertEquals(100, handler.getSampledDepthTimestamp());
+
+    Upload third = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 300);
+    assertEquals(first.pixelBuffer, third.pixelBuffer);
+    assertEquals(first.texture, third.texture);
+    assertEquals(second.texture, handler.getDepthTexture());
+    assertEquals(200, handler.getSampledDepthTimestamp());
+    assertEquals(300, handler.getLastDepthTimestamp());
+
+    // Yalnızca ilk kare bellek ayırır; sonrakiler mevcut dokuların üzerine yazar.
+    assertEquals(1, handler.getAllocationCount());
+    assertEquals(0, gl.getCallCount("glTexImage2D"));
+    assertEquals(1, gl.getCallCount("glMapBufferRange"));
+    assertEquals(1, gl.getCallCount("glUnmapBuffer"));
+    assertEquals(DEPTH_WIDTH * DEPTH_HEIGHT * 2, gl.getBytesUploaded());
+  }
+
+  @Test
+  public void pixelBuffer_sameTimestamp_keepsSamplingTheSameSlot() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 3.0", UploadMode.PIXEL_BUFFER);
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 100);
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 200);
+    int sampled = handler.getDepthTexture();
+    gl.reset();
+
+    assertFalse(handler.update(
+        depthPlane(DEPTH_WIDTH, DEPTH_HEIGHT), DEPTH_WIDTH, DEPTH_HEIGHT, DEPTH_WIDTH * 2, 2, 200));
+
+    assertEquals(0, gl.getCallCount());
+    assertEquals(sampled, handler.getDepthTexture());
+    assertEquals(1, handler.getSkippedUploadCount());
+  }
+
+  @Test
+  public void pixelBuffer_resize_reallocatesAndRestartsTheRing() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 3.0", UploadMode.PIXEL_BUFFER);
+    Upload first = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 100);
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 200);
+
+    Upload resized = sendFrame(handler, 2 * DEPTH_WIDTH, 2 * DEPTH_HEIGHT, 300);
+
+    // Her yuvanın dokusu ve PBO'su yeni boyuta göre yeniden ayrılır.
+    assertEquals(2, handler.getAllocationCount());
+    assertEquals(2, gl.getCallCount("glTexImage2D"));
+    assertEquals(2, gl.getCallCount("glBufferData"));
+    // Halka baştan başlar: eski boyuttaki dokular örneklenmez.
+    assertEquals(first.pixelBuffer, resized.pixelBuffer);
+    assertEquals(resized.texture, handler.getDepthTexture());
+    assertEquals(300, handler.getSampledDepthTimestamp());
+    assertEquals(2 * DEPTH_WIDTH, handler.getDepthWidth());
+  }
+
+  @Test
+  public void pixelBuffer_mappingFails_uploadsTheSlotDirectly() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 3.0", UploadMode.PIXEL_BUFFER);
+    Upload first = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 100);
+    gl.setBufferMappingFails(true);
+
+    Upload fallback = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 200);
+
+    // PBO çözülmüş olarak, pikseller istemci belleğinden sıradaki yuvanın dokusuna yüklenir.
+    assertEquals(0, fallback.pixelBuffer);
+    assertNotEquals(first.texture, fallback.texture);
+    assertEquals(0, gl.getCallCount("glUnmapBuffer"));
+    assertEquals(DEPTH_WIDTH * DEPTH_HEIGHT * 2, gl.getBytesUploaded());
+    assertEquals(first.texture, handler.getDepthTexture());
+    assertEquals(2, handler.getUploadCount());
+
+    gl.setBufferMappingFails(false);
+    Upload recovered = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 300);
+    assertEquals(first.texture, recovered.texture);
+    assertEquals(fallback.texture, handler.getDepthTexture());
+  }
+
+  @Test
+  public void pixelBuffer_withoutEs3_fallsBackToDirect() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 2.0", UploadMode.PIXEL_BUFFER);
+    assertEquals(UploadMode.DIRECT, handler.getUploadMode());
+
+    Upload first = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 100);
+    assertEquals(1, gl.getCallCount("glTexImage2D"));
+    Upload second = sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 200);
+
+    assertEquals(0, gl.getCallCount("glMapBufferRange"));
+    assertEquals(first.texture, second.texture);
+    assertEquals(second.texture, handler.getDepthTexture());
+    assertEquals(200, handler.getSampledDepthTimestamp());
+  }
+
+  @Test
+  public void cpuDepth_disabled_keepsNoCopy() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 2.0", UploadMode.DIRECT);
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 100);
+
+    assertNull(handler.acquireDepthFrame());
+  }
+
+  @Test
+  public void cpuDepth_copiesEachNewImageOnce() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 2.0", UploadMode.DIRECT);
+    handler.setCpuDepthEnabled(true);
+    int rowStride = ROW_BYTES + 6;
+
+    ByteBuffer plane = plane(rowStride, HEIGHT * rowStride);
+
+    assertTrue(handler.update(plane, WIDTH, HEIGHT, rowStride, 2, 100));
+    DepthFrame frame = handler.acquireDepthFrame();
+
+    assertEquals(100, frame.getTimestamp());
+    assertEquals(WIDTH, frame.getWidth());
+    assertEquals(HEIGHT, frame.getHeight());
+    // Küçük sonlu (little-endian) düzlemde (y, x) baytları y + 256 * x milimetre okunur; satır
+    // dolgusu atılır.
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        assertEquals(y + 256 * x, frame.getDepthMillimeters(x, y));
+      }
+    }
+    // Aynı görüntünün kopyası bir kez verilir.
+    assertNull(handler.acquireDepthFrame());
+    handler.releaseDepthFrame(frame);
+  }
+
+  @Test
+  public void cpuDepth_heldFramesAreNotOverwritten() {
+    DepthTextureHandler handler = createHandler("OpenGL ES 2.0", UploadMode.DIRECT);
+    handler.setCpuDepthEnabled(true);
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 100);
+    DepthFrame first = handler.acquireDepthFrame();
+
+    // Alınmayan kopyanın yerini yenisi alır.
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 200);
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 300);
+    DepthFrame second = handler.acquireDepthFrame();
+    assertNotSame(first, second);
+    assertEquals(300, second.getTimestamp());
+    assertEquals(100, first.getTimestamp());
+
+    // Tüketici iki kareyi de tutarken görüntü GPU'ya yüklenir ama kopyalanmaz.
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 400);
+    assertNull(handler.acquireDepthFrame());
+    assertEquals(1, handler.getDroppedCpuDepthCount());
+    assertEquals(400, handler.getSampledDepthTimestamp());
+
+    handler.releaseDepthFrame(first);
+    sendFrame(handler, DEPTH_WIDTH, DEPTH_HEIGHT, 500);
+    assertEquals(500, handler.acquireDepthFrame().getTimestamp());
+  }
+
+  /** {@code version} bildiren bir {@link RecordingGl} kurar ve işleyiciyi onunla oluşturur. */
+  private DepthTextureHandler createHandler(String version, UploadMode mode) {
+    gl = new RecordingGl(version, "");
+    gl.setCommandLogEnabled(true);
+    GlBackend.set(gl);
+    DepthTextureHandler handler = new DepthTextureHandler();
+    handler.createOnGlThread(mode, GlCapabilities.query());
+    return handler;
+  }
+
+  /**
+   * Sayaçları sıfırlayıp dolgusuz bir derinlik karesi gönderir ve dokuya yüklemenin hangi PBO ve
+   * doku bağlıyken yapıldığını döndürür.
+   */
+  private Upload sendFrame(DepthTextureHandler handler, int width, int height, long timestamp) {
+    gl.reset();
+    assertTrue(handler.update(depthPlane(width, height), width, height, width * 2, 2, timestamp));
+    String pixelBufferBind = "glBindBuffer(" + GL_PIXEL_UNPACK_BUFFER + ", ";
+    String textureBind = "glBindTexture(" + GL_TEXTURE_2D + ", ";
+    int pixelBuffer = 0;
+    int texture = 0;
+    Upload upload = null;
+    for (String command : gl.getCommands()) {
+      if (command.startsWith(pixelBufferBind)) {
+        pixelBuffer = argument(command, pixelBufferBind);
+      } else if (command.startsWith(textureBind)) {
+        texture = argument(command, textureBind);
+      } else if (command.startsWith("glTexSubImage2D(")) {
+        assertEquals("Karede birden fazla yükleme", null, upload);
+        upload = new Upload(pixelBuffer, texture);
+      }
+    }
+    // DIRECT modunda bellek ayıran kare veriyi glTexImage2D ile yükler.
+    return upload != null ? upload : new Upload(pixelBuffer, texture);
+  }
+
+  private static int argument(String command, String prefix) {
+    return Integer.parseInt(command.substring(prefix.length(), command.length() - 1));
+  }
+
+  private static ByteBuffer depthPlane(int width, int height) {
+    return ByteBuffer.allocateDirect(width * height * 2);
+  }
+
+  /** Bir yüklemenin yapıldığı anda bağlı olan PBO (yoksa 0) ve doku. */
+  private static final class Upload {
+    final int pixelBuffer;
+    final int texture;
+
+    Upload(int pixelBuffer, int texture) {
+      this.pixelBuffer = pixelBuffer;
+      this.texture = texture;
+    }
+  }
+
+  /** Satır y, piksel x için (y, x) baytlarını taşıyan, dolgusu 0xEE olan bir düzlem kurar. */
+  private static ByteBuffer plane(int rowStride, int size) {
+    ByteBuffer plane = ByteBuffer.allocate(size);
+    for (int i = 0; i < size; ++i) {
+      plane.put(i, (byte) 0xEE);
+    }
+    fill(plane, rowStride);
+    return plane;
+  }
+
+  private static void fill(ByteBuffer plane, int rowStride) {
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        plane.put(y * rowStride + x * 2, (byte) y);
+        plane.put(y * rowStride + x * 2 + 1, (byte) x);
+      }
+    }
+  }
+
+  private static void assertPacked(ByteBuffer dst) {
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        assertEquals(y, dst.get(y * ROW_BYTES + x * 2));
+        assertEquals(x, dst.get(y * ROW_BYTES + x * 2 + 1));
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.google.ar.core.codelab.depth;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DepthUploadRingTest {
+  @Test
+  public void advance_rotatesWriteSlotAndReadsThePreviousOne() {
+    DepthUploadRing ring = new DepthUploadRing(2);
+    assertEquals(-1, ring.getWriteIndex());
+    assertEquals(-1, ring.getReadIndex());
+
+    // İlk yüklemede önceki yuva yok; yazılan yuva okunur.
+    assertEquals(0, ring.advance());
+    assertEquals(0, ring.getReadIndex());
+
+    assertEquals(1, ring.advance());
+    assertEquals(0, ring.getReadIndex());
+
+    assertEquals(0, ring.advance());
+    assertEquals(1, ring.getReadIndex());
+  }
+
+  @Test
+  public void advance_withThreeSlots_wrapsAround() {
+    DepthUploadRing ring = new DepthUploadRing(3);
+    int[] expectedWrites = {0, 1, 2, 0, 1};
+    int[] expectedReads = {0, 0, 1, 2, 0};
+    for (int i = 0; i < expectedWrites.length; ++i) {
+      assertEquals(expectedWrites[i], ring.advance());
+      assertEquals(expectedReads[i], ring.getReadIndex());
+    }
+  }
+
+  @Test
+  public void readIndex_onlyMovesOnAdvance() {
+    DepthUploadRing ring = new DepthUploadRing(2);
+    ring.advance();
+    ring.advance();
+
+    // Derinlik gelmeyen render karelerinde okuma yuvası sabit kalır.
+    for (int frame = 0; frame < 3; ++frame) {
+      assertEquals(0, ring.getReadIndex());
+    }
+  }
+
+  @Test
+  public void reset_restartsFromTheFirstSlot() {
+    DepthUploadRing ring = new DepthUploadRing(2);
+    ring.advance();
+    ring.advance();
+
+    ring.reset();
+
+    assertEquals(-1, ring.getReadIndex());
+    assertEquals(0, ring.advance());
+    assertEquals(0, ring.getReadIndex());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsSingleSlot() {
+    new DepthUploadRing(1);
+  }
+}
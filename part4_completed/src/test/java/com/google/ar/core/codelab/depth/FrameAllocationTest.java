@@ -0,0 +1,412 @@
+package com.google.ar.core.codelab.depth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.ar.core.codelab.common.math.Mat4;
+import com.google.ar.core.codelab.common.metrics.MetricsRegistry;
+import com.google.ar.core.codelab.common.profiling.FrameProfiler;
+import com.google.ar.core.codelab.common.profiling.TraceRecorder;
+import com.google.ar.core.codelab.common.rendering.AssetLoader;
+import com.google.ar.core.codelab.common.rendering.GlBackend;
+import com.google.ar.core.codelab.common.rendering.GlCapabilities;
+import com.google.ar.core.codelab.common.rendering.GlValidator;
+import com.google.ar.core.codelab.common.rendering.GpuResourceCache;
+import com.google.ar.core.codelab.common.rendering.ObjectRenderer;
+import com.google.ar.core.codelab.common.rendering.OcclusionObjectRenderer;
+import com.google.ar.core.codelab.common.rendering.RecordingGl;
+import com.google.ar.core.codelab.common.rendering.TestAssets;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * DepthCodelabActivity'nin her karede çalıştırdığı {@link FrameRenderer}'ı sahte anchor, düzlem,
+ * derinlik görüntüsü ve GL arka ucu ile çalıştırır; ısınmadan sonra bir karenin hiç bellek
+ * ayırmadığını ThreadMXBean ile doğrular.
+ *
+ * <p>ARCore'un kendi ayırmaları bu testin dışındadır ve bilinen istisnalardır: takip edilen anchor
+ * başına {@code Anchor.getPose()}, düzlem aranırken {@code Session.getAllTrackables} (bkz.
+ * {@link AnchorInstancePass} ve {@link PlaneTrackingMonitor}) ve derinlik görüntüsünü alan
+ * {@code Frame.acquireDepthImage16Bits}. {@link DepthTextureHandler.UploadMode#PIXEL_BUFFER}
+ * modunda Android'in {@code glMapBufferRange} bağlaması her eşlemede yeni bir {@code Buffer}
+ * döndürdüğünden test derinliği {@link DepthTextureHandler.UploadMode#DIRECT} ile yükler. Sahteler
+ * ayırmadan çalışır, böylece ölçülen her bayt uygulamanın kendi kodundandır.
+ */
+public class FrameAllocationTest {
+  private static final String ETC1_EXTENSION = "GL_OES_compressed_ETC1_RGB8_texture";
+  private static final int ANCHOR_COUNT = 2048;
+  private static final int WARM_UP_FRAMES = 5000;
+  private static final int MEASURED_FRAMES = 200;
+  private static final int MEASURED_ROUNDS = 25;
+  private static final int DEPTH_WIDTH = 160;
+  private static final int DEPTH_HEIGHT = 90;
+  // Derinlik görüntüsü her dördüncü render karesinde yenilenir.
+  private static final int FRAMES_PER_DEPTH_IMAGE = 4;
+
+  /** Pozu önceden hesaplanmış sahte anchor. */
+  private static final class FakeAnchor {
+    final float[] pose = new float[AnchorStore.MATRIX_SIZE];
+    boolean tracking;
+  }
+
+  /** Takip durumu testte belirlenen sahte düzlem. */
+  private static final class FakePlane {
+    boolean tracking;
+  }
+
+  /** Sabit bir kamera ve derinlik akışıyla ARCore oturumunun yerini tutar. */
+  private final class FakeFrameSource implements FrameRenderer.FrameSource<FakeAnchor> {
+    final ByteBuffer depthPixels = ByteBuffer.allocateDirect(DEPTH_WIDTH * DEPTH_HEIGHT * 2);
+    long frameIndex = -1;
+    boolean trackingPaused;
+    FakeAnchor pendingTap;
+    FakeAnchor lastDetached;
+    int backgroundDepthTexture;
+    int backgroundDraws;
+
+    @Override
+    public void update() {
+      ++frameIndex;
+    }
+
+    @Override
+    public boolean hasDisplayGeometryChanged() {
+      return false;
+    }
+
+    @Override
+    public void getUvTransform(float[] uvTransform) {
+      Arrays.fill(uvTransform, 0);
+      uvTransform[0] = 1;
+      uvTransform[4] = 1;
+      uvTransform[8] = 1;
+    }
+
+    @Override
+    public boolean updateDepth(DepthTextureHandler depthTexture) {
+      // ARCore bir sonraki görüntü gelene kadar aynı zaman damgalı görüntüyü döndürür.
+      return depthTexture.update(
+          depthPixels,
+          DEPTH_WIDTH,
+          DEPTH_HEIGHT,
+          DEPTH_WIDTH * 2,
+          2,
+          frameIndex / FRAMES_PER_DEPTH_IMAGE);
+    }
+
+    @Override
+    public FakeAnchor pollTapAnchor(float[] planeNormal) {
+      FakeAnchor anchor = pendingTap;
+      pendingTap = null;
+      return anchor;
+    }
+
+    @Override
+    public void detach(FakeAnchor anchor) {
+      lastDetached = anchor;
+    }
+
+    @Override
+    public boolean readPose(FakeAnchor anchor, float[] matrices, int offset) {
+      if (!anchor.tracking) {
+        return false;
+      }
+      System.arraycopy(anchor.pose, 0, matrices, offset, AnchorStore.MATRIX_SIZE);
+      return true;
+    }
+
+    @Override
+    public void setBackgroundDepthTexture(int depthTexture) {
+      backgroundDepthTexture = depthTexture;
+    }
+
+    @Override
+    public void drawBackground(boolean showDepthMap) {
+      ++backgroundDraws;
+    }
+
+    @Override
+    public boolean isTrackingPaused() {
+      return trackingPaused;
+    }
+
+    /** 60 derecelik perspektif projeksiyon. */
+    @Override
+    public void getProjectionMatrix(float[] projmtx, float near, float far) {
+      float focal = (float) (1.0 / Math.tan(Math.toRadians(30.0)));
+      Arrays.fill(projmtx, 0);
+      projmtx[0] = focal;
+      projmtx[5] = focal;
+      projmtx[10] = (far + near) / (near - far);
+      projmtx[11] = -1.0f;
+      projmtx[14] = 2.0f * far * near / (near - far);
+    }
+
+    /** x ekseninde hafifçe sallanan, -z yönüne bakan bir kamera. */
+    @Override
+    public void getViewMatrix(float[] viewmtx) {
+      Mat4.setIdentity(viewmtx, 0);
+      setTranslation(viewmtx, (frameIndex % 60) / 60.0f, 0, 0);
+    }
+
+    @Override
+    public void getColorCorrection(float[] colorCorrectionRgba) {
+      Arrays.fill(colorCorrectionRgba, 1.0f);
+      colorCorrectionRgba[3] = 0.5f;
+    }
+  }
+
+  /** Gösterilen son mesajı tutar. */
+  private static final class FakeStatusView implements FrameRenderer.StatusView {
+    String lastMessage;
+    int trackingFailures;
+
+    @Override
+    public void updateKeepScreenOn() {}
+
+    @Override
+    public void showTrackingFailure() {
+      ++trackingFailures;
+    }
+
+    @Override
+    public void showMessage(String message) {
+      lastMessage = message;
+    }
+  }
+
+  private final List<FakePlane> planes = new ArrayList<>();
+  private final PlaneTrackingMonitor<FakePlane> planeTracking =
+      new PlaneTrackingMonitor<>(
+          new PlaneTrackingMonitor.PlaneSource<FakePlane>() {
+            @Override
+            public Iterable<FakePlane> getAllPlanes() {
+              return planes;
+            }
+
+            @Override
+            public boolean isTracking(FakePlane plane) {
+              return plane.tracking;
+            }
+          });
+
+  private final AnchorStore<FakeAnchor> anchors = new AnchorStore<>(ANCHOR_COUNT);
+  private final FakeFrameSource source = new FakeFrameSource();
+  private final FakeStatusView statusView = new FakeStatusView();
+  private final AssetLoader assetLoader = new AssetLoader();
+  private final TraceRecorder tracer = TraceRecorder.getInstance();
+
+  private RecordingGl gl;
+  private GlValidator glValidator;
+  private GlValidator.Mode previousValidationMode;
+  private DepthTextureHandler depthTexture;
+  private GpuResourceCache gpuResources;
+  private FrameRenderer<FakeAnchor> frameRenderer;
+
+  @Before
+  public void setUp() throws IOException {
+    gl = new RecordingGl("OpenGL ES 3.0", ETC1_EXTENSION);
+    GlBackend.set(gl);
+    glValidator = GlValidator.getInstance();
+    previousValidationMode = glValidator.getMode();
+    glValidator.setMode(GlValidator.Mode.FULL);
+    tracer.start();
+
+    GlCapabilities capabilities = GlCapabilities.query();
+    depthTexture = new DepthTextureHandler();
+    depthTexture.createOnGlThread(DepthTextureHandler.UploadMode.DIRECT, capabilities);
+    ObjectRenderer virtualObject = TestAssets.createObjectRenderer(capabilities);
+    OcclusionObjectRenderer occludedVirtualObject =
+        TestAssets.createOcclusionObjectRenderer(capabilities);
+    occludedVirtualObject.setViewport(1080, 1920);
+    occludedVirtualObject.setOcclusionMode(OcclusionObjectRenderer.OcclusionMode.PREFILTERED);
+    gpuResources = TestAssets.createResourceCache();
+
+    FrameProfiler profiler = new FrameProfiler();
+    profiler.setTraceRecorder(tracer);
+    frameRenderer =
+        new FrameRenderer<>(
+            source,
+            statusView,
+            anchors,
+            planeTracking,
+            depthTexture,
+            virtualObject,
+            occludedVirtualObject,
+            assetLoader,
+            profiler,
+            new MetricsRegistry());
+    frameRenderer.onSurfaceCreated(gpuResources, /*depthSupported=*/ true);
+
+    // Kameranın önünde ve arkasında bir ızgara; anchor'ların yarısı takip edilir.
+    for (int i = 0; i < ANCHOR_COUNT; ++i) {
+      FakeAnchor anchor = new FakeAnchor();
+      anchor.tracking = i % 2 == 0;
+      Mat4.setIdentity(anchor.pose, 0);
+      setTranslation(anchor.pose, (i % 32) - 16, 0, (i / 32) - 32);
+      anchors.add(anchor);
+    }
+    for (int i = 0; i < 4; ++i) {
+      planes.add(new FakePlane());
+    }
+  }
+
+  @After
+  public void tearDown() {
+    tracer.stop();
+    glValidator.setMode(previousValidationMode);
+    assetLoader.shutdown();
+  }
+
+  @Test
+  public void frame_allocatesNothingOnceWarmedUp() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId();
+
+    // İlk karelerde düzlem aranır, sonra biri takip edilmeye başlar.
+    for (int i = 0; i < WARM_UP_FRAMES; ++i) {
+      if (i == 10) {
+        planes.get(2).tracking = true;
+      }
+      frameRenderer.drawFrame();
+    }
+    long arenaAllocations = frameRenderer.getFrameArena().getAllocationCount();
+    long planeQueries = planeTracking.getQueryCount();
+    long depthUploads = depthTexture.getUploadCount();
+
+    // Ölçüm çağrısının kendi ayırması boş bir ölçümle bulunup çıkarılır. JVM'in JIT derlemesi
+    // sırasında yaptığı gibi bir kerelik ayırmalar birkaç turu etkileyebilir; her karede yapılan
+    // bir ayırma ise her turda görünür. Bu yüzden turların ortancası sıfır olmalıdır.
+    long[] allocated = new long[MEASURED_ROUNDS];
+    long calibrationStart = threadBean.getThreadAllocatedBytes(threadId);
+    long calibration = threadBean.getThreadAllocatedBytes(threadId) - calibrationStart;
+    for (int round = 0; round < MEASURED_ROUNDS; ++round) {
+      long start = threadBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < MEASURED_FRAMES; ++i) {
+        frameRenderer.drawFrame();
+      }
+      allocated[round] =
+          Math.max(threadBean.getThreadAllocatedBytes(threadId) - start - calibration, 0);
+    }
+
+    long[] sorted = allocated.clone();
+    Arrays.sort(sorted);
+    assertEquals(
+        "Bytes allocated per " + MEASURED_FRAMES + " frames: " + Arrays.toString(allocated),
+        0,
+        sorted[MEASURED_ROUNDS / 2]);
+    assertEquals(0, frameRenderer.getFailedFrameCount());
+    assertEquals(arenaAllocations, frameRenderer.getFrameArena().getAllocationCount());
+    assertEquals(planeQueries, planeTracking.getQueryCount());
+    // Ölçülen kareler derinlik yüklemesini ve bulanıklığı da içerir.
+    assertEquals(
+        depthUploads + MEASURED_ROUNDS * MEASURED_FRAMES / FRAMES_PER_DEPTH_IMAGE,
+        depthTexture.getUploadCount());
+    assertEquals(FrameRenderer.PLANES_FOUND_MESSAGE, statusView.lastMessage);
+  }
+
+  @Test
+  public void frame_drawsOnlyTrackedAnchorsInsideTheFrustum() {
+    frameRenderer.drawFrame();
+    gl.reset();
+    frameRenderer.drawFrame();
+
+    assertEquals(0, frameRenderer.getFailedFrameCount());
+    assertEquals(ANCHOR_COUNT / 2, anchors.getTrackedCount());
+    // Görünür anchor'ların hepsi tek bir örneklenmiş çizimle çizilir; kamera -z yönüne bakar ve
+    // arkadaki anchor'lar elenir.
+    assertEquals(1, gl.getDrawCallCount());
+    assertTrue(gl.getInstanceCount() > 0);
+    assertTrue(gl.getInstanceCount() < ANCHOR_COUNT / 4);
+  }
+
+  @Test
+  public void frame_newDepthImage_isBoundAndBlurredOnce() {
+    frameRenderer.drawFrame();
+
+    assertEquals(1, depthTexture.getUploadCount());
+    assertEquals(depthTexture.getDepthTexture(), source.backgroundDepthTexture);
+    assertTrue(gl.getCallCount("glBindFramebuffer") > 0);
+
+    // Sonraki karelerde aynı görüntü gelir; yükleme ve bulanıklık atlanır, çizim sürer.
+    gl.reset();
+    frameRenderer.drawFrame();
+
+    assertEquals(1, depthTexture.getUploadCount());
+    assertEquals(1, depthTexture.getSkippedUploadCount());
+    assertEquals(0, gl.getCallCount("glBindFramebuffer"));
+    assertEquals(1, gl.getDrawCallCount());
+    assertEquals(2, source.backgroundDraws);
+  }
+
+  @Test
+  public void frame_tap_addsAnchorAndDetachesTheOldest() {
+    FakeAnchor oldest = anchors.get(0);
+    FakeAnchor tapped = new FakeAnchor();
+    source.pendingTap = tapped;
+
+    frameRenderer.drawFrame();
+
+    assertSame(oldest, source.lastDetached);
+    assertSame(tapped, anchors.get(ANCHOR_COUNT - 1));
+    assertEquals(ANCHOR_COUNT, anchors.size());
+
+    source.lastDetached = null;
+    frameRenderer.drawFrame();
+    assertNull(source.lastDetached);
+  }
+
+  @Test
+  public void frame_message_followsPlanesAndDepthSupport() {
+    frameRenderer.drawFrame();
+    assertEquals(FrameRenderer.SEARCHING_PLANE_MESSAGE, statusView.lastMessage);
+
+    planes.get(0).tracking = true;
+    frameRenderer.drawFrame();
+    assertEquals(FrameRenderer.PLANES_FOUND_MESSAGE, statusView.lastMessage);
+
+    frameRenderer.onSurfaceCreated(gpuResources, /*depthSupported=*/ false);
+    frameRenderer.drawFrame();
+    assertEquals(FrameRenderer.PLANES_FOUND_NO_DEPTH_MESSAGE, statusView.lastMessage);
+
+    planes.get(0).tracking = false;
+    frameRenderer.drawFrame();
+    assertEquals(FrameRenderer.SEARCHING_PLANE_NO_DEPTH_MESSAGE, statusView.lastMessage);
+    assertEquals(0, frameRenderer.getFailedFrameCount());
+  }
+
+  @Test
+  public void frame_trackingPaused_showsFailureAndDrawsNoObjects() {
+    frameRenderer.drawFrame();
+    source.trackingPaused = true;
+    statusView.lastMessage = null;
+    gl.reset();
+
+    frameRenderer.drawFrame();
+
+    assertEquals(1, statusView.trackingFailures);
+    assertNull(statusView.lastMessage);
+    assertEquals(0, gl.getDrawCallCount());
+    assertEquals(0, frameRenderer.getFailedFrameCount());
+  }
+
+  private static void setTranslation(float[] matrix, float x, float y, float z) {
+    matrix[12] = x;
+    matrix[13] = y;
+    matrix[14] = z;
+  }
+}
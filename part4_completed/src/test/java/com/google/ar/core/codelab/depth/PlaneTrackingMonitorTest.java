@@ -0,0 +1,76 @@
+package com.google.ar.core.codelab.depth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class PlaneTrackingMonitorTest {
+  /** Takip durumu testte belirlenen sahte düzlem. */
+  private static final class FakePlane {
+    boolean tracking;
+  }
+
+  private final List<FakePlane> planes = new ArrayList<>();
+  private final PlaneTrackingMonitor<FakePlane> monitor =
+      new PlaneTrackingMonitor<>(
+          new PlaneTrackingMonitor.PlaneSource<FakePlane>() {
+            @Override
+            public Iterable<FakePlane> getAllPlanes() {
+              return planes;
+            }
+
+            @Override
+            public boolean isTracking(FakePlane plane) {
+              return plane.tracking;
+            }
+          });
+
+  @Test
+  public void hasTrackingPlane_queriesAllPlanesOnlyWhileSearching() {
+    planes.add(new FakePlane());
+    planes.add(new FakePlane());
+
+    assertFalse(monitor.hasTrackingPlane());
+    assertFalse(monitor.hasTrackingPlane());
+    assertEquals(2, monitor.getQueryCount());
+
+    planes.get(1).tracking = true;
+    for (int i = 0; i < 10; ++i) {
+      assertTrue(monitor.hasTrackingPlane());
+    }
+    assertEquals(3, monitor.getQueryCount());
+  }
+
+  @Test
+  public void hasTrackingPlane_searchesAgainWhenRememberedPlaneStops() {
+    planes.add(new FakePlane());
+    planes.add(new FakePlane());
+    planes.get(0).tracking = true;
+    assertTrue(monitor.hasTrackingPlane());
+
+    // Düzlem başka bir düzleme katıldığında takipten çıkar.
+    planes.get(0).tracking = false;
+    planes.get(1).tracking = true;
+    assertTrue(monitor.hasTrackingPlane());
+    assertEquals(2, monitor.getQueryCount());
+
+    planes.get(1).tracking = false;
+    assertFalse(monitor.hasTrackingPlane());
+  }
+
+  @Test
+  public void clear_forgetsRememberedPlane() {
+    planes.add(new FakePlane());
+    planes.get(0).tracking = true;
+    assertTrue(monitor.hasTrackingPlane());
+
+    monitor.clear();
+    planes.clear();
+
+    assertFalse(monitor.hasTrackingPlane());
+  }
+}